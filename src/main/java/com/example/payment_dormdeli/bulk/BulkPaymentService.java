@@ -0,0 +1,481 @@
+package com.example.payment_dormdeli.bulk;
+
+import com.example.payment_dormdeli.config.BulkConfig;
+import com.example.payment_dormdeli.dto.BulkJobRequest;
+import com.example.payment_dormdeli.eventbus.PaymentEventBus;
+import com.example.payment_dormdeli.matching.PendingOrderMatcher;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.BulkJob;
+import com.example.payment_dormdeli.model.BulkJobState;
+import com.example.payment_dormdeli.model.BulkOperation;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.BulkJobRepository;
+import com.example.payment_dormdeli.repository.PaymentBulkRepository;
+import com.example.payment_dormdeli.repository.PaymentBulkRepository.Candidate;
+import com.example.payment_dormdeli.repository.PaymentBulkRepository.WriteOutcome;
+import com.example.payment_dormdeli.service.PaymentStatusCache;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.WriteResult;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs bulk admin jobs (cancel, expire, confirm, delete) one at a time on a background thread.
+ *
+ * A job goes a page at a time. Before writing a page the ids of the payments it will change are
+ * stored on the job; payment writes go through one throttled BulkWriter per job, and only once they
+ * have landed are the ledger events, outbox records and stats counters written for the ones that
+ * succeeded. The cursor is then stored with the page cleared. A job stopped anywhere in between is
+ * resumed from its cursor, after re-writing the ledger and outbox entries of the stored page
+ * (creates, so ones already written are left as they are; stats counters are not repeated).
+ *
+ * Jobs are shared by every instance through BulkJobRepository. A run first claims its job
+ * (QUEUED to RUNNING under a new owner and lease, in a transaction), renews the lease with every
+ * checkpoint and stops if the claim was lost. Pause sets a flag on the job document, which the
+ * run picks up at its next checkpoint whichever instance it is on. Every lease-ms each instance
+ * marks RUNNING jobs whose lease ran out INTERRUPTED, and picks up QUEUED jobs left behind by an
+ * instance that stopped before running them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkPaymentService implements MetricsSource {
+
+    private static final int RECENT_JOBS = 20;
+
+    private final BulkConfig bulkConfig;
+    private final BulkJobRepository bulkJobRepository;
+    private final PaymentBulkRepository paymentBulkRepository;
+    private final PaymentEventBus paymentEventBus;
+    private final PendingOrderMatcher pendingOrderMatcher;
+    // Deletes publish no transition, so the cached status is dropped here
+    private final PaymentStatusCache paymentStatusCache;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-payments");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Jobs waiting in this instance's executor, so the sweep does not queue them twice
+    private final Set<String> queuedHere = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder jobsRun = new LongAdder();
+    private final LongAdder paymentsWritten = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private volatile String runningJobId;
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        executor.submit(this::recoverAbandoned);
+    }
+
+    /**
+     * Interrupt RUNNING jobs whose lease ran out and queue QUEUED jobs nobody has picked up for a lease
+     */
+    @Scheduled(fixedDelayString = "${payment.bulk.lease-ms:300000}", initialDelayString = "${payment.bulk.lease-ms:300000}")
+    public void recoverAbandoned() {
+        try {
+            for (BulkJob job : bulkJobRepository.interruptExpired()) {
+                log.warn("Bulk job {} stopped renewing its lease; resume it with POST /payment/bulk/jobs/{}/resume",
+                        job.getId(), job.getId());
+            }
+            long cutoff = System.currentTimeMillis() - bulkConfig.getLeaseMs();
+            for (BulkJob job : bulkJobRepository.findByState(BulkJobState.QUEUED)) {
+                if (job.getUpdatedAt() != null && job.getUpdatedAt().getTime() < cutoff && !queuedHere.contains(job.getId())) {
+                    log.info("Bulk job {} has been queued since {}; running it here", job.getId(), job.getUpdatedAt());
+                    enqueue(job.getId());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error recovering bulk jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Validate and queue a job
+     */
+    public BulkJob submit(BulkJobRequest request) {
+        BulkOperation operation = request.getOperation();
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation is required");
+        }
+        boolean byList = request.getOrderIds() != null && !request.getOrderIds().isEmpty();
+        if (byList == (request.getFilter() != null)) {
+            throw new IllegalArgumentException("Give either orderIds or a filter");
+        }
+
+        BulkJob job = BulkJob.builder()
+                .operation(operation)
+                .state(BulkJobState.QUEUED)
+                .reason(request.getReason())
+                .build();
+
+        if (byList) {
+            List<String> orderIds = new ArrayList<>(new LinkedHashSet<>(request.getOrderIds()));
+            orderIds.removeIf(orderId -> orderId == null || orderId.isBlank());
+            if (orderIds.isEmpty() || orderIds.size() > bulkConfig.getMaxOrderIds()) {
+                throw new IllegalArgumentException("Between 1 and " + bulkConfig.getMaxOrderIds() + " orderIds are allowed");
+            }
+            job.setOrderIds(orderIds);
+        } else {
+            BulkJobRequest.Filter filter = request.getFilter();
+            PaymentStatus status = filter.getStatus();
+            if (status == null && (operation == BulkOperation.CANCEL || operation == BulkOperation.EXPIRE)) {
+                status = PaymentStatus.PENDING;
+            }
+            if (status == null) {
+                throw new IllegalArgumentException("filter.status is required for " + operation);
+            }
+            if (!operation.appliesTo(status)) {
+                throw new IllegalArgumentException(operation + " does not apply to " + status + " payments");
+            }
+            if (filter.getCreatedBefore() == null) {
+                throw new IllegalArgumentException("filter.createdBefore is required");
+            }
+            job.setFilterStatus(status);
+            job.setFilterMethod(filter.getPaymentMethod());
+            job.setCreatedAfter(filter.getCreatedAfter());
+            job.setCreatedBefore(filter.getCreatedBefore());
+        }
+
+        bulkJobRepository.save(job);
+        log.info("Bulk job {} queued: {} {}", job.getId(), operation,
+                byList ? job.getOrderIds().size() + " orderIds" : "filter " + job.getFilterStatus() + " before " + job.getCreatedBefore());
+        enqueue(job.getId());
+        return job;
+    }
+
+    /**
+     * orderIds from an uploaded file: one per line, first column if the line has commas,
+     * blank lines and an "orderId" header skipped
+     */
+    public static List<String> parseOrderIds(InputStream input) throws IOException {
+        List<String> orderIds = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                String orderId = (comma >= 0 ? line.substring(0, comma) : line).replace("\uFEFF", "").replace("\"", "").trim();
+                if (!orderId.isEmpty() && !orderId.equalsIgnoreCase("orderId")) {
+                    orderIds.add(orderId);
+                }
+            }
+        }
+        return orderIds;
+    }
+
+    /**
+     * Queue a PAUSED, INTERRUPTED or FAILED job again; it continues from its cursor
+     */
+    public BulkJob resume(String jobId) {
+        BulkJob job = bulkJobRepository.update(jobId,
+                EnumSet.of(BulkJobState.PAUSED, BulkJobState.INTERRUPTED, BulkJobState.FAILED), resumed -> {
+                    resumed.setState(BulkJobState.QUEUED);
+                    resumed.setPauseRequested(false);
+                });
+        enqueue(jobId);
+        return job;
+    }
+
+    /**
+     * Ask a queued or running job to stop after its current page, on whichever instance runs it
+     */
+    public BulkJob pause(String jobId) {
+        return bulkJobRepository.update(jobId, EnumSet.of(BulkJobState.QUEUED, BulkJobState.RUNNING),
+                job -> job.setPauseRequested(true));
+    }
+
+    public Optional<BulkJob> find(String jobId) {
+        return bulkJobRepository.findById(jobId);
+    }
+
+    public List<BulkJob> findRecent() {
+        return bulkJobRepository.findRecent(RECENT_JOBS);
+    }
+
+    private void enqueue(String jobId) {
+        queuedHere.add(jobId);
+        executor.submit(() -> {
+            queuedHere.remove(jobId);
+            run(jobId);
+        });
+    }
+
+    // Package-private for tests
+    void run(String jobId) {
+        BulkJob job = bulkJobRepository.claim(jobId, UUID.randomUUID().toString(), bulkConfig.getLeaseMs()).orElse(null);
+        if (job == null) {
+            return;
+        }
+        runningJobId = jobId;
+        jobsRun.increment();
+        log.info("Bulk job {} running: {}", jobId, job.getOperation());
+
+        BulkWriter writer = paymentBulkRepository.openWriter(bulkConfig.getInitialOpsPerSecond(),
+                bulkConfig.getMaxOpsPerSecond(), bulkConfig.getMaxAttempts(), retries);
+        boolean claimLost = false;
+        try {
+            repairInFlight(writer, job);
+            while (true) {
+                if (job.isPauseRequested()) {
+                    job.setState(BulkJobState.PAUSED);
+                    log.info("Bulk job {} paused after {} payments", jobId, job.getProcessed());
+                    return;
+                }
+                if (!processNextPage(writer, job)) {
+                    break;
+                }
+            }
+            job.setState(BulkJobState.COMPLETED);
+            job.setFinishedAt(new Date());
+            log.info("Bulk job {} completed: {} processed, {} succeeded, {} skipped, {} failed",
+                    jobId, job.getProcessed(), job.getSucceeded(), job.getSkipped(), job.getFailed());
+        } catch (ClaimLostException e) {
+            claimLost = true;
+            log.warn("Bulk job {} was taken over after its lease ran out; stopping here", jobId);
+        } catch (Exception e) {
+            log.error("Bulk job {} failed: {}", jobId, e.getMessage(), e);
+            job.setState(BulkJobState.FAILED);
+            job.setLastError(e.getMessage());
+        } finally {
+            runningJobId = null;
+            try {
+                writer.close();
+            } catch (Exception e) {
+                log.warn("Error closing bulk writer of job {}: {}", jobId, e.getMessage());
+            }
+            if (!claimLost && !bulkJobRepository.saveClaimed(job, bulkConfig.getLeaseMs())) {
+                log.warn("Bulk job {} was taken over before its final state {} was saved", jobId, job.getState());
+            }
+        }
+    }
+
+    /**
+     * Store the job's progress and renew its lease; stops the run if another claim holds the job now
+     */
+    private void checkpoint(BulkJob job) {
+        if (!bulkJobRepository.saveClaimed(job, bulkConfig.getLeaseMs())) {
+            throw new ClaimLostException();
+        }
+    }
+
+    /**
+     * Select, write and checkpoint one page; false once nothing is left
+     */
+    private boolean processNextPage(BulkWriter writer, BulkJob job) {
+        int pageSize = Math.max(1, bulkConfig.getPageSize());
+        List<Candidate> page;
+        int nextIndex = job.getCursorIndex();
+        if (job.getOrderIds() != null) {
+            if (job.getCursorIndex() >= job.getOrderIds().size()) {
+                return false;
+            }
+            nextIndex = Math.min(job.getOrderIds().size(), job.getCursorIndex() + pageSize);
+            List<String> orderIds = job.getOrderIds().subList(job.getCursorIndex(), nextIndex);
+            page = paymentBulkRepository.findByOrderIds(orderIds);
+            // Unknown orderIds count as processed and skipped
+            long unknown = orderIds.size() - page.size();
+            job.setProcessed(job.getProcessed() + unknown);
+            job.setSkipped(job.getSkipped() + unknown);
+        } else {
+            page = paymentBulkRepository.findPage(job.getFilterStatus(), job.getCreatedAfter(), job.getCreatedBefore(),
+                    job.getCursorCreatedAt(), job.getCursorPaymentId(), pageSize);
+            if (page.isEmpty()) {
+                return false;
+            }
+        }
+
+        List<Candidate> applicable = new ArrayList<>();
+        for (Candidate candidate : page) {
+            Payment payment = candidate.getPayment();
+            if (job.getOperation().appliesTo(payment.getStatus())
+                    && (job.getFilterMethod() == null || job.getFilterMethod() == payment.getPaymentMethod())) {
+                applicable.add(candidate);
+            }
+        }
+        job.setProcessed(job.getProcessed() + page.size());
+        job.setSkipped(job.getSkipped() + page.size() - applicable.size());
+
+        List<String> inFlight = new ArrayList<>();
+        for (Candidate candidate : applicable) {
+            inFlight.add(candidate.getPayment().getId());
+        }
+        job.setInFlightPaymentIds(inFlight);
+        checkpoint(job);
+
+        writePage(writer, job, applicable);
+
+        if (job.getOrderIds() != null) {
+            job.setCursorIndex(nextIndex);
+        } else {
+            Payment last = page.get(page.size() - 1).getPayment();
+            job.setCursorCreatedAt(last.getCreatedAt());
+            job.setCursorPaymentId(last.getId());
+        }
+        job.setInFlightPaymentIds(null);
+        checkpoint(job);
+        return true;
+    }
+
+    private void writePage(BulkWriter writer, BulkJob job, List<Candidate> candidates) {
+        BulkOperation operation = job.getOperation();
+        Map<Candidate, PaymentStatus> previousStatuses = new HashMap<>();
+        Map<Candidate, ApiFuture<WriteResult>> writes = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            Payment payment = candidate.getPayment();
+            previousStatuses.put(candidate, payment.getStatus());
+            if (operation == BulkOperation.DELETE) {
+                writes.put(candidate, paymentBulkRepository.delete(writer, candidate));
+            } else {
+                apply(job, payment);
+                writes.put(candidate, paymentBulkRepository.writeTransition(writer, candidate));
+            }
+        }
+        paymentBulkRepository.flush(writer, bulkConfig.getPageTimeoutMs());
+
+        List<Candidate> written = new ArrayList<>();
+        for (Map.Entry<Candidate, ApiFuture<WriteResult>> entry : writes.entrySet()) {
+            StringBuilder error = new StringBuilder();
+            WriteOutcome outcome = PaymentBulkRepository.outcomeOf(entry.getValue(), error);
+            String orderId = entry.getKey().getPayment().getOrderId();
+            if (outcome == WriteOutcome.OK) {
+                written.add(entry.getKey());
+            } else if (outcome == WriteOutcome.CONFLICT) {
+                conflicts.increment();
+                job.setSkipped(job.getSkipped() + 1);
+            } else {
+                writeFailures.increment();
+                job.setFailed(job.getFailed() + 1);
+                job.setLastError(orderId + ": " + error);
+                addFailedSample(job, orderId);
+            }
+        }
+
+        if (operation != BulkOperation.DELETE && !written.isEmpty()) {
+            Map<PaymentStatus, List<Payment>> byPreviousStatus = new EnumMap<>(PaymentStatus.class);
+            List<ApiFuture<WriteResult>> dependents = new ArrayList<>();
+            for (Candidate candidate : written) {
+                byPreviousStatus.computeIfAbsent(previousStatuses.get(candidate), status -> new ArrayList<>())
+                        .add(candidate.getPayment());
+                dependents.addAll(paymentBulkRepository.writeDependents(writer, candidate.getPayment(), job.getReason()));
+            }
+            byPreviousStatus.forEach((previous, payments) ->
+                    dependents.addAll(paymentBulkRepository.recordTransitions(writer, payments, previous)));
+            paymentBulkRepository.flush(writer, bulkConfig.getPageTimeoutMs());
+            checkDependents(job, dependents);
+        }
+
+        for (Candidate candidate : written) {
+            Payment payment = candidate.getPayment();
+            if (operation != BulkOperation.DELETE) {
+                paymentEventBus.publish(payment, previousStatuses.get(candidate));
+            } else {
+                paymentStatusCache.invalidate(payment.getOrderId());
+            }
+            pendingOrderMatcher.remove(payment.getOrderId());
+        }
+        paymentsWritten.add(written.size());
+        job.setSucceeded(job.getSucceeded() + written.size());
+    }
+
+    /**
+     * Move the payment to the operation's status, as manualConfirmPayment does for CONFIRM
+     */
+    private void apply(BulkJob job, Payment payment) {
+        payment.setStatus(job.getOperation().getTargetStatus());
+        if (job.getOperation() == BulkOperation.CONFIRM) {
+            if (payment.getTransactionId() == null) {
+                payment.setTransactionId("BULK_" + job.getId());
+            }
+            payment.setCompletedAt(new Date());
+        } else if (job.getReason() != null) {
+            payment.setErrorMessage(job.getReason());
+        }
+    }
+
+    /**
+     * Write the ledger and outbox entries of a page whose payment writes may have landed before
+     * the job stopped. Payments no longer in the job's target status were changed by someone else
+     * since, and are left alone.
+     */
+    private void repairInFlight(BulkWriter writer, BulkJob job) {
+        List<String> inFlight = job.getInFlightPaymentIds();
+        if (inFlight == null || inFlight.isEmpty() || job.getOperation() == BulkOperation.DELETE) {
+            return;
+        }
+        List<ApiFuture<WriteResult>> dependents = new ArrayList<>();
+        for (Candidate candidate : paymentBulkRepository.findByIds(inFlight)) {
+            if (candidate.getPayment().getStatus() == job.getOperation().getTargetStatus()) {
+                dependents.addAll(paymentBulkRepository.writeDependents(writer, candidate.getPayment(), job.getReason()));
+            }
+        }
+        paymentBulkRepository.flush(writer, bulkConfig.getPageTimeoutMs());
+        checkDependents(job, dependents);
+        log.info("Bulk job {}: repaired ledger entries of {} in-flight payments", job.getId(), inFlight.size());
+    }
+
+    private void checkDependents(BulkJob job, List<ApiFuture<WriteResult>> dependents) {
+        for (ApiFuture<WriteResult> future : dependents) {
+            StringBuilder error = new StringBuilder();
+            if (PaymentBulkRepository.outcomeOf(future, error) == WriteOutcome.FAILED) {
+                writeFailures.increment();
+                job.setLastError("Ledger/outbox write failed: " + error);
+                log.error("Bulk job {}: ledger/outbox write failed: {}", job.getId(), error);
+            }
+        }
+    }
+
+    private void addFailedSample(BulkJob job, String orderId) {
+        if (job.getFailedOrderIds() == null) {
+            job.setFailedOrderIds(new ArrayList<>());
+        }
+        if (job.getFailedOrderIds().size() < bulkConfig.getMaxFailedSamples()) {
+            job.getFailedOrderIds().add(orderId);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "bulk";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runningJob", runningJobId);
+        metrics.put("jobsRun", jobsRun.sum());
+        metrics.put("paymentsWritten", paymentsWritten.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("writeFailures", writeFailures.sum());
+        metrics.put("retries", retries.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class ClaimLostException extends RuntimeException {
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.payment_dormdeli.config;
+
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.archive")
+@Data
+public class ArchiveConfig {
+
+    private boolean enabled = true;
+
+    // Settled payments in these statuses move to the archive once untouched for minAgeDays
+    private List<PaymentStatus> statuses = new ArrayList<>(List.of(
+            PaymentStatus.SUCCESS, PaymentStatus.FAILED, PaymentStatus.EXPIRED));
+    private int minAgeDays = 90;
+
+    // Payments read from the hot collection per query, and the cap per run
+    private int batchSize = 200;
+    private int maxPerRun = 5_000;
+
+    // Longest month range one archive history query may span
+    private int maxMonths = 24;
+}
@@ -0,0 +1,34 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.bulk")
+@Data
+public class BulkConfig {
+
+    // BulkWriter starts here and ramps up by 50% every 5 minutes (Firestore's 500/50/5 rule)
+    private int initialOpsPerSecond = 50;
+
+    // Ceiling on the ramp-up, shared by all writes of a job (payments, events, outbox, stats)
+    private int maxOpsPerSecond = 500;
+
+    private int pageSize = 200;
+
+    private int maxOrderIds = 20_000;
+
+    // Attempts per write for retryable errors (UNAVAILABLE, ABORTED, RESOURCE_EXHAUSTED, ...)
+    private int maxAttempts = 5;
+
+    // How long one page of writes may take to flush
+    private long pageTimeoutMs = 120_000;
+
+    // A running job's claim, renewed at every checkpoint; must outlast one page (two flushes of
+    // pageTimeoutMs). A RUNNING job whose lease ran out is marked INTERRUPTED by any instance
+    private long leaseMs = 300_000;
+
+    // Failed orderIds kept on the job for inspection
+    private int maxFailedSamples = 100;
+}
@@ -0,0 +1,30 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "deadline")
+@Data
+public class DeadlineConfig {
+
+    private boolean enabled = true;
+
+    // Time budget of one HTTP request across all Firestore and gateway calls
+    private long requestMs = 5_000;
+
+    private Hedge hedge = new Hedge();
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = true;
+        // Send the second read once the first is slower than this quantile of recent reads
+        private double quantile = 0.95;
+        private long minDelayMs = 5;
+        // No hedging until this many reads have been timed
+        private int minSamples = 200;
+        // Upper bound on hedged / total reads, so hedging cannot double the load
+        private double maxHedgeRatio = 0.1;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.payment_dormdeli.config;
+
+import com.example.payment_dormdeli.eventbus.BackpressurePolicy;
+import com.example.payment_dormdeli.eventbus.WaitStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.event-bus")
+@Data
+public class EventBusConfig {
+
+    private boolean enabled = true;
+
+    // Event slots in the ring, rounded up to a power of two
+    private int bufferSize = 4096;
+
+    // How consumers wait for new events: BLOCKING uses no CPU when idle, BUSY_SPIN the lowest latency
+    private WaitStrategy.Type waitStrategy = WaitStrategy.Type.BLOCKING;
+
+    // What a publisher does when the slowest consumer is a full ring behind
+    private BackpressurePolicy backpressure = BackpressurePolicy.BLOCK;
+
+    // With BLOCK, how long a publisher waits for a free slot before dropping the event
+    private long blockTimeoutMs = 50;
+}
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 
@@ -28,7 +29,12 @@ public class FirebaseConfig {
         this.resourceLoader = resourceLoader;
     }
 
+    /**
+     * Created on first use rather than at startup: credential loading and the gRPC
+     * channel setup are the slowest part of boot. Injection points are marked @Lazy.
+     */
     @Bean
+    @Lazy
     public Firestore firestore() throws IOException {
         try {
             log.info("Loading Firebase credentials from: {}", credentialsPath);
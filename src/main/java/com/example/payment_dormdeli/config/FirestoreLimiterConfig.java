@@ -0,0 +1,35 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "firestore.limiter")
+@Data
+public class FirestoreLimiterConfig {
+
+    private boolean enabled = true;
+
+    // Sent as Retry-After when a call is shed
+    private long retryAfterSeconds = 2;
+
+    private Limit read = new Limit(40, 8, 200);
+    private Limit write = new Limit(20, 4, 100);
+
+    @Data
+    public static class Limit {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+
+        public Limit() {
+        }
+
+        public Limit(int initialLimit, int minLimit, int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+    }
+}
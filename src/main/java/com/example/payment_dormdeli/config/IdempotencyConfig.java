@@ -0,0 +1,25 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.idempotency")
+@Data
+public class IdempotencyConfig {
+
+    private boolean enabled = true;
+
+    // How long a key is honoured; Firestore deletes records through a TTL policy on expireAt
+    private long ttlHours = 24;
+
+    // Responses kept in memory in front of Firestore
+    private int maxEntries = 10_000;
+
+    // How long a running request holds its key; past it a retry on any instance may run the create again
+    private long leaseMs = 30_000;
+
+    // How often a retry re-reads a key reserved by a request on another instance
+    private long pollIntervalMs = 100;
+}
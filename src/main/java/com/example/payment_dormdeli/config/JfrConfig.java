@@ -0,0 +1,26 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "jfr")
+@Data
+public class JfrConfig {
+
+    // Start an in-process recording with the payment events at startup
+    private boolean enabled = false;
+
+    // Built-in JFR configuration ("default" or "profile") the payment settings are layered on
+    private String baseSettings = "default";
+
+    private long maxAgeMinutes = 60;
+    private long maxSizeMb = 250;
+
+    // GET /payment/debug/jfr reuses its last report for this long instead of dumping again
+    private long reportCacheSeconds = 60;
+
+    // Recording written here on shutdown; unset keeps nothing
+    private String dumpPath;
+}
@@ -0,0 +1,40 @@
+package com.example.payment_dormdeli.config;
+
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+@Data
+public class OutboxConfig {
+
+    private boolean enabled = false;
+
+    // Statuses that produce a notification
+    private List<PaymentStatus> statuses = new ArrayList<>(List.of(PaymentStatus.SUCCESS));
+
+    private int batchSize = 50;
+    private int maxAttempts = 10;
+    private long initialBackoffMs = 1_000;
+    private long maxBackoffMs = 300_000;
+
+    // How long a claimed record stays reserved for the instance sending it; must exceed every destination's timeout
+    private long leaseMs = 60_000;
+
+    // Receivers of payment notifications, by name
+    private Map<String, Destination> destinations = new HashMap<>();
+
+    @Data
+    public static class Destination {
+        private String url;
+        private int maxConcurrency = 2;
+        private long timeoutMs = 5_000;
+    }
+}
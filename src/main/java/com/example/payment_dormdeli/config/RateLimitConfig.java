@@ -0,0 +1,28 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitConfig {
+
+    private boolean enabled = true;
+
+    // Buckets untouched for this long are full again and can be dropped
+    private long idleEvictionMs = 300_000;
+
+    // Limits per endpoint name (create, vnpay-create, status, ...)
+    private Map<String, Limit> endpoints = new HashMap<>();
+
+    @Data
+    public static class Limit {
+        private int capacity = 20;
+        private double refillPerSecond = 5;
+    }
+}
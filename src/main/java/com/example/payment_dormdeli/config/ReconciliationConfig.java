@@ -0,0 +1,45 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.reconciliation")
+@Data
+public class ReconciliationConfig {
+
+    // Accepted header names per column, compared without case or Vietnamese diacritics
+    private List<String> contentColumns = new ArrayList<>(List.of(
+            "content", "description", "noi dung", "noi dung giao dich", "mo ta", "dien giai", "chi tiet giao dich"));
+    private List<String> amountColumns = new ArrayList<>(List.of(
+            "credit", "amount", "so tien ghi co", "ghi co", "so tien"));
+    private List<String> referenceColumns = new ArrayList<>(List.of(
+            "reference", "reference number", "so tham chieu", "so but toan", "ma giao dich"));
+    private List<String> dateColumns = new ArrayList<>(List.of(
+            "date", "transaction date", "ngay giao dich", "ngay hieu luc"));
+
+    private String charset = "UTF-8";
+    private char delimiter = ',';
+
+    // Lines searched for the header row (exports start with account details)
+    private int maxHeaderLines = 50;
+
+    // Bytes of the statement parsed per fork/join task
+    private int chunkSizeKb = 4096;
+
+    // Worker threads for parsing and matching, 0 for one per core
+    private int parallelism = 0;
+
+    // Payments created this long before the statement period can still be paid in it
+    private int lookbackDays = 7;
+
+    // Rows listed per discrepancy kind; counts and totals always cover all of them
+    private int maxReportRows = 1_000;
+
+    // Payments read per Firestore page
+    private int pageSize = 1_000;
+}
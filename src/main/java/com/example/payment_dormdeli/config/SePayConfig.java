@@ -14,4 +14,45 @@ public class SePayConfig {
     private String bankCode;
     private String endpoint;
     private String webhookUrl;
+    private Sync sync = new Sync();
+    private Qr qr = new Qr();
+
+    @Data
+    public static class Sync {
+        // Rows per call to the transaction list API
+        private int pageSize = 200;
+
+        // Largest limit used to read every row of one second when more than pageSize share it
+        private int maxPageSize = 5000;
+
+        // How far back the very first sync starts, before any cursor exists
+        private long initialLookbackHours = 72;
+
+        // Status checks reuse a sync younger than this instead of calling SePay again
+        private long minIntervalMs = 5000;
+
+        // Per-request cap; inside an HTTP request the request deadline may cut it shorter
+        private long timeoutMs = 10_000;
+    }
+
+    @Data
+    public static class Qr {
+        // NAPAS BIN of the receiving bank; derived from bankCode when unset
+        private String bankBin;
+
+        // QR image endpoint put into SePay checkout responses, relative to publicBaseUrl unless absolute
+        private String imageUrl = "/payment/qr";
+
+        // Scheme, host and context path clients reach this service on, e.g. https://pay.example.com/api;
+        // when unset the current request's is used, which behind a proxy may be an internal address
+        private String publicBaseUrl;
+
+        // Pixels per QR module and quiet zone in modules
+        private int moduleSize = 8;
+        private int margin = 4;
+
+        // Rendered images kept, by count and total size
+        private int cacheMaxEntries = 2_000;
+        private long cacheMaxBytes = 16 * 1024 * 1024;
+    }
 }
@@ -0,0 +1,117 @@
+package com.example.payment_dormdeli.config;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Startup reporting and the AppCDS training run used by the Docker image build.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupListener {
+
+    // Rounds of the training workload; enough for every request path to load its classes
+    private static final int TRAINING_ROUNDS = 20;
+
+    private final Environment environment;
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        boolean cds = runtime.getInputArguments().stream().anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+
+        log.info("Application ready in {} ms since JVM start ({} ms in Spring), AOT: {}, AppCDS: {}",
+                runtime.getUptime(), event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1,
+                AotDetector.useGeneratedArtifacts(), cds);
+    }
+
+    /**
+     * With startup.cds-training=true the app runs a short scripted workload once warm-up is done, then
+     * exits, so -XX:ArchiveClassesAtExit captures the classes of boot, warm-up and the request paths
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onTrainingReady(ApplicationReadyEvent event) {
+        if (!environment.getProperty("startup.cds-training", Boolean.class, false)) {
+            return;
+        }
+
+        log.info("CDS training run: running workload, then exiting");
+        preloadFirestoreClasses();
+        if (event.getApplicationContext() instanceof WebServerApplicationContext web) {
+            runTrainingWorkload(web.getWebServer().getPort());
+        }
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+    }
+
+    /**
+     * Requests that go through the web stack, validation, JSON, QR rendering and VNPay signature
+     * checking without needing Firestore or the payment gateways
+     */
+    private void runTrainingWorkload(int port) {
+        String base = "http://localhost:" + port + environment.getProperty("server.servlet.context-path", "") + "/payment";
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        List<HttpRequest> requests = List.of(
+                HttpRequest.newBuilder(URI.create(base + "/health")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/ready")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/metrics")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/qr?amount=50000&content=CDSTRAINING")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/qr?amount=50000&content=CDSTRAINING&format=svg")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/vnpay/return?vnp_TxnRef=CDSTRAINING&vnp_ResponseCode=00"
+                        + "&vnp_Amount=5000000&vnp_SecureHash=00")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/create"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"orderId\":\"\",\"amount\":-1}"))
+                        .build());
+
+        int failed = 0;
+        for (int round = 0; round < TRAINING_ROUNDS; round++) {
+            for (HttpRequest request : requests) {
+                try {
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                } catch (Exception e) {
+                    failed++;
+                }
+            }
+        }
+        log.info("CDS training workload: {} requests, {} failed", TRAINING_ROUNDS * requests.size(), failed);
+    }
+
+    /**
+     * Firestore is lazy and has no credentials in the build, so requests never load the Firestore/gRPC
+     * classes. Build an offline client (no credentials, no RPC) so they end up in the archive too.
+     */
+    private void preloadFirestoreClasses() {
+        try (Firestore firestore = FirestoreOptions.newBuilder()
+                .setProjectId("cds-training")
+                .setCredentials(NoCredentials.getInstance())
+                .build()
+                .getService()) {
+            firestore.collection("payments").document("cds-training");
+        } catch (Exception e) {
+            log.warn("Could not preload Firestore classes: {}", e.getMessage());
+        }
+    }
+}
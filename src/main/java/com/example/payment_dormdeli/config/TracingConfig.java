@@ -0,0 +1,33 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "tracing")
+@Data
+public class TracingConfig {
+
+    private boolean enabled = true;
+
+    // Slowest traces kept for the debug endpoint
+    private int slowestSize = 50;
+
+    // Latest traces kept, whatever their duration
+    private int recentSize = 200;
+
+    private Otlp otlp = new Otlp();
+
+    @Data
+    public static class Otlp {
+        // OTLP/HTTP JSON traces endpoint, e.g. http://localhost:4318/v1/traces; unset disables export
+        private String endpoint;
+        private String serviceName = "payment-dormdeli";
+        // Share of traces exported, 0..1
+        private double sampleRatio = 1.0;
+        private int queueSize = 2_000;
+        private int batchSize = 100;
+        private long timeoutMs = 5_000;
+    }
+}
@@ -16,4 +16,28 @@ public class VNPayConfig {
     private String version;
     private String command;
     private String orderType;
+    private String apiUrl;
+    private Reconcile reconcile = new Reconcile();
+
+    @Data
+    public static class Reconcile {
+        private boolean enabled = true;
+
+        // Parallel querydr calls in flight
+        private int maxConcurrency = 4;
+
+        // querydr calls started per second, across all threads
+        private double requestsPerSecond = 5;
+
+        // Leave payments alone while the customer may still be on the VNPay page
+        private long minAgeMinutes = 20;
+
+        // Payments VNPay still has no completed transaction for after this long become EXPIRED
+        private long expireAfterHours = 24;
+
+        private long timeoutMs = 10_000;
+
+        // Sent as vnp_IpAddr
+        private String serverIp = "127.0.0.1";
+    }
 }
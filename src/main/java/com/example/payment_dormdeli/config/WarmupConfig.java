@@ -0,0 +1,20 @@
+package com.example.payment_dormdeli.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warmup")
+@Data
+public class WarmupConfig {
+
+    // Warm up before reporting ready; when off the instance is ready as soon as it starts
+    private boolean enabled = true;
+
+    // Synthetic VNPay sign/verify and JSON round trips, enough for the JIT to compile the paths
+    private int iterations = 5_000;
+
+    private long firestoreTimeoutMs = 10_000;
+    private long sepayTimeoutMs = 5_000;
+}
@@ -1,22 +1,75 @@
 package com.example.payment_dormdeli.controller;
 
+import com.example.payment_dormdeli.bulk.BulkPaymentService;
+import com.example.payment_dormdeli.deadline.DeadlineExceededException;
+import com.example.payment_dormdeli.dto.BatchPaymentRequest;
+import com.example.payment_dormdeli.dto.BatchPaymentResponse;
+import com.example.payment_dormdeli.dto.BatchStatusRequest;
+import com.example.payment_dormdeli.dto.BatchStatusResponse;
+import com.example.payment_dormdeli.dto.BulkJobRequest;
 import com.example.payment_dormdeli.dto.PaymentRequest;
 import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.dto.PaymentStatsResponse;
 import com.example.payment_dormdeli.dto.sepay.SePayTransferInfo;
+import com.example.payment_dormdeli.idempotency.IdempotencyKeyInProgressException;
+import com.example.payment_dormdeli.idempotency.IdempotencyKeyReusedException;
+import com.example.payment_dormdeli.idempotency.IdempotencyService;
+import com.example.payment_dormdeli.jfr.JfrRecorder;
+import com.example.payment_dormdeli.limiter.LoadSheddingException;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.BulkJob;
+import com.example.payment_dormdeli.model.BulkOperation;
 import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentMethod;
 import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.qr.QrImageFormat;
+import com.example.payment_dormdeli.qr.VietQrService;
+import com.example.payment_dormdeli.reconciliation.StatementReconciliationService;
+import com.example.payment_dormdeli.search.PaymentSearchQuery;
+import com.example.payment_dormdeli.search.PaymentSearchService;
+import com.example.payment_dormdeli.service.BatchPaymentService;
+import com.example.payment_dormdeli.service.PaymentArchiveService;
+import com.example.payment_dormdeli.service.PaymentLedgerService;
+import com.example.payment_dormdeli.service.PaymentStatsService;
+import com.example.payment_dormdeli.service.PaymentStatusCache;
+import com.example.payment_dormdeli.service.RateLimiterService;
 import com.example.payment_dormdeli.service.SePayPaymentService;
 import com.example.payment_dormdeli.service.VNPayPaymentService;
+import com.example.payment_dormdeli.tracing.Trace;
+import com.example.payment_dormdeli.tracing.TraceBuffer;
+import com.example.payment_dormdeli.warmup.WarmupService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/payment")
@@ -25,18 +78,73 @@ import java.util.Map;
 @CrossOrigin(origins = "*") // For development - configure properly for production
 public class PaymentController {
     
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    
     private final SePayPaymentService sePayPaymentService;
+    private final VietQrService vietQrService;
     private final VNPayPaymentService vnPayPaymentService;
+    private final RateLimiterService rateLimiterService;
+    private final PaymentStatsService paymentStatsService;
+    private final BatchPaymentService batchPaymentService;
+    private final PaymentLedgerService paymentLedgerService;
+    private final PaymentArchiveService paymentArchiveService;
+    private final PaymentSearchService paymentSearchService;
+    private final StatementReconciliationService statementReconciliationService;
+    private final BulkPaymentService bulkPaymentService;
+    private final TraceBuffer traceBuffer;
+    private final JfrRecorder jfrRecorder;
+    private final PaymentStatusCache paymentStatusCache;
+    private final IdempotencyService idempotencyService;
+    private final WarmupService warmupService;
+    private final ApplicationAvailability applicationAvailability;
+    private final List<MetricsSource> metricsSources;
     
     /**
      * Create SePay payment (QR code)
      * POST /api/payment/create
+     * A retry with the same Idempotency-Key header gets the first response back
      */
     @PostMapping("/create")
-    public ResponseEntity<PaymentResponse> createSePayPayment(@Valid @RequestBody PaymentRequest request) {
+    public ResponseEntity<?> createSePayPayment(
+            @Valid @RequestBody PaymentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            HttpServletRequest httpRequest) {
         log.info("Creating SePay payment for order: {}", request.getOrderId());
-        PaymentResponse response = sePayPaymentService.createPayment(request);
-        return ResponseEntity.ok(response);
+        
+        long waitNanos = rateLimit("create", userKey(request.getUserId()), httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
+        
+        return idempotent("sepay-create", idempotencyKey, request, () -> sePayPaymentService.createPayment(request));
+    }
+    
+    /**
+     * Create many payments (SePay or VNPay) in one call
+     * POST /api/payment/batch/create
+     */
+    @PostMapping("/batch/create")
+    public ResponseEntity<?> createBatchPayments(
+            @Valid @RequestBody BatchPaymentRequest request,
+            HttpServletRequest httpRequest) {
+        log.info("Creating batch of {} payments", request.getPayments().size());
+        
+        String ipAddress = getClientIpAddress(httpRequest);
+        long waitNanos = rateLimit("batch-create", userKey(batchUserId(request)), httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
+        
+        try {
+            BatchPaymentResponse response = batchPaymentService.createPayments(request, ipAddress);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
     }
     
     /**
@@ -63,32 +171,426 @@ public class PaymentController {
         }
     }
     
+    /**
+     * VietQR image of a bank transfer, rendered in-process (the paymentUrl of SePay payments)
+     * GET /api/payment/qr?amount=50000&content=ORDER123&format=svg
+     */
+    @GetMapping("/qr")
+    public ResponseEntity<?> getQrImage(
+            @RequestParam long amount,
+            @RequestParam String content,
+            @RequestParam(required = false, defaultValue = "png") String format,
+            HttpServletRequest httpRequest) {
+        // Rendering costs CPU and any client can ask for any image, so it is limited like the other endpoints
+        long waitNanos = rateLimit("qr", "qr:" + content, httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
+        try {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Amount must be positive");
+            }
+            QrImageFormat imageFormat = QrImageFormat.parse(format);
+            byte[] image = vietQrService.image(amount, content, imageFormat);
+            // Same parameters always give the same image
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(imageFormat.getContentType()))
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic().immutable())
+                    .body(image);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+    
     /**
      * Get payment status
      * GET /api/payment/status/{orderId}
      * Optional: ?autoConfirm=true to auto-confirm if pending
+     * Sends an ETag; a matching If-None-Match gets 304 without a body
      */
     @GetMapping("/status/{orderId}")
     public ResponseEntity<Payment> getPaymentStatus(
             @PathVariable String orderId,
-            @RequestParam(required = false, defaultValue = "false") boolean autoConfirm) {
+            @RequestParam(required = false, defaultValue = "false") boolean autoConfirm,
+            HttpServletRequest httpRequest) {
         log.info("Getting payment status for order: {} (autoConfirm: {})", orderId, autoConfirm);
         
-        Payment payment = sePayPaymentService.getPaymentByOrderId(orderId);
+        long waitNanos = rateLimit("status", "order:" + orderId, httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
+        
+        Payment payment;
+        try {
+            payment = autoConfirm
+                    ? sePayPaymentService.getPaymentByOrderId(orderId)
+                    : paymentStatusCache.getOrLoad(orderId, () -> sePayPaymentService.getPaymentByOrderId(orderId));
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            // Firestore is saturated or slow, an expired cache entry beats an error for a poll
+            Payment stale = paymentStatusCache.getStale(orderId);
+            if (stale == null) {
+                throw e;
+            }
+            log.warn("Serving stale status for order {}: {}", orderId, e.getMessage());
+            return ResponseEntity.ok()
+                    .eTag(PaymentStatusCache.etagOf(stale))
+                    .cacheControl(CacheControl.noCache())
+                    .body(stale);
+        }
         
         if (payment != null) {
             // Auto-confirm if requested and payment is still pending
-            if (autoConfirm && payment.getStatus() == PaymentStatus.PENDING) {
-                log.info("Auto-confirming payment for order: {}", orderId);
-                sePayPaymentService.manualConfirmPayment(orderId, null);
-                payment = sePayPaymentService.getPaymentByOrderId(orderId);
+            if (autoConfirm) {
+                if (payment.getStatus() == PaymentStatus.PENDING) {
+                    log.info("Auto-confirming payment for order: {}", orderId);
+                    sePayPaymentService.manualConfirmPayment(orderId, null);
+                    payment = sePayPaymentService.getPaymentByOrderId(orderId);
+                }
+                paymentStatusCache.put(payment);
             }
-            return ResponseEntity.ok(payment);
+            // Spring answers 304 itself when If-None-Match matches the ETag
+            return ResponseEntity.ok()
+                    .eTag(PaymentStatusCache.etagOf(payment))
+                    .cacheControl(paymentStatusCache.cacheControlFor(payment))
+                    .body(payment);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * Get status of many orders in one call
+     * POST /api/payment/status/batch
+     */
+    @PostMapping("/status/batch")
+    public ResponseEntity<?> getBatchPaymentStatus(
+            @Valid @RequestBody BatchStatusRequest request,
+            HttpServletRequest httpRequest) {
+        log.info("Getting payment status for {} orders", request.getOrderIds().size());
+        
+        long waitNanos = rateLimit("status-batch", "orders:" + Integer.toHexString(new TreeSet<>(request.getOrderIds()).hashCode()), httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
+        
+        try {
+            Map<String, Payment> payments = sePayPaymentService.getPaymentsByOrderIds(request.getOrderIds());
+            
+            List<Payment> found = new ArrayList<>();
+            List<String> notFound = new ArrayList<>();
+            for (String orderId : request.getOrderIds()) {
+                Payment payment = payments.get(orderId);
+                if (payment != null) {
+                    found.add(payment);
+                } else {
+                    notFound.add(orderId);
+                }
+            }
+            
+            return ResponseEntity.ok(BatchStatusResponse.builder()
+                    .payments(found)
+                    .notFound(notFound)
+                    .build());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Revenue and status totals per day, method and status
+     * GET /api/payment/stats?from=2024-01-01&to=2024-01-31
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getPaymentStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            PaymentStatsResponse stats = paymentStatsService.getStats(from, to);
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Ledger events of one order
+     * GET /api/payment/events/{orderId}
+     */
+    @GetMapping("/events/{orderId}")
+    public ResponseEntity<List<PaymentEvent>> getPaymentEvents(@PathVariable String orderId) {
+        log.info("Getting ledger events for order: {}", orderId);
+        return ResponseEntity.ok(paymentLedgerService.getEvents(orderId));
+    }
+    
+    /**
+     * Payment state rebuilt from the ledger (latest snapshot + later events)
+     * GET /api/payment/events/{orderId}/replay
+     */
+    @GetMapping("/events/{orderId}/replay")
+    public ResponseEntity<Payment> replayPayment(@PathVariable String orderId) {
+        log.info("Replaying ledger for order: {}", orderId);
+        
+        Payment payment = paymentLedgerService.replay(orderId);
+        if (payment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(payment);
+    }
+    
+    /**
+     * Ledger events of all orders in a time window
+     * GET /api/payment/events?from=2024-01-01T00:00:00Z&to=2024-01-01T01:00:00Z
+     */
+    @GetMapping("/events")
+    public ResponseEntity<?> getPaymentEventsBetween(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        try {
+            return ResponseEntity.ok(paymentLedgerService.getEventsBetween(from, to));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Admin search over recent payments, filters combined with AND, newest first
+     * GET /api/payment/search?q=phong 101&userId=u1&minAmount=10000&maxAmount=50000
+     *     &from=2024-01-01T00:00:00Z&to=2024-02-01T00:00:00Z&status=SUCCESS&page=0&size=20
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchPayments(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) PaymentMethod method,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false, defaultValue = "20") int size) {
+        PaymentSearchQuery query = PaymentSearchQuery.builder()
+                .text(q)
+                .userId(userId)
+                .status(status)
+                .paymentMethod(method)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .from(from)
+                .to(to)
+                .page(page)
+                .size(size)
+                .build();
+        
+        try {
+            return ResponseEntity.ok(paymentSearchService.search(query));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+    
+    /**
+     * Archived (settled and older than the archive age) payment of an order
+     * GET /api/payment/archive/{orderId}
+     */
+    @GetMapping("/archive/{orderId}")
+    public ResponseEntity<Payment> getArchivedPayment(@PathVariable String orderId) {
+        log.info("Getting archived payment for order: {}", orderId);
+        return paymentArchiveService.findByOrderId(orderId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Archived payments of a user by creation month
+     * GET /api/payment/archive?userId=u1&from=2024-01&to=2024-06
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<?> getArchivedPayments(
+            @RequestParam String userId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        try {
+            return ResponseEntity.ok(paymentArchiveService.findByUserId(userId, from, to));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Run the archiver now instead of waiting for its schedule
+     * POST /api/payment/archive/run
+     */
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchive() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("archived", paymentArchiveService.archive());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Reconcile a bank statement export (CSV) against the SePay payments of a period
+     * POST /api/payment/reconciliation/statement?from=2024-01-01&to=2024-01-31 (multipart "file")
+     */
+    @PostMapping(value = "/reconciliation/statement", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> reconcileStatement(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Reconciling statement {} ({} bytes) for {}..{}", file.getOriginalFilename(), file.getSize(), from, to);
+        Path statement = null;
+        try {
+            statement = Files.createTempFile("statement-", ".csv");
+            file.transferTo(statement);
+            return ResponseEntity.ok(statementReconciliationService.reconcile(statement, from, to));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            log.error("Error reconciling statement", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        } finally {
+            if (statement != null) {
+                try {
+                    Files.deleteIfExists(statement);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}", statement, e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Start a bulk cancel/expire/confirm/delete, selected by filter or by orderIds; runs in the background
+     * POST /api/payment/bulk/jobs
+     */
+    @PostMapping("/bulk/jobs")
+    public ResponseEntity<?> submitBulkJob(@Valid @RequestBody BulkJobRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkPaymentService.submit(request));
+        } catch (Exception e) {
+            return bulkJobError(e);
+        }
+    }
+
+    /**
+     * Start a bulk job over the orderIds in an uploaded file (one per line, or first CSV column)
+     * POST /api/payment/bulk/jobs/upload?operation=CANCEL&reason=... (multipart "file")
+     */
+    @PostMapping(value = "/bulk/jobs/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadBulkJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam BulkOperation operation,
+            @RequestParam(required = false) String reason) {
+        try {
+            BulkJobRequest request = new BulkJobRequest();
+            request.setOperation(operation);
+            request.setReason(reason);
+            request.setOrderIds(BulkPaymentService.parseOrderIds(file.getInputStream()));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkPaymentService.submit(request));
+        } catch (Exception e) {
+            return bulkJobError(e);
+        }
+    }
+
+    /**
+     * Progress of a bulk job
+     * GET /api/payment/bulk/jobs/{jobId}
+     */
+    @GetMapping("/bulk/jobs/{jobId}")
+    public ResponseEntity<?> getBulkJob(@PathVariable String jobId) {
+        return bulkPaymentService.find(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> bulkJobError(new NoSuchElementException("Bulk job not found: " + jobId)));
+    }
+
+    /**
+     * Most recent bulk jobs, without their orderId lists
+     * GET /api/payment/bulk/jobs
+     */
+    @GetMapping("/bulk/jobs")
+    public ResponseEntity<List<BulkJob>> listBulkJobs() {
+        return ResponseEntity.ok(bulkPaymentService.findRecent());
+    }
+
+    /**
+     * Continue a paused, interrupted or failed bulk job from its last checkpoint
+     * POST /api/payment/bulk/jobs/{jobId}/resume
+     */
+    @PostMapping("/bulk/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeBulkJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkPaymentService.resume(jobId));
+        } catch (Exception e) {
+            return bulkJobError(e);
+        }
+    }
+
+    /**
+     * Stop a bulk job after its current page
+     * POST /api/payment/bulk/jobs/{jobId}/pause
+     */
+    @PostMapping("/bulk/jobs/{jobId}/pause")
+    public ResponseEntity<?> pauseBulkJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkPaymentService.pause(jobId));
+        } catch (Exception e) {
+            return bulkJobError(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> bulkJobError(Exception e) {
+        HttpStatus status;
+        if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (e instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+        } else {
+            log.error("Error handling bulk job request", e);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(status).body(response);
+    }
+
     /**
      * Health check endpoint
      * GET /api/payment/health
@@ -101,6 +603,80 @@ public class PaymentController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Readiness for the load balancer: 503 until warm-up has finished and the app accepts traffic
+     * GET /api/payment/ready
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> readinessCheck() {
+        boolean ready = warmupService.isComplete()
+                && applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", ready ? "READY" : "WARMING_UP");
+        response.put("warmupMs", warmupService.getDurationMs());
+        response.put("steps", warmupService.getSteps());
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+    
+    /**
+     * Internal counters of the service components
+     * GET /api/payment/metrics
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (MetricsSource source : metricsSources) {
+            response.put(source.getMetricsName(), source.getMetrics());
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Slowest (default) or most recent request traces with their span breakdown
+     * GET /api/payment/debug/traces?view=recent&limit=20
+     */
+    @GetMapping("/debug/traces")
+    public ResponseEntity<List<Trace>> getTraces(
+            @RequestParam(required = false, defaultValue = "slowest") String view,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        int capped = Math.max(1, Math.min(limit, 200));
+        return ResponseEntity.ok("recent".equals(view) ? traceBuffer.getRecent(capped) : traceBuffer.getSlowest(capped));
+    }
+    
+    /**
+     * One retained trace, by the X-Trace-Id its response carried
+     * GET /api/payment/debug/traces/{traceId}
+     */
+    @GetMapping("/debug/traces/{traceId}")
+    public ResponseEntity<Trace> getTrace(@PathVariable String traceId) {
+        return traceBuffer.find(traceId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Latency histograms (microseconds) per payment JFR event type in the running recording
+     * GET /api/payment/debug/jfr
+     */
+    @GetMapping("/debug/jfr")
+    public ResponseEntity<Map<String, Object>> getJfrReport() {
+        if (!jfrRecorder.isRecording()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "JFR recording is not enabled");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        try {
+            return ResponseEntity.ok(jfrRecorder.report());
+        } catch (Exception e) {
+            log.error("Error reading JFR recording", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     /**
      * Manually confirm payment (for development/testing)
      * POST /api/payment/confirm/{orderId}
@@ -132,15 +708,20 @@ public class PaymentController {
      * POST /api/payment/vnpay/create
      */
     @PostMapping("/vnpay/create")
-    public ResponseEntity<PaymentResponse> createVNPayPayment(
+    public ResponseEntity<?> createVNPayPayment(
             @Valid @RequestBody PaymentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             HttpServletRequest httpRequest) {
         log.info("Creating VNPay payment for order: {}", request.getOrderId());
         
         String ipAddress = getClientIpAddress(httpRequest);
-        PaymentResponse response = vnPayPaymentService.createPayment(request, ipAddress);
+        long waitNanos = rateLimit("vnpay-create", userKey(request.getUserId()), httpRequest);
+        if (waitNanos > 0) {
+            return tooManyRequests(waitNanos);
+        }
         
-        return ResponseEntity.ok(response);
+        return idempotent("vnpay-create", idempotencyKey, request,
+                () -> vnPayPaymentService.createPayment(request, ipAddress));
     }
     
     /**
@@ -148,10 +729,12 @@ public class PaymentController {
      * GET /api/payment/vnpay/return
      */
     @GetMapping("/vnpay/return")
-    public ResponseEntity<Map<String, Object>> handleVNPayReturn(@RequestParam Map<String, String> params) {
+    public ResponseEntity<Map<String, Object>> handleVNPayReturn(
+            @RequestParam Map<String, String> params,
+            HttpServletRequest httpRequest) {
         log.info("Received VNPay return callback");
         
-        boolean success = vnPayPaymentService.handleCallback(params);
+        boolean success = vnPayPaymentService.handleCallback(httpRequest.getQueryString(), params);
         String orderId = params.get("vnp_TxnRef");
         String responseCode = params.get("vnp_ResponseCode");
         
@@ -174,10 +757,12 @@ public class PaymentController {
      * GET /api/payment/vnpay/ipn
      */
     @GetMapping("/vnpay/ipn")
-    public ResponseEntity<Map<String, Object>> handleVNPayIPN(@RequestParam Map<String, String> params) {
+    public ResponseEntity<Map<String, Object>> handleVNPayIPN(
+            @RequestParam Map<String, String> params,
+            HttpServletRequest httpRequest) {
         log.info("Received VNPay IPN callback");
         
-        boolean success = vnPayPaymentService.handleCallback(params);
+        boolean success = vnPayPaymentService.handleCallback(httpRequest.getQueryString(), params);
         String responseCode = params.get("vnp_ResponseCode");
         
         Map<String, Object> response = new HashMap<>();
@@ -193,6 +778,99 @@ public class PaymentController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Nanoseconds to wait before the request may run, 0 if it may run now. Nothing is authenticated,
+     * so clientId is whatever the request names (userId, orderId); it only splits a shared dorm IP
+     * into fair shares, the IP's own bucket still caps the total (see RateLimiterService).
+     */
+    private long rateLimit(String endpoint, String clientId, HttpServletRequest request) {
+        return rateLimiterService.tryAcquire(endpoint, getClientIpAddress(request), clientId);
+    }
+    
+    private static String userKey(String userId) {
+        return userId != null && !userId.isEmpty() ? "user:" + userId : null;
+    }
+    
+    /**
+     * userId shared by every payment of the batch, null when they differ or are missing
+     */
+    private static String batchUserId(BatchPaymentRequest request) {
+        String userId = null;
+        for (PaymentRequest payment : request.getPayments()) {
+            if (payment == null || payment.getUserId() == null || (userId != null && !userId.equals(payment.getUserId()))) {
+                return null;
+            }
+            userId = payment.getUserId();
+        }
+        return userId;
+    }
+    
+    /**
+     * 503 with Retry-After when Firestore calls are being shed, so gateways retry the webhook later
+     */
+    @ExceptionHandler(LoadSheddingException.class)
+    public ResponseEntity<Map<String, Object>> handleLoadShedding(LoadSheddingException e) {
+        log.warn("Shedding request: {}", e.getMessage());
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", "Service overloaded, retry later");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+    
+    /**
+     * 504 when the request deadline passed while waiting on Firestore or a gateway
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleDeadlineExceeded(DeadlineExceededException e) {
+        log.warn("Request deadline exceeded: {}", e.getMessage());
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", "Request timed out, retry later");
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(response);
+    }
+    
+    /**
+     * Run a create once per Idempotency-Key; replays are marked with Idempotent-Replayed: true
+     */
+    private ResponseEntity<?> idempotent(String scope, String idempotencyKey, PaymentRequest request,
+                                         Supplier<PaymentResponse> create) {
+        try {
+            IdempotencyService.Result result = idempotencyService.execute(scope, idempotencyKey, request, create);
+            return ResponseEntity.ok()
+                    .header(IDEMPOTENT_REPLAYED, String.valueOf(result.isReplayed()))
+                    .body(result.getResponse());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (IdempotencyKeyReusedException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(response);
+        } catch (IdempotencyKeyInProgressException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        }
+    }
+    
+    /**
+     * 429 response with Retry-After rounded up to whole seconds
+     */
+    private <T> ResponseEntity<T> tooManyRequests(long waitNanos) {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .build();
+    }
+    
     /**
      * Get client IP address
      */
@@ -0,0 +1,98 @@
+package com.example.payment_dormdeli.deadline;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-thread deadline for the current request.
+ *
+ * DeadlineFilter opens one for every HTTP request; repositories and outbound clients wait on
+ * their futures only for the time that is left and cancel them when it runs out. Work outside
+ * a request (scheduled jobs, executor threads) gets DEFAULT_TIMEOUT_MS per call instead.
+ */
+public final class Deadline {
+
+    static final long DEFAULT_TIMEOUT_MS = 10_000;
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Start a deadline timeoutMs from now, or keep the current one if it is sooner.
+     * Closing the scope restores the previous deadline.
+     */
+    public static Scope start(long timeoutMs) {
+        Long previous = DEADLINE_NANOS.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (previous == null || deadline - previous < 0) {
+            DEADLINE_NANOS.set(deadline);
+        }
+        return new Scope(previous);
+    }
+
+    public static boolean isSet() {
+        return DEADLINE_NANOS.get() != null;
+    }
+
+    /**
+     * Milliseconds left, DEFAULT_TIMEOUT_MS if no deadline is set; may be zero or negative
+     */
+    public static long remainingMillis() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return DEFAULT_TIMEOUT_MS;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * Time left for an outbound call, capped at the call's own timeout
+     */
+    public static Duration remaining(long maxMs) {
+        long remaining = Math.min(remainingMillis(), maxMs);
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("Deadline exceeded before the call started");
+        }
+        return Duration.ofMillis(remaining);
+    }
+
+    /**
+     * Wait for the future until the deadline; on expiry cancel it and throw DeadlineExceededException
+     */
+    public static <T> T await(Future<T> future) throws InterruptedException, ExecutionException {
+        long remaining = remainingMillis();
+        if (remaining <= 0) {
+            future.cancel(true);
+            throw new DeadlineExceededException("Deadline exceeded before the call completed");
+        }
+        try {
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException("Deadline exceeded after " + remaining + " ms");
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Long previous;
+
+        private Scope(Long previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                DEADLINE_NANOS.remove();
+            } else {
+                DEADLINE_NANOS.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.payment_dormdeli.deadline;
+
+/**
+ * The request deadline passed while waiting on Firestore or a gateway; the pending call was cancelled
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.payment_dormdeli.deadline;
+
+import com.example.payment_dormdeli.config.DeadlineConfig;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Opens the request deadline: deadline.request-ms, or a shorter X-Request-Timeout-Ms sent by the caller
+ */
+@Component
+@RequiredArgsConstructor
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final DeadlineConfig deadlineConfig;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!deadlineConfig.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        try (Deadline.Scope ignored = Deadline.start(timeoutMs(request))) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private long timeoutMs(HttpServletRequest request) {
+        long timeoutMs = deadlineConfig.getRequestMs();
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                timeoutMs = Math.min(timeoutMs, Math.max(1, Long.parseLong(header.trim())));
+            } catch (NumberFormatException e) {
+                // Ignore a malformed header and keep the configured deadline
+            }
+        }
+        return timeoutMs;
+    }
+}
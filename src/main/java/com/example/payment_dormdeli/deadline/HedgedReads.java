@@ -0,0 +1,145 @@
+package com.example.payment_dormdeli.deadline;
+
+import com.example.payment_dormdeli.config.DeadlineConfig;
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.google.api.core.ApiFuture;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deadline-bounded idempotent reads with optional hedging.
+ *
+ * The read is sent once; if it has not answered after the configured quantile of recent
+ * first-attempt latencies, the same read is sent again and whichever answers first wins.
+ * The slower attempt is left to finish so its latency still counts: firstAttemptLatencyMs is
+ * what reads would take without hedging, latencyMs what callers actually waited.
+ */
+@Component
+public class HedgedReads implements MetricsSource {
+
+    private static final int DELAY_REFRESH_EVERY = 100;
+    private static final int WINDOW_SIZE = 5_000;
+
+    private final DeadlineConfig.Hedge config;
+
+    private final LatencyHistogram window = new LatencyHistogram();
+    private final LatencyHistogram firstAttemptLatencyMs = new LatencyHistogram();
+    private final LatencyHistogram latencyMs = new LatencyHistogram();
+    private final AtomicLong samples = new AtomicLong();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    // -1 until minSamples first attempts have been timed
+    private volatile long hedgeDelayMs = -1;
+
+    public HedgedReads(DeadlineConfig deadlineConfig) {
+        this.config = deadlineConfig.getHedge();
+    }
+
+    /**
+     * Run the read under the current deadline, hedging it when enabled and it is slow
+     */
+    public <T> T read(Supplier<ApiFuture<T>> read) throws InterruptedException, ExecutionException {
+        reads.increment();
+        long start = System.nanoTime();
+        ApiFuture<T> first = read.get();
+        first.addListener(() -> recordFirstAttempt(first, start), Runnable::run);
+
+        long delayMs = hedgeDelayMs;
+        if (!config.isEnabled() || delayMs < 0 || Deadline.remainingMillis() <= delayMs) {
+            return timed(start, Deadline.await(first));
+        }
+
+        try {
+            return timed(start, first.get(delayMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            if (hedged.sum() >= reads.sum() * config.getMaxHedgeRatio()) {
+                return timed(start, Deadline.await(first));
+            }
+        }
+
+        hedged.increment();
+        ApiFuture<T> second = read.get();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.addListener(() -> complete(first, winner, failures, false), Runnable::run);
+        second.addListener(() -> complete(second, winner, failures, true), Runnable::run);
+
+        try {
+            return timed(start, Deadline.await(winner));
+        } catch (DeadlineExceededException e) {
+            first.cancel(true);
+            second.cancel(true);
+            throw e;
+        }
+    }
+
+    private <T> T timed(long start, T result) {
+        latencyMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private <T> void complete(ApiFuture<T> attempt, CompletableFuture<T> winner, AtomicInteger failures, boolean isHedge) {
+        try {
+            if (winner.complete(attempt.get()) && isHedge) {
+                hedgeWins.increment();
+            }
+        } catch (ExecutionException e) {
+            // Fail only when both attempts failed
+            if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(e.getCause());
+            }
+        } catch (CancellationException | InterruptedException e) {
+            // Cancelled at the deadline, the caller has already given up
+        }
+    }
+
+    private void recordFirstAttempt(ApiFuture<?> attempt, long start) {
+        if (attempt.isCancelled()) {
+            return;
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        firstAttemptLatencyMs.record(elapsedMs);
+        window.record(elapsedMs);
+
+        long count = window.getCount();
+        if (samples.incrementAndGet() % DELAY_REFRESH_EVERY == 0 && count >= config.getMinSamples()) {
+            hedgeDelayMs = Math.max(config.getMinDelayMs(), window.percentile(config.getQuantile()));
+            if (count >= WINDOW_SIZE) {
+                // Start a new window so the delay follows current latency
+                window.reset();
+            }
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "hedgedReads";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long total = reads.sum();
+        long hedgedReads = hedged.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", config.isEnabled());
+        metrics.put("reads", total);
+        metrics.put("hedged", hedgedReads);
+        metrics.put("hedgeRate", total == 0 ? 0.0 : Math.round(hedgedReads * 1000.0 / total) / 1000.0);
+        metrics.put("hedgeWins", hedgeWins.sum());
+        metrics.put("hedgeDelayMs", hedgeDelayMs);
+        metrics.put("latencyMs", latencyMs.snapshot());
+        metrics.put("firstAttemptLatencyMs", firstAttemptLatencyMs.snapshot());
+        metrics.put("p99ImprovementMs", firstAttemptLatencyMs.percentile(0.99) - latencyMs.percentile(0.99));
+        return metrics;
+    }
+}
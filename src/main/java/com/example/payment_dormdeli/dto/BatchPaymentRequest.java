@@ -0,0 +1,23 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.PaymentMethod;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentRequest {
+    
+    // Defaults to SEPAY when omitted
+    private PaymentMethod paymentMethod;
+    
+    @NotEmpty(message = "Payments are required")
+    private List<PaymentRequest> payments;
+}
@@ -0,0 +1,22 @@
+package com.example.payment_dormdeli.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentResponse {
+    
+    private int total;
+    private int succeeded;
+    private int failed;
+    
+    // One entry per requested payment, in request order
+    private List<PaymentResponse> results;
+}
@@ -0,0 +1,19 @@
+package com.example.payment_dormdeli.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchStatusRequest {
+    
+    @NotEmpty(message = "Order IDs are required")
+    private List<String> orderIds;
+}
@@ -0,0 +1,21 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchStatusResponse {
+    
+    // Found payments, in request order
+    private List<Payment> payments;
+    
+    private List<String> notFound;
+}
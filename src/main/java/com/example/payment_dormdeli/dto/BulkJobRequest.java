@@ -0,0 +1,45 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.BulkOperation;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Bulk job to start: either orderIds or a filter, not both
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkJobRequest {
+    
+    @NotNull(message = "Operation is required")
+    private BulkOperation operation;
+    
+    private String reason;
+    
+    private List<String> orderIds;
+    
+    private Filter filter;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Filter {
+        // Defaults to PENDING for CANCEL and EXPIRE
+        private PaymentStatus status;
+        private PaymentMethod paymentMethod;
+        private Date createdAfter;
+        // Required, so a filter never selects every payment
+        private Date createdBefore;
+    }
+}
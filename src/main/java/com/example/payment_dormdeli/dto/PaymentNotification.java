@@ -0,0 +1,33 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Body item sent to notification destinations (POSTed as a JSON array)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentNotification {
+    
+    // Stable per status change, receivers can use it to drop duplicates
+    private String notificationId;
+    
+    private String orderId;
+    
+    private PaymentStatus status;
+    
+    private BigDecimal amount;
+    
+    private String transactionId;
+    
+    private Date completedAt;
+}
@@ -17,6 +17,8 @@ public class PaymentResponse {
     private String orderId;
     private String transactionId;
     private String paymentUrl;
+    // EMVCo/VietQR payload for SePay transfers, for clients that draw the QR themselves
+    private String qrPayload;
     private PaymentStatus status;
     private BigDecimal amount;
     private String message;
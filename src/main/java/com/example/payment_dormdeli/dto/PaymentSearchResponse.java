@@ -0,0 +1,27 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentSearchResponse {
+
+    // Matches across all pages
+    private int total;
+
+    private int page;
+
+    private int size;
+
+    private long tookMicros;
+
+    private List<Payment> payments;
+}
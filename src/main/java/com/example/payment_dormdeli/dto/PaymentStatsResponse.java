@@ -0,0 +1,32 @@
+package com.example.payment_dormdeli.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentStatsResponse {
+
+    private String from;
+    private String to;
+    private long totalCount;
+    private long totalAmount;
+    private long revenue;
+    private Map<String, Bucket> byStatus;
+    private Map<String, Bucket> byMethod;
+    private Map<String, Bucket> byDay;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private long count;
+        private long amount;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.payment_dormdeli.dto;
+
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Bank statement matched against SePay payments. Lists hold at most maxReportRows entries each,
+ * the counts cover everything found.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationReport {
+
+    private String from;
+    private String to;
+
+    private long statementRows;
+    private long creditRows;
+    private long matchedRows;
+    // Debits and zero amounts
+    private long ignoredRows;
+    // Rows with too few columns or an unreadable amount
+    private long malformedRows;
+    private int paymentsChecked;
+    private int chunks;
+    private long tookMs;
+
+    // Credits naming no known order, or more than one
+    private long unmatchedTransferCount;
+    private BigDecimal unmatchedTransferAmount;
+    private List<Transfer> unmatchedTransfers;
+
+    // Orders whose bank rows add up to less than the payment amount
+    private long underpaidCount;
+    private List<OrderDiscrepancy> underpaid;
+
+    // SUCCESS payments completed in the period with no bank row
+    private long successWithoutBankRowCount;
+    private List<OrderDiscrepancy> successWithoutBankRow;
+
+    // Fully paid per the bank but not SUCCESS here
+    private long paidNotConfirmedCount;
+    private List<OrderDiscrepancy> paidNotConfirmed;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Transfer {
+        private long line;
+        private String date;
+        private String reference;
+        private BigDecimal amount;
+        private String content;
+        // NO_ORDER or MULTIPLE_ORDERS
+        private String reason;
+        private List<String> orderIds;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class OrderDiscrepancy {
+        private String orderId;
+        private PaymentStatus status;
+        private BigDecimal expectedAmount;
+        private BigDecimal receivedAmount;
+        private int bankRows;
+        private Date createdAt;
+        private Date completedAt;
+    }
+}
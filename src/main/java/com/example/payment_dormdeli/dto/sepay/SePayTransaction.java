@@ -0,0 +1,30 @@
+package com.example.payment_dormdeli.dto.sepay;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of the SePay transaction list API (GET /userapi/transactions/list)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SePayTransaction {
+    private Long id;
+    private String bank_brand_name;
+    private String account_number;
+    // yyyy-MM-dd HH:mm:ss, Vietnam time
+    private String transaction_date;
+    private BigDecimal amount_in;
+    private BigDecimal amount_out;
+    private BigDecimal accumulated;
+    private String transaction_content;
+    private String reference_number;
+    private String code;
+    private String sub_account;
+}
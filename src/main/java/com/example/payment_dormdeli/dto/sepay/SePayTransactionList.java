@@ -0,0 +1,16 @@
+package com.example.payment_dormdeli.dto.sepay;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SePayTransactionList {
+    private Integer status;
+    private List<SePayTransaction> transactions = new ArrayList<>();
+}
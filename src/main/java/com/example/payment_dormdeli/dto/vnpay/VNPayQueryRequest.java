@@ -0,0 +1,27 @@
+package com.example.payment_dormdeli.dto.vnpay;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Body of VNPay's transaction query (vnp_Command=querydr)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VNPayQueryRequest {
+    private String vnp_RequestId;
+    private String vnp_Version;
+    private String vnp_Command;
+    private String vnp_TmnCode;
+    private String vnp_TxnRef;
+    private String vnp_OrderInfo;
+    // vnp_CreateDate of the original payment URL
+    private String vnp_TransactionDate;
+    private String vnp_CreateDate;
+    private String vnp_IpAddr;
+    private String vnp_SecureHash;
+}
@@ -0,0 +1,31 @@
+package com.example.payment_dormdeli.dto.vnpay;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VNPayQueryResponse {
+    private String vnp_ResponseId;
+    private String vnp_Command;
+    // 00 = query succeeded, 91 = transaction not found
+    private String vnp_ResponseCode;
+    private String vnp_Message;
+    private String vnp_TmnCode;
+    private String vnp_TxnRef;
+    private String vnp_Amount;
+    private String vnp_BankCode;
+    private String vnp_PayDate;
+    private String vnp_TransactionNo;
+    private String vnp_TransactionType;
+    // 00 = paid, 01 = not completed, 02 = failed
+    private String vnp_TransactionStatus;
+    private String vnp_OrderInfo;
+    private String vnp_PromotionCode;
+    private String vnp_PromotionAmount;
+    private String vnp_SecureHash;
+}
@@ -0,0 +1,12 @@
+package com.example.payment_dormdeli.eventbus;
+
+/**
+ * What publishing does when every slot still holds an event some consumer has not processed.
+ * The transition is already committed either way; a dropped event only means consumers miss it.
+ */
+public enum BackpressurePolicy {
+    // Wait for the slowest consumer, up to block-timeout-ms, then drop
+    BLOCK,
+    // Drop the event at once so the publishing request never waits
+    DROP
+}
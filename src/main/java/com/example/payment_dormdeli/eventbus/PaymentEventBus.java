@@ -0,0 +1,294 @@
+package com.example.payment_dormdeli.eventbus;
+
+import com.example.payment_dormdeli.config.EventBusConfig;
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process bus for committed payment status transitions: a ring of pre-allocated
+ * PaymentStatusChanged slots, one thread per PaymentEventHandler bean.
+ *
+ * Publishers claim the next sequence with a CAS on the cursor, fill the slot and mark it
+ * available, so publishing allocates nothing and takes no lock. Each consumer keeps its own
+ * sequence and processes everything available in one batch. A publisher may not claim a slot
+ * until every consumer has moved past it; when the slowest consumer is a full ring behind, the
+ * backpressure policy decides between waiting (bounded) and dropping the event.
+ */
+@Component
+@Slf4j
+public class PaymentEventBus implements MetricsSource {
+
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final EventBusConfig config;
+    private final ObjectProvider<PaymentEventHandler> handlerBeans;
+
+    private final int bufferSize;
+    private final int mask;
+    private final int indexShift;
+    private final PaymentStatusChanged[] slots;
+    // Round (sequence >>> indexShift) each slot was last published in
+    private final int[] available;
+    private final WaitStrategy waitStrategy;
+
+    // Highest claimed sequence; slots up to it may still be being written
+    private final Sequence cursor = new Sequence(-1);
+    // Minimum consumer sequence as last computed, to skip the scan while there is room
+    private final Sequence gatingCache = new Sequence(-1);
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+    private boolean started;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+
+    public PaymentEventBus(EventBusConfig config, ObjectProvider<PaymentEventHandler> handlerBeans) {
+        this.config = config;
+        this.handlerBeans = handlerBeans;
+        this.bufferSize = config.getBufferSize() <= 2 ? 2 : Integer.highestOneBit(config.getBufferSize() - 1) << 1;
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.slots = new PaymentStatusChanged[bufferSize];
+        this.available = new int[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new PaymentStatusChanged();
+            available[i] = -1;
+        }
+        this.waitStrategy = WaitStrategy.of(config.getWaitStrategy());
+    }
+
+    /**
+     * Start a consumer for every handler bean once the context is up
+     */
+    @EventListener
+    public synchronized void onContextRefreshed(ContextRefreshedEvent event) {
+        if (started || handlerBeans == null) {
+            return;
+        }
+        started = true;
+        handlerBeans.orderedStream().forEach(handler -> subscribe(handler.getName(), handler));
+    }
+
+    /**
+     * Add a consumer; it sees events published from now on
+     */
+    public void subscribe(String name, PaymentEventHandler handler) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Consumer consumer = new Consumer(name, handler, cursor.get());
+        consumers.add(consumer);
+        Thread thread = new Thread(consumer, "payment-events-" + name);
+        thread.setDaemon(true);
+        consumer.thread = thread;
+        thread.start();
+        log.info("Payment event consumer {} started ({} slots, {} wait)", name, bufferSize, config.getWaitStrategy());
+    }
+
+    /**
+     * Publish a committed transition; previousStatus is null for a new payment.
+     * Returns false if the event was dropped by the backpressure policy.
+     */
+    public boolean publish(Payment payment, PaymentStatus previousStatus) {
+        if (!running || consumers.isEmpty()) {
+            return true;
+        }
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.increment();
+            return false;
+        }
+        slots[(int) sequence & mask].set(payment, previousStatus);
+        AVAILABLE.setRelease(available, (int) sequence & mask, (int) (sequence >>> indexShift));
+        published.increment();
+        waitStrategy.signalAll();
+        return true;
+    }
+
+    /**
+     * Next sequence once its slot is free of unprocessed events, or -1 to drop
+     */
+    private long claim() {
+        long blockedSince = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - bufferSize;
+            long gating = gatingCache.get();
+
+            if (wrapPoint > gating || gating > current) {
+                long slowest = minimumConsumerSequence(current);
+                gatingCache.set(slowest);
+                if (wrapPoint > slowest) {
+                    if (config.getBackpressure() == BackpressurePolicy.DROP || !running) {
+                        return -1;
+                    }
+                    long now = System.nanoTime();
+                    if (blockedSince == 0) {
+                        blockedSince = now;
+                    } else if (now - blockedSince > TimeUnit.MILLISECONDS.toNanos(config.getBlockTimeoutMs())) {
+                        blockedNanos.add(now - blockedSince);
+                        return -1;
+                    }
+                    LockSupport.parkNanos(1_000);
+                    continue;
+                }
+            }
+
+            if (cursor.compareAndSet(current, next)) {
+                if (blockedSince != 0) {
+                    blockedNanos.add(System.nanoTime() - blockedSince);
+                }
+                return next;
+            }
+        }
+    }
+
+    private long minimumConsumerSequence(long minimum) {
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Highest sequence in [from, claimed] up to which every slot has been published
+     */
+    private long highestPublished(long from, long claimed) {
+        for (long sequence = from; sequence <= claimed; sequence++) {
+            int round = (int) AVAILABLE.getAcquire(available, (int) sequence & mask);
+            if (round != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    private final class Consumer implements Runnable {
+        private final String name;
+        private final PaymentEventHandler handler;
+        private final Sequence sequence;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram deliveryMicros = new LatencyHistogram();
+        private volatile long maxLag;
+        private Thread thread;
+
+        Consumer(String name, PaymentEventHandler handler, long start) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new Sequence(start);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long claimed;
+                try {
+                    claimed = waitStrategy.waitFor(next, cursor, () -> running);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long highest = highestPublished(next, claimed);
+                if (highest < next) {
+                    // claimed may predate the stop, so drain against a fresh read of the cursor
+                    if (!running && cursor.get() < next) {
+                        return;
+                    }
+                    // Claimed but not yet published; the publisher is between claim and set
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                long lag = claimed - next + 1;
+                if (lag > maxLag) {
+                    maxLag = lag;
+                }
+                for (long current = next; current <= highest; current++) {
+                    PaymentStatusChanged event = slots[(int) current & mask];
+                    try {
+                        handler.onEvent(event, current, current == highest);
+                    } catch (Exception e) {
+                        errors.increment();
+                        log.error("Payment event consumer {} failed on order {}: {}", name, event.getOrderId(), e.getMessage());
+                    }
+                    deliveryMicros.record((System.nanoTime() - event.getPublishedNanos()) / 1_000);
+                }
+                processed.add(highest - next + 1);
+                sequence.set(highest);
+                next = highest + 1;
+            }
+        }
+
+        Map<String, Object> metrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            long position = sequence.get();
+            metrics.put("sequence", position);
+            metrics.put("lag", Math.max(0, cursor.get() - position));
+            metrics.put("maxLag", maxLag);
+            metrics.put("processed", processed.sum());
+            metrics.put("errors", errors.sum());
+            metrics.put("deliveryMicros", deliveryMicros.snapshot());
+            return metrics;
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "eventBus";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("bufferSize", bufferSize);
+        metrics.put("waitStrategy", config.getWaitStrategy());
+        metrics.put("backpressure", config.getBackpressure());
+        metrics.put("cursor", cursor.get());
+        metrics.put("published", published.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("blockedMs", TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+        Map<String, Object> perConsumer = new LinkedHashMap<>();
+        for (Consumer consumer : consumers) {
+            perConsumer.put(consumer.name, consumer.metrics());
+        }
+        metrics.put("consumers", perConsumer);
+        return metrics;
+    }
+
+    /**
+     * Stop accepting events and let consumers finish what was already published
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        waitStrategy.signalAll();
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.payment_dormdeli.eventbus;
+
+/**
+ * A consumer of the payment event bus. Every handler bean gets its own thread and sees every
+ * event in publish order; an exception is logged and counted and the handler moves on.
+ */
+public interface PaymentEventHandler {
+
+    /**
+     * endOfBatch is true for the last event currently available, e.g. to flush buffered work
+     */
+    void onEvent(PaymentStatusChanged event, long sequence, boolean endOfBatch) throws Exception;
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
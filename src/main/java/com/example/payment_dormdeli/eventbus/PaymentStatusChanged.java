@@ -0,0 +1,46 @@
+package com.example.payment_dormdeli.eventbus;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * A committed status transition. Instances are ring slots allocated once and overwritten by later
+ * publishes, so a handler must copy what it keeps beyond onEvent.
+ * previousStatus is null when the payment was just created.
+ */
+@Getter
+@ToString
+public final class PaymentStatusChanged {
+
+    private String paymentId;
+    private String orderId;
+    private String userId;
+    private PaymentMethod paymentMethod;
+    private PaymentStatus previousStatus;
+    private PaymentStatus status;
+    private BigDecimal amount;
+    private String transactionId;
+    private Long version;
+    // Wall clock at commit, and System.nanoTime() at publish for delivery latency
+    private long committedAt;
+    private long publishedNanos;
+
+    void set(Payment payment, PaymentStatus previousStatus) {
+        this.paymentId = payment.getId();
+        this.orderId = payment.getOrderId();
+        this.userId = payment.getUserId();
+        this.paymentMethod = payment.getPaymentMethod();
+        this.previousStatus = previousStatus;
+        this.status = payment.getStatus();
+        this.amount = payment.getAmount();
+        this.transactionId = payment.getTransactionId();
+        this.version = payment.getVersion();
+        this.committedAt = payment.getUpdatedAt() != null ? payment.getUpdatedAt().getTime() : System.currentTimeMillis();
+        this.publishedNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.payment_dormdeli.eventbus;
+
+import com.example.payment_dormdeli.service.PaymentStatusCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops the cached status of an order as soon as a transition of it commits, instead of
+ * serving the old state until its TTL runs out
+ */
+@Component
+@RequiredArgsConstructor
+public class StatusCacheInvalidator implements PaymentEventHandler {
+
+    private final PaymentStatusCache paymentStatusCache;
+
+    @Override
+    public void onEvent(PaymentStatusChanged event, long sequence, boolean endOfBatch) {
+        if (event.getOrderId() != null) {
+            paymentStatusCache.invalidate(event.getOrderId());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "statusCache";
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.payment_dormdeli.eventbus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How a consumer waits for the publish cursor to reach the sequence it wants next
+ */
+public interface WaitStrategy {
+
+    enum Type {
+        // Parks on a condition the publisher signals; no CPU while idle, microseconds to wake
+        BLOCKING,
+        // Spins, then yields, then parks briefly; little CPU, sub-millisecond wake-up
+        SLEEPING,
+        // Spins, then yields; one core per consumer while idle
+        YIELDING,
+        // Spins only; lowest latency, one full core per consumer
+        BUSY_SPIN
+    }
+
+    /**
+     * Highest claimed sequence once it is at least 'sequence', or less if running turned false
+     */
+    long waitFor(long sequence, Sequence cursor, BooleanSupplier running) throws InterruptedException;
+
+    /**
+     * Called by publishers after each publish, and on shutdown
+     */
+    void signalAll();
+
+    static WaitStrategy of(Type type) {
+        switch (type) {
+            case SLEEPING:
+                return new Sleeping();
+            case YIELDING:
+                return new Yielding();
+            case BUSY_SPIN:
+                return new BusySpin();
+            default:
+                return new Blocking();
+        }
+    }
+
+    final class Blocking implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition published = lock.newCondition();
+        // Set by a waiting consumer, so idle-free publishes skip the lock
+        private volatile boolean signalNeeded;
+
+        @Override
+        public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) throws InterruptedException {
+            long available = cursor.get();
+            if (available >= sequence) {
+                return available;
+            }
+            lock.lock();
+            try {
+                while ((available = cursor.get()) < sequence && running.getAsBoolean()) {
+                    signalNeeded = true;
+                    // Re-check after announcing the wait, a publish may have slipped in between
+                    if ((available = cursor.get()) >= sequence) {
+                        break;
+                    }
+                    published.await(100, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return available;
+        }
+
+        @Override
+        public void signalAll() {
+            if (signalNeeded) {
+                lock.lock();
+                try {
+                    signalNeeded = false;
+                    published.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    final class Sleeping implements WaitStrategy {
+        private static final int SPINS = 100;
+        private static final int YIELDS = 100;
+        private static final long PARK_NANOS = 100_000;
+
+        @Override
+        public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+            long available;
+            int counter = SPINS + YIELDS;
+            while ((available = cursor.get()) < sequence && running.getAsBoolean()) {
+                if (counter > YIELDS) {
+                    counter--;
+                    Thread.onSpinWait();
+                } else if (counter > 0) {
+                    counter--;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+            return available;
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    final class Yielding implements WaitStrategy {
+        private static final int SPINS = 100;
+
+        @Override
+        public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+            long available;
+            int counter = SPINS;
+            while ((available = cursor.get()) < sequence && running.getAsBoolean()) {
+                if (counter > 0) {
+                    counter--;
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return available;
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    final class BusySpin implements WaitStrategy {
+        @Override
+        public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+            long available;
+            while ((available = cursor.get()) < sequence && running.getAsBoolean()) {
+                Thread.onSpinWait();
+            }
+            return available;
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.payment_dormdeli.idempotency;
+
+/**
+ * The first request with this Idempotency-Key is still running and did not finish in time; answered with 409
+ */
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
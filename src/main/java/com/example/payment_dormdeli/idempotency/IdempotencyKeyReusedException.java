@@ -0,0 +1,11 @@
+package com.example.payment_dormdeli.idempotency;
+
+/**
+ * An Idempotency-Key already used for a different request body; answered with 422
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
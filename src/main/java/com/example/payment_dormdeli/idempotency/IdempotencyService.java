@@ -0,0 +1,291 @@
+package com.example.payment_dormdeli.idempotency;
+
+import com.example.payment_dormdeli.config.IdempotencyConfig;
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.PaymentRequest;
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.IdempotencyRecord;
+import com.example.payment_dormdeli.model.IdempotencyState;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.IdempotencyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for the create endpoints.
+ *
+ * The first request with a key reserves it in Firestore with a PENDING record (create() fails for
+ * everyone else), runs, and completes the record with its response; a FAILED response or an error
+ * releases it instead, so a transient error can be retried. Completed responses are also kept in a
+ * bounded in-memory LRU for ttlHours. Retries are answered from memory, or from Firestore after a
+ * restart or on another instance, without running the create again.
+ *
+ * A retry arriving while the first request is still running waits for its result: on the same
+ * instance through an in-memory future, on another one by polling the record until it completes,
+ * is released, or its lease runs out (the first instance died) and the retry takes the key over.
+ * A retry whose own deadline runs out first gets IdempotencyKeyInProgressException.
+ */
+@Service
+@Slf4j
+public class IdempotencyService implements MetricsSource {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyConfig config;
+    private final IdempotencyRepository idempotencyRepository;
+
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, IdempotencyRecord> completed;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayedFromMemory = new LongAdder();
+    private final LongAdder replayedFromStore = new LongAdder();
+    private final LongAdder waitedForInFlight = new LongAdder();
+    private final LongAdder waitedForReservation = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    public IdempotencyService(IdempotencyConfig config, IdempotencyRepository idempotencyRepository) {
+        this.config = config;
+        this.idempotencyRepository = idempotencyRepository;
+        this.completed = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > IdempotencyService.this.config.getMaxEntries();
+            }
+        };
+    }
+
+    /**
+     * Run create once per (scope, key); without a key it just runs
+     */
+    public Result execute(String scope, String key, PaymentRequest request, Supplier<PaymentResponse> create) {
+        if (key == null || !config.isEnabled()) {
+            return new Result(create.get(), false);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = sha256(scope + "\n" + key);
+        String requestHash = requestHash(scope, request);
+
+        IdempotencyRecord cached = getCached(id);
+        if (cached != null) {
+            replayedFromMemory.increment();
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            waitedForInFlight.increment();
+            try {
+                // Wait on a copy: the deadline cancels what it waits on, and the original is shared
+                return replay(Deadline.await(running.copy()), requestHash);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for the original request", e);
+            }
+        }
+
+        try {
+            Date now = new Date();
+            IdempotencyRecord reservation = IdempotencyRecord.builder()
+                    .id(id)
+                    .scope(scope)
+                    .requestHash(requestHash)
+                    .state(IdempotencyState.PENDING)
+                    .leaseUntil(new Date(now.getTime() + config.getLeaseMs()))
+                    .createdAt(now)
+                    .expireAt(new Date(now.getTime() + TimeUnit.HOURS.toMillis(config.getTtlHours())))
+                    .build();
+            IdempotencyRecord stored = reserve(reservation);
+            if (stored != null) {
+                replayedFromStore.increment();
+                putCached(stored);
+                mine.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            executed.increment();
+            PaymentResponse response;
+            try {
+                response = create.get();
+            } catch (RuntimeException e) {
+                idempotencyRepository.release(id);
+                throw e;
+            }
+            IdempotencyRecord record = IdempotencyRecord.builder()
+                    .id(id)
+                    .scope(scope)
+                    .requestHash(requestHash)
+                    .state(IdempotencyState.COMPLETED)
+                    .response(response)
+                    .createdAt(reservation.getCreatedAt())
+                    .expireAt(reservation.getExpireAt())
+                    .build();
+
+            if (response != null && response.getStatus() != PaymentStatus.FAILED) {
+                putCached(record);
+                try {
+                    idempotencyRepository.save(record);
+                } catch (RuntimeException e) {
+                    // Still answered from memory here; other instances wait out the lease, then run it again
+                    log.error("Could not persist Idempotency-Key for order {}: {}",
+                            response.getOrderId(), e.getMessage());
+                }
+            } else {
+                idempotencyRepository.release(id);
+            }
+            mine.complete(record);
+            return new Result(response, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    /**
+     * Take the key in Firestore, waiting while a request on another instance holds it.
+     * Null once this request holds it, else the completed record to replay.
+     */
+    private IdempotencyRecord reserve(IdempotencyRecord reservation) {
+        long waitUntil = System.currentTimeMillis() + Deadline.remainingMillis();
+        boolean waited = false;
+        while (true) {
+            Optional<IdempotencyRecord> holder = idempotencyRepository.reserve(reservation);
+            if (holder.isEmpty()) {
+                return null;
+            }
+            IdempotencyRecord record = holder.get();
+            while (record != null && record.getState() == IdempotencyState.PENDING
+                    && record.getLeaseUntil() != null && record.getLeaseUntil().after(new Date())) {
+                checkSameRequest(record, reservation.getRequestHash());
+                if (!waited) {
+                    waitedForReservation.increment();
+                    waited = true;
+                }
+                if (System.currentTimeMillis() + config.getPollIntervalMs() > waitUntil) {
+                    throw new IdempotencyKeyInProgressException(
+                            "A request with this Idempotency-Key is still in progress, retry later");
+                }
+                try {
+                    Thread.sleep(config.getPollIntervalMs());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted waiting for the original request", e);
+                }
+                record = idempotencyRepository.findById(reservation.getId()).orElse(null);
+            }
+            if (record != null && record.getState() == IdempotencyState.COMPLETED) {
+                return record;
+            }
+            // Released, expired, or its lease ran out while we waited: try to take the key
+        }
+    }
+
+    private Result replay(IdempotencyRecord record, String requestHash) {
+        checkSameRequest(record, requestHash);
+        return new Result(record.getResponse(), true);
+    }
+
+    private void checkSameRequest(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            conflicts.increment();
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private IdempotencyRecord getCached(String id) {
+        synchronized (completed) {
+            IdempotencyRecord record = completed.get(id);
+            if (record != null && record.getExpireAt().before(new Date())) {
+                completed.remove(id);
+                return null;
+            }
+            return record;
+        }
+    }
+
+    private void putCached(IdempotencyRecord record) {
+        synchronized (completed) {
+            completed.put(record.getId(), record);
+        }
+    }
+
+    static String requestHash(String scope, PaymentRequest request) {
+        return sha256(String.join("\n", scope,
+                String.valueOf(request.getOrderId()),
+                request.getAmount() != null ? request.getAmount().stripTrailingZeros().toPlainString() : "",
+                String.valueOf(request.getOrderInfo()),
+                String.valueOf(request.getUserId()),
+                String.valueOf(request.getExtraData())));
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "idempotency";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("executed", executed.sum());
+        metrics.put("replayedFromMemory", replayedFromMemory.sum());
+        metrics.put("replayedFromStore", replayedFromStore.sum());
+        metrics.put("waitedForInFlight", waitedForInFlight.sum());
+        metrics.put("waitedForReservation", waitedForReservation.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("inFlight", inFlight.size());
+        synchronized (completed) {
+            metrics.put("cached", completed.size());
+        }
+        return metrics;
+    }
+
+    /**
+     * Response to send, and whether it is a replay of an earlier request
+     */
+    public static final class Result {
+        private final PaymentResponse response;
+        private final boolean replayed;
+
+        Result(PaymentResponse response, boolean replayed) {
+            this.response = response;
+            this.replayed = replayed;
+        }
+
+        public PaymentResponse getResponse() {
+            return response;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Label;
+
+/**
+ * One PaymentRepository call, including the time spent waiting for a limiter permit
+ */
+public abstract class FirestoreEvent extends PaymentJfrEvent {
+
+    @Label("Operation")
+    String operation;
+
+    public void finish(String operation, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PaymentRepository read (find*)
+ */
+@Name(PaymentJfrEvent.PREFIX + "FirestoreRead")
+@Label("Firestore Read")
+@Category({"Payment", "Firestore"})
+public final class FirestoreReadEvent extends FirestoreEvent {
+}
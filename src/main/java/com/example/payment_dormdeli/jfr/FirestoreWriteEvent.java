@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PaymentRepository write (save, updateStatus, recordEvent, ...)
+ */
+@Name(PaymentJfrEvent.PREFIX + "FirestoreWrite")
+@Label("Firestore Write")
+@Category({"Payment", "Firestore"})
+public final class FirestoreWriteEvent extends FirestoreEvent {
+}
@@ -0,0 +1,75 @@
+package com.example.payment_dormdeli.jfr;
+
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency histograms (microseconds) and outcome counts per payment event type in a .jfr file.
+ * Firestore events are split by operation. Runs standalone on a recording taken in production,
+ * in the container (plain app.jar next to lib/):
+ * java -cp "app.jar:lib/*" com.example.payment_dormdeli.jfr.JfrLatencyReport recording.jfr
+ * or on the Spring Boot fat jar from mvn package, whose classes sit under BOOT-INF:
+ * java -cp target/payment_dormdeli-0.0.1-SNAPSHOT.jar -Dloader.main=com.example.payment_dormdeli.jfr.JfrLatencyReport
+ *      org.springframework.boot.loader.PropertiesLauncher recording.jfr
+ */
+public final class JfrLatencyReport {
+
+    private JfrLatencyReport() {
+    }
+
+    public static Map<String, Object> summarize(Path file) throws IOException {
+        Map<String, LatencyHistogram> latencies = new TreeMap<>();
+        Map<String, Map<String, Long>> outcomes = new TreeMap<>();
+
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                if (!name.startsWith(PaymentJfrEvent.PREFIX)) {
+                    continue;
+                }
+
+                String key = name.substring(PaymentJfrEvent.PREFIX.length());
+                if (event.hasField("operation") && event.getString("operation") != null) {
+                    key += "." + event.getString("operation");
+                }
+                latencies.computeIfAbsent(key, k -> new LatencyHistogram())
+                        .record(event.getDuration().toNanos() / 1_000);
+                String outcome = event.getString("outcome");
+                outcomes.computeIfAbsent(key, k -> new TreeMap<>())
+                        .merge(outcome != null ? outcome : "unknown", 1L, Long::sum);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        latencies.forEach((key, histogram) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("latencyMicros", histogram.snapshot());
+            entry.put("outcomes", outcomes.get(key));
+            report.put(key, entry);
+        });
+        return report;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: JfrLatencyReport <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.printf("%-36s %8s %10s %10s %10s %10s  %s%n", "event", "count", "p50 us", "p95 us", "p99 us", "max us", "outcomes");
+        summarize(Paths.get(args[0])).forEach((key, value) -> {
+            Map<?, ?> entry = (Map<?, ?>) value;
+            Map<?, ?> latency = (Map<?, ?>) entry.get("latencyMicros");
+            System.out.printf("%-36s %8s %10s %10s %10s %10s  %s%n", key, latency.get("count"), latency.get("p50"),
+                    latency.get("p95"), latency.get("p99"), latency.get("max"), entry.get("outcomes"));
+        });
+    }
+}
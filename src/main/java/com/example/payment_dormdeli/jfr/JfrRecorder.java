@@ -0,0 +1,127 @@
+package com.example.payment_dormdeli.jfr;
+
+import com.example.payment_dormdeli.config.JfrConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process flight recording with the payment event settings (jfr/payment.jfc) on top of a
+ * built-in JFR configuration. Off unless jfr.enabled; the events then cost an enabled check.
+ * The same settings file also works standalone, e.g. jcmd PID JFR.start settings=payment.jfc.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JfrRecorder {
+
+    static final String SETTINGS_RESOURCE = "/jfr/payment.jfc";
+
+    private final JfrConfig jfrConfig;
+
+    private volatile Recording recording;
+    // Last report and when it was made; guarded by this
+    private Map<String, Object> lastReport;
+    private long lastReportAt;
+
+    @PostConstruct
+    public void start() {
+        if (!jfrConfig.isEnabled()) {
+            return;
+        }
+        try {
+            Recording started = new Recording(settings(jfrConfig.getBaseSettings()));
+            started.setName("payment-dormdeli");
+            started.setToDisk(true);
+            started.setMaxAge(Duration.ofMinutes(jfrConfig.getMaxAgeMinutes()));
+            started.setMaxSize(jfrConfig.getMaxSizeMb() * 1024 * 1024);
+            started.start();
+            recording = started;
+            log.info("JFR recording started with {} + {}", jfrConfig.getBaseSettings(), SETTINGS_RESOURCE);
+        } catch (IOException | ParseException e) {
+            log.error("Could not start JFR recording: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Settings of the base configuration with the payment event settings applied over them
+     */
+    static Map<String, String> settings(String baseSettings) throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration(baseSettings).getSettings());
+        try (InputStream in = JfrRecorder.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException(SETTINGS_RESOURCE + " not found");
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                settings.putAll(Configuration.create(reader).getSettings());
+            }
+        }
+        return settings;
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Latency histograms per payment event type over what the running recording holds.
+     * Dumping and parsing the recording (up to max-size-mb) is expensive, so one report is made at
+     * a time and reused for report-cache-seconds; callers arriving meanwhile get that copy.
+     */
+    public synchronized Map<String, Object> report() throws IOException {
+        Recording current = recording;
+        if (current == null) {
+            throw new IllegalStateException("JFR recording is not enabled");
+        }
+        long now = System.currentTimeMillis();
+        if (lastReport != null && now - lastReportAt < TimeUnit.SECONDS.toMillis(jfrConfig.getReportCacheSeconds())) {
+            return lastReport;
+        }
+        Path file = Files.createTempFile("payment-", ".jfr");
+        try {
+            current.dump(file);
+            lastReport = JfrLatencyReport.summarize(file);
+            lastReportAt = now;
+            return lastReport;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Recording current = recording;
+        if (current == null) {
+            return;
+        }
+        recording = null;
+        try {
+            if (jfrConfig.getDumpPath() != null && !jfrConfig.getDumpPath().isBlank()) {
+                current.dump(Paths.get(jfrConfig.getDumpPath()));
+                log.info("JFR recording written to {}", jfrConfig.getDumpPath());
+            }
+        } catch (IOException e) {
+            log.error("Could not write JFR recording: {}", e.getMessage());
+        } finally {
+            current.close();
+        }
+    }
+}
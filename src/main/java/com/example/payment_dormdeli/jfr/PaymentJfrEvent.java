@@ -0,0 +1,53 @@
+package com.example.payment_dormdeli.jfr;
+
+import com.example.payment_dormdeli.deadline.DeadlineExceededException;
+import com.example.payment_dormdeli.limiter.LoadSheddingException;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the payment JFR events. Usage is begin() before the operation and finish() after it;
+ * while the event is disabled in the recording settings (or no recording runs) finish() is
+ * just the enabled check, fields are never set and nothing is written.
+ */
+@Category("Payment")
+@StackTrace(false)
+public abstract class PaymentJfrEvent extends Event {
+
+    public static final String PREFIX = "com.example.payment_dormdeli.";
+
+    @Label("Order ID")
+    String orderId;
+
+    @Label("Payment Method")
+    String method;
+
+    @Label("Outcome")
+    String outcome;
+
+    public void finish(String orderId, PaymentMethod method, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.orderId = orderId;
+            this.method = method != null ? method.name() : null;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    /**
+     * Outcome recorded for an operation that threw
+     */
+    public static String outcomeOf(Throwable e) {
+        if (e instanceof LoadSheddingException) {
+            return "shed";
+        }
+        if (e instanceof DeadlineExceededException) {
+            return "deadline";
+        }
+        return "error";
+    }
+}
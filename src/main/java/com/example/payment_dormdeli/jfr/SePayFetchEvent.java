@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One page of transactions fetched from the SePay API
+ */
+@Name(PaymentJfrEvent.PREFIX + "SePayFetch")
+@Label("SePay Fetch")
+@Category({"Payment", "Gateway"})
+public final class SePayFetchEvent extends PaymentJfrEvent {
+}
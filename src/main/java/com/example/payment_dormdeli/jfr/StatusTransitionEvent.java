@@ -0,0 +1,34 @@
+package com.example.payment_dormdeli.jfr;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A payment status change, timed over the batch that writes it
+ */
+@Name(PaymentJfrEvent.PREFIX + "StatusTransition")
+@Label("Status Transition")
+@Category({"Payment", "Status"})
+public final class StatusTransitionEvent extends PaymentJfrEvent {
+
+    @Label("From Status")
+    String fromStatus;
+
+    @Label("To Status")
+    String toStatus;
+
+    public void finish(Payment payment, PaymentStatus previousStatus, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.fromStatus = previousStatus != null ? previousStatus.name() : null;
+            this.toStatus = payment.getStatus() != null ? payment.getStatus().name() : null;
+            this.orderId = payment.getOrderId();
+            this.method = payment.getPaymentMethod() != null ? payment.getPaymentMethod().name() : null;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
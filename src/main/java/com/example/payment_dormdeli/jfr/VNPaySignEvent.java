@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Building and HMAC-signing a VNPay payment URL
+ */
+@Name(PaymentJfrEvent.PREFIX + "VNPaySign")
+@Label("VNPay Sign")
+@Category({"Payment", "Gateway"})
+public final class VNPaySignEvent extends PaymentJfrEvent {
+}
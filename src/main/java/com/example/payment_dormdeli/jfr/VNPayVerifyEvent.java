@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Checking the HMAC signature of a VNPay callback
+ */
+@Name(PaymentJfrEvent.PREFIX + "VNPayVerify")
+@Label("VNPay Verify")
+@Category({"Payment", "Gateway"})
+public final class VNPayVerifyEvent extends PaymentJfrEvent {
+}
@@ -0,0 +1,14 @@
+package com.example.payment_dormdeli.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Handling of a SePay webhook or VNPay callback, from receipt to the status write
+ */
+@Name(PaymentJfrEvent.PREFIX + "WebhookHandle")
+@Label("Webhook Handle")
+@Category({"Payment", "Gateway"})
+public final class WebhookHandleEvent extends PaymentJfrEvent {
+}
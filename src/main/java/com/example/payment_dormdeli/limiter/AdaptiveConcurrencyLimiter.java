@@ -0,0 +1,135 @@
+package com.example.payment_dormdeli.limiter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limit that follows observed latency (gradient algorithm).
+ *
+ * A slow-moving average of call latency is the baseline. While recent calls are as fast as the
+ * baseline the limit grows by about sqrt(limit); when they get slower it shrinks in proportion
+ * (baseline / recent, at most halving per update). Failed calls cut the limit by 10%.
+ * Calls over the limit are rejected immediately instead of queueing behind slow ones.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double BASELINE_WEIGHT = 0.02;
+    private static final double RECENT_WEIGHT = 0.3;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    // Guarded by this
+    private double limit;
+    private double baselineRttNanos;
+    private double recentRttNanos;
+
+    private volatile int currentLimit;
+    // Share of recent acquire attempts that were rejected, decayed per attempt
+    private volatile double recentRejectionRate;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, long retryAfterSeconds) {
+        this.name = name;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.currentLimit = (int) limit;
+    }
+
+    /**
+     * Run the call if a slot is free, else throw LoadSheddingException without waiting
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!tryAcquire()) {
+            throw new LoadSheddingException(name + " limit of " + currentLimit + " concurrent calls reached", retryAfterSeconds);
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            release(System.nanoTime() - start, success);
+        }
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.increment();
+                recentRejectionRate = recentRejectionRate * 0.99 + 0.01;
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                recentRejectionRate = recentRejectionRate * 0.99;
+                return true;
+            }
+        }
+    }
+
+    void release(long rttNanos, boolean success) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (!success) {
+            failed.increment();
+        }
+
+        synchronized (this) {
+            if (!success) {
+                // Errors and timeouts are the strongest overload signal, so they skip smoothing
+                limit = limit * 0.9;
+            } else {
+                if (baselineRttNanos == 0) {
+                    baselineRttNanos = rttNanos;
+                    recentRttNanos = rttNanos;
+                }
+                recentRttNanos = recentRttNanos * (1 - RECENT_WEIGHT) + rttNanos * RECENT_WEIGHT;
+                baselineRttNanos = baselineRttNanos * (1 - BASELINE_WEIGHT) + rttNanos * BASELINE_WEIGHT;
+                // A baseline that drifted above recent latency is pulled back down
+                baselineRttNanos = Math.min(baselineRttNanos, recentRttNanos * 2);
+
+                double gradient = Math.max(0.5, Math.min(1.0, baselineRttNanos / recentRttNanos));
+                // Only grow when the current limit is actually being used
+                double headroom = inFlightBefore >= limit / 2 ? Math.sqrt(limit) : 0;
+                double newLimit = limit * gradient + headroom;
+                limit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+            currentLimit = (int) limit;
+        }
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("limit", currentLimit);
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("accepted", accepted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("rejectionRate", Math.round(recentRejectionRate * 1000) / 1000.0);
+        synchronized (this) {
+            metrics.put("baselineLatencyMs", TimeUnit.NANOSECONDS.toMillis((long) baselineRttNanos));
+            metrics.put("recentLatencyMs", TimeUnit.NANOSECONDS.toMillis((long) recentRttNanos));
+        }
+        return metrics;
+    }
+}
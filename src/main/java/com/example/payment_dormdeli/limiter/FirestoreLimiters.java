@@ -0,0 +1,78 @@
+package com.example.payment_dormdeli.limiter;
+
+import com.example.payment_dormdeli.config.FirestoreLimiterConfig;
+import com.example.payment_dormdeli.jfr.FirestoreEvent;
+import com.example.payment_dormdeli.jfr.FirestoreReadEvent;
+import com.example.payment_dormdeli.jfr.FirestoreWriteEvent;
+import com.example.payment_dormdeli.jfr.PaymentJfrEvent;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.tracing.Span;
+import com.example.payment_dormdeli.tracing.Tracer;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Separate adaptive limits for Firestore reads and writes made through PaymentRepository,
+ * so a burst of status polls cannot starve webhook writes and the other way round
+ */
+@Component
+public class FirestoreLimiters implements MetricsSource {
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimiter reads;
+    private final AdaptiveConcurrencyLimiter writes;
+
+    public FirestoreLimiters(FirestoreLimiterConfig config) {
+        this.enabled = config.isEnabled();
+        this.reads = create("firestore-read", config.getRead(), config.getRetryAfterSeconds());
+        this.writes = create("firestore-write", config.getWrite(), config.getRetryAfterSeconds());
+    }
+
+    /**
+     * Run a read under the read limit, traced as span "firestore.{operation}" and timed as a FirestoreRead JFR event
+     */
+    public <T> T read(String operation, Supplier<T> call) {
+        return traced(operation, new FirestoreReadEvent(), enabled ? () -> reads.call(call) : call);
+    }
+
+    public <T> T write(String operation, Supplier<T> call) {
+        return traced(operation, new FirestoreWriteEvent(), enabled ? () -> writes.call(call) : call);
+    }
+
+    private static <T> T traced(String operation, FirestoreEvent event, Supplier<T> call) {
+        event.begin();
+        try (Span span = Tracer.span("firestore." + operation)) {
+            try {
+                T result = call.get();
+                event.finish(operation, "ok");
+                return result;
+            } catch (RuntimeException e) {
+                span.error(e);
+                event.finish(operation, PaymentJfrEvent.outcomeOf(e));
+                throw e;
+            }
+        }
+    }
+
+    private static AdaptiveConcurrencyLimiter create(String name, FirestoreLimiterConfig.Limit limit, long retryAfterSeconds) {
+        return new AdaptiveConcurrencyLimiter(name, limit.getInitialLimit(), limit.getMinLimit(),
+                limit.getMaxLimit(), retryAfterSeconds);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "firestoreLimiter";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("read", reads.getMetrics());
+        metrics.put("write", writes.getMetrics());
+        return metrics;
+    }
+}
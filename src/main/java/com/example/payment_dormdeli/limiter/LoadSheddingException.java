@@ -0,0 +1,18 @@
+package com.example.payment_dormdeli.limiter;
+
+/**
+ * Work rejected because a limiter is saturated; callers should answer 503 or fall back
+ */
+public class LoadSheddingException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoadSheddingException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
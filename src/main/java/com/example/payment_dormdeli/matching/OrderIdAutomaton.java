@@ -0,0 +1,223 @@
+package com.example.payment_dormdeli.matching;
+
+import java.util.*;
+
+/**
+ * Immutable Aho-Corasick automaton over a set of orderIds.
+ * One pass over a transfer content reports every orderId it contains, whatever the number of ids.
+ *
+ * Matching ignores ASCII case, since banks often upper-case the transfer content.
+ * Edges are stored per node as a sorted char range in flat arrays and looked up by binary search.
+ */
+public final class OrderIdAutomaton {
+
+    private static final OrderIdAutomaton EMPTY = build(Collections.emptyList());
+
+    private final String[] patterns;
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    // Pattern ending at the node, or -1
+    private final int[] output;
+    // Nearest node on the fail chain with an output, or -1
+    private final int[] dictLink;
+
+    @FunctionalInterface
+    public interface MatchListener {
+        void onMatch(String orderId, int start, int end);
+    }
+
+    private OrderIdAutomaton(String[] patterns, int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                             int[] fail, int[] output, int[] dictLink) {
+        this.patterns = patterns;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.output = output;
+        this.dictLink = dictLink;
+    }
+
+    public static OrderIdAutomaton empty() {
+        return EMPTY;
+    }
+
+    public static OrderIdAutomaton build(Collection<String> orderIds) {
+        List<String> patterns = new ArrayList<>(orderIds.size());
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(-1);
+
+        for (String orderId : orderIds) {
+            if (orderId == null || orderId.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < orderId.length(); i++) {
+                char c = fold(orderId.charAt(i));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    outputs.add(-1);
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (outputs.get(node) < 0) {
+                outputs.set(node, patterns.size());
+                patterns.add(orderId);
+            }
+        }
+
+        int nodes = trie.size();
+        int edges = nodes - 1;
+        int[] edgeStart = new int[nodes + 1];
+        char[] edgeChars = new char[edges];
+        int[] edgeTargets = new int[edges];
+        int[] output = new int[nodes];
+        int position = 0;
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node] = position;
+            output[node] = outputs.get(node);
+            for (Map.Entry<Character, Integer> edge : trie.get(node).entrySet()) {
+                edgeChars[position] = edge.getKey();
+                edgeTargets[position] = edge.getValue();
+                position++;
+            }
+        }
+        edgeStart[nodes] = position;
+
+        // Breadth-first so every fail target is final before its children are linked
+        int[] fail = new int[nodes];
+        int[] dictLink = new int[nodes];
+        dictLink[0] = -1;
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            int child = edgeTargets[e];
+            fail[child] = 0;
+            dictLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int child = edgeTargets[e];
+                char c = edgeChars[e];
+
+                int f = fail[node];
+                int target;
+                while ((target = step(edgeStart, edgeChars, edgeTargets, f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = target >= 0 ? target : 0;
+                dictLink[child] = output[fail[child]] >= 0 ? fail[child] : dictLink[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+
+        return new OrderIdAutomaton(patterns.toArray(new String[0]), edgeStart, edgeChars, edgeTargets,
+                fail, output, dictLink);
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    /**
+     * Report every orderId occurring in the text, in order of end position
+     */
+    public void scan(CharSequence text, MatchListener listener) {
+        if (patterns.length == 0 || text == null) {
+            return;
+        }
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = step(edgeStart, edgeChars, edgeTargets, node, c)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = next >= 0 ? next : 0;
+
+            int hit = output[node] >= 0 ? node : dictLink[node];
+            while (hit >= 0) {
+                String orderId = patterns[output[hit]];
+                listener.onMatch(orderId, i + 1 - orderId.length(), i + 1);
+                hit = dictLink[hit];
+            }
+        }
+    }
+
+    /**
+     * Distinct orderIds in the text, in order of first occurrence, leaving out ids that only
+     * occur inside a longer matched id (ORDER12 within ORDER123)
+     */
+    public List<String> findAll(CharSequence text) {
+        List<String> found = new ArrayList<>(2);
+        List<int[]> spans = new ArrayList<>(2);
+        scan(text, (orderId, start, end) -> {
+            found.add(orderId);
+            spans.add(new int[]{start, end});
+        });
+        return outermost(found, spans);
+    }
+
+    /**
+     * The distinct ids of found, in order, that no longer match in spans covers.
+     * spans.get(i) is the [start, end) of found.get(i)
+     */
+    static List<String> outermost(List<String> found, List<int[]> spans) {
+        if (found.size() <= 1) {
+            return new ArrayList<>(found);
+        }
+
+        List<String> result = new ArrayList<>(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            if (!coveredByLonger(spans, i) && !result.contains(found.get(i))) {
+                result.add(found.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static boolean coveredByLonger(List<int[]> spans, int i) {
+        int[] span = spans.get(i);
+        for (int j = 0; j < spans.size(); j++) {
+            int[] other = spans.get(j);
+            if (j != i && other[0] <= span[0] && other[1] >= span[1] && other[1] - other[0] > span[1] - span[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int step(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int node, char c) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char value = edgeChars[mid];
+            if (value < c) {
+                low = mid + 1;
+            } else if (value > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static char fold(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - 32) : c;
+    }
+}
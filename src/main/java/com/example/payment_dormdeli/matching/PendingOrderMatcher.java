@@ -0,0 +1,303 @@
+package com.example.payment_dormdeli.matching;
+
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Finds pending SePay orders in the SePay transaction feed.
+ *
+ * The orderIds are indexed in two automata: a large base one rebuilt rarely, and a small delta
+ * holding orders added since, rebuilt on every add. Finished or expired orders leave the pending
+ * map at once and are skipped at match time; the base is rebuilt when the delta outgrows
+ * maxDeltaSize or too many base entries have gone stale.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingOrderMatcher implements MetricsSource {
+
+    private final PaymentRepository paymentRepository;
+
+    @Value("${sepay.matcher.match-window-hours:72}")
+    private long matchWindowHours;
+
+    @Value("${sepay.matcher.max-delta-size:256}")
+    private int maxDeltaSize;
+
+    private final Map<String, PendingOrder> pending = new ConcurrentHashMap<>();
+    private final Object indexLock = new Object();
+    // One store load at a time; add and remove only take indexLock, so they never wait on a load
+    private final Object loadLock = new Object();
+    private volatile Index index = Index.EMPTY;
+    private volatile boolean loaded;
+    private int staleInBase;
+
+    private final LongAdder fullRebuilds = new LongAdder();
+    private final LongAdder deltaRebuilds = new LongAdder();
+    private final LongAdder scannedTransactions = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private volatile long lastFullRebuildMs;
+
+    /**
+     * Start matching a newly created SePay payment
+     */
+    public void add(Payment payment) {
+        if (payment.getStatus() != PaymentStatus.PENDING || payment.getPaymentMethod() != PaymentMethod.SEPAY) {
+            return;
+        }
+        pending.put(payment.getOrderId(), PendingOrder.of(payment));
+
+        synchronized (indexLock) {
+            Index current = index;
+            if (current.contains(payment.getOrderId())) {
+                return;
+            }
+            if (current.deltaIds.size() >= maxDeltaSize) {
+                rebuild();
+                return;
+            }
+            List<String> deltaIds = new ArrayList<>(current.deltaIds);
+            deltaIds.add(payment.getOrderId());
+            index = new Index(current.base, current.baseIds, OrderIdAutomaton.build(deltaIds), deltaIds);
+            deltaRebuilds.increment();
+        }
+    }
+
+    /**
+     * Stop matching an order that is no longer pending
+     */
+    public void remove(String orderId) {
+        if (pending.remove(orderId) == null) {
+            return;
+        }
+        synchronized (indexLock) {
+            if (index.baseIds.contains(orderId) && ++staleInBase > Math.max(maxDeltaSize, index.baseIds.size() / 4)) {
+                rebuild();
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        ensureLoaded();
+        return pending.isEmpty();
+    }
+
+    /**
+     * Scan each transaction's content once and return every (order, transaction) pair found.
+     * Where one orderId is part of a longer one matched at the same place, only the longer counts.
+     */
+    public List<TransactionMatch> match(List<SePayTransaction> transactions) {
+        ensureLoaded();
+        Index current = index;
+        scannedTransactions.add(transactions.size());
+        List<TransactionMatch> result = collect(transactions, pending::get, current.base, current.delta);
+        matches.add(result.size());
+        return result;
+    }
+
+    /**
+     * Match transactions against the given payments only, with a throwaway automaton
+     */
+    public static List<TransactionMatch> matchPayments(Collection<Payment> payments,
+                                                       List<SePayTransaction> transactions) {
+        Map<String, PendingOrder> orders = new HashMap<>();
+        for (Payment payment : payments) {
+            orders.put(payment.getOrderId(), PendingOrder.of(payment));
+        }
+        return collect(transactions, orders::get, OrderIdAutomaton.build(orders.keySet()));
+    }
+
+    private static List<TransactionMatch> collect(List<SePayTransaction> transactions,
+                                                  Function<String, PendingOrder> lookup,
+                                                  OrderIdAutomaton... automata) {
+        List<TransactionMatch> result = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        List<String> found = new ArrayList<>();
+
+        for (SePayTransaction txn : transactions) {
+            String content = txn.getTransaction_content();
+            if (content == null) {
+                continue;
+            }
+
+            spans.clear();
+            found.clear();
+            for (OrderIdAutomaton automaton : automata) {
+                automaton.scan(content, (orderId, start, end) -> {
+                    if (lookup.apply(orderId) != null) {
+                        spans.add(new int[]{start, end});
+                        found.add(orderId);
+                    }
+                });
+            }
+
+            BigDecimal transferAmount = txn.getAmount_in() != null ? txn.getAmount_in() : BigDecimal.ZERO;
+            for (String orderId : OrderIdAutomaton.outermost(found, spans)) {
+                PendingOrder order = lookup.apply(orderId);
+                result.add(TransactionMatch.builder()
+                        .orderId(orderId)
+                        .transactionId(txn.getId())
+                        .expectedAmount(order.amount)
+                        .transferAmount(transferAmount)
+                        .referenceNumber(txn.getReference_number())
+                        .transactionContent(content)
+                        .amountSufficient(order.amount != null && transferAmount.compareTo(order.amount) >= 0)
+                        .build());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop orders older than the match window
+     */
+    @Scheduled(fixedDelayString = "${sepay.matcher.expiry-interval-ms:300000}")
+    public void expire() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(matchWindowHours);
+        int expired = 0;
+        for (PendingOrder order : pending.values()) {
+            if (order.createdAt < cutoff) {
+                remove(order.orderId);
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.info("Stopped matching {} orders older than {}h", expired, matchWindowHours);
+        }
+    }
+
+    /**
+     * Resync with the store, picking up orders created or finished by other instances.
+     * The store is read without holding indexLock, so add and remove never wait on Firestore;
+     * if the read fails the current orders are kept rather than pruned.
+     */
+    @Scheduled(fixedDelayString = "${sepay.matcher.reload-interval-ms:600000}",
+            initialDelayString = "${sepay.matcher.reload-interval-ms:600000}")
+    public void reload() {
+        synchronized (loadLock) {
+            long startedAt = System.currentTimeMillis();
+            long cutoff = startedAt - TimeUnit.HOURS.toMillis(matchWindowHours);
+
+            List<Payment> payments;
+            try {
+                payments = paymentRepository.findPending(PaymentMethod.SEPAY);
+            } catch (RuntimeException e) {
+                log.warn("Could not load pending SePay orders, keeping the {} already known: {}",
+                        pending.size(), e.getMessage());
+                return;
+            }
+
+            Map<String, PendingOrder> stored = new HashMap<>();
+            for (Payment payment : payments) {
+                PendingOrder order = PendingOrder.of(payment);
+                if (order.createdAt >= cutoff) {
+                    stored.put(order.orderId, order);
+                }
+            }
+
+            synchronized (indexLock) {
+                // Orders added locally while the query ran are kept
+                pending.entrySet().removeIf(entry -> !stored.containsKey(entry.getKey())
+                        && entry.getValue().createdAt < startedAt);
+                pending.putAll(stored);
+                rebuild();
+                loaded = true;
+            }
+            log.info("Loaded {} pending SePay orders for matching", stored.size());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (loadLock) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    // Caller holds indexLock
+    private void rebuild() {
+        long start = System.nanoTime();
+        Set<String> ids = new HashSet<>(pending.keySet());
+        index = new Index(OrderIdAutomaton.build(ids), ids, OrderIdAutomaton.empty(), Collections.emptyList());
+        staleInBase = 0;
+        lastFullRebuildMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        fullRebuilds.increment();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "pendingOrderMatcher";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Index current = index;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pendingOrders", pending.size());
+        metrics.put("baseSize", current.baseIds.size());
+        metrics.put("deltaSize", current.deltaIds.size());
+        metrics.put("fullRebuilds", fullRebuilds.sum());
+        metrics.put("deltaRebuilds", deltaRebuilds.sum());
+        metrics.put("lastFullRebuildMs", lastFullRebuildMs);
+        metrics.put("scannedTransactions", scannedTransactions.sum());
+        metrics.put("matches", matches.sum());
+        return metrics;
+    }
+
+    private static final class PendingOrder {
+        final String orderId;
+        final BigDecimal amount;
+        final long createdAt;
+
+        private PendingOrder(String orderId, BigDecimal amount, long createdAt) {
+            this.orderId = orderId;
+            this.amount = amount;
+            this.createdAt = createdAt;
+        }
+
+        static PendingOrder of(Payment payment) {
+            long createdAt = payment.getCreatedAt() != null ? payment.getCreatedAt().getTime() : System.currentTimeMillis();
+            return new PendingOrder(payment.getOrderId(), payment.getAmount(), createdAt);
+        }
+    }
+
+    private static final class Index {
+        static final Index EMPTY = new Index(OrderIdAutomaton.empty(), Collections.emptySet(),
+                OrderIdAutomaton.empty(), Collections.emptyList());
+
+        final OrderIdAutomaton base;
+        final Set<String> baseIds;
+        final OrderIdAutomaton delta;
+        final List<String> deltaIds;
+
+        Index(OrderIdAutomaton base, Set<String> baseIds, OrderIdAutomaton delta, List<String> deltaIds) {
+            this.base = base;
+            this.baseIds = baseIds;
+            this.delta = delta;
+            this.deltaIds = deltaIds;
+        }
+
+        boolean contains(String orderId) {
+            return baseIds.contains(orderId) || deltaIds.contains(orderId);
+        }
+    }
+}
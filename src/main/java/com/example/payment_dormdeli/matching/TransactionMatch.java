@@ -0,0 +1,27 @@
+package com.example.payment_dormdeli.matching;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One pending order found in the content of one bank transaction
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionMatch {
+    private String orderId;
+    // SePay transaction id
+    private Long transactionId;
+    private BigDecimal expectedAmount;
+    private BigDecimal transferAmount;
+    private String referenceNumber;
+    private String transactionContent;
+    // transferAmount covers expectedAmount
+    private boolean amountSufficient;
+}
@@ -0,0 +1,13 @@
+package com.example.payment_dormdeli.metrics;
+
+import java.util.Map;
+
+/**
+ * Component that exposes its counters on GET /api/payment/metrics
+ */
+public interface MetricsSource {
+
+    String getMetricsName();
+
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,81 @@
+package com.example.payment_dormdeli.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A bulk admin operation and its progress. Payments are selected either by an uploaded
+ * orderId list or by a filter (status and creation time range), and processed a page at a time;
+ * the cursor is stored after every page so an interrupted job resumes where it stopped.
+ * A RUNNING job is held by one run at a time through its owner and lease.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkJob {
+    
+    private String id;
+    
+    private BulkOperation operation;
+    
+    private BulkJobState state;
+    
+    private String reason;
+    
+    // Selection by list
+    private List<String> orderIds;
+    
+    // Selection by filter
+    private PaymentStatus filterStatus;
+    
+    private PaymentMethod filterMethod;
+    
+    private Date createdAfter;
+    
+    private Date createdBefore;
+    
+    // Next index into orderIds, or the last payment of the previous page for a filter
+    private int cursorIndex;
+    
+    private Date cursorCreatedAt;
+    
+    private String cursorPaymentId;
+    
+    // Payments of the page being written; their ledger writes are repaired on resume
+    private List<String> inFlightPaymentIds;
+    
+    // Claim of the run holding the job while RUNNING, renewed at every checkpoint until leaseUntil
+    private String owner;
+    
+    private Date leaseUntil;
+    
+    // Set by pause on any instance; the run holding the job stops after its current page
+    private boolean pauseRequested;
+    
+    private long processed;
+    
+    private long succeeded;
+    
+    // Not applicable to the operation, or changed by someone else since they were read
+    private long skipped;
+    
+    private long failed;
+    
+    private List<String> failedOrderIds;
+    
+    private String lastError;
+    
+    private Date createdAt;
+    
+    private Date startedAt;
+    
+    private Date updatedAt;
+    
+    private Date finishedAt;
+}
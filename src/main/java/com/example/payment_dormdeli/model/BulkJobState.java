@@ -0,0 +1,13 @@
+package com.example.payment_dormdeli.model;
+
+public enum BulkJobState {
+    QUEUED,
+    RUNNING,
+    // Stopped on request between pages; resumable
+    PAUSED,
+    // Was RUNNING when its instance stopped renewing the lease; resumable
+    INTERRUPTED,
+    // Stopped by an error it could not get past; resumable
+    FAILED,
+    COMPLETED
+}
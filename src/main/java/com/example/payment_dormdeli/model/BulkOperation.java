@@ -0,0 +1,42 @@
+package com.example.payment_dormdeli.model;
+
+/**
+ * Admin operation applied to many payments by a bulk job
+ */
+public enum BulkOperation {
+    CANCEL(PaymentStatus.CANCELLED),
+    EXPIRE(PaymentStatus.EXPIRED),
+    CONFIRM(PaymentStatus.SUCCESS),
+    DELETE(null);
+
+    // Status the payment is moved to, null for DELETE
+    private final PaymentStatus targetStatus;
+
+    BulkOperation(PaymentStatus targetStatus) {
+        this.targetStatus = targetStatus;
+    }
+
+    public PaymentStatus getTargetStatus() {
+        return targetStatus;
+    }
+
+    /**
+     * Whether a payment in this status is changed by the operation; others are skipped.
+     * Only unsettled payments can be cancelled or expired, and SUCCESS is never confirmed twice.
+     * DELETE leaves no ledger event, outbox record or stats correction behind, so it only removes
+     * payments that took no money: never SUCCESS, nor PROCESSING, which the gateway may still settle.
+     */
+    public boolean appliesTo(PaymentStatus status) {
+        switch (this) {
+            case CANCEL:
+            case EXPIRE:
+                return status == PaymentStatus.PENDING || status == PaymentStatus.PROCESSING;
+            case CONFIRM:
+                return status != PaymentStatus.SUCCESS;
+            case DELETE:
+                return status != PaymentStatus.SUCCESS && status != PaymentStatus.PROCESSING;
+            default:
+                return true;
+        }
+    }
+}
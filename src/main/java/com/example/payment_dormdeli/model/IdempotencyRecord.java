@@ -0,0 +1,42 @@
+package com.example.payment_dormdeli.model;
+
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * First response to a create request carrying an Idempotency-Key, replayed to its retries;
+ * a PENDING record reserves the key while that first request is still running
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    
+    // Hash of scope and key
+    private String id;
+    
+    // Endpoint the key was used on, e.g. "sepay-create"
+    private String scope;
+    
+    // Hash of the request body, to refuse a key reused for a different request
+    private String requestHash;
+    
+    // PENDING while the first request runs, then COMPLETED with its response
+    private IdempotencyState state;
+    
+    // Until when a PENDING reservation is honoured; past it another request may take the key over
+    private Date leaseUntil;
+    
+    private PaymentResponse response;
+    
+    private Date createdAt;
+    
+    // Firestore TTL policy field; the record is ignored past it even before deletion
+    private Date expireAt;
+}
@@ -0,0 +1,7 @@
+package com.example.payment_dormdeli.model;
+
+public enum IdempotencyState {
+    // Reserved by the request that is running the create, until its lease (leaseUntil) expires
+    PENDING,
+    COMPLETED
+}
@@ -0,0 +1,51 @@
+package com.example.payment_dormdeli.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Pending notification to one destination, written in the same commit as the status change
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxRecord {
+    
+    private String id;
+    
+    private String destination;
+    
+    private String paymentId;
+    
+    private String orderId;
+    
+    private PaymentStatus status;
+    
+    private BigDecimal amount;
+    
+    private String transactionId;
+    
+    private Date completedAt;
+    
+    private OutboxState state;
+    
+    private int attempts;
+    
+    // PENDING: when the next attempt is due. SENDING: when the claim lapses and any instance may take the record.
+    private Date nextAttemptAt;
+    
+    // Set by the claim that moved the record to SENDING; delivery results from any other claim are discarded
+    private String claimId;
+    
+    private Date createdAt;
+    
+    private Date deliveredAt;
+    
+    private String lastError;
+}
@@ -0,0 +1,9 @@
+package com.example.payment_dormdeli.model;
+
+public enum OutboxState {
+    PENDING,
+    // Claimed by one instance until its lease (nextAttemptAt) expires
+    SENDING,
+    DELIVERED,
+    DEAD
+}
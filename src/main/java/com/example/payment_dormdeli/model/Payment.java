@@ -41,4 +41,7 @@ public class Payment {
     private Date updatedAt;
     
     private Date completedAt;
+    
+    // Incremented on every write; matches the sequence of the ledger events written with it
+    private Long version;
 }
@@ -0,0 +1,59 @@
+package com.example.payment_dormdeli.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Immutable entry in the payment ledger. Each event carries the fields it changes,
+ * so the current state of a payment is a fold over its events.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentEvent {
+    
+    private String id;
+    
+    private String paymentId;
+    
+    private String orderId;
+    
+    // Payment version written together with this event
+    private Long sequence;
+    
+    // Position among the events written in the same commit
+    private Integer index;
+    
+    private PaymentEventType type;
+    
+    private PaymentStatus status;
+    
+    private PaymentMethod paymentMethod;
+    
+    private BigDecimal amount;
+    
+    private String orderInfo;
+    
+    private String userId;
+    
+    private String extraData;
+    
+    private String paymentUrl;
+    
+    private String transactionId;
+    
+    private String errorMessage;
+    
+    // Free-form audit detail, e.g. the raw transfer content of a webhook
+    private String detail;
+    
+    private Date completedAt;
+    
+    private Date occurredAt;
+}
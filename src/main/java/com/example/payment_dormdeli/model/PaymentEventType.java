@@ -0,0 +1,33 @@
+package com.example.payment_dormdeli.model;
+
+public enum PaymentEventType {
+    CREATED(PaymentStatus.PENDING),
+    URL_ISSUED(null),
+    WEBHOOK_RECEIVED(null),
+    GATEWAY_QUERIED(null),
+    PROCESSING(PaymentStatus.PROCESSING),
+    CONFIRMED(PaymentStatus.SUCCESS),
+    FAILED(PaymentStatus.FAILED),
+    CANCELLED(PaymentStatus.CANCELLED),
+    EXPIRED(PaymentStatus.EXPIRED);
+    
+    // Status the payment is in after this event, null if the event does not change status
+    private final PaymentStatus resultingStatus;
+    
+    PaymentEventType(PaymentStatus resultingStatus) {
+        this.resultingStatus = resultingStatus;
+    }
+    
+    public PaymentStatus getResultingStatus() {
+        return resultingStatus;
+    }
+    
+    public static PaymentEventType forStatus(PaymentStatus status) {
+        for (PaymentEventType type : values()) {
+            if (type.resultingStatus == status) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("No event type for status " + status);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.payment_dormdeli.qr;
+
+import java.util.Locale;
+
+public enum QrImageFormat {
+    PNG("image/png"),
+    SVG("image/svg+xml");
+
+    private final String contentType;
+
+    QrImageFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static QrImageFormat parse(String format) {
+        try {
+            return format == null ? PNG : valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Format must be png or svg");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.payment_dormdeli.qr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Renders a QR payload as a black-and-white PNG or an SVG of one path, moduleSize pixels per module
+ * with a quiet zone of margin modules
+ */
+public final class QrImageRenderer {
+
+    private QrImageRenderer() {
+    }
+
+    public static byte[] render(String payload, QrImageFormat format, int moduleSize, int margin) {
+        BitMatrix modules = encode(payload, margin);
+        return format == QrImageFormat.SVG ? svg(modules, moduleSize) : png(modules, moduleSize);
+    }
+
+    static BitMatrix encode(String payload, int margin) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        hints.put(EncodeHintType.MARGIN, margin);
+        try {
+            // Size 0 gives one pixel per module, scaling is done here
+            return new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, 0, 0, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Payload cannot be encoded as a QR code", e);
+        }
+    }
+
+    private static byte[] png(BitMatrix modules, int moduleSize) {
+        int size = modules.getWidth() * moduleSize;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = image.getRaster();
+
+        // Sample 0 is black, 1 white in the binary palette
+        int[] row = new int[size];
+        for (int y = 0; y < modules.getHeight(); y++) {
+            for (int x = 0; x < modules.getWidth(); x++) {
+                Arrays.fill(row, x * moduleSize, (x + 1) * moduleSize, modules.get(x, y) ? 0 : 1);
+            }
+            for (int i = 0; i < moduleSize; i++) {
+                raster.setPixels(0, y * moduleSize + i, size, 1, row);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] svg(BitMatrix modules, int moduleSize) {
+        int width = modules.getWidth();
+        StringBuilder path = new StringBuilder();
+        for (int y = 0; y < modules.getHeight(); y++) {
+            int x = 0;
+            while (x < width) {
+                if (!modules.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                // One rectangle per horizontal run of dark modules
+                int start = x;
+                while (x < width && modules.get(x, y)) {
+                    x++;
+                }
+                path.append('M').append(start).append(' ').append(y)
+                        .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+
+        int size = width * moduleSize;
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + size + "\" height=\"" + size
+                + "\" viewBox=\"0 0 " + width + " " + width + "\" shape-rendering=\"crispEdges\">"
+                + "<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>"
+                + "<path fill=\"#000\" d=\"" + path + "\"/></svg>";
+        return svg.getBytes(StandardCharsets.UTF_8);
+    }
+}
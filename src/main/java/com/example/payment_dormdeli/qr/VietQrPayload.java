@@ -0,0 +1,143 @@
+package com.example.payment_dormdeli.qr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * EMVCo merchant-presented QR payload in the VietQR (NAPAS) profile for a transfer to one account.
+ *
+ * Everything up to the currency field depends only on the bank and account, so it is built once
+ * together with the CRC16 register after it; each payload then only encodes and checksums the
+ * amount, country and transfer content.
+ */
+public class VietQrPayload {
+
+    // NAPAS AID and "transfer to account" service code
+    private static final String NAPAS_GUID = "A000000727";
+    private static final String SERVICE_TO_ACCOUNT = "QRIBFTTA";
+    private static final String CURRENCY_VND = "704";
+
+    // Purpose of transaction (62-08) and amount (54) limits of the EMV spec
+    public static final int MAX_CONTENT_LENGTH = 25;
+    public static final long MAX_AMOUNT = 9_999_999_999_999L;
+
+    // Short bank codes as used by SePay/VietQR to their NAPAS BIN
+    private static final Map<String, String> BANK_BINS = Map.ofEntries(
+            Map.entry("VCB", "970436"),
+            Map.entry("BIDV", "970418"),
+            Map.entry("ICB", "970415"),
+            Map.entry("VIETINBANK", "970415"),
+            Map.entry("VBA", "970405"),
+            Map.entry("AGRIBANK", "970405"),
+            Map.entry("TCB", "970407"),
+            Map.entry("MB", "970422"),
+            Map.entry("ACB", "970416"),
+            Map.entry("VPB", "970432"),
+            Map.entry("TPB", "970423"),
+            Map.entry("STB", "970403"),
+            Map.entry("VIB", "970441"),
+            Map.entry("SHB", "970443"),
+            Map.entry("HDB", "970437"),
+            Map.entry("MSB", "970426"),
+            Map.entry("OCB", "970448"),
+            Map.entry("EIB", "970431"),
+            Map.entry("LPB", "970449"),
+            Map.entry("SEAB", "970440"),
+            Map.entry("SCB", "970429"),
+            Map.entry("NAB", "970428"),
+            Map.entry("ABB", "970425"),
+            Map.entry("KLB", "970452"),
+            Map.entry("PVCB", "970412"),
+            Map.entry("BAB", "970409"),
+            Map.entry("VAB", "970427"),
+            Map.entry("NCB", "970419"),
+            Map.entry("PGB", "970430"),
+            Map.entry("VCCB", "970454"));
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private final String prefix;
+    private final int prefixCrc;
+
+    public VietQrPayload(String bankBin, String accountNumber) {
+        if (bankBin == null || !bankBin.matches("\\d{6}")) {
+            throw new IllegalArgumentException("Bank BIN must be 6 digits: " + bankBin);
+        }
+        if (accountNumber == null || !accountNumber.matches("[0-9A-Za-z]{1,19}")) {
+            throw new IllegalArgumentException("Invalid account number for VietQR");
+        }
+
+        String beneficiary = field("00", bankBin) + field("01", accountNumber);
+        String merchantAccount = field("00", NAPAS_GUID) + field("01", beneficiary) + field("02", SERVICE_TO_ACCOUNT);
+        this.prefix = field("00", "01")
+                + field("01", "12")
+                + field("38", merchantAccount)
+                + field("53", CURRENCY_VND);
+        this.prefixCrc = crc16(0xFFFF, prefix);
+    }
+
+    /**
+     * Payload for a transfer of amount VND with the given content, CRC included
+     */
+    public String build(long amount, String content) {
+        validate(amount, content);
+        String tail = field("54", Long.toString(amount))
+                + field("58", "VN")
+                + field("62", field("08", content))
+                + "6304";
+        int crc = crc16(prefixCrc, tail);
+        return prefix + tail + String.format(Locale.ROOT, "%04X", crc);
+    }
+
+    public static void validate(long amount, String content) {
+        if (amount <= 0 || amount > MAX_AMOUNT) {
+            throw new IllegalArgumentException("Amount must be between 1 and " + MAX_AMOUNT);
+        }
+        if (content == null || content.isEmpty() || content.length() > MAX_CONTENT_LENGTH) {
+            throw new IllegalArgumentException("Content must be 1 to " + MAX_CONTENT_LENGTH + " characters");
+        }
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            // Banks put this into the transfer description, which only takes plain ASCII
+            if (c < 0x20 || c > 0x7E) {
+                throw new IllegalArgumentException("Content may only contain printable ASCII characters");
+            }
+        }
+    }
+
+    /**
+     * NAPAS BIN of a short bank code (e.g. BIDV), null if unknown
+     */
+    public static String bankBin(String bankCode) {
+        return bankCode != null ? BANK_BINS.get(bankCode.trim().toUpperCase(Locale.ROOT)) : null;
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE (poly 0x1021) continued from the given register over ASCII data
+     */
+    static int crc16(int crc, String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.US_ASCII);
+        for (byte b : bytes) {
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    private static String field(String id, String value) {
+        if (value.length() > 99) {
+            throw new IllegalArgumentException("EMV field " + id + " longer than 99 characters");
+        }
+        return id + (value.length() < 10 ? "0" : "") + value.length() + value;
+    }
+}
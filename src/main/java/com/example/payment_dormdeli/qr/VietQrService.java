@@ -0,0 +1,155 @@
+package com.example.payment_dormdeli.qr;
+
+import com.example.payment_dormdeli.config.SePayConfig;
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VietQR payloads for the SePay receiving account and their rendered images.
+ *
+ * Images are deterministic in (format, amount, content), so they are kept in an LRU cache bounded
+ * by entry count and total bytes; a checkout and the client fetching its QR hit the same entry.
+ */
+@Service
+@Slf4j
+public class VietQrService implements MetricsSource {
+
+    private final SePayConfig.Qr config;
+    private final VietQrPayload payload;
+
+    private final Map<String, byte[]> images = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LatencyHistogram renderMicros = new LatencyHistogram();
+
+    public VietQrService(SePayConfig sePayConfig) {
+        this.config = sePayConfig.getQr();
+        this.payload = createPayload(sePayConfig);
+    }
+
+    private static VietQrPayload createPayload(SePayConfig sePayConfig) {
+        String bankBin = sePayConfig.getQr().getBankBin() != null && !sePayConfig.getQr().getBankBin().isBlank()
+                ? sePayConfig.getQr().getBankBin()
+                : VietQrPayload.bankBin(sePayConfig.getBankCode());
+        if (bankBin == null) {
+            log.error("No NAPAS BIN known for bank code '{}', set sepay.qr.bank-bin", sePayConfig.getBankCode());
+            return null;
+        }
+        try {
+            return new VietQrPayload(bankBin, sePayConfig.getAccountNumber());
+        } catch (IllegalArgumentException e) {
+            log.error("Cannot build VietQR payloads: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * EMVCo payload a banking app scans to transfer amount VND with the given content
+     */
+    public String payload(long amount, String content) {
+        if (payload == null) {
+            throw new IllegalStateException("VietQR is not configured");
+        }
+        return payload.build(amount, content);
+    }
+
+    /**
+     * Absolute URL of the QR image endpoint for this transfer
+     */
+    public String imageUrl(long amount, String content) {
+        return imageEndpoint()
+                .queryParam("amount", amount)
+                .queryParam("content", content)
+                .encode()
+                .toUriString();
+    }
+
+    /**
+     * image-url under public-base-url, else under the scheme, host and context path (/api) the
+     * current request came in on; host-relative only outside a request with no base configured
+     */
+    private UriComponentsBuilder imageEndpoint() {
+        String imageUrl = config.getImageUrl();
+        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            return UriComponentsBuilder.fromHttpUrl(imageUrl);
+        }
+        if (config.getPublicBaseUrl() != null && !config.getPublicBaseUrl().isBlank()) {
+            return UriComponentsBuilder.fromHttpUrl(config.getPublicBaseUrl()).path(imageUrl);
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes) {
+            return ServletUriComponentsBuilder.fromCurrentContextPath().path(imageUrl);
+        }
+        return UriComponentsBuilder.fromUriString(imageUrl);
+    }
+
+    /**
+     * Rendered QR image of the transfer, from the cache when possible
+     */
+    public byte[] image(long amount, String content, QrImageFormat format) {
+        String key = format.name() + ':' + amount + ':' + content;
+        byte[] image;
+        synchronized (images) {
+            image = images.get(key);
+        }
+        if (image != null) {
+            hits.increment();
+            return image;
+        }
+        misses.increment();
+
+        long start = System.nanoTime();
+        image = QrImageRenderer.render(payload(amount, content), format, config.getModuleSize(), config.getMargin());
+        renderMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+        synchronized (images) {
+            byte[] previous = images.put(key, image);
+            cachedBytes += image.length - (previous != null ? previous.length : 0);
+            evictOverLimit();
+        }
+        return image;
+    }
+
+    private void evictOverLimit() {
+        Iterator<byte[]> eldest = images.values().iterator();
+        while (eldest.hasNext() && (images.size() > config.getCacheMaxEntries() || cachedBytes > config.getCacheMaxBytes())) {
+            cachedBytes -= eldest.next().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "qr";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("configured", payload != null);
+        synchronized (images) {
+            metrics.put("cachedImages", images.size());
+            metrics.put("cachedBytes", cachedBytes);
+        }
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("renderMicros", renderMicros.snapshot());
+        return metrics;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.payment_dormdeli.reconciliation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A CSV bank statement read through memory-mapped regions, so the heap never holds more than
+ * the line being parsed. The file is cut into chunks at record ends (newlines outside quotes)
+ * that can be parsed independently.
+ */
+final class StatementFile implements Closeable {
+
+    // Largest region mapped at once when looking for chunk boundaries
+    private static final long SCAN_WINDOW = 256L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Charset charset;
+    private final char delimiter;
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void onRecord(long line, List<String> fields);
+    }
+
+    static final class Chunk {
+        final long start;
+        final long end;
+        // Line number of the first record in the chunk
+        final long firstLine;
+
+        Chunk(long start, long end, long firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    private StatementFile(FileChannel channel, Charset charset, char delimiter) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.charset = charset;
+        this.delimiter = delimiter;
+    }
+
+    static StatementFile open(Path path, Charset charset, char delimiter) throws IOException {
+        return new StatementFile(FileChannel.open(path, StandardOpenOption.READ), charset, delimiter);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Header row within the first maxLines records, or null
+     */
+    Header findHeader(int maxLines, HeaderMatcher matcher) throws IOException {
+        Header[] found = new Header[1];
+        int[] seen = {0};
+        long end = records(0, Math.min(size, SCAN_WINDOW), 1, (line, fields) -> {
+            found[0] = matcher.match(line, fields);
+            return found[0] == null && ++seen[0] < maxLines;
+        });
+        if (found[0] == null) {
+            return null;
+        }
+        found[0].dataStart = end;
+        return found[0];
+    }
+
+    @FunctionalInterface
+    interface HeaderMatcher {
+        // Column layout if this record is the header, else null
+        Header match(long line, List<String> fields);
+    }
+
+    static final class Header {
+        final int content;
+        final int amount;
+        final int reference;
+        final int date;
+        final long line;
+        // Offset of the first data record
+        long dataStart;
+
+        Header(int content, int amount, int reference, int date, long line) {
+            this.content = content;
+            this.amount = amount;
+            this.reference = reference;
+            this.date = date;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Chunks of about targetBytes covering [start, size), with the line number each starts on
+     */
+    List<Chunk> split(long start, long firstLine, long targetBytes) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = start;
+        long chunkLine = firstLine;
+        long line = firstLine;
+        boolean quoted = false;
+
+        for (long windowStart = start; windowStart < size; windowStart += SCAN_WINDOW) {
+            long windowLength = Math.min(SCAN_WINDOW, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            for (int i = 0; i < windowLength; i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n') {
+                    line++;
+                    long position = windowStart + i + 1;
+                    if (!quoted && position - chunkStart >= targetBytes) {
+                        chunks.add(new Chunk(chunkStart, position, chunkLine));
+                        chunkStart = position;
+                        chunkLine = line;
+                    }
+                }
+            }
+        }
+        if (chunkStart < size) {
+            chunks.add(new Chunk(chunkStart, size, chunkLine));
+        }
+        return chunks;
+    }
+
+    /**
+     * Parse every record of the chunk; blank lines are skipped
+     */
+    void forEachRecord(Chunk chunk, RecordHandler handler) throws IOException {
+        records(chunk.start, chunk.end, chunk.firstLine, (line, fields) -> {
+            handler.onRecord(line, fields);
+            return true;
+        });
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        // False to stop after this record
+        boolean visit(long line, List<String> fields);
+    }
+
+    /**
+     * Visit the records in [start, end); returns the offset after the last record visited
+     */
+    private long records(long start, long end, long firstLine, RecordVisitor visitor) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] record = new byte[512];
+        int length = 0;
+        boolean quoted = false;
+        long line = firstLine;
+        long recordLine = line;
+
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n') {
+                line++;
+                if (!quoted) {
+                    if (!emit(record, length, recordLine, visitor)) {
+                        return start + i + 1;
+                    }
+                    length = 0;
+                    recordLine = line;
+                    continue;
+                }
+            }
+            if (length == record.length) {
+                record = Arrays.copyOf(record, record.length * 2);
+            }
+            record[length++] = b;
+        }
+        emit(record, length, recordLine, visitor);
+        return end;
+    }
+
+    private boolean emit(byte[] record, int length, long line, RecordVisitor visitor) {
+        int start = 0;
+        // UTF-8 byte order mark at the start of the file
+        if (length >= 3 && (record[0] & 0xFF) == 0xEF && (record[1] & 0xFF) == 0xBB && (record[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        while (length > start && (record[length - 1] == '\r' || record[length - 1] == '\n')) {
+            length--;
+        }
+        if (length <= start) {
+            return true;
+        }
+        return visitor.visit(line, parseFields(new String(record, start, length - start, charset), delimiter));
+    }
+
+    /**
+     * Split one CSV record; quoted fields may hold delimiters, newlines and "" for a quote
+     */
+    static List<String> parseFields(String record, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Header name compared without case, Vietnamese diacritics or extra spaces
+     */
+    static String normalize(String header) {
+        String decomposed = Normalizer.normalize(header, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return decomposed.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.payment_dormdeli.reconciliation;
+
+import com.example.payment_dormdeli.config.ReconciliationConfig;
+import com.example.payment_dormdeli.dto.ReconciliationReport;
+import com.example.payment_dormdeli.matching.OrderIdAutomaton;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One statement matched against a fixed set of payments.
+ *
+ * The statement is split into chunks that fork/join tasks parse and match in parallel: each
+ * credit row is scanned for orderIds with one automaton over all payments, and amounts found
+ * for an order are added to shared per-order totals. Memory is the per-order totals plus at most
+ * maxReportRows sample rows, whatever the size of the statement.
+ */
+public class StatementReconciliation {
+
+    private final ReconciliationConfig config;
+    private final ForkJoinPool pool;
+
+    private final List<Payment> payments;
+    private final Map<String, Integer> orderIndex;
+    private final OrderIdAutomaton automaton;
+    private final AtomicLongArray receivedMinor;
+    private final AtomicIntegerArray bankRows;
+
+    public StatementReconciliation(ReconciliationConfig config, ForkJoinPool pool, List<Payment> payments) {
+        this.config = config;
+        this.pool = pool;
+        this.payments = payments;
+        this.orderIndex = new HashMap<>(payments.size() * 2);
+        for (int i = 0; i < payments.size(); i++) {
+            orderIndex.put(payments.get(i).getOrderId(), i);
+        }
+        this.automaton = OrderIdAutomaton.build(orderIndex.keySet());
+        this.receivedMinor = new AtomicLongArray(payments.size());
+        this.bankRows = new AtomicIntegerArray(payments.size());
+    }
+
+    /**
+     * Match the statement; SUCCESS payments completed in [completedFrom, completedTo) must have a bank row
+     */
+    public ReconciliationReport run(Path statement, Date completedFrom, Date completedTo) throws IOException {
+        long start = System.currentTimeMillis();
+        try (StatementFile file = StatementFile.open(statement, Charset.forName(config.getCharset()), config.getDelimiter())) {
+            StatementFile.Header header = file.findHeader(config.getMaxHeaderLines(), this::matchHeader);
+            if (header == null) {
+                throw new IllegalArgumentException("No header row with content and amount columns in the first "
+                        + config.getMaxHeaderLines() + " lines");
+            }
+
+            List<StatementFile.Chunk> chunks = file.split(header.dataStart, header.line + 1, config.getChunkSizeKb() * 1024L);
+            ChunkResult result = chunks.isEmpty()
+                    ? new ChunkResult()
+                    : pool.invoke(new ChunkTask(file, header, chunks, 0, chunks.size()));
+
+            ReconciliationReport report = report(result, completedFrom, completedTo);
+            report.setChunks(chunks.size());
+            report.setTookMs(System.currentTimeMillis() - start);
+            return report;
+        }
+    }
+
+    private StatementFile.Header matchHeader(long line, List<String> fields) {
+        int content = -1;
+        int amount = -1;
+        int reference = -1;
+        int date = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            String name = StatementFile.normalize(fields.get(i));
+            if (content < 0 && matches(config.getContentColumns(), name)) {
+                content = i;
+            } else if (amount < 0 && matches(config.getAmountColumns(), name)) {
+                amount = i;
+            } else if (reference < 0 && matches(config.getReferenceColumns(), name)) {
+                reference = i;
+            } else if (date < 0 && matches(config.getDateColumns(), name)) {
+                date = i;
+            }
+        }
+        return content >= 0 && amount >= 0 ? new StatementFile.Header(content, amount, reference, date, line) : null;
+    }
+
+    private static boolean matches(List<String> names, String name) {
+        for (String candidate : names) {
+            if (StatementFile.normalize(candidate).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class ChunkTask extends RecursiveTask<ChunkResult> {
+        private final StatementFile file;
+        private final StatementFile.Header header;
+        private final List<StatementFile.Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(StatementFile file, StatementFile.Header header, List<StatementFile.Chunk> chunks, int from, int to) {
+            this.file = file;
+            this.header = header;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (to - from == 1) {
+                ChunkResult result = new ChunkResult();
+                try {
+                    file.forEachRecord(chunks.get(from), (line, fields) -> match(header, line, fields, result));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(file, header, chunks, from, middle);
+            left.fork();
+            ChunkResult right = new ChunkTask(file, header, chunks, middle, to).compute();
+            // Left first so sample rows stay in statement order
+            return left.join().merge(right, config.getMaxReportRows());
+        }
+    }
+
+    private void match(StatementFile.Header header, long line, List<String> fields, ChunkResult result) {
+        result.rows++;
+        if (fields.size() <= Math.max(header.content, header.amount)) {
+            result.malformed++;
+            return;
+        }
+        Long amountMinor = parseAmountMinor(fields.get(header.amount));
+        if (amountMinor == null) {
+            result.malformed++;
+            return;
+        }
+        if (amountMinor <= 0) {
+            result.ignored++;
+            return;
+        }
+        result.credits++;
+
+        String content = fields.get(header.content);
+        List<String> orderIds = automaton.findAll(content);
+        if (orderIds.size() == 1) {
+            int order = orderIndex.get(orderIds.get(0));
+            receivedMinor.addAndGet(order, amountMinor);
+            bankRows.incrementAndGet(order);
+            result.matched++;
+            return;
+        }
+
+        result.unmatched++;
+        result.unmatchedMinor += amountMinor;
+        if (result.samples.size() < config.getMaxReportRows()) {
+            result.samples.add(ReconciliationReport.Transfer.builder()
+                    .line(line)
+                    .date(column(fields, header.date))
+                    .reference(column(fields, header.reference))
+                    .amount(PaymentCodec.fromMinorUnits(amountMinor))
+                    .content(content)
+                    .reason(orderIds.isEmpty() ? "NO_ORDER" : "MULTIPLE_ORDERS")
+                    .orderIds(orderIds.isEmpty() ? null : orderIds)
+                    .build());
+        }
+    }
+
+    private static String column(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    private ReconciliationReport report(ChunkResult result, Date completedFrom, Date completedTo) {
+        int maxRows = config.getMaxReportRows();
+        List<ReconciliationReport.OrderDiscrepancy> underpaid = new ArrayList<>();
+        List<ReconciliationReport.OrderDiscrepancy> successWithoutBankRow = new ArrayList<>();
+        List<ReconciliationReport.OrderDiscrepancy> paidNotConfirmed = new ArrayList<>();
+        long underpaidCount = 0;
+        long successWithoutBankRowCount = 0;
+        long paidNotConfirmedCount = 0;
+
+        for (int i = 0; i < payments.size(); i++) {
+            Payment payment = payments.get(i);
+            long received = receivedMinor.get(i);
+            long expected = payment.getAmount() != null ? PaymentCodec.toMinorUnits(payment.getAmount()) : 0;
+
+            if (received == 0) {
+                if (payment.getStatus() == PaymentStatus.SUCCESS && within(payment.getCompletedAt(), completedFrom, completedTo)) {
+                    successWithoutBankRowCount++;
+                    addCapped(successWithoutBankRow, discrepancy(payment, i), maxRows);
+                }
+            } else if (received < expected) {
+                underpaidCount++;
+                addCapped(underpaid, discrepancy(payment, i), maxRows);
+            } else if (payment.getStatus() != PaymentStatus.SUCCESS) {
+                paidNotConfirmedCount++;
+                addCapped(paidNotConfirmed, discrepancy(payment, i), maxRows);
+            }
+        }
+
+        return ReconciliationReport.builder()
+                .statementRows(result.rows)
+                .creditRows(result.credits)
+                .matchedRows(result.matched)
+                .ignoredRows(result.ignored)
+                .malformedRows(result.malformed)
+                .paymentsChecked(payments.size())
+                .unmatchedTransferCount(result.unmatched)
+                .unmatchedTransferAmount(PaymentCodec.fromMinorUnits(result.unmatchedMinor))
+                .unmatchedTransfers(result.samples)
+                .underpaidCount(underpaidCount)
+                .underpaid(underpaid)
+                .successWithoutBankRowCount(successWithoutBankRowCount)
+                .successWithoutBankRow(successWithoutBankRow)
+                .paidNotConfirmedCount(paidNotConfirmedCount)
+                .paidNotConfirmed(paidNotConfirmed)
+                .build();
+    }
+
+    private ReconciliationReport.OrderDiscrepancy discrepancy(Payment payment, int index) {
+        return ReconciliationReport.OrderDiscrepancy.builder()
+                .orderId(payment.getOrderId())
+                .status(payment.getStatus())
+                .expectedAmount(payment.getAmount())
+                .receivedAmount(PaymentCodec.fromMinorUnits(receivedMinor.get(index)))
+                .bankRows(bankRows.get(index))
+                .createdAt(payment.getCreatedAt())
+                .completedAt(payment.getCompletedAt())
+                .build();
+    }
+
+    private static <T> void addCapped(List<T> list, T item, int max) {
+        if (list.size() < max) {
+            list.add(item);
+        }
+    }
+
+    private static boolean within(Date date, Date from, Date to) {
+        return date != null && !date.before(from) && date.before(to);
+    }
+
+    /**
+     * Amount in minor units from a bank export cell such as "1,500,000", "1.500.000", "+150000.00"
+     * or "-20,000 VND"; null if there are no digits. With both separators present the last one is
+     * the decimal point; a single separator is decimal only when one or two digits follow it once.
+     */
+    static Long parseAmountMinor(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        StringBuilder cleaned = new StringBuilder(raw.length());
+        boolean negative = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == ',') {
+                cleaned.append(c);
+            } else if (c == '-' && cleaned.length() == 0) {
+                negative = true;
+            }
+        }
+        String value = cleaned.toString();
+        if (value.chars().noneMatch(Character::isDigit)) {
+            return null;
+        }
+
+        int lastDot = value.lastIndexOf('.');
+        int lastComma = value.lastIndexOf(',');
+        int decimal = -1;
+        if (lastDot >= 0 && lastComma >= 0) {
+            decimal = Math.max(lastDot, lastComma);
+        } else if (lastDot >= 0 || lastComma >= 0) {
+            char separator = lastDot >= 0 ? '.' : ',';
+            int last = Math.max(lastDot, lastComma);
+            int digitsAfter = value.length() - last - 1;
+            if (value.indexOf(separator) == last && digitsAfter >= 1 && digitsAfter <= 2) {
+                decimal = last;
+            }
+        }
+
+        String integerPart = (decimal >= 0 ? value.substring(0, decimal) : value).replaceAll("[.,]", "");
+        String fraction = decimal >= 0 ? value.substring(decimal + 1).replaceAll("[.,]", "") : "";
+        try {
+            BigDecimal amount = new BigDecimal((integerPart.isEmpty() ? "0" : integerPart)
+                    + (fraction.isEmpty() ? "" : "." + fraction));
+            long minor = PaymentCodec.toMinorUnits(amount);
+            return negative ? -minor : minor;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class ChunkResult {
+        long rows;
+        long credits;
+        long matched;
+        long ignored;
+        long malformed;
+        long unmatched;
+        long unmatchedMinor;
+        final List<ReconciliationReport.Transfer> samples = new ArrayList<>();
+
+        ChunkResult merge(ChunkResult other, int maxSamples) {
+            rows += other.rows;
+            credits += other.credits;
+            matched += other.matched;
+            ignored += other.ignored;
+            malformed += other.malformed;
+            unmatched += other.unmatched;
+            unmatchedMinor += other.unmatchedMinor;
+            for (ReconciliationReport.Transfer sample : other.samples) {
+                addCapped(samples, sample, maxSamples);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.payment_dormdeli.reconciliation;
+
+import com.example.payment_dormdeli.config.ReconciliationConfig;
+import com.example.payment_dormdeli.dto.ReconciliationReport;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reconciles an uploaded bank statement against the SePay payments of a date range.
+ *
+ * Runs on its own fork/join pool, so a large statement neither holds the request deadline nor
+ * competes with the common pool. Payments are loaded for the range plus lookbackDays before it,
+ * since a transfer can settle an order created a few days earlier.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementReconciliationService implements MetricsSource {
+
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private final ReconciliationConfig reconciliationConfig;
+    private final PaymentRepository paymentRepository;
+
+    private ForkJoinPool pool;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastRows;
+    private volatile long lastTookMs;
+
+    @PostConstruct
+    public void start() {
+        int parallelism = reconciliationConfig.getParallelism() > 0
+                ? reconciliationConfig.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Match the statement against SePay payments; from and to are inclusive days in Vietnam time
+     */
+    public ReconciliationReport reconcile(Path statement, LocalDate from, LocalDate to) throws IOException {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' is before 'from'");
+        }
+        Date periodStart = Date.from(from.atStartOfDay(VN_ZONE).toInstant());
+        Date periodEnd = Date.from(to.plusDays(1).atStartOfDay(VN_ZONE).toInstant());
+
+        runs.increment();
+        ForkJoinTask<ReconciliationReport> task = pool.submit(() -> {
+            List<Payment> payments = loadPayments(
+                    Date.from(from.minusDays(reconciliationConfig.getLookbackDays()).atStartOfDay(VN_ZONE).toInstant()),
+                    periodEnd);
+            try {
+                return new StatementReconciliation(reconciliationConfig, pool, payments)
+                        .run(statement, periodStart, periodEnd);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            ReconciliationReport report = task.get();
+            report.setFrom(from.toString());
+            report.setTo(to.toString());
+            lastRows = report.getStatementRows();
+            lastTookMs = report.getTookMs();
+            log.info("Reconciled statement for {}..{}: {} rows, {} payments, {} unmatched transfers in {} ms",
+                    from, to, report.getStatementRows(), report.getPaymentsChecked(),
+                    report.getUnmatchedTransferCount(), report.getTookMs());
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            throw new RuntimeException("Interrupted while reconciling statement", e);
+        } catch (ExecutionException e) {
+            failures.increment();
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Error reconciling statement", cause);
+        }
+    }
+
+    private List<Payment> loadPayments(Date from, Date to) {
+        int pageSize = Math.max(1, reconciliationConfig.getPageSize());
+        List<Payment> payments = new ArrayList<>();
+        Payment last = null;
+        while (true) {
+            List<Payment> page = paymentRepository.findCreatedBetween(from, to, last, pageSize);
+            for (Payment payment : page) {
+                if (payment.getPaymentMethod() == PaymentMethod.SEPAY && payment.getOrderId() != null) {
+                    payments.add(payment);
+                }
+            }
+            if (page.size() < pageSize) {
+                return payments;
+            }
+            last = page.get(page.size() - 1);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "reconciliation";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runs", runs.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("lastRows", lastRows);
+        metrics.put("lastTookMs", lastTookMs);
+        metrics.put("parallelism", pool.getParallelism());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
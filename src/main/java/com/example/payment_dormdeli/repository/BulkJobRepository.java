@@ -0,0 +1,299 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.model.BulkJob;
+import com.example.payment_dormdeli.model.BulkJobState;
+import com.example.payment_dormdeli.model.BulkOperation;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Bulk jobs and their progress, one document per job.
+ *
+ * Every state change of an existing job runs in a transaction on its document, so instances
+ * sharing the collection agree on who runs a job: claim moves it from QUEUED to RUNNING under a
+ * new owner and lease, saveClaimed only writes while that owner still holds it, and pause and
+ * resume are read and written in one go rather than overwriting a concurrent checkpoint.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class BulkJobRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String COLLECTION_NAME = "bulk_jobs";
+
+    public BulkJob save(BulkJob job) {
+        try {
+            if (job.getId() == null) {
+                job.setId(UUID.randomUUID().toString());
+                job.setCreatedAt(new Date());
+            }
+            job.setUpdatedAt(new Date());
+            Deadline.await(firestore.collection(COLLECTION_NAME).document(job.getId()).set(encode(job)));
+            return job;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error saving bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error saving bulk job", e);
+        }
+    }
+
+    public Optional<BulkJob> findById(String id) {
+        try {
+            DocumentSnapshot document = Deadline.await(firestore.collection(COLLECTION_NAME).document(id).get());
+            return document.exists() ? Optional.of(decode(document)) : Optional.empty();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding bulk job: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Most recent jobs first, without their orderId lists
+     */
+    public List<BulkJob> findRecent(int limit) {
+        try {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .orderBy("createdAt", Query.Direction.DESCENDING)
+                    .limit(limit);
+            List<BulkJob> jobs = new ArrayList<>();
+            for (QueryDocumentSnapshot document : Deadline.await(query.get()).getDocuments()) {
+                BulkJob job = decode(document);
+                job.setOrderIds(null);
+                jobs.add(job);
+            }
+            return jobs;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding bulk jobs: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public List<BulkJob> findByState(BulkJobState state) {
+        try {
+            List<BulkJob> jobs = new ArrayList<>();
+            for (QueryDocumentSnapshot document : Deadline.await(firestore.collection(COLLECTION_NAME)
+                    .whereEqualTo("state", state.name()).get()).getDocuments()) {
+                jobs.add(decode(document));
+            }
+            return jobs;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding {} bulk jobs: {}", state, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Take a QUEUED job for one run: RUNNING, held by owner until now + leaseMs.
+     * Empty if the job is gone or not QUEUED (e.g. another instance claimed it first).
+     */
+    public Optional<BulkJob> claim(String jobId, String owner, long leaseMs) {
+        DocumentReference reference = firestore.collection(COLLECTION_NAME).document(jobId);
+        try {
+            return Optional.ofNullable(Deadline.await(firestore.runTransaction(transaction -> {
+                DocumentSnapshot document = transaction.get(reference).get();
+                if (!document.exists()) {
+                    return null;
+                }
+                BulkJob job = decode(document);
+                if (job.getState() != BulkJobState.QUEUED) {
+                    return null;
+                }
+                Date now = new Date();
+                job.setState(BulkJobState.RUNNING);
+                job.setOwner(owner);
+                job.setLeaseUntil(new Date(now.getTime() + leaseMs));
+                job.setLastError(null);
+                if (job.getStartedAt() == null) {
+                    job.setStartedAt(now);
+                }
+                job.setUpdatedAt(now);
+                transaction.set(reference, encode(job));
+                return job;
+            })));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error claiming bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error claiming bulk job", e);
+        }
+    }
+
+    /**
+     * Save the progress of a claimed job and renew its lease, unless the claim has been lost
+     * (the job was interrupted and claimed again); false then, and nothing is written.
+     * While RUNNING the stored pause flag is kept and copied onto the job; any other state
+     * releases the claim.
+     */
+    public boolean saveClaimed(BulkJob job, long leaseMs) {
+        DocumentReference reference = firestore.collection(COLLECTION_NAME).document(job.getId());
+        String owner = job.getOwner();
+        try {
+            return Deadline.await(firestore.runTransaction(transaction -> {
+                DocumentSnapshot document = transaction.get(reference).get();
+                if (owner == null || !document.exists() || !owner.equals(document.getString("owner"))) {
+                    return false;
+                }
+                Date now = new Date();
+                if (job.getState() == BulkJobState.RUNNING) {
+                    job.setOwner(owner);
+                    job.setLeaseUntil(new Date(now.getTime() + leaseMs));
+                    job.setPauseRequested(Boolean.TRUE.equals(document.getBoolean("pauseRequested")));
+                } else {
+                    job.setOwner(null);
+                    job.setLeaseUntil(null);
+                    job.setPauseRequested(false);
+                }
+                job.setUpdatedAt(now);
+                transaction.set(reference, encode(job));
+                return true;
+            }));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error saving bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error saving bulk job", e);
+        }
+    }
+
+    /**
+     * Apply change to a job currently in one of the given states.
+     * NoSuchElementException if there is no such job, IllegalStateException if it is in another state.
+     */
+    public BulkJob update(String jobId, Set<BulkJobState> from, Consumer<BulkJob> change) {
+        DocumentReference reference = firestore.collection(COLLECTION_NAME).document(jobId);
+        AtomicBoolean changed = new AtomicBoolean();
+        BulkJob job;
+        try {
+            job = Deadline.await(firestore.runTransaction(transaction -> {
+                DocumentSnapshot document = transaction.get(reference).get();
+                changed.set(false);
+                if (!document.exists()) {
+                    return null;
+                }
+                BulkJob current = decode(document);
+                if (from.contains(current.getState())) {
+                    change.accept(current);
+                    current.setUpdatedAt(new Date());
+                    transaction.set(reference, encode(current));
+                    changed.set(true);
+                }
+                return current;
+            }));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error updating bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error updating bulk job", e);
+        }
+        if (job == null) {
+            throw new NoSuchElementException("Bulk job not found: " + jobId);
+        }
+        if (!changed.get()) {
+            throw new IllegalStateException("Bulk job " + jobId + " is " + job.getState());
+        }
+        return job;
+    }
+
+    /**
+     * Mark RUNNING jobs whose lease has run out INTERRUPTED: the instance running them stopped
+     * or lost touch with Firestore. Returns the jobs marked.
+     */
+    public List<BulkJob> interruptExpired() {
+        Query running = firestore.collection(COLLECTION_NAME).whereEqualTo("state", BulkJobState.RUNNING.name());
+        try {
+            return Deadline.await(firestore.runTransaction(transaction -> {
+                Date now = new Date();
+                List<BulkJob> interrupted = new ArrayList<>();
+                for (QueryDocumentSnapshot document : transaction.get(running).get().getDocuments()) {
+                    BulkJob job = decode(document);
+                    if (job.getLeaseUntil() != null && job.getLeaseUntil().after(now)) {
+                        continue;
+                    }
+                    job.setState(BulkJobState.INTERRUPTED);
+                    job.setOwner(null);
+                    job.setLeaseUntil(null);
+                    job.setUpdatedAt(now);
+                    transaction.set(document.getReference(), encode(job));
+                    interrupted.add(job);
+                }
+                return interrupted;
+            }));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error interrupting expired bulk jobs: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private Map<String, Object> encode(BulkJob job) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("operation", job.getOperation() != null ? job.getOperation().name() : null);
+        fields.put("state", job.getState() != null ? job.getState().name() : null);
+        fields.put("reason", job.getReason());
+        fields.put("orderIds", job.getOrderIds());
+        fields.put("filterStatus", job.getFilterStatus() != null ? job.getFilterStatus().name() : null);
+        fields.put("filterMethod", job.getFilterMethod() != null ? job.getFilterMethod().name() : null);
+        fields.put("createdAfter", PaymentCodec.toTimestamp(job.getCreatedAfter()));
+        fields.put("createdBefore", PaymentCodec.toTimestamp(job.getCreatedBefore()));
+        fields.put("cursorIndex", job.getCursorIndex());
+        fields.put("cursorCreatedAt", PaymentCodec.toTimestamp(job.getCursorCreatedAt()));
+        fields.put("cursorPaymentId", job.getCursorPaymentId());
+        fields.put("inFlightPaymentIds", job.getInFlightPaymentIds());
+        fields.put("owner", job.getOwner());
+        fields.put("leaseUntil", PaymentCodec.toTimestamp(job.getLeaseUntil()));
+        fields.put("pauseRequested", job.isPauseRequested());
+        fields.put("processed", job.getProcessed());
+        fields.put("succeeded", job.getSucceeded());
+        fields.put("skipped", job.getSkipped());
+        fields.put("failed", job.getFailed());
+        fields.put("failedOrderIds", job.getFailedOrderIds());
+        fields.put("lastError", job.getLastError());
+        fields.put("createdAt", PaymentCodec.toTimestamp(job.getCreatedAt()));
+        fields.put("startedAt", PaymentCodec.toTimestamp(job.getStartedAt()));
+        fields.put("updatedAt", PaymentCodec.toTimestamp(job.getUpdatedAt()));
+        fields.put("finishedAt", PaymentCodec.toTimestamp(job.getFinishedAt()));
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkJob decode(DocumentSnapshot document) {
+        String operation = document.getString("operation");
+        String state = document.getString("state");
+        return BulkJob.builder()
+                .id(document.getId())
+                .operation(operation != null ? BulkOperation.valueOf(operation) : null)
+                .state(state != null ? BulkJobState.valueOf(state) : null)
+                .reason(document.getString("reason"))
+                .orderIds((List<String>) document.get("orderIds"))
+                .filterStatus(PaymentCodec.toPaymentStatus(document.get("filterStatus")))
+                .filterMethod(PaymentCodec.toPaymentMethod(document.get("filterMethod")))
+                .createdAfter(PaymentCodec.toDate(document.get("createdAfter")))
+                .createdBefore(PaymentCodec.toDate(document.get("createdBefore")))
+                .cursorIndex(longOf(document, "cursorIndex").intValue())
+                .cursorCreatedAt(PaymentCodec.toDate(document.get("cursorCreatedAt")))
+                .cursorPaymentId(document.getString("cursorPaymentId"))
+                .inFlightPaymentIds((List<String>) document.get("inFlightPaymentIds"))
+                .owner(document.getString("owner"))
+                .leaseUntil(PaymentCodec.toDate(document.get("leaseUntil")))
+                .pauseRequested(Boolean.TRUE.equals(document.getBoolean("pauseRequested")))
+                .processed(longOf(document, "processed"))
+                .succeeded(longOf(document, "succeeded"))
+                .skipped(longOf(document, "skipped"))
+                .failed(longOf(document, "failed"))
+                .failedOrderIds((List<String>) document.get("failedOrderIds"))
+                .lastError(document.getString("lastError"))
+                .createdAt(PaymentCodec.toDate(document.get("createdAt")))
+                .startedAt(PaymentCodec.toDate(document.get("startedAt")))
+                .updatedAt(PaymentCodec.toDate(document.get("updatedAt")))
+                .finishedAt(PaymentCodec.toDate(document.get("finishedAt")))
+                .build();
+    }
+
+    private static Long longOf(DocumentSnapshot document, String field) {
+        Long value = document.getLong(field);
+        return value != null ? value : 0L;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.model.IdempotencyRecord;
+import com.example.payment_dormdeli.model.IdempotencyState;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.Precondition;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Stored first responses of idempotent create requests.
+ * Expired records are removed by a Firestore TTL policy on expireAt:
+ * gcloud firestore fields ttls update expireAt --collection-group=idempotency_keys --enable-ttl
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String COLLECTION_NAME = "idempotency_keys";
+    // create() races lost to a record that then disappeared or was taken over again
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    /**
+     * Record of the key if it exists and has not expired (TTL deletion can lag by a day)
+     */
+    public Optional<IdempotencyRecord> findById(String id) {
+        try {
+            DocumentSnapshot document = Deadline.await(firestore.collection(COLLECTION_NAME).document(id).get());
+            if (!document.exists()) {
+                return Optional.empty();
+            }
+            IdempotencyRecord record = decode(document);
+            if (record.getExpireAt() != null && record.getExpireAt().before(new Date())) {
+                return Optional.empty();
+            }
+            return Optional.of(record);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding idempotency record: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reserve the key with the given PENDING record. Empty if this call now holds the key, else the
+     * record holding it: COMPLETED, or PENDING for a request still running here or on another instance.
+     * An expired record, or a PENDING one whose lease ran out, is taken over.
+     */
+    public Optional<IdempotencyRecord> reserve(IdempotencyRecord pending) {
+        DocumentReference document = firestore.collection(COLLECTION_NAME).document(pending.getId());
+        try {
+            for (int attempt = 0; attempt < MAX_RESERVE_ATTEMPTS; attempt++) {
+                try {
+                    Deadline.await(document.create(encode(pending)));
+                    return Optional.empty();
+                } catch (ExecutionException e) {
+                    if (statusOf(e.getCause()) != Status.Code.ALREADY_EXISTS) {
+                        throw e;
+                    }
+                }
+
+                DocumentSnapshot existing = Deadline.await(document.get());
+                if (!existing.exists()) {
+                    // Released or TTL-deleted since the create failed
+                    continue;
+                }
+                IdempotencyRecord holder = decode(existing);
+                Date now = new Date();
+                boolean expired = holder.getExpireAt() != null && holder.getExpireAt().before(now);
+                boolean abandoned = holder.getState() == IdempotencyState.PENDING
+                        && (holder.getLeaseUntil() == null || holder.getLeaseUntil().before(now));
+                if (!expired && !abandoned) {
+                    return Optional.of(holder);
+                }
+                try {
+                    Deadline.await(document.update(encode(pending), Precondition.updatedAt(existing.getUpdateTime())));
+                    return Optional.empty();
+                } catch (ExecutionException e) {
+                    if (statusOf(e.getCause()) != Status.Code.FAILED_PRECONDITION) {
+                        throw e;
+                    }
+                    // Another request took it over first
+                }
+            }
+            throw new RuntimeException("Could not reserve idempotency key after " + MAX_RESERVE_ATTEMPTS + " attempts");
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error reserving idempotency key: {}", e.getMessage());
+            throw new RuntimeException("Error reserving idempotency key", e);
+        }
+    }
+
+    /**
+     * Drop a reservation whose request failed, so a retry runs the create again
+     */
+    public void release(String id) {
+        try {
+            Deadline.await(firestore.collection(COLLECTION_NAME).document(id).delete());
+        } catch (InterruptedException | ExecutionException e) {
+            // The lease still runs out, after which a retry takes the key over
+            log.error("Error releasing idempotency key: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Store the record, replacing the reservation or an expired one with the same key
+     */
+    public void save(IdempotencyRecord record) {
+        try {
+            Deadline.await(firestore.collection(COLLECTION_NAME).document(record.getId()).set(encode(record)));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error saving idempotency record: {}", e.getMessage());
+            throw new RuntimeException("Error saving idempotency record", e);
+        }
+    }
+
+    /**
+     * gRPC status of a failed write, whichever exception type the client wrapped it in
+     */
+    private static Status.Code statusOf(Throwable error) {
+        if (error == null) {
+            return Status.Code.UNKNOWN;
+        }
+        if (error instanceof FirestoreException && ((FirestoreException) error).getStatus() != null) {
+            return ((FirestoreException) error).getStatus().getCode();
+        }
+        if (error instanceof ApiException) {
+            return Status.Code.valueOf(((ApiException) error).getStatusCode().getCode().name());
+        }
+        return statusOf(error.getCause());
+    }
+
+    private Map<String, Object> encode(IdempotencyRecord record) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("scope", record.getScope());
+        fields.put("requestHash", record.getRequestHash());
+        fields.put("state", record.getState() != null ? record.getState().name() : IdempotencyState.COMPLETED.name());
+        fields.put("leaseUntil", PaymentCodec.toTimestamp(record.getLeaseUntil()));
+        fields.put("response", record.getResponse() != null ? encode(record.getResponse()) : null);
+        fields.put("createdAt", PaymentCodec.toTimestamp(record.getCreatedAt()));
+        fields.put("expireAt", PaymentCodec.toTimestamp(record.getExpireAt()));
+        return fields;
+    }
+
+    private static Map<String, Object> encode(PaymentResponse response) {
+        Map<String, Object> stored = new HashMap<>();
+        stored.put("orderId", response.getOrderId());
+        stored.put("transactionId", response.getTransactionId());
+        stored.put("paymentUrl", response.getPaymentUrl());
+        stored.put("qrPayload", response.getQrPayload());
+        stored.put("status", response.getStatus() != null ? response.getStatus().name() : null);
+        if (response.getAmount() != null) {
+            stored.put("amountMinor", PaymentCodec.toMinorUnits(response.getAmount()));
+        }
+        stored.put("message", response.getMessage());
+        return stored;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IdempotencyRecord decode(DocumentSnapshot document) {
+        Map<String, Object> stored = (Map<String, Object>) document.get("response");
+        PaymentResponse response = null;
+        if (stored != null) {
+            Object amountMinor = stored.get("amountMinor");
+            response = PaymentResponse.builder()
+                    .orderId((String) stored.get("orderId"))
+                    .transactionId((String) stored.get("transactionId"))
+                    .paymentUrl((String) stored.get("paymentUrl"))
+                    .qrPayload((String) stored.get("qrPayload"))
+                    .status(PaymentCodec.toPaymentStatus((String) stored.get("status")))
+                    .amount(amountMinor != null ? PaymentCodec.fromMinorUnits(((Number) amountMinor).longValue()) : null)
+                    .message((String) stored.get("message"))
+                    .build();
+        }
+
+        String state = document.getString("state");
+        return IdempotencyRecord.builder()
+                .id(document.getId())
+                .scope(document.getString("scope"))
+                .requestHash(document.getString("requestHash"))
+                // Records written before reservations existed were always complete
+                .state(state != null ? IdempotencyState.valueOf(state) : IdempotencyState.COMPLETED)
+                .leaseUntil(PaymentCodec.toDate(document.get("leaseUntil")))
+                .response(response)
+                .createdAt(PaymentCodec.toDate(document.get("createdAt")))
+                .expireAt(PaymentCodec.toDate(document.get("expireAt")))
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cold storage for settled payments, partitioned by the month they were created (Vietnam time):
+ * payments_archive/{yyyyMM}/archived/{paymentId}. All months share the subcollection name, so
+ * lookups by orderId use one collection group query instead of probing every month.
+ *
+ * A payment is copied and deleted from the hot collection in the same batch. The delete carries
+ * the update time that was read, so a payment changed in the meantime fails the batch and is
+ * picked up again on the next run instead of being archived stale.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentArchiveRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String ARCHIVE_COLLECTION = "payments_archive";
+    private static final String MONTH_SUBCOLLECTION = "archived";
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    // Two writes per payment, under the 500 writes of a batch
+    private static final int MOVES_PER_BATCH = 200;
+    private static final int IN_QUERY_LIMIT = 10;
+
+    /**
+     * Move up to limit payments in the given statuses last updated before settledBefore,
+     * returning how many were moved
+     */
+    public int archiveBatch(Collection<PaymentStatus> statuses, Date settledBefore, int limit) {
+        List<String> statusNames = new ArrayList<>();
+        for (PaymentStatus status : statuses) {
+            statusNames.add(status.name());
+        }
+
+        List<QueryDocumentSnapshot> documents;
+        try {
+            documents = Deadline.await(firestore.collection(PaymentRepository.COLLECTION_NAME)
+                    .whereIn(PaymentCodec.STATUS, statusNames)
+                    .whereLessThan(PaymentCodec.UPDATED_AT, PaymentCodec.toTimestamp(settledBefore))
+                    .limit(limit)
+                    .get())
+                    .getDocuments();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding payments to archive: {}", e.getMessage());
+            throw new RuntimeException("Error finding payments to archive", e);
+        }
+
+        int moved = 0;
+        for (int i = 0; i < documents.size(); i += MOVES_PER_BATCH) {
+            List<QueryDocumentSnapshot> chunk = documents.subList(i, Math.min(i + MOVES_PER_BATCH, documents.size()));
+            WriteBatch batch = firestore.batch();
+            Date archivedAt = new Date();
+            for (QueryDocumentSnapshot document : chunk) {
+                Map<String, Object> fields = new HashMap<>(document.getData());
+                fields.put("archivedAt", PaymentCodec.toTimestamp(archivedAt));
+                batch.set(monthCollection(monthOf(PaymentCodec.decode(document))).document(document.getId()), fields);
+                batch.delete(document.getReference(), Precondition.updatedAt(document.getUpdateTime()));
+            }
+            try {
+                Deadline.await(batch.commit());
+                moved += chunk.size();
+            } catch (InterruptedException | ExecutionException e) {
+                // Usually a payment updated after it was read; the next run retries the rest
+                log.warn("Archive batch of {} payments not applied: {}", chunk.size(), e.getMessage());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Archived payment of the order, if any
+     */
+    public Optional<Payment> findByOrderId(String orderId) {
+        try {
+            List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collectionGroup(MONTH_SUBCOLLECTION)
+                    .whereEqualTo(PaymentCodec.ORDER_ID, orderId)
+                    .limit(1)
+                    .get())
+                    .getDocuments();
+
+            if (documents.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(PaymentCodec.decode(documents.get(0)));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding archived payment by orderId: {}", e.getMessage());
+            throw new RuntimeException("Error finding archived payment", e);
+        }
+    }
+
+    /**
+     * Archived payments of many orders, keyed by orderId. 'in' filters take at most 10 values,
+     * so the ids are chunked and all chunk queries are started before any is awaited.
+     */
+    public Map<String, Payment> findByOrderIds(Collection<String> orderIds) {
+        List<ApiFuture<QuerySnapshot>> futures = new ArrayList<>();
+        try {
+            List<String> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+            for (int i = 0; i < ids.size(); i += IN_QUERY_LIMIT) {
+                futures.add(firestore.collectionGroup(MONTH_SUBCOLLECTION)
+                        .whereIn(PaymentCodec.ORDER_ID, new ArrayList<>(ids.subList(i, Math.min(i + IN_QUERY_LIMIT, ids.size()))))
+                        .get());
+            }
+
+            Map<String, Payment> payments = new HashMap<>();
+            for (ApiFuture<QuerySnapshot> future : futures) {
+                for (QueryDocumentSnapshot document : Deadline.await(future).getDocuments()) {
+                    Payment payment = PaymentCodec.decode(document);
+                    payments.putIfAbsent(payment.getOrderId(), payment);
+                }
+            }
+            return payments;
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            log.error("Error finding archived payments by orderIds: {}", e.getMessage());
+            throw new RuntimeException("Error finding archived payments", e);
+        }
+    }
+
+    /**
+     * Archived payments of a user created in the months [from, to], newest month first.
+     * One query per month, all started before any is awaited.
+     */
+    public List<Payment> findByUserId(String userId, YearMonth from, YearMonth to) {
+        List<ApiFuture<QuerySnapshot>> futures = new ArrayList<>();
+        try {
+            for (YearMonth month = to; !month.isBefore(from); month = month.minusMonths(1)) {
+                futures.add(monthCollection(month)
+                        .whereEqualTo(PaymentCodec.USER_ID, userId)
+                        .get());
+            }
+
+            List<Payment> payments = new ArrayList<>();
+            for (ApiFuture<QuerySnapshot> future : futures) {
+                for (QueryDocumentSnapshot document : Deadline.await(future).getDocuments()) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+            }
+            return payments;
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            log.error("Error finding archived payments by userId: {}", e.getMessage());
+            throw new RuntimeException("Error finding archived payments", e);
+        }
+    }
+
+    static YearMonth monthOf(Payment payment) {
+        Date date = payment.getCreatedAt() != null ? payment.getCreatedAt() : payment.getUpdatedAt();
+        if (date == null) {
+            return YearMonth.of(1970, 1);
+        }
+        return YearMonth.from(date.toInstant().atZone(VN_ZONE));
+    }
+
+    private CollectionReference monthCollection(YearMonth month) {
+        return firestore.collection(ARCHIVE_COLLECTION)
+                .document(month.format(MONTH_FORMAT))
+                .collection(MONTH_SUBCOLLECTION);
+    }
+}
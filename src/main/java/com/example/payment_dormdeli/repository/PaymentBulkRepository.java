@@ -0,0 +1,245 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Payment reads and BulkWriter writes for bulk admin jobs.
+ *
+ * Each payment is written with an updatedAt precondition taken from the read, so a payment changed
+ * by a webhook or callback in the meantime is left alone rather than overwritten. BulkWriter writes
+ * are not atomic with each other: the ledger event, outbox records and stats counters are written
+ * after the payment write succeeded (see writeDependents), with ids that make repeats harmless.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentBulkRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private final PaymentEventRepository paymentEventRepository;
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final PaymentStatsRepository paymentStatsRepository;
+    private static final String COLLECTION_NAME = PaymentRepository.COLLECTION_NAME;
+    private static final int IN_QUERY_LIMIT = 10;
+
+    private static final Set<Status.Code> RETRYABLE = EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.ABORTED,
+            Status.Code.RESOURCE_EXHAUSTED, Status.Code.DEADLINE_EXCEEDED, Status.Code.INTERNAL);
+
+    /**
+     * Payment as read, with the update time its write is conditioned on
+     */
+    public static final class Candidate {
+        private final Payment payment;
+        private final Timestamp updateTime;
+
+        Candidate(DocumentSnapshot document) {
+            this.payment = PaymentCodec.decode(document);
+            this.updateTime = document.getUpdateTime();
+        }
+
+        public Payment getPayment() {
+            return payment;
+        }
+    }
+
+    public enum WriteOutcome {
+        OK,
+        // Precondition failed or the document is gone: changed by someone else since it was read
+        CONFLICT,
+        // create() of a document an earlier attempt already wrote
+        ALREADY_EXISTS,
+        FAILED
+    }
+
+    /**
+     * BulkWriter ramping up from initialOpsPerSecond to maxOpsPerSecond, retrying transient errors
+     * up to maxAttempts per write
+     */
+    public BulkWriter openWriter(int initialOpsPerSecond, int maxOpsPerSecond, int maxAttempts, LongAdder retries) {
+        BulkWriter writer = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(Math.min(initialOpsPerSecond, maxOpsPerSecond))
+                .setMaxOpsPerSecond(maxOpsPerSecond)
+                .build());
+        writer.addWriteErrorListener(error -> {
+            boolean retry = RETRYABLE.contains(error.getStatus().getCode()) && error.getFailedAttempts() < maxAttempts;
+            if (retry) {
+                retries.increment();
+            }
+            return retry;
+        });
+        return writer;
+    }
+
+    /**
+     * Page of payments in 'status' created in [createdAfter, createdBefore), oldest first,
+     * after the (startAfterCreatedAt, startAfterId) cursor when set
+     */
+    public List<Candidate> findPage(PaymentStatus status, Date createdAfter, Date createdBefore,
+                                    Date startAfterCreatedAt, String startAfterId, int limit) {
+        try {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .whereEqualTo(PaymentCodec.STATUS, status.name())
+                    .whereLessThan(PaymentCodec.CREATED_AT, PaymentCodec.toTimestamp(createdBefore));
+            if (createdAfter != null) {
+                query = query.whereGreaterThanOrEqualTo(PaymentCodec.CREATED_AT, PaymentCodec.toTimestamp(createdAfter));
+            }
+            query = query.orderBy(PaymentCodec.CREATED_AT)
+                    .orderBy(FieldPath.documentId())
+                    .limit(limit);
+            if (startAfterId != null) {
+                query = query.startAfter(PaymentCodec.toTimestamp(startAfterCreatedAt), startAfterId);
+            }
+
+            List<Candidate> candidates = new ArrayList<>();
+            for (QueryDocumentSnapshot document : query.get().get(30, TimeUnit.SECONDS).getDocuments()) {
+                candidates.add(new Candidate(document));
+            }
+            return candidates;
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            log.error("Error finding payments for bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error finding payments for bulk job", e);
+        }
+    }
+
+    /**
+     * Payments of the given orders, in no particular order; unknown orderIds are left out
+     */
+    public List<Candidate> findByOrderIds(List<String> orderIds) {
+        try {
+            List<ApiFuture<QuerySnapshot>> futures = new ArrayList<>();
+            for (int i = 0; i < orderIds.size(); i += IN_QUERY_LIMIT) {
+                futures.add(firestore.collection(COLLECTION_NAME)
+                        .whereIn(PaymentCodec.ORDER_ID, new ArrayList<Object>(
+                                orderIds.subList(i, Math.min(i + IN_QUERY_LIMIT, orderIds.size()))))
+                        .get());
+            }
+
+            List<Candidate> candidates = new ArrayList<>();
+            for (ApiFuture<QuerySnapshot> future : futures) {
+                for (QueryDocumentSnapshot document : future.get(30, TimeUnit.SECONDS).getDocuments()) {
+                    candidates.add(new Candidate(document));
+                }
+            }
+            return candidates;
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            log.error("Error finding payments by orderIds for bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error finding payments for bulk job", e);
+        }
+    }
+
+    public List<Candidate> findByIds(List<String> paymentIds) {
+        if (paymentIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            DocumentReference[] references = new DocumentReference[paymentIds.size()];
+            for (int i = 0; i < references.length; i++) {
+                references[i] = firestore.collection(COLLECTION_NAME).document(paymentIds.get(i));
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            for (DocumentSnapshot document : firestore.getAll(references).get(30, TimeUnit.SECONDS)) {
+                if (document.exists()) {
+                    candidates.add(new Candidate(document));
+                }
+            }
+            return candidates;
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            log.error("Error reading payments for bulk job: {}", e.getMessage());
+            throw new RuntimeException("Error reading payments for bulk job", e);
+        }
+    }
+
+    /**
+     * Write the candidate's payment, already moved to its new status by the caller,
+     * as the next version if it has not changed since it was read
+     */
+    public ApiFuture<WriteResult> writeTransition(BulkWriter writer, Candidate candidate) {
+        Payment payment = candidate.payment;
+        payment.setUpdatedAt(new Date());
+        payment.setVersion(payment.getVersion() != null ? payment.getVersion() + 1 : 1L);
+        return writer.update(firestore.collection(COLLECTION_NAME).document(payment.getId()),
+                PaymentCodec.encode(payment), Precondition.updatedAt(candidate.updateTime));
+    }
+
+    public ApiFuture<WriteResult> delete(BulkWriter writer, Candidate candidate) {
+        return writer.delete(firestore.collection(COLLECTION_NAME).document(candidate.payment.getId()),
+                Precondition.updatedAt(candidate.updateTime));
+    }
+
+    /**
+     * Ledger event and outbox records of a payment whose transition was written
+     */
+    public List<ApiFuture<WriteResult>> writeDependents(BulkWriter writer, Payment payment, String reason) {
+        List<ApiFuture<WriteResult>> results = new ArrayList<>();
+        results.addAll(paymentEventRepository.append(writer, payment, Collections.singletonList(PaymentEvent.builder()
+                .type(PaymentEventType.forStatus(payment.getStatus()))
+                .status(payment.getStatus())
+                .transactionId(payment.getTransactionId())
+                .errorMessage(reason)
+                .completedAt(payment.getCompletedAt())
+                .build())));
+        results.addAll(paymentOutboxRepository.add(writer, payment));
+        return results;
+    }
+
+    public List<ApiFuture<WriteResult>> recordTransitions(BulkWriter writer, List<Payment> payments, PaymentStatus previousStatus) {
+        return paymentStatsRepository.recordTransitions(writer, payments, previousStatus);
+    }
+
+    /**
+     * Send everything queued on the writer and wait for it
+     */
+    public void flush(BulkWriter writer, long timeoutMs) {
+        try {
+            writer.flush().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            log.error("Error flushing bulk writes: {}", e.getMessage());
+            throw new RuntimeException("Error flushing bulk writes", e);
+        }
+    }
+
+    /**
+     * Outcome of a write future after flush; message of the error for FAILED
+     */
+    public static WriteOutcome outcomeOf(ApiFuture<WriteResult> future, StringBuilder error) {
+        try {
+            future.get();
+            return WriteOutcome.OK;
+        } catch (ExecutionException e) {
+            Status.Code code = e.getCause() instanceof BulkWriterException
+                    ? ((BulkWriterException) e.getCause()).getStatus().getCode()
+                    : Status.Code.UNKNOWN;
+            if (code == Status.Code.FAILED_PRECONDITION || code == Status.Code.NOT_FOUND) {
+                return WriteOutcome.CONFLICT;
+            }
+            if (code == Status.Code.ALREADY_EXISTS) {
+                return WriteOutcome.ALREADY_EXISTS;
+            }
+            if (error != null) {
+                error.append(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+            return WriteOutcome.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return WriteOutcome.FAILED;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written mapping between Payment and its Firestore fields.
+ * Replaces the reflective toObject()/set(bean) mapper on the read and write paths.
+ *
+ * Amounts are stored as long minor units (amountMinor = amount x 100). Enums are stored by
+ * constant name, which is what status queries filter on, so constants must never be renamed.
+ * Documents written before this codec (reflective "amount" field) are still readable.
+ */
+@Slf4j
+public final class PaymentCodec {
+
+    static final String ID = "id";
+    static final String ORDER_ID = "orderId";
+    static final String TRANSACTION_ID = "transactionId";
+    static final String PAYMENT_METHOD = "paymentMethod";
+    static final String STATUS = "status";
+    static final String AMOUNT_MINOR = "amountMinor";
+    static final String LEGACY_AMOUNT = "amount";
+    static final String ORDER_INFO = "orderInfo";
+    static final String USER_ID = "userId";
+    static final String EXTRA_DATA = "extraData";
+    static final String PAYMENT_URL = "paymentUrl";
+    static final String ERROR_MESSAGE = "errorMessage";
+    static final String CREATED_AT = "createdAt";
+    static final String UPDATED_AT = "updatedAt";
+    static final String COMPLETED_AT = "completedAt";
+    static final String VERSION = "version";
+
+    private static final int AMOUNT_SCALE = 2;
+    private static final int FIELD_COUNT = 17;
+
+    private PaymentCodec() {
+    }
+
+    public static Map<String, Object> encode(Payment payment) {
+        Map<String, Object> fields = new HashMap<>(FIELD_COUNT * 4 / 3 + 1);
+        putIfPresent(fields, ID, payment.getId());
+        putIfPresent(fields, ORDER_ID, payment.getOrderId());
+        putIfPresent(fields, TRANSACTION_ID, payment.getTransactionId());
+        if (payment.getPaymentMethod() != null) {
+            fields.put(PAYMENT_METHOD, payment.getPaymentMethod().name());
+        }
+        if (payment.getStatus() != null) {
+            fields.put(STATUS, payment.getStatus().name());
+        }
+        if (payment.getAmount() != null) {
+            fields.put(AMOUNT_MINOR, toMinorUnits(payment.getAmount()));
+        }
+        putIfPresent(fields, ORDER_INFO, payment.getOrderInfo());
+        putIfPresent(fields, USER_ID, payment.getUserId());
+        putIfPresent(fields, EXTRA_DATA, payment.getExtraData());
+        putIfPresent(fields, PAYMENT_URL, payment.getPaymentUrl());
+        putIfPresent(fields, ERROR_MESSAGE, payment.getErrorMessage());
+        putIfPresent(fields, CREATED_AT, toTimestamp(payment.getCreatedAt()));
+        putIfPresent(fields, UPDATED_AT, toTimestamp(payment.getUpdatedAt()));
+        putIfPresent(fields, COMPLETED_AT, toTimestamp(payment.getCompletedAt()));
+        putIfPresent(fields, VERSION, payment.getVersion());
+        return fields;
+    }
+
+    public static Payment decode(DocumentSnapshot document) {
+        return decode(document.getId(), document.getData());
+    }
+
+    public static Payment decode(String id, Map<String, Object> fields) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setOrderId((String) fields.get(ORDER_ID));
+        payment.setTransactionId((String) fields.get(TRANSACTION_ID));
+        payment.setPaymentMethod(toPaymentMethod(fields.get(PAYMENT_METHOD)));
+        payment.setStatus(toPaymentStatus(fields.get(STATUS)));
+        payment.setAmount(toAmount(fields.get(AMOUNT_MINOR), fields.get(LEGACY_AMOUNT)));
+        payment.setOrderInfo((String) fields.get(ORDER_INFO));
+        payment.setUserId((String) fields.get(USER_ID));
+        payment.setExtraData((String) fields.get(EXTRA_DATA));
+        payment.setPaymentUrl((String) fields.get(PAYMENT_URL));
+        payment.setErrorMessage((String) fields.get(ERROR_MESSAGE));
+        payment.setCreatedAt(toDate(fields.get(CREATED_AT)));
+        payment.setUpdatedAt(toDate(fields.get(UPDATED_AT)));
+        payment.setCompletedAt(toDate(fields.get(COMPLETED_AT)));
+        Object version = fields.get(VERSION);
+        payment.setVersion(version instanceof Number ? ((Number) version).longValue() : null);
+        return payment;
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(AMOUNT_SCALE).longValue();
+    }
+
+    private static BigDecimal toAmount(Object minorUnits, Object legacyAmount) {
+        if (minorUnits instanceof Number) {
+            return fromMinorUnits(((Number) minorUnits).longValue());
+        }
+        if (legacyAmount instanceof Long || legacyAmount instanceof Integer) {
+            return BigDecimal.valueOf(((Number) legacyAmount).longValue());
+        }
+        if (legacyAmount instanceof Number) {
+            return BigDecimal.valueOf(((Number) legacyAmount).doubleValue());
+        }
+        if (legacyAmount instanceof String) {
+            return new BigDecimal((String) legacyAmount);
+        }
+        return null;
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, AMOUNT_SCALE).stripTrailingZeros();
+    }
+
+    static PaymentMethod toPaymentMethod(Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch ((String) value) {
+            case "SEPAY":
+                return PaymentMethod.SEPAY;
+            case "VNPAY":
+                return PaymentMethod.VNPAY;
+            default:
+                log.warn("Unknown payment method in document: {}", value);
+                return null;
+        }
+    }
+
+    static PaymentStatus toPaymentStatus(Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch ((String) value) {
+            case "PENDING":
+                return PaymentStatus.PENDING;
+            case "PROCESSING":
+                return PaymentStatus.PROCESSING;
+            case "SUCCESS":
+                return PaymentStatus.SUCCESS;
+            case "FAILED":
+                return PaymentStatus.FAILED;
+            case "CANCELLED":
+                return PaymentStatus.CANCELLED;
+            case "EXPIRED":
+                return PaymentStatus.EXPIRED;
+            default:
+                log.warn("Unknown payment status in document: {}", value);
+                return null;
+        }
+    }
+
+    static Timestamp toTimestamp(Date date) {
+        return date != null ? Timestamp.of(date) : null;
+    }
+
+    static Date toDate(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate();
+        }
+        if (value instanceof Date) {
+            return (Date) value;
+        }
+        return null;
+    }
+
+    private static void putIfPresent(Map<String, Object> fields, String name, Object value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+}
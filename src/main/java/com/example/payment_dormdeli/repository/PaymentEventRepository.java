@@ -0,0 +1,222 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Append-only ledger of payment events plus periodic per-payment snapshots.
+ *
+ * Event documents are keyed {paymentId}_{sequence}_{index} and written with create(),
+ * so two writers racing on the same payment version make the whole commit fail
+ * instead of silently overwriting each other.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentEventRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String EVENTS_COLLECTION = "payment_events";
+    private static final String SNAPSHOTS_COLLECTION = "payment_snapshots";
+
+    @Value("${payment.ledger.snapshot-interval:10}")
+    private int snapshotInterval;
+
+    @Value("${payment.ledger.max-window-events:1000}")
+    private int maxWindowEvents;
+
+    /**
+     * Add the events for the payment's current version to the batch,
+     * plus a snapshot of the payment every snapshotInterval versions
+     */
+    public void append(WriteBatch batch, Payment payment, List<PaymentEvent> events) {
+        for (PaymentEvent event : prepare(payment, events)) {
+            batch.create(firestore.collection(EVENTS_COLLECTION).document(event.getId()), encode(event));
+        }
+
+        if (needsSnapshot(payment, events)) {
+            batch.set(firestore.collection(SNAPSHOTS_COLLECTION).document(payment.getId()), snapshotOf(payment));
+        }
+    }
+
+    /**
+     * Same as append(WriteBatch, ...) for bulk operations; the writes are not atomic with the payment's,
+     * but event ids are deterministic, so a repeated append fails with ALREADY_EXISTS instead of duplicating
+     */
+    public List<ApiFuture<WriteResult>> append(BulkWriter writer, Payment payment, List<PaymentEvent> events) {
+        List<ApiFuture<WriteResult>> results = new ArrayList<>(events.size() + 1);
+        for (PaymentEvent event : prepare(payment, events)) {
+            results.add(writer.create(firestore.collection(EVENTS_COLLECTION).document(event.getId()), encode(event)));
+        }
+
+        if (needsSnapshot(payment, events)) {
+            results.add(writer.set(firestore.collection(SNAPSHOTS_COLLECTION).document(payment.getId()), snapshotOf(payment)));
+        }
+        return results;
+    }
+
+    private List<PaymentEvent> prepare(Payment payment, List<PaymentEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            PaymentEvent event = events.get(i);
+            event.setPaymentId(payment.getId());
+            event.setOrderId(payment.getOrderId());
+            event.setSequence(payment.getVersion());
+            event.setIndex(i);
+            event.setOccurredAt(payment.getUpdatedAt());
+            event.setId(String.format("%s_%010d_%d", payment.getId(), payment.getVersion(), i));
+        }
+        return events;
+    }
+
+    private boolean needsSnapshot(Payment payment, List<PaymentEvent> events) {
+        return !events.isEmpty() && payment.getVersion() % Math.max(1, snapshotInterval) == 0;
+    }
+
+    private Map<String, Object> snapshotOf(Payment payment) {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("orderId", payment.getOrderId());
+        snapshot.put("sequence", payment.getVersion());
+        snapshot.put("state", PaymentCodec.encode(payment));
+        return snapshot;
+    }
+
+    /**
+     * Latest snapshot for the order, if one has been taken
+     */
+    public Optional<Payment> findSnapshot(String orderId) {
+        try {
+            List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collection(SNAPSHOTS_COLLECTION)
+                    .whereEqualTo("orderId", orderId)
+                    .limit(1)
+                    .get())
+                    .getDocuments();
+
+            if (documents.isEmpty()) {
+                return Optional.empty();
+            }
+            QueryDocumentSnapshot document = documents.get(0);
+            // Written by snapshotOf as a map field, which Firestore always reads back as Map<String, Object>
+            @SuppressWarnings("unchecked")
+            Map<String, Object> state = (Map<String, Object>) document.get("state");
+            return Optional.of(PaymentCodec.decode(document.getId(), state));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding payment snapshot: {}", e.getMessage());
+            throw new RuntimeException("Error finding payment snapshot", e);
+        }
+    }
+
+    /**
+     * Events of one order with a sequence greater than afterSequence, in ledger order
+     */
+    public List<PaymentEvent> findByOrderId(String orderId, long afterSequence) {
+        try {
+            List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collection(EVENTS_COLLECTION)
+                    .whereEqualTo("orderId", orderId)
+                    .whereGreaterThan("sequence", afterSequence)
+                    .orderBy("sequence")
+                    .orderBy("index")
+                    .get())
+                    .getDocuments();
+
+            List<PaymentEvent> events = new ArrayList<>(documents.size());
+            for (QueryDocumentSnapshot document : documents) {
+                events.add(decode(document));
+            }
+            return events;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding payment events by orderId: {}", e.getMessage());
+            throw new RuntimeException("Error finding payment events", e);
+        }
+    }
+
+    /**
+     * Events of all orders that occurred in [from, to), in time order
+     */
+    public List<PaymentEvent> findBetween(Date from, Date to) {
+        try {
+            List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collection(EVENTS_COLLECTION)
+                    .whereGreaterThanOrEqualTo("occurredAt", PaymentCodec.toTimestamp(from))
+                    .whereLessThan("occurredAt", PaymentCodec.toTimestamp(to))
+                    .orderBy("occurredAt")
+                    .limit(maxWindowEvents)
+                    .get())
+                    .getDocuments();
+
+            List<PaymentEvent> events = new ArrayList<>(documents.size());
+            for (QueryDocumentSnapshot document : documents) {
+                events.add(decode(document));
+            }
+            return events;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding payment events by time: {}", e.getMessage());
+            throw new RuntimeException("Error finding payment events", e);
+        }
+    }
+
+    private Map<String, Object> encode(PaymentEvent event) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("paymentId", event.getPaymentId());
+        fields.put("orderId", event.getOrderId());
+        fields.put("sequence", event.getSequence());
+        fields.put("index", event.getIndex());
+        fields.put("type", event.getType().name());
+        fields.put("occurredAt", PaymentCodec.toTimestamp(event.getOccurredAt()));
+        putIfPresent(fields, "status", event.getStatus() != null ? event.getStatus().name() : null);
+        putIfPresent(fields, "paymentMethod", event.getPaymentMethod() != null ? event.getPaymentMethod().name() : null);
+        putIfPresent(fields, "amountMinor", event.getAmount() != null ? PaymentCodec.toMinorUnits(event.getAmount()) : null);
+        putIfPresent(fields, "orderInfo", event.getOrderInfo());
+        putIfPresent(fields, "userId", event.getUserId());
+        putIfPresent(fields, "extraData", event.getExtraData());
+        putIfPresent(fields, "paymentUrl", event.getPaymentUrl());
+        putIfPresent(fields, "transactionId", event.getTransactionId());
+        putIfPresent(fields, "errorMessage", event.getErrorMessage());
+        putIfPresent(fields, "detail", event.getDetail());
+        putIfPresent(fields, "completedAt", PaymentCodec.toTimestamp(event.getCompletedAt()));
+        return fields;
+    }
+
+    private PaymentEvent decode(DocumentSnapshot document) {
+        Long amountMinor = document.getLong("amountMinor");
+        Long index = document.getLong("index");
+
+        return PaymentEvent.builder()
+                .id(document.getId())
+                .paymentId(document.getString("paymentId"))
+                .orderId(document.getString("orderId"))
+                .sequence(document.getLong("sequence"))
+                .index(index != null ? index.intValue() : 0)
+                .type(PaymentEventType.valueOf(document.getString("type")))
+                .status(PaymentCodec.toPaymentStatus(document.getString("status")))
+                .paymentMethod(PaymentCodec.toPaymentMethod(document.getString("paymentMethod")))
+                .amount(amountMinor != null ? PaymentCodec.fromMinorUnits(amountMinor) : null)
+                .orderInfo(document.getString("orderInfo"))
+                .userId(document.getString("userId"))
+                .extraData(document.getString("extraData"))
+                .paymentUrl(document.getString("paymentUrl"))
+                .transactionId(document.getString("transactionId"))
+                .errorMessage(document.getString("errorMessage"))
+                .detail(document.getString("detail"))
+                .completedAt(PaymentCodec.toDate(document.get("completedAt")))
+                .occurredAt(PaymentCodec.toDate(document.get("occurredAt")))
+                .build();
+    }
+
+    private void putIfPresent(Map<String, Object> fields, String name, Object value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.config.OutboxConfig;
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.model.OutboxRecord;
+import com.example.payment_dormdeli.model.OutboxState;
+import com.example.payment_dormdeli.model.Payment;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Transactional outbox: one record per destination for every notified status change,
+ * added to the same WriteBatch as the payment update and drained by OutboxDispatcher.
+ * Every instance polls the same collection; records are claimed in a transaction before they are sent.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentOutboxRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private final OutboxConfig outboxConfig;
+    private static final String COLLECTION_NAME = "payment_outbox";
+
+    /**
+     * Add outbox records for the payment's new status, if that status is notified
+     */
+    public void add(WriteBatch batch, Payment payment) {
+        for (OutboxRecord record : recordsFor(payment)) {
+            batch.set(firestore.collection(COLLECTION_NAME).document(record.getId()), encode(record));
+        }
+    }
+
+    /**
+     * Same as add(WriteBatch, ...) for bulk operations. Records are created rather than set, so repeating
+     * the call for a payment version fails with ALREADY_EXISTS instead of resetting a delivered record.
+     */
+    public List<ApiFuture<WriteResult>> add(BulkWriter writer, Payment payment) {
+        List<ApiFuture<WriteResult>> results = new ArrayList<>();
+        for (OutboxRecord record : recordsFor(payment)) {
+            results.add(writer.create(firestore.collection(COLLECTION_NAME).document(record.getId()), encode(record)));
+        }
+        return results;
+    }
+
+    private List<OutboxRecord> recordsFor(Payment payment) {
+        if (!outboxConfig.isEnabled() || !outboxConfig.getStatuses().contains(payment.getStatus())) {
+            return Collections.emptyList();
+        }
+
+        List<OutboxRecord> records = new ArrayList<>();
+        for (String destination : outboxConfig.getDestinations().keySet()) {
+            records.add(OutboxRecord.builder()
+                    .id(payment.getId() + "_" + payment.getVersion() + "_" + destination)
+                    .destination(destination)
+                    .paymentId(payment.getId())
+                    .orderId(payment.getOrderId())
+                    .status(payment.getStatus())
+                    .amount(payment.getAmount())
+                    .transactionId(payment.getTransactionId())
+                    .completedAt(payment.getCompletedAt())
+                    .state(OutboxState.PENDING)
+                    .attempts(0)
+                    .nextAttemptAt(payment.getUpdatedAt())
+                    .createdAt(payment.getUpdatedAt())
+                    .build());
+        }
+        return records;
+    }
+
+    /**
+     * Claim up to limit due records, oldest first: PENDING ones whose next attempt is due, and SENDING ones
+     * whose lease has lapsed (the instance sending them stopped or lost its connection).
+     * The claim runs in a transaction, so when several instances poll at once each record goes to one of them.
+     * Claimed records come back SENDING, leased until now + leaseMs.
+     */
+    public List<OutboxRecord> claimDue(Date now, int limit, long leaseMs) {
+        Query due = firestore.collection(COLLECTION_NAME)
+                .whereIn("state", Arrays.asList(OutboxState.PENDING.name(), OutboxState.SENDING.name()))
+                .whereLessThanOrEqualTo("nextAttemptAt", PaymentCodec.toTimestamp(now))
+                .orderBy("nextAttemptAt")
+                .limit(limit);
+        try {
+            return Deadline.await(firestore.runTransaction(transaction -> {
+                List<QueryDocumentSnapshot> documents = transaction.get(due).get().getDocuments();
+                String claimId = UUID.randomUUID().toString();
+                Date leaseExpiresAt = new Date(now.getTime() + leaseMs);
+
+                List<OutboxRecord> records = new ArrayList<>(documents.size());
+                for (QueryDocumentSnapshot document : documents) {
+                    Map<String, Object> fields = new HashMap<>();
+                    fields.put("state", OutboxState.SENDING.name());
+                    fields.put("nextAttemptAt", PaymentCodec.toTimestamp(leaseExpiresAt));
+                    fields.put("claimId", claimId);
+                    transaction.update(document.getReference(), fields);
+
+                    OutboxRecord record = decode(document);
+                    record.setState(OutboxState.SENDING);
+                    record.setNextAttemptAt(leaseExpiresAt);
+                    record.setClaimId(claimId);
+                    records.add(record);
+                }
+                return records;
+            }));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error claiming due outbox records: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Persist delivery state (state, attempts, next attempt, error) of records this instance claimed.
+     * Records whose claim has since lapsed and been taken by another claim are left alone; returns how many.
+     */
+    public int updateDelivery(List<OutboxRecord> records) {
+        try {
+            return Deadline.await(firestore.runTransaction(transaction -> {
+                DocumentReference[] references = new DocumentReference[records.size()];
+                for (int i = 0; i < records.size(); i++) {
+                    references[i] = firestore.collection(COLLECTION_NAME).document(records.get(i).getId());
+                }
+                List<DocumentSnapshot> current = transaction.getAll(references).get();
+
+                int lost = 0;
+                for (int i = 0; i < records.size(); i++) {
+                    OutboxRecord record = records.get(i);
+                    if (!Objects.equals(record.getClaimId(), current.get(i).getString("claimId"))) {
+                        lost++;
+                        continue;
+                    }
+                    Map<String, Object> fields = new HashMap<>();
+                    fields.put("state", record.getState().name());
+                    fields.put("attempts", record.getAttempts());
+                    fields.put("nextAttemptAt", PaymentCodec.toTimestamp(record.getNextAttemptAt()));
+                    fields.put("deliveredAt", PaymentCodec.toTimestamp(record.getDeliveredAt()));
+                    fields.put("lastError", record.getLastError());
+                    fields.put("claimId", null);
+                    transaction.update(references[i], fields);
+                }
+                return lost;
+            }));
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error updating outbox records: {}", e.getMessage());
+            throw new RuntimeException("Error updating outbox records", e);
+        }
+    }
+
+    private Map<String, Object> encode(OutboxRecord record) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("destination", record.getDestination());
+        fields.put("paymentId", record.getPaymentId());
+        fields.put("orderId", record.getOrderId());
+        fields.put("status", record.getStatus().name());
+        if (record.getAmount() != null) {
+            fields.put("amountMinor", PaymentCodec.toMinorUnits(record.getAmount()));
+        }
+        fields.put("transactionId", record.getTransactionId());
+        fields.put("completedAt", PaymentCodec.toTimestamp(record.getCompletedAt()));
+        fields.put("state", record.getState().name());
+        fields.put("attempts", record.getAttempts());
+        fields.put("nextAttemptAt", PaymentCodec.toTimestamp(record.getNextAttemptAt()));
+        fields.put("createdAt", PaymentCodec.toTimestamp(record.getCreatedAt()));
+        return fields;
+    }
+
+    private OutboxRecord decode(DocumentSnapshot document) {
+        Long amountMinor = document.getLong("amountMinor");
+        Long attempts = document.getLong("attempts");
+
+        return OutboxRecord.builder()
+                .id(document.getId())
+                .destination(document.getString("destination"))
+                .paymentId(document.getString("paymentId"))
+                .orderId(document.getString("orderId"))
+                .status(PaymentCodec.toPaymentStatus(document.getString("status")))
+                .amount(amountMinor != null ? PaymentCodec.fromMinorUnits(amountMinor) : null)
+                .transactionId(document.getString("transactionId"))
+                .completedAt(PaymentCodec.toDate(document.get("completedAt")))
+                .state(OutboxState.valueOf(document.getString("state")))
+                .attempts(attempts != null ? attempts.intValue() : 0)
+                .nextAttemptAt(PaymentCodec.toDate(document.get("nextAttemptAt")))
+                .createdAt(PaymentCodec.toDate(document.get("createdAt")))
+                .deliveredAt(PaymentCodec.toDate(document.get("deliveredAt")))
+                .lastError(document.getString("lastError"))
+                .claimId(document.getString("claimId"))
+                .build();
+    }
+}
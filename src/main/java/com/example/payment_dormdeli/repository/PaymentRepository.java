@@ -1,18 +1,25 @@
 package com.example.payment_dormdeli.repository;
 
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.deadline.DeadlineExceededException;
+import com.example.payment_dormdeli.deadline.HedgedReads;
+import com.example.payment_dormdeli.eventbus.PaymentEventBus;
+import com.example.payment_dormdeli.jfr.PaymentJfrEvent;
+import com.example.payment_dormdeli.jfr.StatusTransitionEvent;
+import com.example.payment_dormdeli.limiter.FirestoreLimiters;
 import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
+import com.example.payment_dormdeli.model.PaymentMethod;
 import com.example.payment_dormdeli.model.PaymentStatus;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 
 @Repository
@@ -20,186 +27,460 @@ import java.util.concurrent.ExecutionException;
 @Slf4j
 public class PaymentRepository {
     
+    // Resolved on first call, see FirebaseConfig#firestore
+    @Lazy
     private final Firestore firestore;
-    private static final String COLLECTION_NAME = "payments";
+    private final PaymentStatsRepository paymentStatsRepository;
+    private final PaymentEventRepository paymentEventRepository;
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    // Every public method runs under the read or write limit
+    private final FirestoreLimiters firestoreLimiters;
+    private final HedgedReads hedgedReads;
+    // Committed transitions are published here for in-process consumers
+    private final PaymentEventBus paymentEventBus;
+    public static final String COLLECTION_NAME = "payments";
+    private static final int IN_QUERY_LIMIT = 10;
+    // Firestore rejects a WriteBatch of more than 500 writes
+    private static final int MAX_BATCH_WRITES = 500;
+    // A created payment writes its document, up to two events, a possible snapshot and, worst case, its own stats shard
+    private static final int MAX_WRITES_PER_CREATED_PAYMENT = 5;
+    public static final int MAX_SAVE_ALL = MAX_BATCH_WRITES / MAX_WRITES_PER_CREATED_PAYMENT;
     
+    /**
+     * Save a new payment (CREATED, plus URL_ISSUED if it already has a payment URL).
+     * Existing payments only change through updateStatus and recordEvent, so every change has a ledger event.
+     */
     public Payment save(Payment payment) {
-        try {
-            if (payment.getId() == null || payment.getId().isEmpty()) {
+        if (payment.getId() != null && !payment.getId().isEmpty()) {
+            throw new IllegalArgumentException("Payment " + payment.getId()
+                    + " already exists; change it with updateStatus or recordEvent");
+        }
+        return firestoreLimiters.write("save", () -> {
+            Long previousVersion = payment.getVersion();
+            try {
                 payment.setId(UUID.randomUUID().toString());
                 payment.setCreatedAt(new Date());
+                payment.setUpdatedAt(payment.getCreatedAt());
+                
+                WriteBatch batch = firestore.batch();
+                write(batch, payment, createdEvents(payment));
+                paymentStatsRepository.recordTransition(batch, payment, null);
+                Deadline.await(batch.commit());
+                paymentEventBus.publish(payment, null);
+                
+                log.info("Payment saved with ID: {}", payment.getId());
+                return payment;
+            } catch (InterruptedException | ExecutionException e) {
+                payment.setId(null);
+                payment.setVersion(previousVersion);
+                log.error("Error saving payment: {}", e.getMessage());
+                throw new RuntimeException("Error saving payment", e);
+            } catch (RuntimeException e) {
+                // e.g. DeadlineExceededException: the payment must still look unsaved to the caller
+                payment.setId(null);
+                payment.setVersion(previousVersion);
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * Save a payment whose status changed from previousStatus.
+     * The status event (plus any extra events, e.g. the webhook that caused it), the
+     * stats counters and any outbox notifications are written in the same commit as the payment document.
+     */
+    public Payment updateStatus(Payment payment, PaymentStatus previousStatus, PaymentEvent... extraEvents) {
+        return firestoreLimiters.write("updateStatus", () -> {
+            Long previousVersion = payment.getVersion();
+            StatusTransitionEvent transition = new StatusTransitionEvent();
+            transition.begin();
+            String outcome = "error";
+            try {
+                payment.setUpdatedAt(new Date());
+                
+                List<PaymentEvent> events = new ArrayList<>(Arrays.asList(extraEvents));
+                events.add(PaymentEvent.builder()
+                        .type(PaymentEventType.forStatus(payment.getStatus()))
+                        .status(payment.getStatus())
+                        .transactionId(payment.getTransactionId())
+                        .errorMessage(payment.getErrorMessage())
+                        .completedAt(payment.getCompletedAt())
+                        .build());
+                
+                WriteBatch batch = firestore.batch();
+                write(batch, payment, events);
+                paymentStatsRepository.recordTransition(batch, payment, previousStatus);
+                paymentOutboxRepository.add(batch, payment);
+                Deadline.await(batch.commit());
+                paymentEventBus.publish(payment, previousStatus);
+                
+                log.info("Payment {} status changed {} -> {}", payment.getId(), previousStatus, payment.getStatus());
+                outcome = "ok";
+                return payment;
+            } catch (InterruptedException | ExecutionException e) {
+                payment.setVersion(previousVersion);
+                log.error("Error updating payment status: {}", e.getMessage());
+                throw new RuntimeException("Error updating payment status", e);
+            } catch (RuntimeException e) {
+                // e.g. DeadlineExceededException: keep the version the stored document had
+                payment.setVersion(previousVersion);
+                outcome = PaymentJfrEvent.outcomeOf(e);
+                throw e;
+            } finally {
+                transition.finish(payment, previousStatus, outcome);
             }
-            payment.setUpdatedAt(new Date());
-            
-            ApiFuture<WriteResult> future = firestore.collection(COLLECTION_NAME)
-                    .document(payment.getId())
-                    .set(payment);
-            
-            future.get();
-            log.info("Payment saved with ID: {}", payment.getId());
-            return payment;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error saving payment: {}", e.getMessage());
-            throw new RuntimeException("Error saving payment", e);
+        });
+    }
+    
+    /**
+     * Record an event that does not change the payment's state (e.g. a duplicate webhook)
+     */
+    public Payment recordEvent(Payment payment, PaymentEvent event) {
+        return firestoreLimiters.write("recordEvent", () -> {
+            Long previousVersion = payment.getVersion();
+            try {
+                payment.setUpdatedAt(new Date());
+                
+                WriteBatch batch = firestore.batch();
+                write(batch, payment, Collections.singletonList(event));
+                Deadline.await(batch.commit());
+                
+                return payment;
+            } catch (InterruptedException | ExecutionException e) {
+                payment.setVersion(previousVersion);
+                log.error("Error recording payment event: {}", e.getMessage());
+                throw new RuntimeException("Error recording payment event", e);
+            } catch (RuntimeException e) {
+                payment.setVersion(previousVersion);
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * Create several new payments in one batched write, together with their events and stats counters.
+     * At most MAX_SAVE_ALL payments fit in one batch.
+     */
+    public List<Payment> saveAll(List<Payment> payments) {
+        if (payments.size() > MAX_SAVE_ALL) {
+            throw new IllegalArgumentException("At most " + MAX_SAVE_ALL + " payments can be saved in one batch");
         }
+        return firestoreLimiters.write("saveAll", () -> {
+            List<Long> previousVersions = new ArrayList<>(payments.size());
+            for (Payment payment : payments) {
+                previousVersions.add(payment.getVersion());
+            }
+            try {
+                Date now = new Date();
+                WriteBatch batch = firestore.batch();
+                for (Payment payment : payments) {
+                    payment.setId(UUID.randomUUID().toString());
+                    payment.setCreatedAt(now);
+                    payment.setUpdatedAt(now);
+                    write(batch, payment, createdEvents(payment));
+                }
+                paymentStatsRepository.recordTransitions(batch, payments, null);
+                Deadline.await(batch.commit());
+                for (Payment payment : payments) {
+                    paymentEventBus.publish(payment, null);
+                }
+                
+                log.info("Saved {} payments in one batch", payments.size());
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                markUnsaved(payments, previousVersions);
+                log.error("Error saving payment batch: {}", e.getMessage());
+                throw new RuntimeException("Error saving payment batch", e);
+            } catch (RuntimeException e) {
+                // e.g. DeadlineExceededException: none of the payments was written
+                markUnsaved(payments, previousVersions);
+                throw e;
+            }
+        });
+    }
+    
+    private static void markUnsaved(List<Payment> payments, List<Long> previousVersions) {
+        for (int i = 0; i < payments.size(); i++) {
+            payments.get(i).setId(null);
+            payments.get(i).setVersion(previousVersions.get(i));
+        }
+    }
+    
+    /**
+     * Bump the version and add the payment document and its ledger events to the batch
+     */
+    private void write(WriteBatch batch, Payment payment, List<PaymentEvent> events) {
+        payment.setVersion(payment.getVersion() != null ? payment.getVersion() + 1 : 1L);
+        batch.set(firestore.collection(COLLECTION_NAME).document(payment.getId()), PaymentCodec.encode(payment));
+        paymentEventRepository.append(batch, payment, events);
+    }
+    
+    private List<PaymentEvent> createdEvents(Payment payment) {
+        List<PaymentEvent> events = new ArrayList<>(2);
+        events.add(PaymentEvent.builder()
+                .type(PaymentEventType.CREATED)
+                .status(payment.getStatus())
+                .paymentMethod(payment.getPaymentMethod())
+                .amount(payment.getAmount())
+                .orderInfo(payment.getOrderInfo())
+                .userId(payment.getUserId())
+                .extraData(payment.getExtraData())
+                .build());
+        if (payment.getPaymentUrl() != null) {
+            events.add(PaymentEvent.builder()
+                    .type(PaymentEventType.URL_ISSUED)
+                    .paymentUrl(payment.getPaymentUrl())
+                    .build());
+        }
+        return events;
     }
     
     public Optional<Payment> findById(String id) {
-        try {
-            DocumentSnapshot document = firestore.collection(COLLECTION_NAME)
-                    .document(id)
-                    .get()
-                    .get();
-            
-            if (document.exists()) {
-                Payment payment = document.toObject(Payment.class);
-                if (payment != null) {
-                    payment.setId(document.getId());
+        return firestoreLimiters.read("findById", () -> {
+            try {
+                DocumentReference reference = firestore.collection(COLLECTION_NAME).document(id);
+                DocumentSnapshot document = hedgedReads.read(reference::get);
+                
+                if (document.exists()) {
+                    return Optional.of(PaymentCodec.decode(document));
                 }
-                return Optional.ofNullable(payment);
+                return Optional.empty();
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payment by ID: {}", e.getMessage());
+                return Optional.empty();
             }
-            return Optional.empty();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payment by ID: {}", e.getMessage());
-            return Optional.empty();
-        }
+        });
     }
     
     public Optional<Payment> findByOrderId(String orderId) {
-        try {
-            Query query = firestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("orderId", orderId)
-                    .limit(1);
-            
-            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
-            
-            if (!documents.isEmpty()) {
-                Payment payment = documents.get(0).toObject(Payment.class);
-                payment.setId(documents.get(0).getId());
-                return Optional.of(payment);
-            }
-            return Optional.empty();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payment by orderId: {}", e.getMessage());
-            return Optional.empty();
-        }
+        return firestoreLimiters.read("findByOrderId", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("orderId", orderId)
+                        .limit(1);
+                
+                List<QueryDocumentSnapshot> documents = hedgedReads.read(query::get).getDocuments();
+                
+                if (!documents.isEmpty()) {
+                    return Optional.of(PaymentCodec.decode(documents.get(0)));
+                }
+                return Optional.empty();
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payment by orderId: {}", e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+    
+    /**
+     * Find payments for many orderIds, keyed by orderId.
+     * 'in' filters accept at most 10 values, so the ids are chunked and all chunk
+     * queries are started before any is awaited.
+     */
+    public Map<String, Payment> findByOrderIds(Collection<String> orderIds) {
+        return firestoreLimiters.read("findByOrderIds", () -> {
+            List<ApiFuture<QuerySnapshot>> futures = new ArrayList<>();
+            try {
+                List<String> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+                
+                for (int i = 0; i < ids.size(); i += IN_QUERY_LIMIT) {
+                    List<String> chunk = ids.subList(i, Math.min(i + IN_QUERY_LIMIT, ids.size()));
+                    futures.add(firestore.collection(COLLECTION_NAME)
+                            .whereIn("orderId", new ArrayList<>(chunk))
+                            .get());
+                }
+                
+                Map<String, Payment> payments = new HashMap<>();
+                for (ApiFuture<QuerySnapshot> future : futures) {
+                    for (QueryDocumentSnapshot document : Deadline.await(future).getDocuments()) {
+                        Payment payment = PaymentCodec.decode(document);
+                        payments.putIfAbsent(payment.getOrderId(), payment);
+                    }
+                }
+                
+                return payments;
+            } catch (DeadlineExceededException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw e;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payments by orderIds: {}", e.getMessage());
+                throw new RuntimeException("Error finding payments by orderIds", e);
+            }
+        });
     }
     
     public Optional<Payment> findByTransactionId(String transactionId) {
-        try {
-            Query query = firestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("transactionId", transactionId)
-                    .limit(1);
-            
-            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
-            
-            if (!documents.isEmpty()) {
-                Payment payment = documents.get(0).toObject(Payment.class);
-                payment.setId(documents.get(0).getId());
-                return Optional.of(payment);
-            }
-            return Optional.empty();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payment by transactionId: {}", e.getMessage());
-            return Optional.empty();
-        }
+        return firestoreLimiters.read("findByTransactionId", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("transactionId", transactionId)
+                        .limit(1);
+                
+                List<QueryDocumentSnapshot> documents = hedgedReads.read(query::get).getDocuments();
+                
+                if (!documents.isEmpty()) {
+                    return Optional.of(PaymentCodec.decode(documents.get(0)));
+                }
+                return Optional.empty();
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payment by transactionId: {}", e.getMessage());
+                return Optional.empty();
+            }
+        });
     }
     
+    /**
+     * Recent payments of the user; settled ones past the archive age are in PaymentArchiveService
+     */
     public List<Payment> findByUserId(String userId) {
-        try {
-            Query query = firestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("userId", userId);
-            
-            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
-            List<Payment> payments = new ArrayList<>();
-            
-            for (QueryDocumentSnapshot document : documents) {
-                Payment payment = document.toObject(Payment.class);
-                payment.setId(document.getId());
-                payments.add(payment);
-            }
-            
-            return payments;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payments by userId: {}", e.getMessage());
-            return new ArrayList<>();
-        }
+        return firestoreLimiters.read("findByUserId", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("userId", userId);
+                
+                List<QueryDocumentSnapshot> documents = Deadline.await(query.get()).getDocuments();
+                List<Payment> payments = new ArrayList<>();
+                
+                for (QueryDocumentSnapshot document : documents) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payments by userId: {}", e.getMessage());
+                return new ArrayList<>();
+            }
+        });
     }
     
     public List<Payment> findByStatus(PaymentStatus status) {
-        try {
-            Query query = firestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("status", status.name());
-            
-            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
-            List<Payment> payments = new ArrayList<>();
-            
-            for (QueryDocumentSnapshot document : documents) {
-                Payment payment = document.toObject(Payment.class);
-                payment.setId(document.getId());
-                payments.add(payment);
-            }
-            
-            return payments;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payments by status: {}", e.getMessage());
-            return new ArrayList<>();
-        }
+        return firestoreLimiters.read("findByStatus", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("status", status.name());
+                
+                List<QueryDocumentSnapshot> documents = Deadline.await(query.get()).getDocuments();
+                List<Payment> payments = new ArrayList<>();
+                
+                for (QueryDocumentSnapshot document : documents) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payments by status: {}", e.getMessage());
+                return new ArrayList<>();
+            }
+        });
     }
     
+    /**
+     * Pending payments of one method. Unlike findByStatus this throws when the read fails, so a
+     * caller replacing its state with the result never mistakes an outage for "nothing pending"
+     */
+    public List<Payment> findPending(PaymentMethod paymentMethod) {
+        return firestoreLimiters.read("findPending", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("status", PaymentStatus.PENDING.name())
+                        .whereEqualTo("paymentMethod", paymentMethod.name());
+
+                List<Payment> payments = new ArrayList<>();
+                for (QueryDocumentSnapshot document : Deadline.await(query.get()).getDocuments()) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding pending payments: {}", e.getMessage());
+                throw new RuntimeException("Error finding pending payments", e);
+            }
+        });
+    }
+
     public List<Payment> findByUserIdAndStatus(String userId, PaymentStatus status) {
-        try {
-            Query query = firestore.collection(COLLECTION_NAME)
-                    .whereEqualTo("userId", userId)
-                    .whereEqualTo("status", status.name());
-            
-            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
-            List<Payment> payments = new ArrayList<>();
-            
-            for (QueryDocumentSnapshot document : documents) {
-                Payment payment = document.toObject(Payment.class);
-                payment.setId(document.getId());
-                payments.add(payment);
-            }
-            
-            return payments;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding payments by userId and status: {}", e.getMessage());
-            return new ArrayList<>();
-        }
+        return firestoreLimiters.read("findByUserIdAndStatus", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .whereEqualTo("status", status.name());
+                
+                List<QueryDocumentSnapshot> documents = Deadline.await(query.get()).getDocuments();
+                List<Payment> payments = new ArrayList<>();
+                
+                for (QueryDocumentSnapshot document : documents) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payments by userId and status: {}", e.getMessage());
+                return new ArrayList<>();
+            }
+        });
+    }
+    
+    /**
+     * One page of payments created in [from, to), oldest first, after startAfter (null for the first page)
+     */
+    public List<Payment> findCreatedBetween(Date from, Date to, Payment startAfter, int limit) {
+        return firestoreLimiters.read("findCreatedBetween", () -> {
+            try {
+                Query query = firestore.collection(COLLECTION_NAME)
+                        .whereGreaterThanOrEqualTo(PaymentCodec.CREATED_AT, PaymentCodec.toTimestamp(from))
+                        .whereLessThan(PaymentCodec.CREATED_AT, PaymentCodec.toTimestamp(to))
+                        .orderBy(PaymentCodec.CREATED_AT)
+                        .orderBy(FieldPath.documentId())
+                        .limit(limit);
+                if (startAfter != null) {
+                    query = query.startAfter(PaymentCodec.toTimestamp(startAfter.getCreatedAt()), startAfter.getId());
+                }
+                
+                List<Payment> payments = new ArrayList<>();
+                for (QueryDocumentSnapshot document : Deadline.await(query.get()).getDocuments()) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding payments created between {} and {}: {}", from, to, e.getMessage());
+                throw new RuntimeException("Error finding payments by creation time", e);
+            }
+        });
     }
     
+    /**
+     * All payments in the hot collection, archived ones excluded
+     */
     public List<Payment> findAll() {
-        try {
-            List<QueryDocumentSnapshot> documents = firestore.collection(COLLECTION_NAME)
-                    .get()
-                    .get()
-                    .getDocuments();
-            
-            List<Payment> payments = new ArrayList<>();
-            for (QueryDocumentSnapshot document : documents) {
-                Payment payment = document.toObject(Payment.class);
-                payment.setId(document.getId());
-                payments.add(payment);
-            }
-            
-            return payments;
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error finding all payments: {}", e.getMessage());
-            return new ArrayList<>();
-        }
+        return firestoreLimiters.read("findAll", () -> {
+            try {
+                List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collection(COLLECTION_NAME).get())
+                        .getDocuments();
+                
+                List<Payment> payments = new ArrayList<>();
+                for (QueryDocumentSnapshot document : documents) {
+                    payments.add(PaymentCodec.decode(document));
+                }
+                
+                return payments;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error finding all payments: {}", e.getMessage());
+                return new ArrayList<>();
+            }
+        });
     }
     
     public void deleteById(String id) {
-        try {
-            firestore.collection(COLLECTION_NAME)
-                    .document(id)
-                    .delete()
-                    .get();
-            log.info("Payment deleted with ID: {}", id);
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error deleting payment: {}", e.getMessage());
-            throw new RuntimeException("Error deleting payment", e);
-        }
+        firestoreLimiters.write("deleteById", () -> {
+            try {
+                Deadline.await(firestore.collection(COLLECTION_NAME)
+                        .document(id)
+                        .delete());
+                log.info("Payment deleted with ID: {}", id);
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error deleting payment: {}", e.getMessage());
+                throw new RuntimeException("Error deleting payment", e);
+            }
+            return null;
+        });
     }
 }
@@ -0,0 +1,200 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.PaymentStatsResponse;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Revenue/status counters kept up to date on every status transition.
+ * One document per day and shard ({day}_{shard}); each write picks a random shard so a busy day
+ * never exceeds Firestore's per-document write rate. Reading a date range is a single query.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatsRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String COLLECTION_NAME = "payment_stats";
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final String COUNT_PREFIX = "count_";
+    private static final String AMOUNT_PREFIX = "amount_";
+
+    @Value("${payment.stats.shards:10}")
+    private int shards;
+
+    /**
+     * Add counter increments for one payment moving from previousStatus
+     * (null for a newly created payment) to its current status
+     */
+    public void recordTransition(WriteBatch batch, Payment payment, PaymentStatus previousStatus) {
+        recordTransitions(batch, Collections.singletonList(payment), previousStatus);
+    }
+
+    /**
+     * Add counter increments for several payments to the batch.
+     * Deltas are merged per day first so each shard document appears only once in the batch.
+     */
+    public void recordTransitions(WriteBatch batch, List<Payment> payments, PaymentStatus previousStatus) {
+        shardWrites(payments, previousStatus).forEach((documentId, fields) ->
+                batch.set(firestore.collection(COLLECTION_NAME).document(documentId), fields, SetOptions.merge()));
+    }
+
+    /**
+     * Same as recordTransitions(WriteBatch, ...) for bulk operations
+     */
+    public List<ApiFuture<WriteResult>> recordTransitions(BulkWriter writer, List<Payment> payments, PaymentStatus previousStatus) {
+        List<ApiFuture<WriteResult>> results = new ArrayList<>();
+        shardWrites(payments, previousStatus).forEach((documentId, fields) ->
+                results.add(writer.set(firestore.collection(COLLECTION_NAME).document(documentId), fields, SetOptions.merge())));
+        return results;
+    }
+
+    /**
+     * Increment fields per shard document, one random shard per day
+     */
+    Map<String, Map<String, Object>> shardWrites(List<Payment> payments, PaymentStatus previousStatus) {
+        Map<String, Map<String, Object>> writes = new HashMap<>();
+        deltasByDay(payments, previousStatus).forEach((day, deltas) -> {
+            int shard = ThreadLocalRandom.current().nextInt(Math.max(1, shards));
+
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("day", day);
+            fields.put("shard", shard);
+            deltas.forEach((field, delta) -> fields.put(field, FieldValue.increment(delta)));
+
+            writes.put(day + "_" + shard, fields);
+        });
+        return writes;
+    }
+
+    /**
+     * Non-zero counter deltas per day for the payments' transitions from previousStatus
+     */
+    static Map<String, Map<String, Long>> deltasByDay(List<Payment> payments, PaymentStatus previousStatus) {
+        Map<String, Map<String, Long>> deltasByDay = new HashMap<>();
+
+        for (Payment payment : payments) {
+            if (payment.getStatus() == previousStatus) {
+                continue;
+            }
+
+            Map<String, Long> deltas = deltasByDay.computeIfAbsent(dayOf(payment), day -> new HashMap<>());
+            long amount = payment.getAmount() != null ? payment.getAmount().longValue() : 0;
+            String method = payment.getPaymentMethod() != null ? payment.getPaymentMethod().name() : "UNKNOWN";
+
+            if (previousStatus != null) {
+                deltas.merge(COUNT_PREFIX + method + "_" + previousStatus.name(), -1L, Long::sum);
+                deltas.merge(AMOUNT_PREFIX + method + "_" + previousStatus.name(), -amount, Long::sum);
+            }
+            deltas.merge(COUNT_PREFIX + method + "_" + payment.getStatus().name(), 1L, Long::sum);
+            deltas.merge(AMOUNT_PREFIX + method + "_" + payment.getStatus().name(), amount, Long::sum);
+        }
+        deltasByDay.values().forEach(deltas -> deltas.values().removeIf(delta -> delta == 0));
+        return deltasByDay;
+    }
+
+    /**
+     * Sum all shards for the days in [from, to] with a single range query
+     */
+    public PaymentStatsResponse getStats(LocalDate from, LocalDate to) {
+        try {
+            List<QueryDocumentSnapshot> documents = Deadline.await(firestore.collection(COLLECTION_NAME)
+                    .whereGreaterThanOrEqualTo("day", from.toString())
+                    .whereLessThanOrEqualTo("day", to.toString())
+                    .get())
+                    .getDocuments();
+
+            List<Map<String, Object>> shardDocuments = new ArrayList<>();
+            for (QueryDocumentSnapshot document : documents) {
+                shardDocuments.add(document.getData());
+            }
+            return sum(from, to, shardDocuments);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error reading payment stats: {}", e.getMessage());
+            throw new RuntimeException("Error reading payment stats", e);
+        }
+    }
+
+    /**
+     * Totals over shard documents, each with its "day" and {count|amount}_{METHOD}_{STATUS} fields
+     */
+    static PaymentStatsResponse sum(LocalDate from, LocalDate to, List<Map<String, Object>> shardDocuments) {
+        Map<String, PaymentStatsResponse.Bucket> byStatus = new LinkedHashMap<>();
+        Map<String, PaymentStatsResponse.Bucket> byMethod = new LinkedHashMap<>();
+        Map<String, PaymentStatsResponse.Bucket> byDay = new TreeMap<>();
+        PaymentStatsResponse.Bucket total = new PaymentStatsResponse.Bucket();
+
+        for (Map<String, Object> document : shardDocuments) {
+            String day = (String) document.get("day");
+
+            for (Map.Entry<String, Object> field : document.entrySet()) {
+                String name = field.getKey();
+                boolean isCount = name.startsWith(COUNT_PREFIX);
+                if (!isCount && !name.startsWith(AMOUNT_PREFIX) || !(field.getValue() instanceof Number)) {
+                    continue;
+                }
+
+                // Field names are {count|amount}_{METHOD}_{STATUS}
+                String key = name.substring(isCount ? COUNT_PREFIX.length() : AMOUNT_PREFIX.length());
+                int separator = key.indexOf('_');
+                if (separator < 0) {
+                    continue;
+                }
+                String method = key.substring(0, separator);
+                String status = key.substring(separator + 1);
+                long value = ((Number) field.getValue()).longValue();
+
+                add(byStatus.computeIfAbsent(status, s -> new PaymentStatsResponse.Bucket()), isCount, value);
+                add(byMethod.computeIfAbsent(method, m -> new PaymentStatsResponse.Bucket()), isCount, value);
+                add(byDay.computeIfAbsent(day, d -> new PaymentStatsResponse.Bucket()), isCount, value);
+                add(total, isCount, value);
+            }
+        }
+
+        PaymentStatsResponse.Bucket success = byStatus.get(PaymentStatus.SUCCESS.name());
+
+        return PaymentStatsResponse.builder()
+                .from(from.toString())
+                .to(to.toString())
+                .totalCount(total.getCount())
+                .totalAmount(total.getAmount())
+                .revenue(success != null ? success.getAmount() : 0)
+                .byStatus(byStatus)
+                .byMethod(byMethod)
+                .byDay(byDay)
+                .build();
+    }
+
+    /**
+     * Payments are counted on the day they were created (Vietnam time),
+     * so later transitions adjust the same day's counters
+     */
+    private static String dayOf(Payment payment) {
+        Date createdAt = payment.getCreatedAt() != null ? payment.getCreatedAt() : new Date();
+        return LocalDate.ofInstant(createdAt.toInstant(), VN_ZONE).toString();
+    }
+
+    private static void add(PaymentStatsResponse.Bucket bucket, boolean isCount, long value) {
+        if (isCount) {
+            bucket.setCount(bucket.getCount() + value);
+        } else {
+            bucket.setAmount(bucket.getAmount() + value);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Local copy of the SePay transaction feed, one document per SePay transaction id,
+ * plus the sync cursor (highest id stored so far).
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class SePayTransactionRepository {
+
+    @Lazy
+    private final Firestore firestore;
+    private static final String COLLECTION_NAME = "sepay_transactions";
+    private static final String CURSOR_COLLECTION = "sepay_sync";
+    private static final String CURSOR_DOCUMENT = "cursor";
+    private static final int MAX_BATCH_WRITES = 450;
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter SEPAY_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Highest SePay transaction id stored so far, or null before the first sync
+     */
+    public Long getCursor() {
+        try {
+            DocumentSnapshot document = Deadline.await(firestore.collection(CURSOR_COLLECTION)
+                    .document(CURSOR_DOCUMENT)
+                    .get());
+            return document.exists() ? document.getLong("lastId") : null;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error reading SePay sync cursor: {}", e.getMessage());
+            throw new RuntimeException("Error reading SePay sync cursor", e);
+        }
+    }
+
+    /**
+     * Store transactions by id (re-storing one is a no-op) and, with the last chunk,
+     * move the cursor to lastId
+     */
+    public void saveAll(List<SePayTransaction> transactions, Long lastId) {
+        try {
+            Date syncedAt = new Date();
+            int i = 0;
+            do {
+                List<SePayTransaction> chunk = transactions.subList(i, Math.min(i + MAX_BATCH_WRITES, transactions.size()));
+                i += chunk.size();
+
+                WriteBatch batch = firestore.batch();
+                for (SePayTransaction transaction : chunk) {
+                    batch.set(firestore.collection(COLLECTION_NAME).document(String.valueOf(transaction.getId())),
+                            encode(transaction, syncedAt));
+                }
+                if (i >= transactions.size() && lastId != null) {
+                    Map<String, Object> cursor = new HashMap<>();
+                    cursor.put("lastId", lastId);
+                    cursor.put("updatedAt", PaymentCodec.toTimestamp(syncedAt));
+                    batch.set(firestore.collection(CURSOR_COLLECTION).document(CURSOR_DOCUMENT), cursor);
+                }
+                Deadline.await(batch.commit());
+            } while (i < transactions.size());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error saving SePay transactions: {}", e.getMessage());
+            throw new RuntimeException("Error saving SePay transactions", e);
+        }
+    }
+
+    /**
+     * Every stored transaction made at or after 'from', oldest first, read pageSize documents at a time
+     */
+    public List<SePayTransaction> findSince(Date from, int pageSize) {
+        try {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .whereGreaterThanOrEqualTo("transactionDate", PaymentCodec.toTimestamp(from))
+                    .orderBy("transactionDate")
+                    .orderBy(FieldPath.documentId())
+                    .limit(pageSize);
+
+            List<SePayTransaction> transactions = new ArrayList<>();
+            List<QueryDocumentSnapshot> documents;
+            DocumentSnapshot last = null;
+            do {
+                documents = Deadline.await((last == null ? query : query.startAfter(last)).get()).getDocuments();
+                for (QueryDocumentSnapshot document : documents) {
+                    transactions.add(decode(document));
+                }
+                if (!documents.isEmpty()) {
+                    last = documents.get(documents.size() - 1);
+                }
+            } while (documents.size() == pageSize);
+            return transactions;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error finding SePay transactions: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Parse SePay's transaction_date (Vietnam local time)
+     */
+    public static Date parseTransactionDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Date.from(LocalDateTime.parse(value, SEPAY_DATE).atZone(VN_ZONE).toInstant());
+        } catch (DateTimeParseException e) {
+            log.warn("Unparseable SePay transaction date: {}", value);
+            return null;
+        }
+    }
+
+    public static String formatTransactionDate(Date date) {
+        return SEPAY_DATE.format(date.toInstant().atZone(VN_ZONE));
+    }
+
+    private Map<String, Object> encode(SePayTransaction transaction, Date syncedAt) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", transaction.getId());
+        fields.put("bankBrandName", transaction.getBank_brand_name());
+        fields.put("accountNumber", transaction.getAccount_number());
+        fields.put("transactionDate", PaymentCodec.toTimestamp(parseTransactionDate(transaction.getTransaction_date())));
+        fields.put("rawTransactionDate", transaction.getTransaction_date());
+        fields.put("amountInMinor", transaction.getAmount_in() != null ? PaymentCodec.toMinorUnits(transaction.getAmount_in()) : 0L);
+        fields.put("amountOutMinor", transaction.getAmount_out() != null ? PaymentCodec.toMinorUnits(transaction.getAmount_out()) : 0L);
+        if (transaction.getAccumulated() != null) {
+            fields.put("accumulatedMinor", PaymentCodec.toMinorUnits(transaction.getAccumulated()));
+        }
+        fields.put("transactionContent", transaction.getTransaction_content());
+        fields.put("referenceNumber", transaction.getReference_number());
+        fields.put("code", transaction.getCode());
+        fields.put("subAccount", transaction.getSub_account());
+        fields.put("syncedAt", PaymentCodec.toTimestamp(syncedAt));
+        return fields;
+    }
+
+    private SePayTransaction decode(DocumentSnapshot document) {
+        Long amountIn = document.getLong("amountInMinor");
+        Long amountOut = document.getLong("amountOutMinor");
+        Long accumulated = document.getLong("accumulatedMinor");
+
+        return SePayTransaction.builder()
+                .id(document.getLong("id"))
+                .bank_brand_name(document.getString("bankBrandName"))
+                .account_number(document.getString("accountNumber"))
+                .transaction_date(document.getString("rawTransactionDate"))
+                .amount_in(amountIn != null ? PaymentCodec.fromMinorUnits(amountIn) : BigDecimal.ZERO)
+                .amount_out(amountOut != null ? PaymentCodec.fromMinorUnits(amountOut) : BigDecimal.ZERO)
+                .accumulated(accumulated != null ? PaymentCodec.fromMinorUnits(accumulated) : null)
+                .transaction_content(document.getString("transactionContent"))
+                .reference_number(document.getString("referenceNumber"))
+                .code(document.getString("code"))
+                .sub_account(document.getString("subAccount"))
+                .build();
+    }
+}
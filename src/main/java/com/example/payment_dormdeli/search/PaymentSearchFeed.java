@@ -0,0 +1,92 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.repository.PaymentCodec;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps PaymentSearchIndex in step with the hot payments collection through a snapshot listener,
+ * so writes from every instance and archiver removals reach the index. The first snapshot
+ * replaces the index; later ones apply only the changed documents.
+ *
+ * Subscribing is done by the scheduler rather than at startup, so boot does not wait for
+ * Firestore, and a listener that failed is replaced on the next tick.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentSearchFeed {
+
+    @Lazy
+    private final Firestore firestore;
+    private final PaymentSearchIndex paymentSearchIndex;
+
+    @Value("${payment.search.enabled:true}")
+    private boolean enabled;
+
+    private ListenerRegistration registration;
+    private volatile boolean ready;
+
+    @Scheduled(fixedDelayString = "${payment.search.subscribe-interval-ms:30000}",
+            initialDelayString = "${payment.search.initial-delay-ms:5000}")
+    public synchronized void ensureSubscribed() {
+        if (!enabled || registration != null) {
+            return;
+        }
+        log.info("Subscribing search index to payment changes");
+        registration = firestore.collection(PaymentRepository.COLLECTION_NAME).addSnapshotListener(this::onSnapshot);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void onSnapshot(QuerySnapshot snapshot, FirestoreException error) {
+        if (error != null) {
+            log.error("Payment search listener failed, resubscribing: {}", error.getMessage());
+            synchronized (this) {
+                registration = null;
+            }
+            ready = false;
+            return;
+        }
+
+        if (!ready) {
+            List<Payment> payments = new ArrayList<>(snapshot.size());
+            for (QueryDocumentSnapshot document : snapshot.getDocuments()) {
+                payments.add(PaymentCodec.decode(document));
+            }
+            paymentSearchIndex.reset(payments);
+            ready = true;
+            log.info("Search index loaded with {} payments", payments.size());
+            return;
+        }
+
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                paymentSearchIndex.remove(change.getDocument().getId());
+            } else {
+                paymentSearchIndex.put(PaymentCodec.decode(change.getDocument()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.dto.PaymentSearchResponse;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search over payments for admin lookups.
+ *
+ * Every version of a payment gets a new document number, so all postings are append-only
+ * and stay sorted: a trigram index over the normalized orderId/orderInfo/transactionId text,
+ * an exact userId index, and sorted amount and createdAt indexes. Superseded and removed
+ * documents are only marked dead and dropped when the index is compacted.
+ *
+ * A query takes the most selective index it has (text, then userId, then amount or date range)
+ * as candidates and checks every other filter against the stored document.
+ */
+@Component
+public class PaymentSearchIndex implements MetricsSource {
+
+    static final int MAX_PAGE_SIZE = 100;
+    private static final int GRAM = 3;
+    private static final int MIN_DEAD_TO_COMPACT = 1_000;
+    private static final int VERIFY_THRESHOLD = 64;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final long MAP_ENTRY_BYTES = 48;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All guarded by lock
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Integer> docByPaymentId = new HashMap<>();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+    private final Map<String, IntList> byUserId = new HashMap<>();
+    private final TreeMap<Long, IntList> byAmount = new TreeMap<>();
+    private final TreeMap<Long, IntList> byCreatedAt = new TreeMap<>();
+    private int dead;
+
+    private final LongAdder queries = new LongAdder();
+    private volatile long lastQueryMicros;
+
+    /**
+     * Index the payment, replacing its previous version
+     */
+    public void put(Payment payment) {
+        if (payment == null || payment.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            markDead(payment.getId());
+            add(payment);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String paymentId) {
+        lock.writeLock().lock();
+        try {
+            markDead(paymentId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole index, e.g. with the initial listener snapshot
+     */
+    public void reset(Collection<Payment> payments) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Payment payment : payments) {
+                if (payment.getId() != null) {
+                    markDead(payment.getId());
+                    add(payment);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByPaymentId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public PaymentSearchResponse search(PaymentSearchQuery query) {
+        long start = System.nanoTime();
+        int page = Math.max(0, query.getPage());
+        int size = Math.max(1, Math.min(MAX_PAGE_SIZE, query.getSize()));
+        String text = query.getText() != null && !query.getText().isBlank() ? normalize(query.getText().trim()) : null;
+        Long minAmount = query.getMinAmount() != null ? toMinorUnits(query.getMinAmount()) : null;
+        Long maxAmount = query.getMaxAmount() != null ? toMinorUnits(query.getMaxAmount()) : null;
+        Long from = query.getFrom() != null ? query.getFrom().getTime() : null;
+        Long to = query.getTo() != null ? query.getTo().getTime() : null;
+
+        List<Doc> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntList candidates = candidates(query, text, minAmount, maxAmount, from, to);
+            int count = candidates != null ? candidates.size : docs.size();
+            for (int i = 0; i < count; i++) {
+                Doc doc = docs.get(candidates != null ? candidates.values[i] : i);
+                if (doc.live && matches(doc, query, text, minAmount, maxAmount, from, to)) {
+                    matches.add(doc);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingLong((Doc doc) -> doc.createdAt).reversed());
+        List<Payment> payments = new ArrayList<>();
+        for (int i = page * size; i < Math.min(matches.size(), (page + 1) * size); i++) {
+            payments.add(matches.get(i).payment);
+        }
+
+        long tookMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        queries.increment();
+        lastQueryMicros = tookMicros;
+        return PaymentSearchResponse.builder()
+                .total(matches.size())
+                .page(page)
+                .size(size)
+                .tookMicros(tookMicros)
+                .payments(payments)
+                .build();
+    }
+
+    /**
+     * Sorted document numbers that may match, or null to check every document
+     */
+    private IntList candidates(PaymentSearchQuery query, String text, Long minAmount, Long maxAmount, Long from, Long to) {
+        List<IntList> postings = new ArrayList<>();
+        if (text != null && text.length() >= GRAM) {
+            for (String gram : gramsOf(text)) {
+                postings.add(trigrams.get(gram));
+            }
+        }
+        if (query.getUserId() != null) {
+            postings.add(byUserId.get(query.getUserId()));
+        }
+        if (postings.contains(null)) {
+            return new IntList();
+        }
+        if (!postings.isEmpty()) {
+            // Shortest lists first; once few candidates are left, checking them is cheaper than intersecting
+            postings.sort(Comparator.comparingInt(list -> list.size));
+            IntList candidates = postings.get(0);
+            for (int i = 1; i < postings.size() && candidates.size > VERIFY_THRESHOLD; i++) {
+                candidates = candidates.intersect(postings.get(i));
+            }
+            return candidates;
+        }
+        if (minAmount != null || maxAmount != null) {
+            return collect(byAmount.subMap(minAmount != null ? minAmount : Long.MIN_VALUE, true,
+                    maxAmount != null ? maxAmount : Long.MAX_VALUE, true));
+        }
+        if (from != null || to != null) {
+            return collect(byCreatedAt.subMap(from != null ? from : Long.MIN_VALUE, true,
+                    to != null ? to : Long.MAX_VALUE, false));
+        }
+        return null;
+    }
+
+    private boolean matches(Doc doc, PaymentSearchQuery query, String text, Long minAmount, Long maxAmount, Long from, Long to) {
+        Payment payment = doc.payment;
+        return (text == null || doc.text.contains(text))
+                && (query.getUserId() == null || query.getUserId().equals(payment.getUserId()))
+                && (query.getStatus() == null || query.getStatus() == payment.getStatus())
+                && (query.getPaymentMethod() == null || query.getPaymentMethod() == payment.getPaymentMethod())
+                && (minAmount == null || doc.amount != null && doc.amount >= minAmount)
+                && (maxAmount == null || doc.amount != null && doc.amount <= maxAmount)
+                && (from == null || doc.createdAt >= from)
+                && (to == null || doc.createdAt < to);
+    }
+
+    private void add(Payment payment) {
+        int number = docs.size();
+        Doc doc = new Doc(payment);
+        docs.add(doc);
+        docByPaymentId.put(payment.getId(), number);
+
+        for (String gram : gramsOf(doc.text)) {
+            trigrams.computeIfAbsent(gram, g -> new IntList()).add(number);
+        }
+        if (payment.getUserId() != null) {
+            byUserId.computeIfAbsent(payment.getUserId(), u -> new IntList()).add(number);
+        }
+        if (doc.amount != null) {
+            byAmount.computeIfAbsent(doc.amount, a -> new IntList()).add(number);
+        }
+        byCreatedAt.computeIfAbsent(doc.createdAt, c -> new IntList()).add(number);
+    }
+
+    private void markDead(String paymentId) {
+        Integer previous = docByPaymentId.remove(paymentId);
+        if (previous != null) {
+            docs.get(previous).live = false;
+            dead++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (dead < MIN_DEAD_TO_COMPACT || dead < docs.size() / 2) {
+            return;
+        }
+        List<Payment> live = new ArrayList<>(docByPaymentId.size());
+        for (Doc doc : docs) {
+            if (doc.live) {
+                live.add(doc.payment);
+            }
+        }
+        clear();
+        for (Payment payment : live) {
+            add(payment);
+        }
+    }
+
+    private void clear() {
+        docs.clear();
+        docByPaymentId.clear();
+        trigrams.clear();
+        byUserId.clear();
+        byAmount.clear();
+        byCreatedAt.clear();
+        dead = 0;
+    }
+
+    private static IntList collect(Map<Long, IntList> range) {
+        IntList collected = new IntList();
+        for (IntList postings : range.values()) {
+            for (int i = 0; i < postings.size; i++) {
+                collected.add(postings.values[i]);
+            }
+        }
+        Arrays.sort(collected.values, 0, collected.size);
+        return collected;
+    }
+
+    private static Set<String> gramsOf(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * Lower case without Vietnamese accents, so "Thanh toán" matches "thanh toan"
+     */
+    static String normalize(String text) {
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return stripped.replace('đ', 'd').replace('Đ', 'd').toLowerCase(Locale.ROOT);
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(2).longValue();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "searchIndex";
+    }
+
+    /**
+     * Sizes plus an estimate of the heap held by the index (postings, keys and documents,
+     * with typical 64-bit object overheads; the indexed Payment objects themselves excluded)
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            long postingBytes = 0;
+            long keyBytes = 0;
+            for (Map.Entry<String, IntList> entry : trigrams.entrySet()) {
+                postingBytes += entry.getValue().bytes();
+                keyBytes += stringBytes(entry.getKey()) + MAP_ENTRY_BYTES;
+            }
+            for (Map.Entry<String, IntList> entry : byUserId.entrySet()) {
+                postingBytes += entry.getValue().bytes();
+                keyBytes += stringBytes(entry.getKey()) + MAP_ENTRY_BYTES;
+            }
+            for (IntList postings : byAmount.values()) {
+                postingBytes += postings.bytes();
+            }
+            for (IntList postings : byCreatedAt.values()) {
+                postingBytes += postings.bytes();
+            }
+            keyBytes += (long) (byAmount.size() + byCreatedAt.size()) * (MAP_ENTRY_BYTES + 16);
+            long docBytes = 0;
+            for (Doc doc : docs) {
+                docBytes += Doc.BYTES + stringBytes(doc.text);
+            }
+            docBytes += (long) docByPaymentId.size() * (MAP_ENTRY_BYTES + 16);
+
+            metrics.put("payments", docByPaymentId.size());
+            metrics.put("documents", docs.size());
+            metrics.put("deadDocuments", dead);
+            metrics.put("trigrams", trigrams.size());
+            metrics.put("users", byUserId.size());
+            metrics.put("postingBytes", postingBytes);
+            metrics.put("keyBytes", keyBytes);
+            metrics.put("documentBytes", docBytes);
+            metrics.put("estimatedBytes", postingBytes + keyBytes + docBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("queries", queries.sum());
+        metrics.put("lastQueryMicros", lastQueryMicros);
+        return metrics;
+    }
+
+    private static long stringBytes(String value) {
+        return 40 + 2L * value.length();
+    }
+
+    private static final class Doc {
+        static final long BYTES = 48;
+
+        final Payment payment;
+        final String text;
+        final Long amount;
+        final long createdAt;
+        boolean live = true;
+
+        Doc(Payment payment) {
+            this.payment = payment;
+            this.text = normalize(String.join(" ",
+                    Objects.toString(payment.getOrderId(), ""),
+                    Objects.toString(payment.getOrderInfo(), ""),
+                    Objects.toString(payment.getTransactionId(), "")));
+            this.amount = payment.getAmount() != null ? toMinorUnits(payment.getAmount()) : null;
+            this.createdAt = payment.getCreatedAt() != null ? payment.getCreatedAt().getTime() : 0;
+        }
+    }
+
+    /**
+     * Growable sorted int array
+     */
+    static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        IntList intersect(IntList other) {
+            IntList result = new IntList();
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (values[i] < other.values[j]) {
+                    i++;
+                } else if (values[i] > other.values[j]) {
+                    j++;
+                } else {
+                    result.add(values[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        long bytes() {
+            return 32 + 4L * values.length;
+        }
+    }
+}
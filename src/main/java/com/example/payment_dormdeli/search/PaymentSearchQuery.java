@@ -0,0 +1,46 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Search filters, all optional and combined with AND. Results are newest first.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentSearchQuery {
+
+    // Substring of orderId, orderInfo or transactionId; case and Vietnamese accents are ignored
+    private String text;
+
+    private String userId;
+
+    private PaymentStatus status;
+
+    private PaymentMethod paymentMethod;
+
+    // Inclusive bounds
+    private BigDecimal minAmount;
+
+    private BigDecimal maxAmount;
+
+    // createdAt in [from, to)
+    private Date from;
+
+    private Date to;
+
+    @Builder.Default
+    private int page = 0;
+
+    @Builder.Default
+    private int size = 20;
+}
@@ -0,0 +1,38 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.dto.PaymentSearchResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentSearchService {
+
+    private final PaymentSearchIndex paymentSearchIndex;
+    private final PaymentSearchFeed paymentSearchFeed;
+
+    /**
+     * Admin search over hot payments; archived ones are not indexed
+     */
+    public PaymentSearchResponse search(PaymentSearchQuery query) {
+        if (!paymentSearchFeed.isReady()) {
+            throw new IllegalStateException("Search index is still loading");
+        }
+        if (query.getMinAmount() != null && query.getMaxAmount() != null
+                && query.getMinAmount().compareTo(query.getMaxAmount()) > 0) {
+            throw new IllegalArgumentException("'minAmount' must not be greater than 'maxAmount'");
+        }
+        if (query.getFrom() != null && query.getTo() != null && !query.getFrom().before(query.getTo())) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (query.getSize() > PaymentSearchIndex.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("'size' must not exceed " + PaymentSearchIndex.MAX_PAGE_SIZE);
+        }
+
+        PaymentSearchResponse response = paymentSearchIndex.search(query);
+        log.info("Payment search matched {} payments in {} us", response.getTotal(), response.getTookMicros());
+        return response;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.dto.BatchPaymentRequest;
+import com.example.payment_dormdeli.dto.BatchPaymentResponse;
+import com.example.payment_dormdeli.dto.PaymentRequest;
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.matching.PendingOrderMatcher;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.qr.VietQrPayload;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchPaymentService {
+
+    private final SePayPaymentService sePayPaymentService;
+    private final VNPayPaymentService vnPayPaymentService;
+    private final PaymentRepository paymentRepository;
+    private final PaymentArchiveService paymentArchiveService;
+    private final PendingOrderMatcher pendingOrderMatcher;
+    private final Validator validator;
+
+    @Value("${payment.batch.max-size:100}")
+    private int maxBatchSize;
+
+    /**
+     * The whole batch is one Firestore commit, so it cannot grow past what saveAll fits in one WriteBatch
+     */
+    @PostConstruct
+    void clampMaxBatchSize() {
+        if (maxBatchSize > PaymentRepository.MAX_SAVE_ALL) {
+            log.warn("payment.batch.max-size {} exceeds the {} payments one Firestore batch can hold; using {}",
+                    maxBatchSize, PaymentRepository.MAX_SAVE_ALL, PaymentRepository.MAX_SAVE_ALL);
+            maxBatchSize = PaymentRepository.MAX_SAVE_ALL;
+        }
+    }
+
+    /**
+     * Create many payments of one method at once.
+     * Items are validated together, existing orderIds are checked with one lookup (plus one in
+     * the archive for those not in the hot collection),
+     * and every valid payment is written in a single batch. Invalid items are reported
+     * as FAILED without blocking the rest.
+     */
+    public BatchPaymentResponse createPayments(BatchPaymentRequest batchRequest, String ipAddress) {
+        PaymentMethod method = batchRequest.getPaymentMethod() != null
+                ? batchRequest.getPaymentMethod()
+                : PaymentMethod.SEPAY;
+        List<PaymentRequest> requests = batchRequest.getPayments();
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize);
+        }
+
+        PaymentResponse[] results = new PaymentResponse[requests.size()];
+        Map<String, Integer> accepted = new LinkedHashMap<>();
+
+        // Validate each item and reject duplicates inside the batch
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            String error = validate(request, method);
+            if (error == null && accepted.containsKey(request.getOrderId())) {
+                error = "Duplicate order ID in batch";
+            }
+            if (error != null) {
+                results[i] = failed(request, error);
+            } else {
+                accepted.put(request.getOrderId(), i);
+            }
+        }
+
+        List<Payment> payments = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<String> paymentUrls = new ArrayList<>();
+        List<String> qrPayloads = new ArrayList<>();
+
+        try {
+            // Reject orderIds that already exist, hot first and then archived (a payment archived
+            // in between has left the hot collection only after reaching the archive)
+            Set<String> existing = new HashSet<>();
+            if (!accepted.isEmpty()) {
+                existing.addAll(paymentRepository.findByOrderIds(accepted.keySet()).keySet());
+                Set<String> notHot = new LinkedHashSet<>(accepted.keySet());
+                notHot.removeAll(existing);
+                existing.addAll(paymentArchiveService.findByOrderIds(notHot).keySet());
+            }
+
+            for (Map.Entry<String, Integer> entry : accepted.entrySet()) {
+                int position = entry.getValue();
+                PaymentRequest request = requests.get(position);
+
+                if (existing.contains(entry.getKey())) {
+                    results[position] = failed(request, "Order ID already exists");
+                    continue;
+                }
+
+                String qrPayload = method == PaymentMethod.SEPAY ? sePayPaymentService.qrPayload(request) : null;
+                String paymentUrl = method == PaymentMethod.VNPAY
+                        ? vnPayPaymentService.buildPaymentUrl(request, ipAddress)
+                        : sePayPaymentService.qrImageUrl(request);
+
+                payments.add(Payment.builder()
+                        .orderId(request.getOrderId())
+                        .paymentMethod(method)
+                        .status(PaymentStatus.PENDING)
+                        .amount(request.getAmount())
+                        .orderInfo(request.getOrderInfo())
+                        .userId(request.getUserId())
+                        .extraData(request.getExtraData())
+                        .paymentUrl(method == PaymentMethod.VNPAY ? paymentUrl : null)
+                        .build());
+                positions.add(position);
+                paymentUrls.add(paymentUrl);
+                qrPayloads.add(qrPayload);
+            }
+
+            if (!payments.isEmpty()) {
+                paymentRepository.saveAll(payments);
+                payments.forEach(pendingOrderMatcher::add);
+            }
+
+            for (int i = 0; i < payments.size(); i++) {
+                Payment payment = payments.get(i);
+                results[positions.get(i)] = PaymentResponse.builder()
+                        .orderId(payment.getOrderId())
+                        .paymentUrl(paymentUrls.get(i))
+                        .qrPayload(qrPayloads.get(i))
+                        .status(PaymentStatus.PENDING)
+                        .amount(payment.getAmount())
+                        .message(method == PaymentMethod.VNPAY
+                                ? "VNPay payment URL created successfully"
+                                : "Scan QR code to pay via bank transfer")
+                        .build();
+            }
+        } catch (Exception e) {
+            log.error("Error creating payment batch", e);
+            for (Map.Entry<String, Integer> entry : accepted.entrySet()) {
+                int position = entry.getValue();
+                if (results[position] == null || results[position].getStatus() == PaymentStatus.PENDING) {
+                    results[position] = failed(requests.get(position), "Error: " + e.getMessage());
+                }
+            }
+        }
+
+        int succeeded = (int) Arrays.stream(results)
+                .filter(result -> result.getStatus() == PaymentStatus.PENDING)
+                .count();
+        log.info("Batch create ({}): {} of {} payments created", method, succeeded, results.length);
+
+        return BatchPaymentResponse.builder()
+                .total(results.length)
+                .succeeded(succeeded)
+                .failed(results.length - succeeded)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private String validate(PaymentRequest request, PaymentMethod method) {
+        if (request == null) {
+            return "Payment request is required";
+        }
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return method == PaymentMethod.SEPAY ? validateQr(request) : null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * SePay orders travel as the VietQR transfer content, which has to fit the QR payload
+     */
+    private String validateQr(PaymentRequest request) {
+        try {
+            VietQrPayload.validate(request.getAmount().longValue(), request.getOrderId());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private PaymentResponse failed(PaymentRequest request, String message) {
+        return PaymentResponse.builder()
+                .orderId(request != null ? request.getOrderId() : null)
+                .status(PaymentStatus.FAILED)
+                .amount(request != null ? request.getAmount() : null)
+                .message(message)
+                .build();
+    }
+}
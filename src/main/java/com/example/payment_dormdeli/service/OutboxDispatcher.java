@@ -0,0 +1,251 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.OutboxConfig;
+import com.example.payment_dormdeli.dto.PaymentNotification;
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.OutboxRecord;
+import com.example.payment_dormdeli.model.OutboxState;
+import com.example.payment_dormdeli.repository.PaymentOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains the payment outbox: due records are claimed, grouped per destination and POSTed in batches,
+ * with at most maxConcurrency batches in flight per destination. Failed batches are retried
+ * with exponential backoff until maxAttempts, then marked DEAD.
+ *
+ * Each instance claims only as many records as it has free batch slots for, so instances share the
+ * outbox instead of all sending the same records. A record whose claim lapses (instance stopped
+ * mid-delivery) is claimed again after outbox.lease-ms and may then be delivered twice; receivers
+ * dedupe on notificationId.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxDispatcher implements MetricsSource {
+
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final OutboxConfig outboxConfig;
+    private final WebClient.Builder webClientBuilder;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    // Records this instance is sending right now, for metrics
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LatencyHistogram deliveryLagMs = new LatencyHistogram();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+    private final LongAdder lostClaims = new LongAdder();
+
+    /**
+     * Fail at startup rather than fill the outbox with retries towards a destination that was never set
+     */
+    @PostConstruct
+    void validateConfig() {
+        if (!outboxConfig.isEnabled()) {
+            return;
+        }
+        outboxConfig.getDestinations().forEach((name, destination) -> {
+            if (destination.getUrl() == null || destination.getUrl().isBlank()) {
+                throw new IllegalStateException("outbox.destinations." + name + ".url is required when the outbox is enabled");
+            }
+            if (outboxConfig.getLeaseMs() <= destination.getTimeoutMs()) {
+                throw new IllegalStateException("outbox.lease-ms must exceed outbox.destinations." + name + ".timeout-ms");
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        if (!outboxConfig.isEnabled() || outboxConfig.getDestinations().isEmpty()) {
+            return;
+        }
+
+        // Claim no more than the free batch slots can send now; anything else stays for other instances
+        int batchSize = Math.max(1, outboxConfig.getBatchSize());
+        int limit = batchSize * outboxConfig.getDestinations().entrySet().stream()
+                .mapToInt(entry -> permitsFor(entry.getKey(), entry.getValue()).availablePermits())
+                .sum();
+        if (limit == 0) {
+            return;
+        }
+        List<OutboxRecord> due = paymentOutboxRepository.claimDue(new Date(), limit, outboxConfig.getLeaseMs());
+
+        Map<String, List<OutboxRecord>> byDestination = new LinkedHashMap<>();
+        for (OutboxRecord record : due) {
+            byDestination.computeIfAbsent(record.getDestination(), d -> new ArrayList<>()).add(record);
+        }
+
+        byDestination.forEach(this::dispatchTo);
+    }
+
+    private void dispatchTo(String name, List<OutboxRecord> records) {
+        OutboxConfig.Destination destination = outboxConfig.getDestinations().get(name);
+        if (destination == null) {
+            log.error("Outbox destination '{}' is not configured, dropping {} records", name, records.size());
+            for (OutboxRecord record : records) {
+                record.setState(OutboxState.DEAD);
+                record.setLastError("Unknown destination");
+            }
+            dead.add(records.size());
+            saveDelivery(records);
+            return;
+        }
+
+        Semaphore semaphore = permitsFor(name, destination);
+        int batchSize = Math.max(1, outboxConfig.getBatchSize());
+
+        for (int i = 0; i < records.size(); i += batchSize) {
+            if (!semaphore.tryAcquire()) {
+                // Destination busy: hand the rest back so any instance can send it on its next poll
+                release(records.subList(i, records.size()));
+                return;
+            }
+
+            List<OutboxRecord> batch = records.subList(i, Math.min(i + batchSize, records.size()));
+            batch.forEach(record -> inFlight.add(record.getId()));
+
+            executor.execute(() -> {
+                try {
+                    deliver(name, destination, batch);
+                } finally {
+                    batch.forEach(record -> inFlight.remove(record.getId()));
+                    semaphore.release();
+                }
+            });
+        }
+    }
+
+    private Semaphore permitsFor(String name, OutboxConfig.Destination destination) {
+        return permits.computeIfAbsent(name, n -> new Semaphore(Math.max(1, destination.getMaxConcurrency())));
+    }
+
+    private void release(List<OutboxRecord> records) {
+        Date now = new Date();
+        for (OutboxRecord record : records) {
+            record.setState(OutboxState.PENDING);
+            record.setNextAttemptAt(now);
+        }
+        saveDelivery(records);
+    }
+
+    private void deliver(String name, OutboxConfig.Destination destination, List<OutboxRecord> batch) {
+        List<PaymentNotification> notifications = new ArrayList<>(batch.size());
+        for (OutboxRecord record : batch) {
+            notifications.add(PaymentNotification.builder()
+                    .notificationId(record.getId())
+                    .orderId(record.getOrderId())
+                    .status(record.getStatus())
+                    .amount(record.getAmount())
+                    .transactionId(record.getTransactionId())
+                    .completedAt(record.getCompletedAt())
+                    .build());
+        }
+
+        try {
+            webClientBuilder.build()
+                    .post()
+                    .uri(destination.getUrl())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(notifications)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block(Duration.ofMillis(destination.getTimeoutMs()));
+
+            Date deliveredAt = new Date();
+            for (OutboxRecord record : batch) {
+                record.setState(OutboxState.DELIVERED);
+                record.setAttempts(record.getAttempts() + 1);
+                record.setDeliveredAt(deliveredAt);
+                record.setLastError(null);
+                if (record.getCreatedAt() != null) {
+                    deliveryLagMs.record(deliveredAt.getTime() - record.getCreatedAt().getTime());
+                }
+            }
+            delivered.add(batch.size());
+            log.info("Delivered {} payment notifications to {}", batch.size(), name);
+        } catch (Exception e) {
+            log.warn("Failed to deliver {} payment notifications to {}: {}", batch.size(), name, e.getMessage());
+            failedAttempts.add(batch.size());
+
+            long now = System.currentTimeMillis();
+            for (OutboxRecord record : batch) {
+                record.setAttempts(record.getAttempts() + 1);
+                record.setLastError(e.getMessage());
+                if (record.getAttempts() >= outboxConfig.getMaxAttempts()) {
+                    record.setState(OutboxState.DEAD);
+                    dead.increment();
+                    log.error("Giving up on notification {} for order {} after {} attempts",
+                            record.getId(), record.getOrderId(), record.getAttempts());
+                } else {
+                    record.setState(OutboxState.PENDING);
+                    record.setNextAttemptAt(new Date(now + backoffMs(record.getAttempts())));
+                }
+            }
+        }
+
+        saveDelivery(batch);
+    }
+
+    private void saveDelivery(List<OutboxRecord> records) {
+        try {
+            int lost = paymentOutboxRepository.updateDelivery(records);
+            if (lost > 0) {
+                lostClaims.add(lost);
+                log.warn("{} outbox records were claimed again after their lease lapsed; left their new state alone", lost);
+            }
+        } catch (Exception e) {
+            // Records stay SENDING until their lease lapses, then are sent again; receivers dedupe on notificationId
+            log.error("Error saving outbox delivery state: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: initial * 2^(attempts-1), capped, scaled by 50-100%
+     */
+    long backoffMs(int attempts) {
+        long exponential = outboxConfig.getInitialBackoffMs() << Math.min(attempts - 1, 30);
+        long capped = Math.min(outboxConfig.getMaxBackoffMs(), exponential);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "outbox";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("delivered", delivered.sum());
+        metrics.put("failedAttempts", failedAttempts.sum());
+        metrics.put("dead", dead.sum());
+        metrics.put("lostClaims", lostClaims.sum());
+        metrics.put("inFlight", inFlight.size());
+        metrics.put("deliveryLagMs", deliveryLagMs.snapshot());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.ArchiveConfig;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.repository.PaymentArchiveRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the hot payments collection small by moving settled payments to monthly archive
+ * collections. PaymentRepository only ever reads the hot collection; archived payments are
+ * read through this service.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentArchiveService implements MetricsSource {
+
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final int DEFAULT_MONTHS = 12;
+
+    private final PaymentArchiveRepository paymentArchiveRepository;
+    private final ArchiveConfig archiveConfig;
+
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private volatile long lastRunAt;
+    private volatile long lastRunArchived;
+
+    @Scheduled(fixedDelayString = "${payment.archive.interval-ms:3600000}",
+            initialDelayString = "${payment.archive.initial-delay-ms:300000}")
+    public void scheduledArchive() {
+        if (!archiveConfig.isEnabled()) {
+            return;
+        }
+        try {
+            archive();
+        } catch (Exception e) {
+            log.error("Error archiving payments: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move settled payments older than minAgeDays, up to maxPerRun; returns how many moved
+     */
+    public synchronized int archive() {
+        Date settledBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveConfig.getMinAgeDays()));
+        int batchSize = Math.max(1, archiveConfig.getBatchSize());
+        int total = 0;
+
+        while (total < archiveConfig.getMaxPerRun()) {
+            int moved = paymentArchiveRepository.archiveBatch(archiveConfig.getStatuses(), settledBefore,
+                    Math.min(batchSize, archiveConfig.getMaxPerRun() - total));
+            total += moved;
+            if (moved < batchSize) {
+                // Hot collection drained, or a batch lost a race and waits for the next run
+                break;
+            }
+        }
+
+        runs.increment();
+        archived.add(total);
+        lastRunAt = System.currentTimeMillis();
+        lastRunArchived = total;
+        if (total > 0) {
+            log.info("Archived {} payments settled before {}", total, settledBefore);
+        }
+        return total;
+    }
+
+    public Optional<Payment> findByOrderId(String orderId) {
+        return paymentArchiveRepository.findByOrderId(orderId);
+    }
+
+    /**
+     * Archived payments of many orders, keyed by orderId
+     */
+    public Map<String, Payment> findByOrderIds(Collection<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return paymentArchiveRepository.findByOrderIds(orderIds);
+    }
+
+    /**
+     * Archived payments of a user by creation month, inclusive.
+     * Defaults to the last 12 months, Vietnam time.
+     */
+    public List<Payment> findByUserId(String userId, YearMonth from, YearMonth to) {
+        YearMonth end = to != null ? to : YearMonth.now(VN_ZONE);
+        YearMonth start = from != null ? from : end.minusMonths(DEFAULT_MONTHS - 1);
+
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.MONTHS.between(start, end) >= archiveConfig.getMaxMonths()) {
+            throw new IllegalArgumentException("Month range must not exceed " + archiveConfig.getMaxMonths() + " months");
+        }
+
+        return paymentArchiveRepository.findByUserId(userId, start, end);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "archive";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", archiveConfig.isEnabled());
+        metrics.put("runs", runs.sum());
+        metrics.put("archived", archived.sum());
+        metrics.put("lastRunArchived", lastRunArchived);
+        metrics.put("lastRunAt", lastRunAt > 0 ? new Date(lastRunAt) : null);
+        return metrics;
+    }
+}
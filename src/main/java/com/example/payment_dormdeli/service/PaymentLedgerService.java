@@ -0,0 +1,107 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentLedgerService {
+
+    private final PaymentEventRepository paymentEventRepository;
+
+    /**
+     * All ledger events of an order, oldest first
+     */
+    public List<PaymentEvent> getEvents(String orderId) {
+        return paymentEventRepository.findByOrderId(orderId, 0);
+    }
+
+    /**
+     * Rebuild the current state of an order from its latest snapshot
+     * plus the events written after it
+     */
+    public Payment replay(String orderId) {
+        Payment state = paymentEventRepository.findSnapshot(orderId).orElse(null);
+        long afterSequence = state != null && state.getVersion() != null ? state.getVersion() : 0;
+
+        List<PaymentEvent> events = paymentEventRepository.findByOrderId(orderId, afterSequence);
+        for (PaymentEvent event : events) {
+            state = apply(state, event);
+        }
+
+        log.info("Replayed order {} from sequence {} over {} events", orderId, afterSequence, events.size());
+        return state;
+    }
+
+    /**
+     * Events of all orders in [from, to), in time order
+     */
+    public List<PaymentEvent> getEventsBetween(Date from, Date to) {
+        if (!from.before(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        return paymentEventRepository.findBetween(from, to);
+    }
+
+    /**
+     * Fold one event into the payment state
+     */
+    static Payment apply(Payment state, PaymentEvent event) {
+        if (state == null && event.getType() != PaymentEventType.CREATED) {
+            // Payment created before the ledger existed
+            state = Payment.builder()
+                    .id(event.getPaymentId())
+                    .orderId(event.getOrderId())
+                    .build();
+        }
+
+        switch (event.getType()) {
+            case CREATED:
+                state = Payment.builder()
+                        .id(event.getPaymentId())
+                        .orderId(event.getOrderId())
+                        .paymentMethod(event.getPaymentMethod())
+                        .status(PaymentStatus.PENDING)
+                        .amount(event.getAmount())
+                        .orderInfo(event.getOrderInfo())
+                        .userId(event.getUserId())
+                        .extraData(event.getExtraData())
+                        .createdAt(event.getOccurredAt())
+                        .build();
+                break;
+            case URL_ISSUED:
+                state.setPaymentUrl(event.getPaymentUrl());
+                break;
+            case WEBHOOK_RECEIVED:
+            case GATEWAY_QUERIED:
+                // Audit only, the resulting status change is its own event
+                break;
+            default:
+                state.setStatus(event.getType().getResultingStatus());
+                if (event.getTransactionId() != null) {
+                    state.setTransactionId(event.getTransactionId());
+                }
+                if (event.getErrorMessage() != null) {
+                    state.setErrorMessage(event.getErrorMessage());
+                }
+                if (event.getCompletedAt() != null) {
+                    state.setCompletedAt(event.getCompletedAt());
+                }
+                break;
+        }
+
+        state.setVersion(event.getSequence());
+        state.setUpdatedAt(event.getOccurredAt());
+        return state;
+    }
+}
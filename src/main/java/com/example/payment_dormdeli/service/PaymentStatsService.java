@@ -0,0 +1,42 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.dto.PaymentStatsResponse;
+import com.example.payment_dormdeli.repository.PaymentStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatsService {
+
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final int DEFAULT_DAYS = 30;
+    private static final int MAX_DAYS = 366;
+
+    private final PaymentStatsRepository paymentStatsRepository;
+
+    /**
+     * Aggregated counts and amounts for the given days (inclusive).
+     * Defaults to the last 30 days, Vietnam time.
+     */
+    public PaymentStatsResponse getStats(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now(VN_ZONE);
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_DAYS) {
+            throw new IllegalArgumentException("Date range must not exceed " + MAX_DAYS + " days");
+        }
+
+        log.info("Reading payment stats from {} to {}", start, end);
+        return paymentStatsRepository.getStats(start, end);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Last known state of recently read payments, keyed by orderId, for status polling.
+ *
+ * SUCCESS is final for webhooks and callbacks, but an admin refund or a bulk operation can still
+ * move it, so it is kept for success-ttl-ms rather than for ever. FAILED/CANCELLED/EXPIRED can
+ * turn into SUCCESS when a late transfer arrives and are kept for settled-ttl-ms; pending ones for
+ * pending-ttl-ms. The same split drives the Cache-Control header of GET /payment/status/{orderId}.
+ *
+ * Entries are dropped early by StatusCacheInvalidator, but only for writes made by this instance:
+ * the event bus is in-process. Another replica keeps serving its copy until the TTL runs out, so
+ * each TTL is also the longest time a replica can lag behind a write made elsewhere.
+ */
+@Component
+@Slf4j
+public class PaymentStatusCache implements MetricsSource {
+
+    private final int maxEntries;
+    private final long pendingTtlMs;
+    private final long settledTtlMs;
+    private final long successTtlMs;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public PaymentStatusCache(@Value("${payment.status-cache.max-entries:10000}") int maxEntries,
+                              @Value("${payment.status-cache.pending-ttl-ms:2000}") long pendingTtlMs,
+                              @Value("${payment.status-cache.settled-ttl-ms:60000}") long settledTtlMs,
+                              @Value("${payment.status-cache.success-ttl-ms:300000}") long successTtlMs) {
+        this.maxEntries = maxEntries;
+        this.pendingTtlMs = pendingTtlMs;
+        this.settledTtlMs = settledTtlMs;
+        this.successTtlMs = successTtlMs;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PaymentStatusCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * How long a payment in this status may be served without reading the store again
+     */
+    private long ttlMs(PaymentStatus status) {
+        if (status == PaymentStatus.SUCCESS) {
+            return successTtlMs;
+        }
+        if (status == PaymentStatus.FAILED || status == PaymentStatus.CANCELLED || status == PaymentStatus.EXPIRED) {
+            return settledTtlMs;
+        }
+        return pendingTtlMs;
+    }
+
+    /**
+     * Settled states may be cached by the client for as long as this cache keeps them, pending ones
+     * must be revalidated with the ETag on every poll. Always private: the body carries the userId,
+     * transactionId and extraData, which a shared proxy cache must not hand to anyone else.
+     */
+    public CacheControl cacheControlFor(Payment payment) {
+        switch (payment.getStatus()) {
+            case SUCCESS:
+                return CacheControl.maxAge(successTtlMs, TimeUnit.MILLISECONDS).cachePrivate().mustRevalidate();
+            case FAILED:
+            case CANCELLED:
+            case EXPIRED:
+                return CacheControl.maxAge(settledTtlMs, TimeUnit.MILLISECONDS).cachePrivate().mustRevalidate();
+            default:
+                return CacheControl.noCache();
+        }
+    }
+
+    /**
+     * Strong validator for the payment's current state
+     */
+    public static String etagOf(Payment payment) {
+        long version = payment.getVersion() != null ? payment.getVersion() : 0;
+        long updatedAt = payment.getUpdatedAt() != null ? payment.getUpdatedAt().getTime() : 0;
+        return "\"" + version + "-" + Long.toHexString(updatedAt) + "-" + payment.getStatus() + "\"";
+    }
+
+    /**
+     * Cached payment if it is still fresh, else null
+     */
+    public Payment get(String orderId) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(orderId);
+        }
+        long ttlMs = entry != null ? ttlMs(entry.payment.getStatus()) : 0;
+        if (entry != null && System.currentTimeMillis() - entry.cachedAt < ttlMs) {
+            hits.increment();
+            return entry.payment;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Fresh cached payment, else the loader's result, which is then cached. A hit is not put back,
+     * so an entry expires a TTL after the store read no matter how often it is polled.
+     */
+    public Payment getOrLoad(String orderId, Supplier<Payment> loader) {
+        Payment payment = get(orderId);
+        if (payment == null) {
+            payment = loader.get();
+            put(payment);
+        }
+        return payment;
+    }
+
+    /**
+     * Cached payment regardless of age, for when the store cannot be read
+     */
+    public Payment getStale(String orderId) {
+        synchronized (entries) {
+            Entry entry = entries.get(orderId);
+            return entry != null ? entry.payment : null;
+        }
+    }
+
+    public void put(Payment payment) {
+        if (payment == null || payment.getOrderId() == null) {
+            return;
+        }
+        Entry entry = new Entry(payment, System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(payment.getOrderId(), entry);
+        }
+    }
+
+    public void invalidate(String orderId) {
+        synchronized (entries) {
+            if (entries.remove(orderId) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "statusCache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("invalidations", invalidations.sum());
+        return metrics;
+    }
+
+    private static final class Entry {
+        final Payment payment;
+        final long cachedAt;
+
+        Entry(Payment payment, long cachedAt) {
+            this.payment = payment;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.RateLimitConfig;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimiterService implements MetricsSource {
+
+    private final RateLimitConfig rateLimitConfig;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, long[]> limits = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Limit one client behind a possibly shared IP (a dorm NAT): first the client's own bucket of
+     * endpoint, keyed by ip and clientId, then the bucket of endpoint + "-ip" shared by everyone on
+     * that ip. The own bucket keeps one client from using up its neighbours' share; the shared one
+     * caps what a client gains by sending a different (unverified) clientId on every call.
+     *
+     * @return 0 if the request is allowed, otherwise nanoseconds until it would be
+     */
+    public long tryAcquire(String endpoint, String ip, String clientId) {
+        long waitNanos = tryAcquire(endpoint, clientId != null ? "ip:" + ip + "|" + clientId : "ip:" + ip);
+        if (waitNanos > 0) {
+            return waitNanos;
+        }
+        return tryAcquire(endpoint + "-ip", "ip:" + ip);
+    }
+
+    /**
+     * Try to take one token for the client on the given endpoint.
+     * Token bucket implemented as GCRA: each bucket is a single "theoretical arrival time",
+     * updated with a CAS so no locks are taken on the request path.
+     *
+     * @return 0 if the request is allowed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String endpoint, String clientKey) {
+        if (!rateLimitConfig.isEnabled()) {
+            return 0;
+        }
+
+        long[] limit = limits.computeIfAbsent(endpoint, this::resolveLimit);
+        if (limit.length == 0) {
+            return 0;
+        }
+        long interval = limit[0];
+        long burst = limit[1];
+
+        AtomicLong tat = buckets.computeIfAbsent(endpoint + '|' + clientKey, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long next = (current - now < 0 ? now : current) + interval;
+            long excess = next - now - burst;
+            if (excess > 0) {
+                rejected.increment();
+                return excess;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that have been idle long enough to be full again,
+     * so one-off clients do not accumulate in memory
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rateLimitConfig.getIdleEvictionMs());
+        int before = buckets.size();
+        buckets.values().removeIf(tat -> tat.get() - cutoff < 0);
+        int dropped = before - buckets.size();
+        if (dropped > 0) {
+            evicted.add(dropped);
+            log.debug("Evicted {} idle rate limit buckets", dropped);
+        }
+    }
+
+    /**
+     * Emission interval and burst tolerance in nanoseconds, or an empty array if the endpoint is unlimited
+     */
+    private long[] resolveLimit(String endpoint) {
+        RateLimitConfig.Limit limit = rateLimitConfig.getEndpoints().get(endpoint);
+        if (limit == null || limit.getRefillPerSecond() <= 0 || limit.getCapacity() <= 0) {
+            return new long[0];
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRefillPerSecond());
+        return new long[] { interval, interval * limit.getCapacity() };
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "rateLimit";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("buckets", buckets.size());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("evicted", evicted.sum());
+        return metrics;
+    }
+}
@@ -1,48 +1,68 @@
 package com.example.payment_dormdeli.service;
 
 import com.example.payment_dormdeli.config.SePayConfig;
+import com.example.payment_dormdeli.deadline.DeadlineExceededException;
 import com.example.payment_dormdeli.dto.PaymentRequest;
 import com.example.payment_dormdeli.dto.PaymentResponse;
-import com.example.payment_dormdeli.dto.sepay.SePayQRRequest;
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
 import com.example.payment_dormdeli.dto.sepay.SePayTransferInfo;
+import com.example.payment_dormdeli.jfr.PaymentJfrEvent;
+import com.example.payment_dormdeli.jfr.WebhookHandleEvent;
+import com.example.payment_dormdeli.limiter.LoadSheddingException;
+import com.example.payment_dormdeli.matching.PendingOrderMatcher;
+import com.example.payment_dormdeli.matching.TransactionMatch;
 import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
 import com.example.payment_dormdeli.model.PaymentMethod;
 import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.qr.VietQrService;
 import com.example.payment_dormdeli.repository.PaymentRepository;
+import com.example.payment_dormdeli.tracing.Span;
+import com.example.payment_dormdeli.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.math.BigDecimal;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SePayPaymentService {
-    private final WebClient.Builder webClientBuilder;
-    
     private final SePayConfig sePayConfig;
     private final PaymentRepository paymentRepository;
+    private final PaymentArchiveService paymentArchiveService;
+    private final PendingOrderMatcher pendingOrderMatcher;
+    private final SePayTransactionSync sePayTransactionSync;
+    private final VietQrService vietQrService;
+    
+    @Value("${payment.batch.max-size:100}")
+    private int maxBatchSize;
     
     /**
      * Tạo yêu cầu thanh toán SePay bằng QR code
      * SePay hoạt động qua chuyển khoản ngân hàng, không có API tạo payment URL
-     * Client sẽ tạo QR code từ thông tin tài khoản ngân hàng
+     * Trả về VietQR payload và URL ảnh QR do service tự render
      */
     public PaymentResponse createPayment(PaymentRequest request) {
         try {
-            // Check if order already exists
-            if (paymentRepository.findByOrderId(request.getOrderId()).isPresent()) {
+            // Check if order already exists, archived orders included. The hot collection is read
+            // first: a payment archived in between has left it only after reaching the archive
+            if (paymentRepository.findByOrderId(request.getOrderId()).isPresent()
+                    || paymentArchiveService.findByOrderId(request.getOrderId()).isPresent()) {
                 return PaymentResponse.builder()
                         .status(PaymentStatus.FAILED)
                         .message("Order ID already exists")
                         .build();
             }
             
+            // Build the VietQR payload first so an order it cannot carry is rejected before saving
+            String qrPayload = vietQrService.payload(request.getAmount().longValue(), request.getOrderId());
+            
             // Create payment record
             Payment payment = Payment.builder()
                     .orderId(request.getOrderId())
@@ -55,19 +75,19 @@ public class SePayPaymentService {
                     .build();
             
             paymentRepository.save(payment);
-            
-            // Generate QR content for bank transfer
-            // Format: Bank Code + Account Number + Amount + Content
-            String qrContent = generateQRContent(request);
+            pendingOrderMatcher.add(payment);
             
             return PaymentResponse.builder()
                     .orderId(request.getOrderId())
-                    .paymentUrl(qrContent) // QR content for bank transfer
+                    .paymentUrl(vietQrService.imageUrl(request.getAmount().longValue(), request.getOrderId()))
+                    .qrPayload(qrPayload)
                     .status(PaymentStatus.PENDING)
                     .amount(request.getAmount())
                     .message("Scan QR code to pay via bank transfer")
                     .build();
             
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error creating SePay payment", e);
             return PaymentResponse.builder()
@@ -78,36 +98,42 @@ public class SePayPaymentService {
     }
     
     /**
-     * Generate QR code content for bank transfer
-     * Uses VietQR standard format
+     * VietQR payload for the transfer (orderId as content, for tracking); rejects an order the QR cannot carry
      */
-    private String generateQRContent(PaymentRequest request) {
-        SePayQRRequest qrRequest = SePayQRRequest.builder()
-                .accountNumber(sePayConfig.getAccountNumber())
-                .accountName(sePayConfig.getAccountName())
-                .bankCode(sePayConfig.getBankCode())
-                .amount(request.getAmount())
-                .content(request.getOrderId()) // Use orderId as transfer content for tracking
-                .build();
-        
-        // VietQR format: https://api.vietqr.io/v2/generate
-        String qrUrl = String.format(
-                "https://img.vietqr.io/image/%s-%s-%s.png?amount=%s&addInfo=%s&accountName=%s",
-                qrRequest.getBankCode(),
-                qrRequest.getAccountNumber(),
-                "compact",
-                qrRequest.getAmount().longValue(),
-                qrRequest.getContent(),
-                qrRequest.getAccountName().replace(" ", "%20")
-        );
-        
-        return qrUrl;
+    String qrPayload(PaymentRequest request) {
+        return vietQrService.payload(request.getAmount().longValue(), request.getOrderId());
+    }
+    
+    /**
+     * URL of the locally rendered VietQR image for the transfer; build the payload first, so the
+     * URL cannot point at a QR that fails to render
+     */
+    String qrImageUrl(PaymentRequest request) {
+        return vietQrService.imageUrl(request.getAmount().longValue(), request.getOrderId());
     }
     
     /**
      * Handle webhook from SePay when payment is received
      */
     public boolean handleWebhook(SePayTransferInfo transferInfo) {
+        WebhookHandleEvent event = new WebhookHandleEvent();
+        event.begin();
+        String outcome = "error";
+        try {
+            boolean handled = processWebhook(transferInfo);
+            outcome = handled ? "handled" : "rejected";
+            return handled;
+        } catch (RuntimeException e) {
+            outcome = PaymentJfrEvent.outcomeOf(e);
+            throw e;
+        } finally {
+            // Order ID only worked out when the event is recorded
+            String orderId = event.isEnabled() && transferInfo != null ? extractOrderId(transferInfo.getContent()) : null;
+            event.finish(orderId, PaymentMethod.SEPAY, outcome);
+        }
+    }
+    
+    private boolean processWebhook(SePayTransferInfo transferInfo) {
         try {
             log.info("Received SePay webhook: {}", transferInfo);
             
@@ -133,9 +159,19 @@ public class SePayPaymentService {
                 return false;
             }
             
+            PaymentEvent webhookEvent = PaymentEvent.builder()
+                    .type(PaymentEventType.WEBHOOK_RECEIVED)
+                    .transactionId(transferInfo.getReference_number())
+                    .amount(transferInfo.getTransfer_amount() != null
+                            ? BigDecimal.valueOf(transferInfo.getTransfer_amount())
+                            : null)
+                    .detail(transferInfo.getContent())
+                    .build();
+            
             // Check if already processed
             if (payment.getStatus() == PaymentStatus.SUCCESS) {
                 log.info("Payment already processed for order: {}", orderId);
+                paymentRepository.recordEvent(payment, webhookEvent);
                 return true;
             }
             
@@ -145,9 +181,11 @@ public class SePayPaymentService {
                 if (transferAmount.compareTo(payment.getAmount()) < 0) {
                     log.error("Transfer amount {} is less than payment amount {} for order: {}", 
                             transferAmount, payment.getAmount(), orderId);
+                    PaymentStatus previousStatus = payment.getStatus();
                     payment.setStatus(PaymentStatus.FAILED);
                     payment.setErrorMessage("Insufficient amount transferred");
-                    paymentRepository.save(payment);
+                    paymentRepository.updateStatus(payment, previousStatus, webhookEvent);
+                    pendingOrderMatcher.remove(orderId);
                     return false;
                 }
             } else {
@@ -155,16 +193,20 @@ public class SePayPaymentService {
             }
             
             // Update payment
+            PaymentStatus previousStatus = payment.getStatus();
             payment.setTransactionId(transferInfo.getReference_number() != null ? 
                     transferInfo.getReference_number() : 
                     "SEPAY_" + transferInfo.getId());
             payment.setStatus(PaymentStatus.SUCCESS);
             payment.setCompletedAt(new Date());
-            paymentRepository.save(payment);
+            paymentRepository.updateStatus(payment, previousStatus, webhookEvent);
+            pendingOrderMatcher.remove(orderId);
             
             log.info("Updated payment status for order: {} to SUCCESS", orderId);
             return true;
             
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error handling SePay webhook", e);
             return false;
@@ -204,77 +246,140 @@ public class SePayPaymentService {
         return payment;
     }
     
+    /**
+     * Get many payments at once (order history screens).
+     * Payments are loaded with one multi-order lookup and all PENDING SePay orders
+     * are reconciled against the synced transaction feed in one pass.
+     */
+    public Map<String, Payment> getPaymentsByOrderIds(List<String> orderIds) {
+        if (orderIds.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize);
+        }
+        
+        Map<String, Payment> payments = paymentRepository.findByOrderIds(orderIds);
+        
+        List<Payment> pending = new ArrayList<>();
+        for (Payment payment : payments.values()) {
+            if (payment.getStatus() == PaymentStatus.PENDING && payment.getPaymentMethod() == PaymentMethod.SEPAY) {
+                pending.add(payment);
+            }
+        }
+        
+        if (!pending.isEmpty()) {
+            try {
+                log.info("Checking SePay API for {} pending orders", pending.size());
+                List<TransactionMatch> matches = PendingOrderMatcher.matchPayments(pending, transactionsFor(pending));
+                confirmMatches(matches, payments);
+            } catch (Exception e) {
+                log.error("Error checking SePay API: {}", e.getMessage());
+            }
+        }
+        
+        return payments;
+    }
+    
     /**
      * Check SePay API for payment updates
      */
     private void checkPaymentFromSePay(Payment payment) {
-        try {
+        try (Span span = Tracer.span("sepay.checkPayment")) {
             log.info("Checking SePay API for order: {}", payment.getOrderId());
-            
-            WebClient webClient = webClientBuilder.build();
-            
-            // Call SePay API to get recent transactions
-            Map<String, Object> response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .scheme("https")
-                            .host("my.sepay.vn")
-                            .path("/userapi/transactions/list")
-                            .queryParam("limit", 50)
-                            .build())
-                    .header("Authorization", "Bearer " + sePayConfig.getApiKey())
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-            
-            if (response != null && response.containsKey("transactions")) {
-                List<Map<String, Object>> transactions = (List<Map<String, Object>>) response.get("transactions");
-                
-                // Find matching transaction
-                for (Map<String, Object> txn : transactions) {
-                    String content = (String) txn.get("transaction_content");
-                    
-                    if (content != null && content.contains(payment.getOrderId())) {
-                        // Found matching transaction
-                        Object amountObj = txn.get("amount_in");
-                        long transferAmount = 0;
-                        
-                        if (amountObj instanceof Integer) {
-                            transferAmount = ((Integer) amountObj).longValue();
-                        } else if (amountObj instanceof Long) {
-                            transferAmount = (Long) amountObj;
-                        } else if (amountObj instanceof Double) {
-                            transferAmount = ((Double) amountObj).longValue();
-                        }
-                        
-                        BigDecimal amount = BigDecimal.valueOf(transferAmount);
-                        
-                        // Verify amount
-                        if (amount.compareTo(payment.getAmount()) >= 0) {
-                            payment.setStatus(PaymentStatus.SUCCESS);
-                            payment.setTransactionId((String) txn.get("reference_number"));
-                            payment.setCompletedAt(new Date());
-                            paymentRepository.save(payment);
-                            log.info("Payment confirmed for order: {}", payment.getOrderId());
-                            break;
-                        }
-                    }
-                }
-            }
-            
+            List<TransactionMatch> matches = PendingOrderMatcher.matchPayments(
+                    Collections.singletonList(payment), transactionsFor(Collections.singletonList(payment)));
+            confirmMatches(matches, Collections.singletonMap(payment.getOrderId(), payment));
         } catch (Exception e) {
             log.error("Error checking SePay API: {}", e.getMessage());
         }
     }
     
     /**
-     * Check payment status by querying SePay API
-     * This can be called periodically to check for payments
+     * Synced transactions that could pay for the given payments, i.e. made since the oldest was created.
+     * Pulls anything new from SePay first, unless a sync just ran.
+     */
+    private List<SePayTransaction> transactionsFor(Collection<Payment> payments) {
+        try {
+            sePayTransactionSync.syncIfStale();
+        } catch (Exception e) {
+            log.error("Error syncing SePay transactions, using stored ones: {}", e.getMessage());
+        }
+        
+        Date oldest = new Date();
+        for (Payment payment : payments) {
+            if (payment.getCreatedAt() != null && payment.getCreatedAt().before(oldest)) {
+                oldest = payment.getCreatedAt();
+            }
+        }
+        // Bank clocks and ours may disagree by a few minutes
+        return sePayTransactionSync.findSince(new Date(oldest.getTime() - 10 * 60 * 1000L));
+    }
+    
+    /**
+     * Confirm every pending payment that has a matching transaction with enough amount.
+     * Each transaction confirms at most one payment, the first one it was matched to.
      */
+    private int confirmMatches(List<TransactionMatch> matches, Map<String, Payment> payments) {
+        Set<Long> usedTransactions = new HashSet<>();
+        int confirmed = 0;
+        
+        for (TransactionMatch match : matches) {
+            Payment payment = payments.get(match.getOrderId());
+            if (payment == null || payment.getStatus() != PaymentStatus.PENDING || !match.isAmountSufficient()) {
+                continue;
+            }
+            if (!usedTransactions.add(match.getTransactionId())) {
+                continue;
+            }
+            
+            PaymentStatus previousStatus = payment.getStatus();
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setTransactionId(match.getReferenceNumber());
+            payment.setCompletedAt(new Date());
+            paymentRepository.updateStatus(payment, previousStatus);
+            pendingOrderMatcher.remove(payment.getOrderId());
+            log.info("Payment confirmed for order: {}", payment.getOrderId());
+            confirmed++;
+        }
+        return confirmed;
+    }
+    
+    /**
+     * Sync new SePay transactions and match them, together with any rows a status check synced
+     * since the last run, against every pending SePay order in one pass.
+     * Runs every sepay.poll-interval-ms as a fallback for missed webhooks.
+     */
+    @Scheduled(fixedDelayString = "${sepay.poll-interval-ms:60000}", initialDelayString = "${sepay.poll-interval-ms:60000}")
     public void checkPendingPayments() {
-        // This would query SePay API to get recent transactions
-        // and match them with pending payments
-        log.info("Checking pending payments...");
-        // Implementation depends on SePay API integration
+        List<SePayTransaction> transactions = sePayTransactionSync.syncForMatching();
+        try {
+            if (transactions.isEmpty() || pendingOrderMatcher.isEmpty()) {
+                return;
+            }
+            
+            List<TransactionMatch> matches = pendingOrderMatcher.match(transactions);
+            if (matches.isEmpty()) {
+                return;
+            }
+            
+            Set<String> orderIds = new LinkedHashSet<>();
+            for (TransactionMatch match : matches) {
+                orderIds.add(match.getOrderId());
+            }
+            Map<String, Payment> payments = paymentRepository.findByOrderIds(orderIds);
+            for (String orderId : orderIds) {
+                Payment payment = payments.get(orderId);
+                if (payment == null || payment.getStatus() != PaymentStatus.PENDING) {
+                    // Finished elsewhere (webhook, other instance)
+                    pendingOrderMatcher.remove(orderId);
+                }
+            }
+            
+            int confirmed = confirmMatches(matches, payments);
+            log.info("Checked pending payments: {} matches, {} confirmed", matches.size(), confirmed);
+        } catch (Exception e) {
+            // Matching again is harmless: confirmed payments are no longer PENDING
+            sePayTransactionSync.requeue(transactions);
+            log.error("Error checking pending payments: {}", e.getMessage());
+        }
     }
     
     /**
@@ -294,14 +399,18 @@ public class SePayPaymentService {
                 return true;
             }
             
+            PaymentStatus previousStatus = payment.getStatus();
             payment.setStatus(PaymentStatus.SUCCESS);
             payment.setTransactionId(transactionId != null ? transactionId : "MANUAL_" + System.currentTimeMillis());
             payment.setCompletedAt(new Date());
-            paymentRepository.save(payment);
+            paymentRepository.updateStatus(payment, previousStatus);
+            pendingOrderMatcher.remove(orderId);
             
             log.info("Manually confirmed payment for order: {}", orderId);
             return true;
             
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error confirming payment: {}", e.getMessage());
             return false;
@@ -0,0 +1,297 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.SePayConfig;
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
+import com.example.payment_dormdeli.dto.sepay.SePayTransactionList;
+import com.example.payment_dormdeli.jfr.PaymentJfrEvent;
+import com.example.payment_dormdeli.jfr.SePayFetchEvent;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.repository.SePayTransactionRepository;
+import com.example.payment_dormdeli.tracing.Span;
+import com.example.payment_dormdeli.tracing.Tracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Incremental copy of the SePay transaction feed into SePayTransactionRepository.
+ *
+ * Each sync asks only for ids above the stored cursor (since_id). A full page means more rows
+ * may exist: paging continues forward from the page's highest id (which covers an oldest-first feed),
+ * then backwards by transaction_date_max from the oldest row fetched (which covers SePay's newest-first
+ * order), until a page comes back short. When a whole page falls in one second, stepping the date back
+ * cannot make progress, so that second is read on its own with a growing limit before moving to the
+ * second before it. The cursor only moves once every row up to it is stored; if a second holds more
+ * rows than maxPageSize the rows fetched are stored but the cursor stays, and the next sync tries again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SePayTransactionSync implements MetricsSource {
+
+    private final WebClient.Builder webClientBuilder;
+    private final SePayConfig sePayConfig;
+    private final SePayTransactionRepository sePayTransactionRepository;
+
+    // Page size for reading stored transactions back; every page of the window is read
+    private static final int STORED_PAGE_SIZE = 1000;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder incompleteSyncs = new LongAdder();
+    private volatile long lastSyncAt;
+    // Set after every sync, failed ones included, so a burst of status checks makes one call to SePay
+    private volatile long lastAttemptAt;
+    private volatile Long cursor;
+    // Rows stored by any sync (scheduled or a status check's syncIfStale) that the scheduled
+    // matcher has not seen yet; guarded by this
+    private final List<SePayTransaction> unmatched = new ArrayList<>();
+
+    /**
+     * Sync unless another sync finished less than sepay.sync.min-interval-ms ago.
+     * Callers arriving while a sync runs wait for it and then reuse it instead of calling SePay again.
+     */
+    public List<SePayTransaction> syncIfStale() {
+        if (isFresh()) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            if (isFresh()) {
+                return Collections.emptyList();
+            }
+            return sync();
+        }
+    }
+
+    private boolean isFresh() {
+        return System.currentTimeMillis() - lastAttemptAt < sePayConfig.getSync().getMinIntervalMs();
+    }
+
+    /**
+     * Fetch and store every transaction newer than the cursor.
+     * Returns the newly stored transactions, oldest id first.
+     */
+    public synchronized List<SePayTransaction> sync() {
+        try {
+            return syncFromCursor();
+        } finally {
+            lastAttemptAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Sync, then hand over every row stored since the last call, including rows stored by
+     * syncIfStale between scheduled runs. Rows a failed match could not finish go back with requeue.
+     */
+    public synchronized List<SePayTransaction> syncForMatching() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            // Rows stored by earlier syncs are still handed over
+            log.error("Error syncing SePay transactions, matching the {} already stored: {}",
+                    unmatched.size(), e.getMessage());
+        }
+        List<SePayTransaction> transactions = new ArrayList<>(unmatched);
+        unmatched.clear();
+        return transactions;
+    }
+
+    public synchronized void requeue(List<SePayTransaction> transactions) {
+        unmatched.addAll(0, transactions);
+    }
+
+    private List<SePayTransaction> syncFromCursor() {
+        Long since = cursor != null ? cursor : sePayTransactionRepository.getCursor();
+        long sinceId = since != null ? since : 0;
+        int pageSize = Math.max(1, sePayConfig.getSync().getPageSize());
+        String dateMin = since == null
+                ? SePayTransactionRepository.formatTransactionDate(new Date(System.currentTimeMillis()
+                        - TimeUnit.HOURS.toMillis(sePayConfig.getSync().getInitialLookbackHours())))
+                : null;
+
+        Map<Long, SePayTransaction> fetched = new HashMap<>();
+
+        // Forward: ids above the highest seen
+        long forwardFrom = sinceId;
+        boolean sawFullPage = false;
+        while (true) {
+            List<SePayTransaction> page = fetchPage(forwardFrom, dateMin, null, pageSize);
+            long newRows = addAll(fetched, page);
+            if (page.size() < pageSize || newRows == 0) {
+                break;
+            }
+            sawFullPage = true;
+            forwardFrom = Collections.max(fetched.keySet());
+        }
+
+        // Backwards: rows between the cursor and the oldest row fetched, if a page was cut off
+        boolean complete = true;
+        if (sawFullPage) {
+            String dateMax = oldestDate(fetched.values());
+            while (dateMax != null && (dateMin == null || dateMax.compareTo(dateMin) >= 0)) {
+                List<SePayTransaction> page = fetchPage(sinceId, dateMin, dateMax, pageSize);
+                addAll(fetched, page);
+                if (page.size() < pageSize) {
+                    break;
+                }
+                String oldest = oldestDate(page);
+                if (oldest != null && oldest.compareTo(dateMax) < 0) {
+                    dateMax = oldest;
+                    continue;
+                }
+                // The whole page is in one second
+                if (!fetchSecond(sinceId, dateMax, fetched)) {
+                    complete = false;
+                    break;
+                }
+                dateMax = secondBefore(dateMax);
+            }
+        }
+
+        List<SePayTransaction> transactions = new ArrayList<>(fetched.values());
+        transactions.sort(Comparator.comparing(SePayTransaction::getId));
+
+        if (!transactions.isEmpty()) {
+            long lastId = transactions.get(transactions.size() - 1).getId();
+            if (complete) {
+                sePayTransactionRepository.saveAll(transactions, lastId);
+                cursor = lastId;
+                log.info("Synced {} SePay transactions, cursor {} -> {}", transactions.size(), since, lastId);
+            } else {
+                sePayTransactionRepository.saveAll(transactions, null);
+                incompleteSyncs.increment();
+                log.error("Stored {} SePay transactions but more than {} share one second; cursor stays at {}",
+                        transactions.size(), sePayConfig.getSync().getMaxPageSize(), since);
+            }
+            stored.add(transactions.size());
+            unmatched.addAll(transactions);
+        }
+        lastSyncAt = System.currentTimeMillis();
+        return transactions;
+    }
+
+    /**
+     * Read every row of one second (date_min = date_max), doubling the limit until a page comes back short.
+     * False if the second holds more than maxPageSize rows.
+     */
+    private boolean fetchSecond(long sinceId, String second, Map<Long, SePayTransaction> fetched) {
+        int maxPageSize = Math.max(1, sePayConfig.getSync().getMaxPageSize());
+        int limit = Math.max(1, sePayConfig.getSync().getPageSize());
+        while (true) {
+            limit = Math.min(maxPageSize, limit * 2);
+            List<SePayTransaction> page = fetchPage(sinceId, second, second, limit);
+            addAll(fetched, page);
+            if (page.size() < limit) {
+                return true;
+            }
+            if (limit == maxPageSize) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Stored transactions made at or after 'from', for matching against older pending orders
+     */
+    public List<SePayTransaction> findSince(Date from) {
+        return sePayTransactionRepository.findSince(from, STORED_PAGE_SIZE);
+    }
+
+    private List<SePayTransaction> fetchPage(long sinceId, String dateMin, String dateMax, int limit) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(sePayConfig.getEndpoint())
+                .queryParam("limit", limit);
+        if (sinceId > 0) {
+            uri.queryParam("since_id", sinceId);
+        }
+        if (sePayConfig.getAccountNumber() != null) {
+            uri.queryParam("account_number", sePayConfig.getAccountNumber());
+        }
+        if (dateMin != null) {
+            uri.queryParam("transaction_date_min", dateMin);
+        }
+        if (dateMax != null) {
+            uri.queryParam("transaction_date_max", dateMax);
+        }
+
+        requests.increment();
+        SePayTransactionList response;
+        SePayFetchEvent event = new SePayFetchEvent();
+        event.begin();
+        try (Span span = Tracer.span("sepay.listTransactions")) {
+            response = webClientBuilder.build()
+                    .get()
+                    .uri(uri.encode().build().toUri())
+                    .header("Authorization", "Bearer " + sePayConfig.getApiKey())
+                    .retrieve()
+                    .bodyToMono(SePayTransactionList.class)
+                    .block(Deadline.remaining(sePayConfig.getSync().getTimeoutMs()));
+            event.finish(null, PaymentMethod.SEPAY, "ok");
+        } catch (RuntimeException e) {
+            event.finish(null, PaymentMethod.SEPAY, PaymentJfrEvent.outcomeOf(e));
+            throw e;
+        }
+
+        if (response == null || response.getTransactions() == null) {
+            return Collections.emptyList();
+        }
+        return response.getTransactions();
+    }
+
+    private long addAll(Map<Long, SePayTransaction> fetched, List<SePayTransaction> page) {
+        long added = 0;
+        for (SePayTransaction transaction : page) {
+            if (transaction.getId() == null) {
+                continue;
+            }
+            if (fetched.putIfAbsent(transaction.getId(), transaction) == null) {
+                added++;
+            } else {
+                duplicates.increment();
+            }
+        }
+        return added;
+    }
+
+    private static String secondBefore(String date) {
+        Date parsed = SePayTransactionRepository.parseTransactionDate(date);
+        return parsed != null ? SePayTransactionRepository.formatTransactionDate(new Date(parsed.getTime() - 1000)) : null;
+    }
+
+    private String oldestDate(Collection<SePayTransaction> transactions) {
+        String oldest = null;
+        for (SePayTransaction transaction : transactions) {
+            String date = transaction.getTransaction_date();
+            // Same fixed-width format, so string order is time order
+            if (date != null && (oldest == null || date.compareTo(oldest) < 0)) {
+                oldest = date;
+            }
+        }
+        return oldest;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sepaySync";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.sum());
+        metrics.put("stored", stored.sum());
+        metrics.put("duplicates", duplicates.sum());
+        metrics.put("incompleteSyncs", incompleteSyncs.sum());
+        metrics.put("cursor", cursor);
+        metrics.put("lastSyncAt", lastSyncAt > 0 ? new Date(lastSyncAt) : null);
+        return metrics;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.VNPayConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Checks vnp_SecureHash of a VNPay return/IPN callback.
+ *
+ * The signed data is every vnp_* field except the hash fields, sorted by name, as
+ * name=URLEncoder.encode(value, US-ASCII) joined with '&'. Instead of building that string,
+ * the raw query is split into offsets once, the offsets are sorted by name, and each value is
+ * decoded and re-encoded straight into a per-thread Mac. The given query and maps are never modified.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VNPayCallbackVerifier {
+
+    private static final String SECURE_HASH = "vnp_SecureHash";
+    private static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final int SHA512_HEX_LENGTH = 128;
+
+    private final VNPayConfig vnPayConfig;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+    private final ThreadLocal<byte[]> encodeBuffers = ThreadLocal.withInitial(() -> new byte[256]);
+    private final ThreadLocal<byte[]> decodeBuffers = ThreadLocal.withInitial(() -> new byte[256]);
+
+    /**
+     * Verify the signature of a raw query string as received (HttpServletRequest#getQueryString)
+     */
+    public boolean verify(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return false;
+        }
+
+        // Offsets per field: nameStart, nameEnd, valueStart, valueEnd
+        int[] fields = new int[16 * 4];
+        int count = 0;
+        int hashStart = -1;
+        int hashEnd = -1;
+
+        int length = rawQuery.length();
+        int start = 0;
+        while (start <= length) {
+            int end = rawQuery.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                int equals = rawQuery.indexOf('=', start);
+                int nameEnd = equals >= 0 && equals < end ? equals : end;
+                int valueStart = equals >= 0 && equals < end ? equals + 1 : end;
+
+                if (nameEquals(rawQuery, start, nameEnd, SECURE_HASH)) {
+                    hashStart = valueStart;
+                    hashEnd = end;
+                } else if (!nameEquals(rawQuery, start, nameEnd, SECURE_HASH_TYPE)) {
+                    if (count * 4 == fields.length) {
+                        fields = Arrays.copyOf(fields, fields.length * 2);
+                    }
+                    fields[count * 4] = start;
+                    fields[count * 4 + 1] = nameEnd;
+                    fields[count * 4 + 2] = valueStart;
+                    fields[count * 4 + 3] = end;
+                    count++;
+                }
+            }
+            start = end + 1;
+        }
+
+        if (hashStart < 0 || hashEnd - hashStart != SHA512_HEX_LENGTH) {
+            return false;
+        }
+
+        sortByName(rawQuery, fields, count);
+
+        Mac mac = macs.get();
+        mac.reset();
+        for (int i = 0; i < count; i++) {
+            int base = i * 4;
+            int valueStart = fields[base + 2];
+            int valueEnd = fields[base + 3];
+            if (valueEnd > valueStart) {
+                updateAscii(mac, rawQuery, fields[base], fields[base + 1]);
+                mac.update((byte) '=');
+                updateCanonicalValue(mac, rawQuery, valueStart, valueEnd);
+                // Same separator rule as the VNPay reference code: after every field but the last
+                if (i < count - 1) {
+                    mac.update((byte) '&');
+                }
+            }
+        }
+        return matches(mac.doFinal(), rawQuery, hashStart);
+    }
+
+    /**
+     * Verify already decoded callback parameters, for callers without the raw query
+     */
+    public boolean verify(Map<String, String> params) {
+        String hash = params.get(SECURE_HASH);
+        if (hash == null || hash.length() != SHA512_HEX_LENGTH) {
+            return false;
+        }
+
+        String[] names = new String[params.size()];
+        int count = 0;
+        for (String name : params.keySet()) {
+            if (!SECURE_HASH.equals(name) && !SECURE_HASH_TYPE.equals(name)) {
+                names[count++] = name;
+            }
+        }
+        Arrays.sort(names, 0, count);
+
+        Mac mac = macs.get();
+        mac.reset();
+        for (int i = 0; i < count; i++) {
+            String value = params.get(names[i]);
+            if (value != null && !value.isEmpty()) {
+                updateAscii(mac, names[i], 0, names[i].length());
+                mac.update((byte) '=');
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                updateCanonicalBytes(mac, utf8, utf8.length);
+                if (i < count - 1) {
+                    mac.update((byte) '&');
+                }
+            }
+        }
+        return matches(mac.doFinal(), hash, 0);
+    }
+
+    /**
+     * Decode one percent-encoded query value and feed its URLEncoder US-ASCII form to the Mac
+     */
+    private void updateCanonicalValue(Mac mac, String raw, int start, int end) {
+        byte[] decoded = decodeBuffers.get();
+        if (decoded.length < end - start) {
+            decoded = new byte[end - start];
+            decodeBuffers.set(decoded);
+        }
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '+') {
+                decoded[size++] = ' ';
+            } else if (c == '%' && i + 2 < end && hexValue(raw.charAt(i + 1)) >= 0 && hexValue(raw.charAt(i + 2)) >= 0) {
+                decoded[size++] = (byte) (hexValue(raw.charAt(i + 1)) << 4 | hexValue(raw.charAt(i + 2)));
+                i += 2;
+            } else {
+                decoded[size++] = c < 0x80 ? (byte) c : (byte) '?';
+            }
+        }
+        updateCanonicalBytes(mac, decoded, size);
+    }
+
+    /**
+     * Feed URLEncoder.encode(new String(utf8), US_ASCII) to the Mac without building it.
+     * Characters outside ASCII are unmappable in US-ASCII and become '?' (%3F), one per code point.
+     */
+    private void updateCanonicalBytes(Mac mac, byte[] utf8, int size) {
+        byte[] out = encodeBuffers.get();
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            if (position > out.length - 3) {
+                mac.update(out, 0, position);
+                position = 0;
+            }
+
+            int b = utf8[i] & 0xFF;
+            if (b >= 0x80) {
+                // Skip the continuation bytes of this code point
+                if (b >= 0xC0) {
+                    while (i + 1 < size && (utf8[i + 1] & 0xC0) == 0x80) {
+                        i++;
+                    }
+                }
+                b = '?';
+            }
+
+            if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                    || b == '.' || b == '-' || b == '*' || b == '_') {
+                out[position++] = (byte) b;
+            } else if (b == ' ') {
+                out[position++] = '+';
+            } else {
+                out[position++] = '%';
+                out[position++] = HEX[b >> 4];
+                out[position++] = HEX[b & 0xF];
+            }
+        }
+        mac.update(out, 0, position);
+    }
+
+    private static void updateAscii(Mac mac, String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            mac.update((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Constant-time compare of the digest with its hex form at hex[offset..offset+128), ignoring case
+     */
+    private static boolean matches(byte[] digest, String hex, int offset) {
+        byte[] expected = new byte[digest.length * 2];
+        byte[] actual = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            expected[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            expected[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        for (int i = 0; i < actual.length; i++) {
+            char c = hex.charAt(offset + i);
+            actual[i] = (byte) (c >= 'a' && c <= 'f' ? c - 32 : c);
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static boolean nameEquals(String raw, int start, int end, String name) {
+        return end - start == name.length() && raw.startsWith(name, start);
+    }
+
+    /**
+     * Insertion sort of the field offsets by name; callbacks carry about a dozen fields
+     */
+    private static void sortByName(String raw, int[] fields, int count) {
+        for (int i = 1; i < count; i++) {
+            int nameStart = fields[i * 4];
+            int nameEnd = fields[i * 4 + 1];
+            int valueStart = fields[i * 4 + 2];
+            int valueEnd = fields[i * 4 + 3];
+            int j = i - 1;
+            while (j >= 0 && compareNames(raw, fields[j * 4], fields[j * 4 + 1], nameStart, nameEnd) > 0) {
+                System.arraycopy(fields, j * 4, fields, (j + 1) * 4, 4);
+                j--;
+            }
+            fields[(j + 1) * 4] = nameStart;
+            fields[(j + 1) * 4 + 1] = nameEnd;
+            fields[(j + 1) * 4 + 2] = valueStart;
+            fields[(j + 1) * 4 + 3] = valueEnd;
+        }
+    }
+
+    private static int compareNames(String raw, int aStart, int aEnd, int bStart, int bEnd) {
+        int aLength = aEnd - aStart;
+        int bLength = bEnd - bStart;
+        for (int i = 0; i < Math.min(aLength, bLength); i++) {
+            int diff = raw.charAt(aStart + i) - raw.charAt(bStart + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(new SecretKeySpec(vnPayConfig.getHashSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA512 is not available", e);
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.example.payment_dormdeli.service;
 
 import com.example.payment_dormdeli.config.VNPayConfig;
+import com.example.payment_dormdeli.deadline.DeadlineExceededException;
 import com.example.payment_dormdeli.dto.PaymentRequest;
 import com.example.payment_dormdeli.dto.PaymentResponse;
 import com.example.payment_dormdeli.dto.vnpay.VNPayResponse;
+import com.example.payment_dormdeli.jfr.PaymentJfrEvent;
+import com.example.payment_dormdeli.jfr.VNPaySignEvent;
+import com.example.payment_dormdeli.jfr.VNPayVerifyEvent;
+import com.example.payment_dormdeli.jfr.WebhookHandleEvent;
+import com.example.payment_dormdeli.limiter.LoadSheddingException;
 import com.example.payment_dormdeli.model.Payment;
 import com.example.payment_dormdeli.model.PaymentMethod;
 import com.example.payment_dormdeli.model.PaymentStatus;
 import com.example.payment_dormdeli.repository.PaymentRepository;
+import com.example.payment_dormdeli.tracing.Span;
+import com.example.payment_dormdeli.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -27,21 +35,37 @@ public class VNPayPaymentService {
     
     private final VNPayConfig vnPayConfig;
     private final PaymentRepository paymentRepository;
+    private final PaymentArchiveService paymentArchiveService;
+    private final VNPayCallbackVerifier callbackVerifier;
     
     /**
      * Create VNPay payment URL
      */
     public PaymentResponse createPayment(PaymentRequest request, String ipAddress) {
         try {
-            // Check if order already exists
-            if (paymentRepository.findByOrderId(request.getOrderId()).isPresent()) {
+            // Check if order already exists, archived orders included. The hot collection is read
+            // first: a payment archived in between has left it only after reaching the archive
+            if (paymentRepository.findByOrderId(request.getOrderId()).isPresent()
+                    || paymentArchiveService.findByOrderId(request.getOrderId()).isPresent()) {
                 return PaymentResponse.builder()
                         .status(PaymentStatus.FAILED)
                         .message("Order ID already exists")
                         .build();
             }
             
-            // Create payment record
+            // Build VNPay payment URL
+            String paymentUrl;
+            VNPaySignEvent sign = new VNPaySignEvent();
+            sign.begin();
+            try (Span span = Tracer.span("vnpay.buildPaymentUrl")) {
+                paymentUrl = buildPaymentUrl(request, ipAddress);
+                sign.finish(request.getOrderId(), PaymentMethod.VNPAY, "ok");
+            } catch (Exception e) {
+                sign.finish(request.getOrderId(), PaymentMethod.VNPAY, "error");
+                throw e;
+            }
+            
+            // Create payment record (CREATED and URL_ISSUED in one write)
             Payment payment = Payment.builder()
                     .orderId(request.getOrderId())
                     .paymentMethod(PaymentMethod.VNPAY)
@@ -50,16 +74,11 @@ public class VNPayPaymentService {
                     .orderInfo(request.getOrderInfo())
                     .userId(request.getUserId())
                     .extraData(request.getExtraData())
+                    .paymentUrl(paymentUrl)
                     .build();
             
             paymentRepository.save(payment);
             
-            // Build VNPay payment URL
-            String paymentUrl = buildPaymentUrl(request, ipAddress);
-            
-            payment.setPaymentUrl(paymentUrl);
-            paymentRepository.save(payment);
-            
             return PaymentResponse.builder()
                     .orderId(request.getOrderId())
                     .paymentUrl(paymentUrl)
@@ -68,6 +87,8 @@ public class VNPayPaymentService {
                     .message("VNPay payment URL created successfully")
                     .build();
                     
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error creating VNPay payment", e);
             return PaymentResponse.builder()
@@ -80,7 +101,7 @@ public class VNPayPaymentService {
     /**
      * Build VNPay payment URL
      */
-    private String buildPaymentUrl(PaymentRequest request, String ipAddress) throws UnsupportedEncodingException {
+    String buildPaymentUrl(PaymentRequest request, String ipAddress) throws UnsupportedEncodingException {
         log.info("Building VNPay URL with return URL: {}", vnPayConfig.getReturnUrl());
         
         Map<String, String> vnpParams = new HashMap<>();
@@ -113,6 +134,13 @@ public class VNPayPaymentService {
         String vnpExpireDate = formatter.format(cld.getTime());
         vnpParams.put("vnp_ExpireDate", vnpExpireDate);
         
+        return vnPayConfig.getPayUrl() + "?" + signedQuery(vnpParams);
+    }
+    
+    /**
+     * Sorted, encoded query of the parameters with vnp_SecureHash appended
+     */
+    private String signedQuery(Map<String, String> vnpParams) throws UnsupportedEncodingException {
         // Sort parameters
         List<String> fieldNames = new ArrayList<>(vnpParams.keySet());
         Collections.sort(fieldNames);
@@ -148,44 +176,45 @@ public class VNPayPaymentService {
         String vnpSecureHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
         queryUrl += "&vnp_SecureHash=" + vnpSecureHash;
         
-        return vnPayConfig.getPayUrl() + "?" + queryUrl;
+        return queryUrl;
     }
     
     /**
-     * Verify VNPay callback
+     * Sign synthetic payment parameters and verify the result with the callback verifier, as both
+     * a raw query and a map, so the Mac providers are loaded and the paths are compiled before
+     * real traffic. Returns false if our own signature does not verify.
+     */
+    public boolean warmUp(int iterations) throws UnsupportedEncodingException {
+        Map<String, String> vnpParams = new HashMap<>();
+        vnpParams.put("vnp_Version", vnPayConfig.getVersion());
+        vnpParams.put("vnp_Command", vnPayConfig.getCommand());
+        vnpParams.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        vnpParams.put("vnp_Amount", "15000000");
+        vnpParams.put("vnp_CurrCode", "VND");
+        vnpParams.put("vnp_OrderInfo", "Thanh toan don hang warmup");
+        vnpParams.put("vnp_OrderType", vnPayConfig.getOrderType());
+        vnpParams.put("vnp_Locale", "vn");
+        vnpParams.put("vnp_ReturnUrl", vnPayConfig.getReturnUrl());
+        vnpParams.put("vnp_IpAddr", "127.0.0.1");
+        vnpParams.put("vnp_CreateDate", "20240101000000");
+        
+        boolean valid = true;
+        for (int i = 0; i < iterations; i++) {
+            vnpParams.put("vnp_TxnRef", "WARMUP" + i);
+            String query = signedQuery(vnpParams);
+            Map<String, String> callback = new HashMap<>(vnpParams);
+            callback.put("vnp_SecureHash", query.substring(query.lastIndexOf('=') + 1));
+            valid &= callbackVerifier.verify(query) & callbackVerifier.verify(callback);
+        }
+        return valid;
+    }
+    
+    /**
+     * Verify VNPay callback from its decoded parameters (the map is not modified)
      */
     public boolean verifyCallback(Map<String, String> params) {
         try {
-            String vnpSecureHash = params.get("vnp_SecureHash");
-            params.remove("vnp_SecureHash");
-            params.remove("vnp_SecureHashType");
-            
-            // Sort parameters
-            List<String> fieldNames = new ArrayList<>(params.keySet());
-            Collections.sort(fieldNames);
-            
-            StringBuilder hashData = new StringBuilder();
-            Iterator<String> itr = fieldNames.iterator();
-            
-            while (itr.hasNext()) {
-                String fieldName = itr.next();
-                String fieldValue = params.get(fieldName);
-                
-                if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                    hashData.append(fieldName);
-                    hashData.append('=');
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                    
-                    if (itr.hasNext()) {
-                        hashData.append('&');
-                    }
-                }
-            }
-            
-            String signValue = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-            
-            return signValue.equals(vnpSecureHash);
-            
+            return callbackVerifier.verify(params);
         } catch (Exception e) {
             log.error("Error verifying VNPay callback", e);
             return false;
@@ -193,58 +222,80 @@ public class VNPayPaymentService {
     }
     
     /**
-     * Handle VNPay callback/return URL
+     * Handle VNPay callback/return URL.
+     * The signature is checked on rawQuery when available, otherwise on params.
      */
-    public boolean handleCallback(Map<String, String> params) {
+    public boolean handleCallback(String rawQuery, Map<String, String> params) {
+        String orderId = params.get("vnp_TxnRef");
+        WebhookHandleEvent handle = new WebhookHandleEvent();
+        handle.begin();
+        String outcome = "error";
         try {
-            // Verify signature
-            if (!verifyCallback(params)) {
-                log.error("Invalid VNPay signature");
-                return false;
+            boolean valid;
+            VNPayVerifyEvent verify = new VNPayVerifyEvent();
+            verify.begin();
+            try (Span span = Tracer.span("vnpay.verifyCallback")) {
+                valid = rawQuery != null ? callbackVerifier.verify(rawQuery) : verifyCallback(params);
+                verify.finish(orderId, PaymentMethod.VNPAY, valid ? "valid" : "invalid");
             }
-            
-            String orderId = params.get("vnp_TxnRef");
-            String responseCode = params.get("vnp_ResponseCode");
-            String transactionId = params.get("vnp_TransactionNo");
-            
-            Payment payment = paymentRepository.findByOrderId(orderId).orElse(null);
-            
-            if (payment == null) {
-                log.error("Payment not found for order: {}", orderId);
+            if (!valid) {
+                log.error("Invalid VNPay signature");
+                outcome = "invalid_signature";
                 return false;
             }
-            
-            // Check if already processed
-            if (payment.getStatus() == PaymentStatus.SUCCESS) {
-                log.info("Payment already processed for order: {}", orderId);
-                return true;
-            }
-            
-            // Update payment based on response code
-            if ("00".equals(responseCode)) {
-                payment.setStatus(PaymentStatus.SUCCESS);
-                payment.setTransactionId(transactionId);
-                payment.setCompletedAt(new Date());
-                log.info("Payment successful for order: {}", orderId);
-            } else {
-                payment.setStatus(PaymentStatus.FAILED);
-                payment.setErrorMessage("VNPay response code: " + responseCode);
-                log.info("Payment failed for order: {} with code: {}", orderId, responseCode);
-            }
-            
-            paymentRepository.save(payment);
-            return true;
-            
+            boolean applied = applyCallback(params);
+            outcome = applied ? "handled" : "rejected";
+            return applied;
+        } catch (LoadSheddingException | DeadlineExceededException e) {
+            outcome = PaymentJfrEvent.outcomeOf(e);
+            throw e;
         } catch (Exception e) {
             log.error("Error handling VNPay callback", e);
             return false;
+        } finally {
+            handle.finish(orderId, PaymentMethod.VNPAY, outcome);
         }
     }
     
+    private boolean applyCallback(Map<String, String> params) {
+        String orderId = params.get("vnp_TxnRef");
+        String responseCode = params.get("vnp_ResponseCode");
+        String transactionId = params.get("vnp_TransactionNo");
+        
+        Payment payment = paymentRepository.findByOrderId(orderId).orElse(null);
+        
+        if (payment == null) {
+            log.error("Payment not found for order: {}", orderId);
+            return false;
+        }
+        
+        // Check if already processed
+        if (payment.getStatus() == PaymentStatus.SUCCESS) {
+            log.info("Payment already processed for order: {}", orderId);
+            return true;
+        }
+        
+        // Update payment based on response code
+        PaymentStatus previousStatus = payment.getStatus();
+        if ("00".equals(responseCode)) {
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setTransactionId(transactionId);
+            payment.setCompletedAt(new Date());
+            log.info("Payment successful for order: {}", orderId);
+        } else {
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setErrorMessage("VNPay response code: " + responseCode);
+            log.info("Payment failed for order: {} with code: {}", orderId, responseCode);
+        }
+        
+        paymentRepository.updateStatus(payment, previousStatus);
+        return true;
+    }
+    
     /**
      * HMAC SHA512
      */
-    private String hmacSHA512(String key, String data) {
+    String hmacSHA512(String key, String data) {
         try {
             Mac hmac512 = Mac.getInstance("HmacSHA512");
             SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
@@ -0,0 +1,299 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.VNPayConfig;
+import com.example.payment_dormdeli.dto.vnpay.VNPayQueryRequest;
+import com.example.payment_dormdeli.dto.vnpay.VNPayQueryResponse;
+import com.example.payment_dormdeli.metrics.LatencyHistogram;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentEventType;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Settles VNPay payments whose IPN never arrived by asking VNPay for the transaction (querydr).
+ *
+ * At most maxConcurrency queries are in flight and new ones start no faster than requestsPerSecond.
+ * Results go through PaymentRepository.updateStatus like an IPN would, with a GATEWAY_QUERIED event
+ * recording VNPay's answer.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VNPayReconciler implements MetricsSource {
+
+    private static final String VN_TIME_ZONE = "Asia/Ho_Chi_Minh";
+
+    private final VNPayConfig vnPayConfig;
+    private final PaymentRepository paymentRepository;
+    private final VNPayPaymentService vnPayPaymentService;
+    private final WebClient.Builder webClientBuilder;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vnpay-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong nextSlotNanos = new AtomicLong();
+
+    private final LatencyHistogram queryLatencyMs = new LatencyHistogram();
+    private final LongAdder queried = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Query every VNPay payment that has been PENDING for longer than minAgeMinutes.
+     * Returns once all queries of this run have finished.
+     */
+    @Scheduled(fixedDelayString = "${vnpay.reconcile.interval-ms:300000}",
+            initialDelayString = "${vnpay.reconcile.interval-ms:300000}")
+    public void reconcile() {
+        VNPayConfig.Reconcile settings = vnPayConfig.getReconcile();
+        if (!settings.isEnabled() || vnPayConfig.getApiUrl() == null) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(settings.getMinAgeMinutes());
+        List<Payment> candidates = new ArrayList<>();
+        for (Payment payment : paymentRepository.findByStatus(PaymentStatus.PENDING)) {
+            if (payment.getPaymentMethod() == PaymentMethod.VNPAY
+                    && payment.getCreatedAt() != null && payment.getCreatedAt().getTime() < cutoff) {
+                candidates.add(payment);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        int concurrency = Math.max(1, settings.getMaxConcurrency());
+        Semaphore permits = new Semaphore(concurrency);
+        try {
+            for (Payment payment : candidates) {
+                permits.acquire();
+                awaitRateBudget(settings.getRequestsPerSecond());
+                executor.execute(() -> {
+                    try {
+                        reconcile(payment);
+                    } catch (Exception e) {
+                        errors.increment();
+                        log.error("Error reconciling VNPay order {}: {}", payment.getOrderId(), e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // Wait for the last queries
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Reconciled {} pending VNPay payments", candidates.size());
+    }
+
+    private void reconcile(Payment payment) {
+        long start = System.nanoTime();
+        VNPayQueryResponse response = query(payment);
+        queryLatencyMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        queried.increment();
+
+        if (response == null || !verifyResponse(response)) {
+            errors.increment();
+            log.error("Invalid VNPay querydr response for order {}", payment.getOrderId());
+            return;
+        }
+
+        // The IPN may have landed while we were waiting
+        Payment current = paymentRepository.findByOrderId(payment.getOrderId()).orElse(null);
+        if (current == null || current.getStatus() != PaymentStatus.PENDING) {
+            unchanged.increment();
+            return;
+        }
+        apply(current, response);
+    }
+
+    private void apply(Payment payment, VNPayQueryResponse response) {
+        PaymentEvent queriedEvent = PaymentEvent.builder()
+                .type(PaymentEventType.GATEWAY_QUERIED)
+                .transactionId(response.getVnp_TransactionNo())
+                .detail("querydr " + response.getVnp_ResponseCode() + "/" + response.getVnp_TransactionStatus())
+                .build();
+        PaymentStatus previousStatus = payment.getStatus();
+        boolean stale = payment.getCreatedAt().getTime()
+                < System.currentTimeMillis() - TimeUnit.HOURS.toMillis(vnPayConfig.getReconcile().getExpireAfterHours());
+
+        if ("00".equals(response.getVnp_ResponseCode()) && "00".equals(response.getVnp_TransactionStatus())) {
+            String expectedAmount = String.valueOf(payment.getAmount().multiply(BigDecimal.valueOf(100)).longValue());
+            if (!expectedAmount.equals(response.getVnp_Amount())) {
+                errors.increment();
+                log.error("VNPay amount {} does not match {} for order {}, leaving it PENDING",
+                        response.getVnp_Amount(), expectedAmount, payment.getOrderId());
+                return;
+            }
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setTransactionId(response.getVnp_TransactionNo());
+            payment.setCompletedAt(parseVNPayDate(response.getVnp_PayDate()));
+            paymentRepository.updateStatus(payment, previousStatus, queriedEvent);
+            confirmed.increment();
+            log.info("Payment confirmed by querydr for order: {}", payment.getOrderId());
+        } else if ("00".equals(response.getVnp_ResponseCode()) && "02".equals(response.getVnp_TransactionStatus())) {
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setErrorMessage("VNPay transaction status: 02");
+            paymentRepository.updateStatus(payment, previousStatus, queriedEvent);
+            failed.increment();
+        } else if (stale && ("91".equals(response.getVnp_ResponseCode()) || "01".equals(response.getVnp_TransactionStatus()))) {
+            // Never paid (91 = no such transaction, 01 = not completed)
+            payment.setStatus(PaymentStatus.EXPIRED);
+            payment.setErrorMessage("No completed VNPay transaction after "
+                    + vnPayConfig.getReconcile().getExpireAfterHours() + "h");
+            paymentRepository.updateStatus(payment, previousStatus, queriedEvent);
+            expired.increment();
+        } else {
+            unchanged.increment();
+        }
+    }
+
+    private VNPayQueryResponse query(Payment payment) {
+        SimpleDateFormat formatter = vnPayDateFormat();
+        String createDate = formatter.format(new Date());
+
+        VNPayQueryRequest request = VNPayQueryRequest.builder()
+                .vnp_RequestId(UUID.randomUUID().toString().replace("-", ""))
+                .vnp_Version(vnPayConfig.getVersion())
+                .vnp_Command("querydr")
+                .vnp_TmnCode(vnPayConfig.getTmnCode())
+                .vnp_TxnRef(payment.getOrderId())
+                .vnp_OrderInfo("Query order " + payment.getOrderId())
+                .vnp_TransactionDate(transactionDate(payment))
+                .vnp_CreateDate(createDate)
+                .vnp_IpAddr(vnPayConfig.getReconcile().getServerIp())
+                .build();
+        request.setVnp_SecureHash(vnPayPaymentService.hmacSHA512(vnPayConfig.getHashSecret(), String.join("|",
+                request.getVnp_RequestId(), request.getVnp_Version(), request.getVnp_Command(),
+                request.getVnp_TmnCode(), request.getVnp_TxnRef(), request.getVnp_TransactionDate(),
+                request.getVnp_CreateDate(), request.getVnp_IpAddr(), request.getVnp_OrderInfo())));
+
+        return webClientBuilder.build()
+                .post()
+                .uri(vnPayConfig.getApiUrl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(VNPayQueryResponse.class)
+                .block(Duration.ofMillis(vnPayConfig.getReconcile().getTimeoutMs()));
+    }
+
+    private boolean verifyResponse(VNPayQueryResponse response) {
+        if (response.getVnp_SecureHash() == null) {
+            return false;
+        }
+        String data = String.join("|", nullToEmpty(response.getVnp_ResponseId()),
+                nullToEmpty(response.getVnp_Command()), nullToEmpty(response.getVnp_ResponseCode()),
+                nullToEmpty(response.getVnp_Message()), nullToEmpty(response.getVnp_TmnCode()),
+                nullToEmpty(response.getVnp_TxnRef()), nullToEmpty(response.getVnp_Amount()),
+                nullToEmpty(response.getVnp_BankCode()), nullToEmpty(response.getVnp_PayDate()),
+                nullToEmpty(response.getVnp_TransactionNo()), nullToEmpty(response.getVnp_TransactionType()),
+                nullToEmpty(response.getVnp_TransactionStatus()), nullToEmpty(response.getVnp_OrderInfo()),
+                nullToEmpty(response.getVnp_PromotionCode()), nullToEmpty(response.getVnp_PromotionAmount()));
+        String expected = vnPayPaymentService.hmacSHA512(vnPayConfig.getHashSecret(), data);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                response.getVnp_SecureHash().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * vnp_CreateDate of the payment URL, which querydr wants as vnp_TransactionDate
+     */
+    private String transactionDate(Payment payment) {
+        if (payment.getPaymentUrl() != null) {
+            String createDate = UriComponentsBuilder.fromUriString(payment.getPaymentUrl())
+                    .build()
+                    .getQueryParams()
+                    .getFirst("vnp_CreateDate");
+            if (createDate != null) {
+                return createDate;
+            }
+        }
+        return vnPayDateFormat().format(payment.getCreatedAt());
+    }
+
+    /**
+     * Wait for the next start slot so that queries start at most requestsPerSecond apart
+     */
+    private void awaitRateBudget(double requestsPerSecond) throws InterruptedException {
+        if (requestsPerSecond <= 0) {
+            return;
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextSlotNanos.getAndAccumulate(now, (next, n) -> Math.max(next, n) + interval));
+        TimeUnit.NANOSECONDS.sleep(slot - now);
+    }
+
+    private Date parseVNPayDate(String value) {
+        if (value != null) {
+            try {
+                return vnPayDateFormat().parse(value);
+            } catch (ParseException e) {
+                log.warn("Unparseable vnp_PayDate: {}", value);
+            }
+        }
+        return new Date();
+    }
+
+    private SimpleDateFormat vnPayDateFormat() {
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
+        formatter.setTimeZone(TimeZone.getTimeZone(VN_TIME_ZONE));
+        return formatter;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "vnpayReconciler";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queried", queried.sum());
+        metrics.put("confirmed", confirmed.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("expired", expired.sum());
+        metrics.put("unchanged", unchanged.sum());
+        metrics.put("errors", errors.sum());
+        metrics.put("queryLatencyMs", queryLatencyMs.snapshot());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.payment_dormdeli.tracing;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Spans for controller handlers ("PaymentController.getPaymentStatus") and, nested in them,
+ * for writing the response body ("serialize"), which starts right after beforeBodyWrite
+ */
+@ControllerAdvice
+public class HandlerTracing implements HandlerInterceptor, ResponseBodyAdvice<Object> {
+
+    private static final String HANDLER_SPAN = HandlerTracing.class.getName() + ".handler";
+    private static final String SERIALIZE_SPAN = HandlerTracing.class.getName() + ".serialize";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            request.setAttribute(HANDLER_SPAN,
+                    Tracer.span(method.getBeanType().getSimpleName() + "." + method.getMethod().getName()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        close(request, SERIALIZE_SPAN, null);
+        close(request, HANDLER_SPAN, ex);
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest) {
+            HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+            if (servletRequest.getAttribute(SERIALIZE_SPAN) == null) {
+                servletRequest.setAttribute(SERIALIZE_SPAN, Tracer.span("serialize"));
+            }
+        }
+        return body;
+    }
+
+    private static void close(HttpServletRequest request, String attribute, Exception ex) {
+        Object span = request.getAttribute(attribute);
+        if (span instanceof Span) {
+            if (ex != null) {
+                ((Span) span).error(ex);
+            }
+            ((Span) span).close();
+            request.removeAttribute(attribute);
+        }
+    }
+}
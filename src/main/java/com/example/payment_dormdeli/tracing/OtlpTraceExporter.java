@@ -0,0 +1,133 @@
+package com.example.payment_dormdeli.tracing;
+
+import com.example.payment_dormdeli.config.TracingConfig;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional export of finished traces to a local OpenTelemetry collector over OTLP/HTTP JSON.
+ * Request threads only enqueue; a full queue drops the trace. The scheduler posts batches.
+ */
+@Component
+@Slf4j
+public class OtlpTraceExporter implements MetricsSource {
+
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_SERVER = 2;
+    private static final int STATUS_ERROR = 2;
+
+    private final TracingConfig.Otlp config;
+    private final WebClient.Builder webClientBuilder;
+    private final BlockingQueue<Trace> queue;
+
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public OtlpTraceExporter(TracingConfig tracingConfig, WebClient.Builder webClientBuilder) {
+        this.config = tracingConfig.getOtlp();
+        this.webClientBuilder = webClientBuilder;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueSize()));
+    }
+
+    public boolean isEnabled() {
+        return config.getEndpoint() != null && !config.getEndpoint().isBlank();
+    }
+
+    public void offer(Trace trace) {
+        if (!isEnabled() || ThreadLocalRandom.current().nextDouble() >= config.getSampleRatio()) {
+            return;
+        }
+        if (!queue.offer(trace)) {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tracing.otlp.flush-interval-ms:5000}")
+    public void flush() {
+        while (isEnabled() && !queue.isEmpty()) {
+            List<Trace> batch = new ArrayList<>();
+            queue.drainTo(batch, Math.max(1, config.getBatchSize()));
+            try {
+                webClientBuilder.build()
+                        .post()
+                        .uri(config.getEndpoint())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(toOtlp(batch))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .block(Duration.ofMillis(config.getTimeoutMs()));
+                exported.add(batch.size());
+            } catch (Exception e) {
+                // Tracing is best effort, the batch is not retried
+                failed.add(batch.size());
+                log.warn("Failed to export {} traces to {}: {}", batch.size(), config.getEndpoint(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    Map<String, Object> toOtlp(List<Trace> traces) {
+        List<Map<String, Object>> spans = new ArrayList<>();
+        for (Trace trace : traces) {
+            boolean root = true;
+            for (SpanRecord span : trace.getSpans()) {
+                long end = span.getEndOffsetNanos() >= 0 ? span.getEndOffsetNanos() : trace.getDurationNanos();
+                Map<String, Object> otlpSpan = new LinkedHashMap<>();
+                otlpSpan.put("traceId", trace.getTraceId());
+                otlpSpan.put("spanId", span.getSpanId());
+                if (span.getParentSpanId() != null) {
+                    otlpSpan.put("parentSpanId", span.getParentSpanId());
+                }
+                otlpSpan.put("name", span.getName());
+                otlpSpan.put("kind", root ? SPAN_KIND_SERVER : SPAN_KIND_INTERNAL);
+                // 64-bit integers are strings in OTLP JSON
+                otlpSpan.put("startTimeUnixNano", String.valueOf(trace.getStartEpochNanos() + span.getStartOffsetNanos()));
+                otlpSpan.put("endTimeUnixNano", String.valueOf(trace.getStartEpochNanos() + end));
+                if (span.getError() != null) {
+                    otlpSpan.put("status", Map.of("code", STATUS_ERROR, "message", span.getError()));
+                }
+                spans.add(otlpSpan);
+                root = false;
+            }
+        }
+
+        Map<String, Object> serviceName = Map.of(
+                "key", "service.name",
+                "value", Map.of("stringValue", config.getServiceName()));
+        Map<String, Object> scopeSpans = Map.of(
+                "scope", Map.of("name", "payment_dormdeli.tracing"),
+                "spans", spans);
+        Map<String, Object> resourceSpans = Map.of(
+                "resource", Map.of("attributes", List.of(serviceName)),
+                "scopeSpans", List.of(scopeSpans));
+        return Map.of("resourceSpans", List.of(resourceSpans));
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "otlpExport";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("queued", queue.size());
+        metrics.put("exported", exported.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("failed", failed.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.payment_dormdeli.tracing;
+
+/**
+ * Open span, closed with try-with-resources. A no-op outside a trace.
+ */
+public final class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null, null);
+
+    private final Trace trace;
+    private final SpanRecord record;
+
+    Span(Trace trace, SpanRecord record) {
+        this.trace = trace;
+        this.record = record;
+    }
+
+    public void error(Throwable e) {
+        if (record != null) {
+            record.setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (trace != null) {
+            trace.close(record);
+        }
+    }
+}
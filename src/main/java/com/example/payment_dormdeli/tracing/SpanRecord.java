@@ -0,0 +1,68 @@
+package com.example.payment_dormdeli.tracing;
+
+/**
+ * A timed section of a trace; offsets are from the start of the trace
+ */
+public class SpanRecord {
+
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final int depth;
+    private final long startOffsetNanos;
+    private volatile long endOffsetNanos = -1;
+    private volatile String error;
+
+    SpanRecord(String spanId, String parentSpanId, String name, int depth, long startOffsetNanos) {
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.depth = depth;
+        this.startOffsetNanos = startOffsetNanos;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public double getStartOffsetMs() {
+        return startOffsetNanos / 1e6;
+    }
+
+    // -1 while the span is still open
+    public double getDurationMs() {
+        return endOffsetNanos < 0 ? -1 : (endOffsetNanos - startOffsetNanos) / 1e6;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    long getStartOffsetNanos() {
+        return startOffsetNanos;
+    }
+
+    long getEndOffsetNanos() {
+        return endOffsetNanos;
+    }
+
+    void end(long offsetNanos) {
+        endOffsetNanos = offsetNanos;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+}
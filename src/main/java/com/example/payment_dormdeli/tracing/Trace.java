@@ -0,0 +1,82 @@
+package com.example.payment_dormdeli.tracing;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One request: its id, start time and the spans recorded on the request thread, in start order
+ */
+public class Trace {
+
+    private final String traceId;
+    private final String name;
+    private final long startEpochNanos;
+    private final long startNanos;
+    private final List<SpanRecord> spans = new ArrayList<>();
+    // Open spans, innermost last
+    private final Deque<SpanRecord> open = new ArrayDeque<>();
+    private volatile long durationNanos = -1;
+
+    Trace(String traceId, String name) {
+        this.traceId = traceId;
+        this.name = name;
+        this.startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Date getStartedAt() {
+        return new Date(TimeUnit.NANOSECONDS.toMillis(startEpochNanos));
+    }
+
+    public double getDurationMs() {
+        return durationNanos / 1e6;
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public synchronized List<SpanRecord> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    synchronized SpanRecord open(String spanName) {
+        SpanRecord parent = open.peekLast();
+        SpanRecord span = new SpanRecord(newSpanId(), parent != null ? parent.getSpanId() : null,
+                spanName, open.size(), System.nanoTime() - startNanos);
+        spans.add(span);
+        open.addLast(span);
+        return span;
+    }
+
+    synchronized void close(SpanRecord span) {
+        span.end(System.nanoTime() - startNanos);
+        open.remove(span);
+    }
+
+    void finish() {
+        durationNanos = System.nanoTime() - startNanos;
+    }
+
+    static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("%016x%016x", random.nextLong(), random.nextLong());
+    }
+
+    private static String newSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.payment_dormdeli.tracing;
+
+import com.example.payment_dormdeli.config.TracingConfig;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finished traces for the debug endpoint: the slowest N, and a ring of the most recent ones.
+ *
+ * Both are lock-free. A trace enters the slowest set by CAS on the slot of the fastest trace
+ * held, retrying if another thread got there first. Slots only ever get slower, so
+ * admissionNanos (the fastest duration seen in a full set) can lag but never overshoot, and
+ * most requests are turned away by that one volatile read.
+ */
+@Component
+public class TraceBuffer implements MetricsSource {
+
+    private final AtomicReferenceArray<Trace> slowest;
+    private final AtomicReferenceArray<Trace> recent;
+    private final AtomicLong recentCursor = new AtomicLong();
+    private volatile long admissionNanos;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+
+    public TraceBuffer(TracingConfig tracingConfig) {
+        this.slowest = new AtomicReferenceArray<>(Math.max(1, tracingConfig.getSlowestSize()));
+        this.recent = new AtomicReferenceArray<>(Math.max(1, tracingConfig.getRecentSize()));
+    }
+
+    public void add(Trace trace) {
+        recorded.increment();
+        recent.set((int) (recentCursor.getAndIncrement() % recent.length()), trace);
+
+        long duration = trace.getDurationNanos();
+        while (duration > admissionNanos) {
+            int victim = -1;
+            Trace victimTrace = null;
+            for (int i = 0; i < slowest.length(); i++) {
+                Trace held = slowest.get(i);
+                if (held == null) {
+                    victim = i;
+                    victimTrace = null;
+                    break;
+                }
+                if (victimTrace == null || held.getDurationNanos() < victimTrace.getDurationNanos()) {
+                    victim = i;
+                    victimTrace = held;
+                }
+            }
+
+            if (victimTrace != null && victimTrace.getDurationNanos() >= duration) {
+                refreshAdmission();
+                return;
+            }
+            if (slowest.compareAndSet(victim, victimTrace, trace)) {
+                admitted.increment();
+                refreshAdmission();
+                return;
+            }
+        }
+    }
+
+    private void refreshAdmission() {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < slowest.length(); i++) {
+            Trace held = slowest.get(i);
+            if (held == null) {
+                return;
+            }
+            fastest = Math.min(fastest, held.getDurationNanos());
+        }
+        admissionNanos = fastest;
+    }
+
+    /**
+     * Slowest traces, slowest first
+     */
+    public List<Trace> getSlowest(int limit) {
+        List<Trace> traces = new ArrayList<>();
+        for (int i = 0; i < slowest.length(); i++) {
+            Trace held = slowest.get(i);
+            if (held != null) {
+                traces.add(held);
+            }
+        }
+        traces.sort(Comparator.comparingLong(Trace::getDurationNanos).reversed());
+        return traces.subList(0, Math.min(limit, traces.size()));
+    }
+
+    /**
+     * Latest traces, newest first
+     */
+    public List<Trace> getRecent(int limit) {
+        List<Trace> traces = new ArrayList<>();
+        long cursor = recentCursor.get();
+        for (long i = cursor - 1; i >= 0 && i >= cursor - recent.length() && traces.size() < limit; i--) {
+            Trace held = recent.get((int) (i % recent.length()));
+            if (held != null) {
+                traces.add(held);
+            }
+        }
+        return traces;
+    }
+
+    public Optional<Trace> find(String traceId) {
+        for (AtomicReferenceArray<Trace> traces : List.of(slowest, recent)) {
+            for (int i = 0; i < traces.length(); i++) {
+                Trace held = traces.get(i);
+                if (held != null && held.getTraceId().equals(traceId)) {
+                    return Optional.of(held);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "tracing";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("recorded", recorded.sum());
+        metrics.put("admittedToSlowest", admitted.sum());
+        metrics.put("slowestThresholdMs", admissionNanos / 1e6);
+        return metrics;
+    }
+}
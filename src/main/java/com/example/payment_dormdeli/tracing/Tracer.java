@@ -0,0 +1,51 @@
+package com.example.payment_dormdeli.tracing;
+
+import org.slf4j.MDC;
+
+/**
+ * Current trace of the request thread. TracingFilter starts and finishes it; code that wants
+ * its time accounted for opens a span:
+ *
+ *     try (Span span = Tracer.span("sepay.listTransactions")) { ... }
+ *
+ * Spans opened on other threads, or outside a request, cost nothing and are not recorded.
+ */
+public final class Tracer {
+
+    public static final String MDC_KEY = "traceId";
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private Tracer() {
+    }
+
+    static Trace start(String traceId, String name) {
+        Trace trace = new Trace(traceId != null ? traceId : Trace.newTraceId(), name);
+        CURRENT.set(trace);
+        MDC.put(MDC_KEY, trace.getTraceId());
+        return trace;
+    }
+
+    static void finish(Trace trace) {
+        trace.finish();
+        CURRENT.remove();
+        MDC.remove(MDC_KEY);
+    }
+
+    public static Span span(String name) {
+        Trace trace = CURRENT.get();
+        if (trace == null) {
+            return Span.NOOP;
+        }
+        return new Span(trace, trace.open(name));
+    }
+
+    public static String currentTraceId() {
+        Trace trace = CURRENT.get();
+        return trace != null ? trace.getTraceId() : null;
+    }
+
+    static Trace current() {
+        return CURRENT.get();
+    }
+}
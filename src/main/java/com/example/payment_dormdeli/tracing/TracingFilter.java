@@ -0,0 +1,64 @@
+package com.example.payment_dormdeli.tracing;
+
+import com.example.payment_dormdeli.config.TracingConfig;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs every request inside a trace. The trace id comes from a W3C traceparent header when the
+ * caller sent one, is put in the MDC for log lines and returned as X-Trace-Id.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class TracingFilter extends OncePerRequestFilter {
+
+    static final String TRACE_ID_HEADER = "X-Trace-Id";
+    private static final Pattern TRACEPARENT = Pattern.compile("^[0-9a-f]{2}-([0-9a-f]{32})-[0-9a-f]{16}-[0-9a-f]{2}$");
+
+    private final TracingConfig tracingConfig;
+    private final TraceBuffer traceBuffer;
+    private final OtlpTraceExporter otlpTraceExporter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!tracingConfig.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String name = request.getMethod() + " " + request.getRequestURI();
+        Trace trace = Tracer.start(incomingTraceId(request), name);
+        response.setHeader(TRACE_ID_HEADER, trace.getTraceId());
+        try (Span ignored = Tracer.span(name)) {
+            chain.doFilter(request, response);
+        } finally {
+            Tracer.finish(trace);
+            traceBuffer.add(trace);
+            otlpTraceExporter.offer(trace);
+        }
+    }
+
+    private static String incomingTraceId(HttpServletRequest request) {
+        String traceparent = request.getHeader("traceparent");
+        if (traceparent != null) {
+            Matcher matcher = TRACEPARENT.matcher(traceparent.trim());
+            if (matcher.matches() && !matcher.group(1).equals("00000000000000000000000000000000")) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+}
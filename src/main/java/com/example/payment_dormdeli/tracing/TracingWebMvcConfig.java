@@ -0,0 +1,18 @@
+package com.example.payment_dormdeli.tracing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class TracingWebMvcConfig implements WebMvcConfigurer {
+
+    private final HandlerTracing handlerTracing;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(handlerTracing);
+    }
+}
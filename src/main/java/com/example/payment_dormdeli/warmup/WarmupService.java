@@ -0,0 +1,221 @@
+package com.example.payment_dormdeli.warmup;
+
+import com.example.payment_dormdeli.config.SePayConfig;
+import com.example.payment_dormdeli.config.VNPayConfig;
+import com.example.payment_dormdeli.config.WarmupConfig;
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.PaymentRequest;
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.dto.sepay.SePayTransferInfo;
+import com.example.payment_dormdeli.metrics.MetricsSource;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import com.example.payment_dormdeli.service.VNPayPaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.firestore.Firestore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Pays the first-request costs before the instance reports ready: the Firestore gRPC channel and
+ * credentials, the TLS handshake to SePay, the HmacSHA512 provider lookup and JIT compilation of
+ * the VNPay signing and JSON paths.
+ *
+ * Runs inside the ApplicationReadyEvent listener, so Spring's readiness state only becomes
+ * ACCEPTING_TRAFFIC once it is done. A failed step is logged and reported but does not keep the
+ * instance out of rotation; it only means the first real request pays that cost.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WarmupService implements MetricsSource {
+
+    private static final String WARMUP_ID = "__warmup__";
+
+    @Lazy
+    private final Firestore firestore;
+    private final WarmupConfig warmupConfig;
+    private final SePayConfig sePayConfig;
+    private final VNPayConfig vnPayConfig;
+    private final PaymentRepository paymentRepository;
+    private final VNPayPaymentService vnPayPaymentService;
+    private final WebClient.Builder webClientBuilder;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Step> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean complete;
+    private volatile long durationMs = -1;
+
+    @Order(0)
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        warmUp();
+    }
+
+    /**
+     * Run every step once; later calls return immediately
+     */
+    public synchronized void warmUp() {
+        if (complete) {
+            return;
+        }
+        if (!warmupConfig.isEnabled()) {
+            durationMs = 0;
+            complete = true;
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        run("firestore", this::warmUpFirestore);
+        run("sepay", this::warmUpSePay);
+        run("vnpay", this::warmUpVNPay);
+        run("json", this::warmUpJson);
+        durationMs = System.currentTimeMillis() - start;
+        complete = true;
+        log.info("Warm-up finished in {} ms: {}", durationMs, steps);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public Map<String, Step> getSteps() {
+        synchronized (steps) {
+            return new LinkedHashMap<>(steps);
+        }
+    }
+
+    private void run(String name, WarmupStep step) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            outcome = step.run();
+        } catch (Exception e) {
+            log.warn("Warm-up step {} failed: {}", name, e.toString());
+            outcome = "error: " + e.getMessage();
+        }
+        steps.put(name, new Step((System.nanoTime() - start) / 1_000_000, outcome));
+    }
+
+    @FunctionalInterface
+    private interface WarmupStep {
+        String run() throws Exception;
+    }
+
+    /**
+     * Opens the channel and fetches credentials with a single-document read, then runs one
+     * query through the repository so the limiter, hedging and decoding paths are loaded too
+     */
+    private String warmUpFirestore() throws Exception {
+        try (Deadline.Scope scope = Deadline.start(warmupConfig.getFirestoreTimeoutMs())) {
+            Deadline.await(firestore.collection("payments").document(WARMUP_ID).get());
+            paymentRepository.findByOrderId(WARMUP_ID);
+        }
+        return "ok";
+    }
+
+    /**
+     * Connects to the SePay host through the shared connection pool; any HTTP status means the
+     * TCP and TLS handshakes are done
+     */
+    private String warmUpSePay() {
+        if (sePayConfig.getEndpoint() == null) {
+            return "skipped";
+        }
+        Integer status = webClientBuilder.build()
+                .head()
+                .uri(sePayConfig.getEndpoint())
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()))
+                .block(Duration.ofMillis(warmupConfig.getSepayTimeoutMs()));
+        return "ok (HTTP " + status + ")";
+    }
+
+    private String warmUpVNPay() throws Exception {
+        if (vnPayConfig.getHashSecret() == null || vnPayConfig.getHashSecret().isEmpty()) {
+            return "skipped";
+        }
+        if (!vnPayPaymentService.warmUp(warmupConfig.getIterations())) {
+            throw new IllegalStateException("VNPay signature did not verify");
+        }
+        return "ok";
+    }
+
+    /**
+     * Round trips of the request, webhook and response bodies through the MVC ObjectMapper
+     */
+    private String warmUpJson() throws Exception {
+        PaymentResponse response = PaymentResponse.builder()
+                .orderId(WARMUP_ID)
+                .status(PaymentStatus.PENDING)
+                .amount(new BigDecimal("150000"))
+                .paymentUrl("https://example.invalid/pay")
+                .message("warm-up")
+                .build();
+        Payment payment = Payment.builder()
+                .id(WARMUP_ID)
+                .orderId(WARMUP_ID)
+                .paymentMethod(PaymentMethod.SEPAY)
+                .status(PaymentStatus.SUCCESS)
+                .amount(new BigDecimal("150000"))
+                .createdAt(new Date())
+                .build();
+        String request = objectMapper.writeValueAsString(PaymentRequest.builder()
+                .orderId(WARMUP_ID)
+                .amount(new BigDecimal("150000"))
+                .orderInfo("Thanh toan don hang")
+                .userId("warmup")
+                .build());
+        String webhook = objectMapper.writeValueAsString(new SePayTransferInfo(1L, "2024-01-01 00:00:00",
+                "0123456789", null, "MBVCB.1." + WARMUP_ID, 150000.0, "FT1", null, "BIDV"));
+
+        for (int i = 0; i < warmupConfig.getIterations(); i++) {
+            objectMapper.readValue(request, PaymentRequest.class);
+            objectMapper.readValue(webhook, SePayTransferInfo.class);
+            objectMapper.writeValueAsBytes(response);
+            objectMapper.writeValueAsBytes(payment);
+        }
+        return "ok";
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "warmup";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("complete", complete);
+        metrics.put("durationMs", durationMs);
+        metrics.put("steps", getSteps());
+        return metrics;
+    }
+
+    /**
+     * Time taken and outcome of one warm-up step
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Step {
+        private long ms;
+        private String outcome;
+    }
+}
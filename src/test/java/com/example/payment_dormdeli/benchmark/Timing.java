@@ -0,0 +1,42 @@
+package com.example.payment_dormdeli.benchmark;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Warm-up plus measured loop for benchmark tests. Not a substitute for JMH, but enough to compare
+ * two implementations of the same operation in one JVM.
+ */
+public final class Timing {
+
+    // Results fed back from the measured operations so the JIT cannot drop them
+    private static volatile long sink;
+
+    private Timing() {
+    }
+
+    /**
+     * Run op warmup times, then iterations times, and return the mean nanoseconds per call
+     */
+    public static double nanosPerOp(int warmup, int iterations, IntConsumer op) {
+        for (int i = 0; i < warmup; i++) {
+            op.accept(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.accept(i);
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    public static void consume(Object value) {
+        sink += value != null ? value.hashCode() : 0;
+    }
+
+    public static void consume(long value) {
+        sink += value;
+    }
+
+    public static void report(String name, double nanosPerOp) {
+        System.out.printf("%-50s %,12.1f ns/op%n", name, nanosPerOp);
+    }
+}
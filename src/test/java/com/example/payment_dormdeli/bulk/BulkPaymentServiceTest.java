@@ -0,0 +1,226 @@
+package com.example.payment_dormdeli.bulk;
+
+import com.example.payment_dormdeli.config.BulkConfig;
+import com.example.payment_dormdeli.eventbus.PaymentEventBus;
+import com.example.payment_dormdeli.matching.PendingOrderMatcher;
+import com.example.payment_dormdeli.model.BulkJob;
+import com.example.payment_dormdeli.model.BulkJobState;
+import com.example.payment_dormdeli.model.BulkOperation;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.BulkJobRepository;
+import com.example.payment_dormdeli.repository.PaymentBulkRepository;
+import com.example.payment_dormdeli.repository.PaymentBulkRepository.Candidate;
+import com.example.payment_dormdeli.service.PaymentStatusCache;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterException;
+import com.google.cloud.firestore.WriteResult;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkPaymentServiceTest {
+
+    private BulkJobRepository jobRepository;
+    private PaymentBulkRepository paymentRepository;
+    private BulkPaymentService service;
+    // (cursorIndex, inFlightPaymentIds, state) at every saveClaimed
+    private final List<String> checkpoints = new ArrayList<>();
+    private final Map<String, Candidate> candidates = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        BulkConfig config = new BulkConfig();
+        config.setPageSize(2);
+        jobRepository = mock(BulkJobRepository.class);
+        paymentRepository = mock(PaymentBulkRepository.class);
+        service = new BulkPaymentService(config, jobRepository, paymentRepository, mock(PaymentEventBus.class),
+                mock(PendingOrderMatcher.class), mock(PaymentStatusCache.class));
+
+        when(jobRepository.saveClaimed(any(), anyLong())).thenAnswer(invocation -> {
+            BulkJob job = invocation.getArgument(0);
+            checkpoints.add(job.getCursorIndex() + " " + job.getInFlightPaymentIds() + " " + job.getState());
+            return true;
+        });
+        when(paymentRepository.openWriter(anyInt(), anyInt(), anyInt(), any())).thenReturn(mock(BulkWriter.class));
+        when(paymentRepository.findByOrderIds(anyList())).thenAnswer(invocation -> {
+            List<String> orderIds = invocation.getArgument(0);
+            List<Candidate> page = new ArrayList<>();
+            for (String orderId : orderIds) {
+                if (candidates.containsKey(orderId)) {
+                    page.add(candidates.get(orderId));
+                }
+            }
+            return page;
+        });
+        when(paymentRepository.writeTransition(any(), any())).thenReturn(ok());
+        when(paymentRepository.writeDependents(any(), any(), any())).thenReturn(List.of(ok()));
+        when(paymentRepository.recordTransitions(any(), anyList(), any())).thenReturn(List.of(ok()));
+    }
+
+    @Test
+    void checkpointsEveryPageAndCompletes() {
+        BulkJob job = claimed(List.of("ORD-1", "ORD-2", "ORD-3"));
+        candidate("ORD-1", PaymentStatus.PENDING);
+        candidate("ORD-2", PaymentStatus.PENDING);
+        candidate("ORD-3", PaymentStatus.PENDING);
+
+        service.run(job.getId());
+
+        assertEquals(List.of(
+                "0 [id-ORD-1, id-ORD-2] RUNNING",
+                "2 null RUNNING",
+                "2 [id-ORD-3] RUNNING",
+                "3 null RUNNING",
+                "3 null COMPLETED"), checkpoints);
+        assertEquals(3, job.getSucceeded());
+        assertEquals(PaymentStatus.CANCELLED, candidates.get("ORD-3").getPayment().getStatus());
+    }
+
+    @Test
+    void paymentChangedSinceItWasReadIsSkipped() {
+        BulkJob job = claimed(List.of("ORD-1", "ORD-2"));
+        candidate("ORD-1", PaymentStatus.PENDING);
+        Candidate changed = candidate("ORD-2", PaymentStatus.PENDING);
+        BulkWriterException precondition = mock(BulkWriterException.class);
+        when(precondition.getStatus()).thenReturn(Status.FAILED_PRECONDITION);
+        when(paymentRepository.writeTransition(any(), same(changed))).thenReturn(ApiFutures.immediateFailedFuture(precondition));
+
+        service.run(job.getId());
+
+        assertEquals(BulkJobState.COMPLETED, job.getState());
+        assertEquals(1, job.getSucceeded());
+        assertEquals(1, job.getSkipped());
+        assertEquals(0, job.getFailed());
+        Payment changedPayment = changed.getPayment();
+        verify(paymentRepository, never()).writeDependents(any(), same(changedPayment), any());
+    }
+
+    @Test
+    void resumeRepairsTheLedgerOfTheInFlightPage() {
+        BulkJob job = claimed(List.of("ORD-1", "ORD-2"));
+        job.setInFlightPaymentIds(List.of("id-ORD-1", "id-ORD-2"));
+        // ORD-1 was written before the job stopped, ORD-2 was not
+        Candidate written = candidate("ORD-1", PaymentStatus.CANCELLED);
+        Candidate notWritten = candidate("ORD-2", PaymentStatus.PENDING);
+        when(paymentRepository.findByIds(List.of("id-ORD-1", "id-ORD-2"))).thenReturn(List.of(written, notWritten));
+
+        service.run(job.getId());
+
+        Payment writtenPayment = written.getPayment();
+        verify(paymentRepository, times(1)).writeDependents(any(), same(writtenPayment), any());
+        verify(paymentRepository, never()).writeTransition(any(), same(written));
+        verify(paymentRepository).writeTransition(any(), same(notWritten));
+        assertEquals(BulkJobState.COMPLETED, job.getState());
+        assertEquals(1, job.getSucceeded());
+        assertEquals(1, job.getSkipped());
+    }
+
+    @Test
+    void pauseFlagOnTheJobDocumentStopsAfterThePage() {
+        BulkJob job = claimed(List.of("ORD-1", "ORD-2", "ORD-3"));
+        candidate("ORD-1", PaymentStatus.PENDING);
+        candidate("ORD-2", PaymentStatus.PENDING);
+        candidate("ORD-3", PaymentStatus.PENDING);
+        // Another instance asks for a pause; the next checkpoint reads it back
+        doAnswer(invocation -> {
+            BulkJob saved = invocation.getArgument(0);
+            saved.setPauseRequested(saved.getState() == BulkJobState.RUNNING);
+            return true;
+        }).when(jobRepository).saveClaimed(any(), anyLong());
+
+        service.run(job.getId());
+
+        assertEquals(BulkJobState.PAUSED, job.getState());
+        assertEquals(2, job.getCursorIndex());
+        verify(paymentRepository, times(2)).writeTransition(any(), any());
+    }
+
+    @Test
+    void stopsWithoutSavingOnceTheClaimIsLost() {
+        BulkJob job = claimed(List.of("ORD-1", "ORD-2", "ORD-3"));
+        candidate("ORD-1", PaymentStatus.PENDING);
+        candidate("ORD-2", PaymentStatus.PENDING);
+        candidate("ORD-3", PaymentStatus.PENDING);
+        doReturn(false).when(jobRepository).saveClaimed(any(), anyLong());
+
+        service.run(job.getId());
+
+        // Lost at the first checkpoint, before any payment was written
+        verify(jobRepository, times(1)).saveClaimed(any(), anyLong());
+        verify(paymentRepository, never()).writeTransition(any(), any());
+        assertEquals(BulkJobState.RUNNING, job.getState());
+    }
+
+    @Test
+    void jobClaimedElsewhereIsNotRun() {
+        when(jobRepository.claim(eq("job-1"), anyString(), anyLong())).thenReturn(Optional.empty());
+
+        service.run("job-1");
+
+        verifyNoInteractions(paymentRepository);
+        verify(jobRepository, never()).saveClaimed(any(), anyLong());
+    }
+
+    @Test
+    void parsesOrderIdsFromFirstColumn() throws Exception {
+        String file = "\uFEFForderId,amount\n\"ORD-1\",150000\n\n  ORD-2  \nORD-3,1,2\n";
+        List<String> orderIds = BulkPaymentService.parseOrderIds(
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("ORD-1", "ORD-2", "ORD-3"), orderIds);
+    }
+
+    @Test
+    void operationsOnlyApplyToTheirSourceStatuses() {
+        assertTrue(BulkOperation.CANCEL.appliesTo(PaymentStatus.PENDING));
+        assertFalse(BulkOperation.CANCEL.appliesTo(PaymentStatus.SUCCESS));
+        assertFalse(BulkOperation.EXPIRE.appliesTo(PaymentStatus.FAILED));
+        assertTrue(BulkOperation.CONFIRM.appliesTo(PaymentStatus.EXPIRED));
+        assertFalse(BulkOperation.CONFIRM.appliesTo(PaymentStatus.SUCCESS));
+        assertTrue(BulkOperation.DELETE.appliesTo(PaymentStatus.PENDING));
+        assertTrue(BulkOperation.DELETE.appliesTo(PaymentStatus.EXPIRED));
+        assertFalse(BulkOperation.DELETE.appliesTo(PaymentStatus.SUCCESS));
+        assertFalse(BulkOperation.DELETE.appliesTo(PaymentStatus.PROCESSING));
+    }
+
+    /**
+     * A CANCEL job over orderIds, as claim hands it to the run
+     */
+    private BulkJob claimed(List<String> orderIds) {
+        BulkJob job = BulkJob.builder()
+                .id("job-1")
+                .operation(BulkOperation.CANCEL)
+                .state(BulkJobState.RUNNING)
+                .orderIds(new ArrayList<>(orderIds))
+                .owner("owner-1")
+                .build();
+        when(jobRepository.claim(eq("job-1"), anyString(), anyLong())).thenReturn(Optional.of(job));
+        return job;
+    }
+
+    private Candidate candidate(String orderId, PaymentStatus status) {
+        Payment payment = Payment.builder()
+                .id("id-" + orderId)
+                .orderId(orderId)
+                .status(status)
+                .build();
+        Candidate candidate = mock(Candidate.class);
+        when(candidate.getPayment()).thenReturn(payment);
+        candidates.put(orderId, candidate);
+        return candidate;
+    }
+
+    private static ApiFuture<WriteResult> ok() {
+        return ApiFutures.immediateFuture(mock(WriteResult.class));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.payment_dormdeli.deadline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineTest {
+
+    @Test
+    void cancelsTheFutureWhenTheDeadlinePasses() {
+        CompletableFuture<String> never = new CompletableFuture<>();
+
+        try (Deadline.Scope ignored = Deadline.start(50)) {
+            long start = System.nanoTime();
+            assertThrows(DeadlineExceededException.class, () -> Deadline.await(never));
+            assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        }
+
+        assertTrue(never.isCancelled());
+        assertFalse(Deadline.isSet());
+    }
+
+    @Test
+    void nestedScopeCannotExtendTheOuterDeadline() {
+        try (Deadline.Scope outer = Deadline.start(100)) {
+            try (Deadline.Scope inner = Deadline.start(60_000)) {
+                assertTrue(Deadline.remainingMillis() <= 100);
+            }
+            try (Deadline.Scope inner = Deadline.start(10)) {
+                assertTrue(Deadline.remainingMillis() <= 10);
+            }
+            assertTrue(Deadline.remainingMillis() > 10);
+        }
+        assertEquals(Deadline.DEFAULT_TIMEOUT_MS, Deadline.remainingMillis());
+    }
+
+    @Test
+    void expiredDeadlineFailsBeforeTheCallStarts() throws Exception {
+        try (Deadline.Scope ignored = Deadline.start(1)) {
+            Thread.sleep(5);
+            assertThrows(DeadlineExceededException.class, () -> Deadline.remaining(1_000));
+            assertThrows(DeadlineExceededException.class, () -> Deadline.await(CompletableFuture.completedFuture("late")));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.payment_dormdeli.eventbus;
+
+import com.example.payment_dormdeli.config.EventBusConfig;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentEventBusTest {
+
+    private PaymentEventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) {
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    void everyConsumerSeesEveryEventOfConcurrentPublishersInOrder() throws Exception {
+        for (WaitStrategy.Type type : WaitStrategy.Type.values()) {
+            EventBusConfig config = new EventBusConfig();
+            config.setBufferSize(64);
+            config.setWaitStrategy(type);
+            config.setBlockTimeoutMs(10_000);
+            bus = new PaymentEventBus(config, null);
+
+            int producers = 4;
+            int perProducer = 5_000;
+            RecordingHandler first = new RecordingHandler();
+            RecordingHandler second = new RecordingHandler();
+            bus.subscribe("first", first);
+            bus.subscribe("second", second);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    Payment payment = Payment.builder().status(PaymentStatus.SUCCESS).build();
+                    for (int i = 0; i < perProducer; i++) {
+                        payment.setOrderId(producer + ":" + i);
+                        assertTrue(bus.publish(payment, PaymentStatus.PENDING));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            bus.shutdown();
+
+            for (RecordingHandler handler : List.of(first, second)) {
+                assertEquals(producers * perProducer, handler.sequences.size(), type.name());
+                for (int i = 0; i < handler.sequences.size(); i++) {
+                    assertEquals(i, handler.sequences.get(i), type.name());
+                }
+                // Per producer, events arrive in the order they were published
+                Map<String, Integer> lastIndex = new HashMap<>();
+                for (String orderId : handler.orderIds) {
+                    String[] parts = orderId.split(":");
+                    int index = Integer.parseInt(parts[1]);
+                    assertTrue(index > lastIndex.getOrDefault(parts[0], -1), type.name());
+                    lastIndex.put(parts[0], index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dropsWhenTheSlowestConsumerIsAFullRingBehind() throws Exception {
+        EventBusConfig config = new EventBusConfig();
+        config.setBufferSize(8);
+        config.setBackpressure(BackpressurePolicy.DROP);
+        bus = new PaymentEventBus(config, null);
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("stuck", (event, sequence, endOfBatch) -> {
+            release.await();
+            seen.add(sequence);
+        });
+
+        Payment payment = Payment.builder().orderId("DH1").status(PaymentStatus.SUCCESS).build();
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (bus.publish(payment, PaymentStatus.PENDING)) {
+                accepted++;
+            }
+        }
+        assertEquals(8, accepted);
+        assertEquals(12L, bus.getMetrics().get("dropped"));
+
+        release.countDown();
+        bus.shutdown();
+        assertEquals(8, seen.size());
+    }
+
+    private static final class RecordingHandler implements PaymentEventHandler {
+        final List<Long> sequences = new ArrayList<>();
+        final List<String> orderIds = new ArrayList<>();
+
+        @Override
+        public void onEvent(PaymentStatusChanged event, long sequence, boolean endOfBatch) {
+            sequences.add(sequence);
+            orderIds.add(event.getOrderId());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.payment_dormdeli.idempotency;
+
+import com.example.payment_dormdeli.config.IdempotencyConfig;
+import com.example.payment_dormdeli.deadline.Deadline;
+import com.example.payment_dormdeli.dto.PaymentRequest;
+import com.example.payment_dormdeli.dto.PaymentResponse;
+import com.example.payment_dormdeli.model.IdempotencyRecord;
+import com.example.payment_dormdeli.model.IdempotencyState;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.IdempotencyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyRepository repository;
+    private IdempotencyService service;
+    private final AtomicInteger creates = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        when(repository.reserve(any(IdempotencyRecord.class))).thenReturn(Optional.empty());
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.setPollIntervalMs(10);
+        service = new IdempotencyService(config, repository);
+    }
+
+    private static PaymentRequest request(String orderId) {
+        return PaymentRequest.builder()
+                .orderId(orderId)
+                .amount(new BigDecimal("50000"))
+                .orderInfo("Com tam")
+                .build();
+    }
+
+    private PaymentResponse create(PaymentRequest request, PaymentStatus status) {
+        creates.incrementAndGet();
+        return PaymentResponse.builder()
+                .orderId(request.getOrderId())
+                .paymentUrl("https://pay/" + request.getOrderId())
+                .status(status)
+                .build();
+    }
+
+    @Test
+    void retriesGetTheFirstResponseWithoutCreatingAgain() {
+        PaymentRequest request = request("ORDER1");
+
+        IdempotencyService.Result first = service.execute("sepay-create", "k1", request, () -> create(request, PaymentStatus.PENDING));
+        IdempotencyService.Result retry = service.execute("sepay-create", "k1", request, () -> create(request, PaymentStatus.PENDING));
+
+        assertFalse(first.isReplayed());
+        assertTrue(retry.isReplayed());
+        assertSame(first.getResponse(), retry.getResponse());
+        assertEquals(1, creates.get());
+        verify(repository, times(1)).reserve(argThat(record -> record.getState() == IdempotencyState.PENDING));
+        verify(repository, times(1)).save(argThat(record -> record.getState() == IdempotencyState.COMPLETED));
+        verify(repository, never()).release(anyString());
+    }
+
+    @Test
+    void failedResponsesAreNotKept() {
+        PaymentRequest request = request("ORDER2");
+
+        service.execute("sepay-create", "k2", request, () -> create(request, PaymentStatus.FAILED));
+        IdempotencyService.Result retry = service.execute("sepay-create", "k2", request, () -> create(request, PaymentStatus.PENDING));
+
+        assertFalse(retry.isReplayed());
+        assertEquals(PaymentStatus.PENDING, retry.getResponse().getStatus());
+        assertEquals(2, creates.get());
+        verify(repository, times(1)).release(anyString());
+    }
+
+    @Test
+    void createThatThrowsReleasesTheKey() {
+        PaymentRequest request = request("ORDER2");
+
+        assertThrows(IllegalStateException.class, () -> service.execute("sepay-create", "k2", request, () -> {
+            throw new IllegalStateException("Firestore down");
+        }));
+
+        verify(repository, times(1)).release(anyString());
+        verify(repository, never()).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRefused() {
+        service.execute("sepay-create", "k3", request("ORDER3"), () -> create(request("ORDER3"), PaymentStatus.PENDING));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> service.execute("sepay-create", "k3", request("ORDER4"), () -> create(request("ORDER4"), PaymentStatus.PENDING)));
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheOriginal() throws Exception {
+        PaymentRequest request = request("ORDER5");
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<IdempotencyService.Result> original = executor.submit(() -> service.execute("vnpay-create", "k5", request, () -> {
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return create(request, PaymentStatus.PENDING);
+            }));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+            Future<IdempotencyService.Result> duplicate = executor.submit(
+                    () -> service.execute("vnpay-create", "k5", request, () -> create(request, PaymentStatus.PENDING)));
+            Thread.sleep(50);
+            assertFalse(duplicate.isDone());
+
+            release.countDown();
+            assertFalse(original.get(5, TimeUnit.SECONDS).isReplayed());
+            assertTrue(duplicate.get(5, TimeUnit.SECONDS).isReplayed());
+            assertEquals(1, creates.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void duplicateOnAnotherInstanceWaitsForTheStoredResponse() {
+        PaymentRequest request = request("ORDER6");
+        IdempotencyRecord pending = held("sepay-create", request, IdempotencyState.PENDING, 30_000);
+        IdempotencyRecord completed = held("sepay-create", request, IdempotencyState.COMPLETED, 0);
+        completed.setResponse(PaymentResponse.builder().orderId("ORDER6").status(PaymentStatus.PENDING).build());
+        when(repository.reserve(any(IdempotencyRecord.class))).thenReturn(Optional.of(pending));
+        when(repository.findById(anyString())).thenReturn(Optional.of(pending), Optional.of(pending), Optional.of(completed));
+
+        IdempotencyService.Result result = service.execute("sepay-create", "k6", request,
+                () -> create(request, PaymentStatus.PENDING));
+
+        assertTrue(result.isReplayed());
+        assertEquals("ORDER6", result.getResponse().getOrderId());
+        assertEquals(0, creates.get());
+        verify(repository, times(3)).findById(anyString());
+        verify(repository, never()).save(any(IdempotencyRecord.class));
+        assertEquals(1L, service.getMetrics().get("waitedForReservation"));
+    }
+
+    @Test
+    void reservationStillHeldAtTheDeadlineIsReportedInProgress() {
+        PaymentRequest request = request("ORDER7");
+        IdempotencyRecord pending = held("sepay-create", request, IdempotencyState.PENDING, 30_000);
+        when(repository.reserve(any(IdempotencyRecord.class))).thenReturn(Optional.of(pending));
+        when(repository.findById(anyString())).thenReturn(Optional.of(pending));
+
+        try (Deadline.Scope ignored = Deadline.start(100)) {
+            assertThrows(IdempotencyKeyInProgressException.class, () -> service.execute("sepay-create", "k7", request,
+                    () -> create(request, PaymentStatus.PENDING)));
+        }
+        assertEquals(0, creates.get());
+    }
+
+    @Test
+    void reservationWhoseLeaseRunsOutIsTakenOver() {
+        PaymentRequest request = request("ORDER8");
+        IdempotencyRecord abandoned = held("sepay-create", request, IdempotencyState.PENDING, 50);
+        when(repository.reserve(any(IdempotencyRecord.class))).thenReturn(Optional.of(abandoned), Optional.empty());
+        when(repository.findById(anyString())).thenReturn(Optional.of(abandoned));
+
+        IdempotencyService.Result result = service.execute("sepay-create", "k8", request,
+                () -> create(request, PaymentStatus.PENDING));
+
+        assertFalse(result.isReplayed());
+        assertEquals(1, creates.get());
+        verify(repository, times(2)).reserve(any(IdempotencyRecord.class));
+        verify(repository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void keyHeldForAnotherRequestIsRefusedWithoutWaiting() {
+        IdempotencyRecord pending = held("sepay-create", request("ORDER9"), IdempotencyState.PENDING, 30_000);
+        when(repository.reserve(any(IdempotencyRecord.class))).thenReturn(Optional.of(pending));
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> service.execute("sepay-create", "k9", request("ORDER10"),
+                () -> create(request("ORDER10"), PaymentStatus.PENDING)));
+        verify(repository, never()).findById(anyString());
+    }
+
+    /**
+     * Record another instance wrote for the request, with a lease of leaseMs from now
+     */
+    private static IdempotencyRecord held(String scope, PaymentRequest request, IdempotencyState state, long leaseMs) {
+        Date now = new Date();
+        return IdempotencyRecord.builder()
+                .id("held")
+                .scope(scope)
+                .requestHash(IdempotencyService.requestHash(scope, request))
+                .state(state)
+                .leaseUntil(state == IdempotencyState.PENDING ? new Date(now.getTime() + leaseMs) : null)
+                .createdAt(now)
+                .expireAt(new Date(now.getTime() + 60_000))
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payment_dormdeli.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void shedsCallsOverTheLimitWithoutWaiting() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> limiter.call(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        LoadSheddingException e = assertThrows(LoadSheddingException.class, () -> limiter.call(() -> "second"));
+        assertEquals(3, e.getRetryAfterSeconds());
+
+        finish.countDown();
+        holder.join();
+        assertEquals("third", limiter.call(() -> "third"));
+        assertEquals(1L, limiter.getMetrics().get("rejected"));
+    }
+
+    @Test
+    void failuresShrinkTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 50, 5, 100, 1);
+
+        for (int i = 0; i < 50; i++) {
+            assertThrows(IllegalStateException.class, () -> limiter.call(() -> {
+                throw new IllegalStateException("deadline exceeded");
+            }));
+        }
+
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void growsWhileLatencyStaysFlat() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 40, 1);
+
+        for (int round = 0; round < 100; round++) {
+            int slots = limiter.getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            for (int i = 0; i < slots; i++) {
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(5), true);
+            }
+        }
+
+        assertEquals(40, limiter.getLimit());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.payment_dormdeli.matching;
+
+import com.example.payment_dormdeli.benchmark.Benchmark;
+import com.example.payment_dormdeli.benchmark.Timing;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scanning transfer descriptions with the automaton against a contains() loop over every pending order
+ */
+class OrderIdAutomatonBenchmarkTest {
+
+    @Benchmark
+    void scanAgainstContainsLoop() {
+        Random random = new Random(42);
+        List<String> orderIds = OrderIdAutomatonTest.pendingOrderIds(random, 10_000);
+        List<String> contents = OrderIdAutomatonTest.transferContents(random, orderIds, 500);
+
+        Timing.report("build: 10k orders",
+                Timing.nanosPerOp(5, 20, i -> Timing.consume(OrderIdAutomaton.build(orderIds))));
+
+        OrderIdAutomaton automaton = OrderIdAutomaton.build(orderIds);
+        Timing.report("scan: automaton, per transaction",
+                Timing.nanosPerOp(50_000, 200_000, i -> {
+                    long[] hits = new long[1];
+                    automaton.scan(contents.get(i % contents.size()), (orderId, start, end) -> hits[0]++);
+                    Timing.consume(hits[0]);
+                }));
+        Timing.report("scan: contains() over 10k orders, per transaction",
+                Timing.nanosPerOp(500, 2_000, i -> {
+                    String content = contents.get(i % contents.size());
+                    long hits = 0;
+                    for (String orderId : orderIds) {
+                        if (content.contains(orderId)) {
+                            hits++;
+                        }
+                    }
+                    Timing.consume(hits);
+                }));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.payment_dormdeli.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderIdAutomatonTest {
+
+    @Test
+    void findsEveryOrderIdInOnePass() {
+        OrderIdAutomaton automaton = OrderIdAutomaton.build(List.of("ORDER12", "ORDER123", "DH77", "ORD9"));
+
+        List<String> found = new ArrayList<>();
+        automaton.scan("MBVCB.3344.order123 DH77 thanh toan ORD9", (orderId, start, end) -> found.add(orderId));
+
+        assertEquals(List.of("ORDER12", "ORDER123", "DH77", "ORD9"), found);
+    }
+
+    @Test
+    void reportsMatchPositions() {
+        OrderIdAutomaton automaton = OrderIdAutomaton.build(List.of("ABC", "BC"));
+
+        List<String> spans = new ArrayList<>();
+        automaton.scan("xABCx", (orderId, start, end) -> spans.add(orderId + "@" + start + "-" + end));
+
+        assertEquals(List.of("ABC@1-4", "BC@2-4"), spans);
+    }
+
+    @Test
+    void emptyAutomatonMatchesNothing() {
+        List<String> found = new ArrayList<>();
+        OrderIdAutomaton.empty().scan("ORDER1", (orderId, start, end) -> found.add(orderId));
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    void agreesWithContainsOnTenThousandPendingOrders() {
+        Random random = new Random(42);
+        List<String> orderIds = pendingOrderIds(random, 10_000);
+        List<String> contents = transferContents(random, orderIds, 500);
+
+        OrderIdAutomaton automaton = OrderIdAutomaton.build(orderIds);
+
+        for (String content : contents) {
+            Set<String> found = new HashSet<>();
+            automaton.scan(content, (orderId, start, end) -> found.add(orderId));
+
+            Set<String> expected = new HashSet<>();
+            for (String orderId : orderIds) {
+                if (content.contains(orderId)) {
+                    expected.add(orderId);
+                }
+            }
+            assertEquals(expected, found, content);
+        }
+    }
+
+    static List<String> pendingOrderIds(Random random, int count) {
+        List<String> orderIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orderIds.add("DH" + (100000 + random.nextInt(900000)) + "X" + i);
+        }
+        return orderIds;
+    }
+
+    /**
+     * Bank transfer descriptions, half of them carrying one of the orderIds
+     */
+    static List<String> transferContents(Random random, List<String> orderIds, int count) {
+        List<String> contents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String orderId = i % 2 == 0 ? orderIds.get(random.nextInt(orderIds.size())) : "UNKNOWN" + i;
+            contents.add("MBVCB." + random.nextInt(1_000_000) + "." + orderId + ".CT tu 0123456789 NGUYEN VAN A");
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.payment_dormdeli.matching;
+
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PendingOrderMatcherTest {
+
+    private PaymentRepository repository;
+    private PendingOrderMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PaymentRepository.class);
+        matcher = new PendingOrderMatcher(repository);
+        ReflectionTestUtils.setField(matcher, "matchWindowHours", 72L);
+        ReflectionTestUtils.setField(matcher, "maxDeltaSize", 256);
+    }
+
+    @Test
+    void failedReloadKeepsKnownOrders() {
+        when(repository.findPending(PaymentMethod.SEPAY))
+                .thenReturn(List.of(payment("DH1")))
+                .thenThrow(new RuntimeException("Error finding pending payments"));
+
+        matcher.reload();
+        matcher.reload();
+
+        assertEquals(List.of("DH1"), orderIds(matcher.match(List.of(transaction("CK DH1")))));
+    }
+
+    @Test
+    void successfulReloadDropsOrdersNoLongerPending() {
+        when(repository.findPending(PaymentMethod.SEPAY))
+                .thenReturn(List.of(payment("DH1"), payment("DH2")))
+                .thenReturn(List.of(payment("DH2")));
+
+        matcher.reload();
+        matcher.reload();
+
+        assertEquals(List.of("DH2"), orderIds(matcher.match(List.of(transaction("CK DH1 DH2")))));
+    }
+
+    @Test
+    void failedInitialLoadIsRetriedOnNextMatch() {
+        when(repository.findPending(PaymentMethod.SEPAY))
+                .thenThrow(new RuntimeException("Error finding pending payments"))
+                .thenReturn(List.of(payment("DH1")));
+
+        assertTrue(matcher.match(List.of(transaction("CK DH1"))).isEmpty());
+        assertEquals(List.of("DH1"), orderIds(matcher.match(List.of(transaction("CK DH1")))));
+    }
+
+    @Test
+    void addDoesNotWaitForTheStoreLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findPending(PaymentMethod.SEPAY)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return List.of(payment("DH1"));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<TransactionMatch>> matched = executor.submit(() -> matcher.match(List.of(transaction("CK DH1 DH2"))));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            Future<?> added = executor.submit(() -> matcher.add(payment("DH2")));
+            added.get(5, TimeUnit.SECONDS);
+
+            release.countDown();
+            assertEquals(List.of("DH1", "DH2"), orderIds(matched.get(5, TimeUnit.SECONDS)));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void longerOrderIdWinsOverTheShorterOneInside() {
+        when(repository.findPending(PaymentMethod.SEPAY)).thenReturn(List.of(payment("ORDER12"), payment("ORDER123")));
+
+        assertEquals(List.of("ORDER123"), orderIds(matcher.match(List.of(transaction("CK ORDER123")))));
+    }
+
+    private static Payment payment(String orderId) {
+        return Payment.builder()
+                .orderId(orderId)
+                .amount(new BigDecimal("50000"))
+                .status(PaymentStatus.PENDING)
+                .paymentMethod(PaymentMethod.SEPAY)
+                .createdAt(new Date())
+                .build();
+    }
+
+    private static SePayTransaction transaction(String content) {
+        return SePayTransaction.builder()
+                .id(1L)
+                .amount_in(new BigDecimal("50000"))
+                .transaction_content(content)
+                .build();
+    }
+
+    private static List<String> orderIds(List<TransactionMatch> matches) {
+        return matches.stream().map(TransactionMatch::getOrderId).sorted().toList();
+    }
+}
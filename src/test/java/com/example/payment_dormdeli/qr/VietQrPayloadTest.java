@@ -0,0 +1,62 @@
+package com.example.payment_dormdeli.qr;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VietQrPayloadTest {
+
+    @Test
+    void crcMatchesCcittFalseCheckValue() {
+        assertEquals(0x29B1, VietQrPayload.crc16(0xFFFF, "123456789"));
+        // Continuing from a precomputed register gives the same result as one pass
+        assertEquals(0x29B1, VietQrPayload.crc16(VietQrPayload.crc16(0xFFFF, "1234"), "56789"));
+    }
+
+    @Test
+    void buildsNapasTransferPayload() {
+        VietQrPayload payload = new VietQrPayload(VietQrPayload.bankBin("bidv"), "96247801341486");
+
+        String qr = payload.build(150_000, "ORDER123");
+
+        assertEquals("000201010212"
+                + "3858" + "0010A000000727" + "0128" + "0006970418" + "011496247801341486" + "0208QRIBFTTA"
+                + "5303704" + "5406150000" + "5802VN" + "62120808ORDER123" + "6304", qr.substring(0, qr.length() - 4));
+        String crc = String.format("%04X", VietQrPayload.crc16(0xFFFF, qr.substring(0, qr.length() - 4)));
+        assertEquals(crc, qr.substring(qr.length() - 4));
+    }
+
+    @Test
+    void rejectsContentTheQrCannotCarry() {
+        VietQrPayload payload = new VietQrPayload("970418", "123456");
+
+        assertThrows(IllegalArgumentException.class, () -> payload.build(0, "ORDER1"));
+        assertThrows(IllegalArgumentException.class, () -> payload.build(1000, "ORDER_WITH_A_VERY_LONG_ID_123"));
+        assertThrows(IllegalArgumentException.class, () -> payload.build(1000, "Đơn hàng"));
+        assertThrows(IllegalArgumentException.class, () -> new VietQrPayload("BIDV", "123456"));
+    }
+
+    @Test
+    void renderedImagesDecodeToThePayload() throws Exception {
+        String qr = new VietQrPayload("970418", "96247801341486").build(50_000, "ORDER42");
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(QrImageRenderer.render(qr, QrImageFormat.PNG, 4, 4)));
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(
+                new RGBLuminanceSource(image.getWidth(), image.getHeight(), pixels)));
+        assertEquals(qr, new QRCodeReader().decode(bitmap).getText());
+
+        String svg = new String(QrImageRenderer.render(qr, QrImageFormat.SVG, 4, 4), StandardCharsets.UTF_8);
+        assertTrue(svg.startsWith("<svg"));
+        assertTrue(svg.contains("width=\"" + image.getWidth() + "\""));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payment_dormdeli.qr;
+
+import com.example.payment_dormdeli.config.SePayConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VietQrServiceTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void imageUrlUsesTheConfiguredPublicBaseUrl() {
+        SePayConfig config = config();
+        config.getQr().setPublicBaseUrl("https://pay.example.com/api/");
+        inRequest("http", "10.0.0.5", 8080, "/api");
+
+        assertEquals("https://pay.example.com/api/payment/qr?amount=150000&content=ORDER%201",
+                new VietQrService(config).imageUrl(150_000, "ORDER 1"));
+    }
+
+    @Test
+    void imageUrlFallsBackToTheCurrentRequestsContextPath() {
+        inRequest("https", "pay.example.com", 443, "/api");
+
+        assertEquals("https://pay.example.com/api/payment/qr?amount=150000&content=ORDER1",
+                new VietQrService(config()).imageUrl(150_000, "ORDER1"));
+    }
+
+    @Test
+    void absoluteImageUrlIsUsedAsIs() {
+        SePayConfig config = config();
+        config.getQr().setImageUrl("https://cdn.example.com/qr");
+        config.getQr().setPublicBaseUrl("https://pay.example.com/api");
+
+        assertEquals("https://cdn.example.com/qr?amount=150000&content=ORDER1",
+                new VietQrService(config).imageUrl(150_000, "ORDER1"));
+    }
+
+    @Test
+    void imageUrlStaysRelativeOutsideARequestWithoutABaseUrl() {
+        assertEquals("/payment/qr?amount=150000&content=ORDER1",
+                new VietQrService(config()).imageUrl(150_000, "ORDER1"));
+    }
+
+    private static SePayConfig config() {
+        SePayConfig config = new SePayConfig();
+        config.setBankCode("BIDV");
+        config.setAccountNumber("96247801341486");
+        return config;
+    }
+
+    private static void inRequest(String scheme, String host, int port, String contextPath) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", contextPath + "/payment/create");
+        request.setScheme(scheme);
+        request.setServerName(host);
+        request.setServerPort(port);
+        request.setContextPath(contextPath);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
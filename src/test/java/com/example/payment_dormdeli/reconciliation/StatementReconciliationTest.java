@@ -0,0 +1,109 @@
+package com.example.payment_dormdeli.reconciliation;
+
+import com.example.payment_dormdeli.config.ReconciliationConfig;
+import com.example.payment_dormdeli.dto.ReconciliationReport;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementReconciliationTest {
+
+    private static final Date FROM = new Date(1_700_000_000_000L);
+    private static final Date TO = new Date(1_700_086_400_000L);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesAmountsInBankFormats() {
+        assertEquals(150_000_00L, StatementReconciliation.parseAmountMinor("150,000"));
+        assertEquals(1_500_000_00L, StatementReconciliation.parseAmountMinor("1.500.000"));
+        assertEquals(150_000_50L, StatementReconciliation.parseAmountMinor("+150000.50"));
+        assertEquals(1_234_567_89L, StatementReconciliation.parseAmountMinor("1.234.567,89"));
+        assertEquals(-20_000_00L, StatementReconciliation.parseAmountMinor("-20,000 VND"));
+        assertNull(StatementReconciliation.parseAmountMinor("n/a"));
+    }
+
+    @Test
+    void reportsEveryDiscrepancyAcrossSmallChunks() throws Exception {
+        StringBuilder csv = new StringBuilder("﻿Sao kê tài khoản 96247801341486\r\n,,,\r\n");
+        csv.append("Ngày giao dịch,Số tham chiếu,Số tiền ghi có,Nội dung\r\n");
+        csv.append("2024-01-01,FT1,\"150,000\",\"MBVCB.1.DH100 thanh toan, phong 101\"\r\n");
+        csv.append("2024-01-01,FT2,\"50,000\",DH200 tra truoc\r\n");
+        csv.append("2024-01-01,FT3,\"30,000\",DH200 tra not\r\n");
+        csv.append("2024-01-01,FT4,\"80,000\",DH300\r\n");
+        csv.append("2024-01-01,FT5,\"-20,000\",phi dich vu\r\n");
+        csv.append("2024-01-01,FT6,\"70,000\",chuyen tien khong ghi ma\r\n");
+        csv.append("2024-01-01,FT7,\"10,000\",\"DH100 va DH300\r\ngop\"\r\n");
+        csv.append("2024-01-01,FT8\r\n");
+        for (int i = 0; i < 200; i++) {
+            csv.append("2024-01-02,FX").append(i).append(",\"1,000\",DH400 lan ").append(i).append("\r\n");
+        }
+        Path statement = dir.resolve("statement.csv");
+        Files.write(statement, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<Payment> payments = List.of(
+                payment("DH100", "150000", PaymentStatus.SUCCESS),
+                payment("DH200", "100000", PaymentStatus.PENDING),
+                payment("DH300", "80000", PaymentStatus.PENDING),
+                payment("DH400", "200000", PaymentStatus.SUCCESS),
+                payment("DH500", "60000", PaymentStatus.SUCCESS));
+
+        ReconciliationConfig config = new ReconciliationConfig();
+        config.setChunkSizeKb(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ReconciliationReport report = new StatementReconciliation(config, pool, payments).run(statement, FROM, TO);
+
+            assertTrue(report.getChunks() > 1);
+            assertEquals(208, report.getStatementRows());
+            assertEquals(1, report.getIgnoredRows());
+            assertEquals(1, report.getMalformedRows());
+            assertEquals(204, report.getMatchedRows());
+
+            assertEquals(2, report.getUnmatchedTransferCount());
+            assertEquals(0, new BigDecimal("80000").compareTo(report.getUnmatchedTransferAmount()));
+            assertEquals("NO_ORDER", report.getUnmatchedTransfers().get(0).getReason());
+            ReconciliationReport.Transfer multiple = report.getUnmatchedTransfers().get(1);
+            assertEquals("MULTIPLE_ORDERS", multiple.getReason());
+            assertEquals("DH100 va DH300\r\ngop", multiple.getContent());
+            assertEquals(List.of("DH100", "DH300"), multiple.getOrderIds());
+
+            assertEquals(List.of("DH200"), orderIds(report.getUnderpaid()));
+            assertEquals(0, new BigDecimal("80000").compareTo(report.getUnderpaid().get(0).getReceivedAmount()));
+            assertEquals(List.of("DH300"), orderIds(report.getPaidNotConfirmed()));
+            assertEquals(List.of("DH500"), orderIds(report.getSuccessWithoutBankRow()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Payment payment(String orderId, String amount, PaymentStatus status) {
+        return Payment.builder()
+                .orderId(orderId)
+                .amount(new BigDecimal(amount))
+                .status(status)
+                .paymentMethod(PaymentMethod.SEPAY)
+                .completedAt(status == PaymentStatus.SUCCESS ? new Date(FROM.getTime() + 1000) : null)
+                .build();
+    }
+
+    private static List<String> orderIds(List<ReconciliationReport.OrderDiscrepancy> discrepancies) {
+        List<String> ids = new ArrayList<>();
+        for (ReconciliationReport.OrderDiscrepancy discrepancy : discrepancies) {
+            ids.add(discrepancy.getOrderId());
+        }
+        return ids;
+    }
+}
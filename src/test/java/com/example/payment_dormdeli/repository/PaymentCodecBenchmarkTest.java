@@ -0,0 +1,54 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.benchmark.Benchmark;
+import com.example.payment_dormdeli.benchmark.Timing;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.cloud.firestore.ReflectiveMapping;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * PaymentCodec against Firestore's reflective mapping (what toObject(Payment.class) and set(payment) did
+ * before the codec), on both the encode and the decode path. Neither needs a Firestore backend.
+ */
+class PaymentCodecBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @Benchmark
+    void codecAgainstReflectiveMapping() {
+        Date now = new Date(1_700_000_000_000L);
+        Payment payment = Payment.builder()
+                .id("p1")
+                .orderId("ORDER123")
+                .transactionId("FT123")
+                .paymentMethod(PaymentMethod.SEPAY)
+                .status(PaymentStatus.SUCCESS)
+                .amount(new BigDecimal("150000"))
+                .orderInfo("Com tam")
+                .userId("u1")
+                .paymentUrl("https://example.com/pay")
+                .createdAt(now)
+                .updatedAt(now)
+                .completedAt(now)
+                .version(3L)
+                .build();
+
+        Map<String, Object> encoded = PaymentCodec.encode(payment);
+        Map<String, Object> reflected = ReflectiveMapping.toMap(payment);
+
+        Timing.report("encode: PaymentCodec",
+                Timing.nanosPerOp(WARMUP, ITERATIONS, i -> Timing.consume(PaymentCodec.encode(payment))));
+        Timing.report("encode: reflective",
+                Timing.nanosPerOp(WARMUP, ITERATIONS, i -> Timing.consume(ReflectiveMapping.toMap(payment))));
+        Timing.report("decode: PaymentCodec",
+                Timing.nanosPerOp(WARMUP, ITERATIONS, i -> Timing.consume(PaymentCodec.decode("p1", encoded))));
+        Timing.report("decode: reflective",
+                Timing.nanosPerOp(WARMUP, ITERATIONS, i -> Timing.consume(ReflectiveMapping.fromMap(reflected, Payment.class))));
+    }
+}
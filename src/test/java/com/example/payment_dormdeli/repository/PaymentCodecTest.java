@@ -0,0 +1,64 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentCodecTest {
+
+    @Test
+    void roundTripsAllFields() {
+        Date createdAt = new Date(1_700_000_000_000L);
+        Payment payment = Payment.builder()
+                .id("p1")
+                .orderId("ORDER123")
+                .transactionId("FT123")
+                .paymentMethod(PaymentMethod.SEPAY)
+                .status(PaymentStatus.SUCCESS)
+                .amount(new BigDecimal("150000"))
+                .orderInfo("Com tam")
+                .userId("u1")
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .completedAt(createdAt)
+                .build();
+
+        Map<String, Object> fields = PaymentCodec.encode(payment);
+
+        assertEquals(15_000_000L, fields.get("amountMinor"));
+        assertEquals("SUCCESS", fields.get("status"));
+        assertInstanceOf(Timestamp.class, fields.get("createdAt"));
+        assertFalse(fields.containsKey("errorMessage"));
+
+        Payment decoded = PaymentCodec.decode("p1", fields);
+        assertEquals(0, payment.getAmount().compareTo(decoded.getAmount()));
+        assertEquals(payment.getOrderId(), decoded.getOrderId());
+        assertEquals(payment.getPaymentMethod(), decoded.getPaymentMethod());
+        assertEquals(payment.getStatus(), decoded.getStatus());
+        assertEquals(createdAt, decoded.getCreatedAt());
+        assertEquals(createdAt, decoded.getCompletedAt());
+    }
+
+    @Test
+    void readsLegacyAmountField() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("orderId", "ORDER1");
+        fields.put("status", "PENDING");
+        fields.put("amount", 50000.0);
+
+        Payment decoded = PaymentCodec.decode("p2", fields);
+
+        assertEquals(0, new BigDecimal("50000").compareTo(decoded.getAmount()));
+        assertEquals(PaymentStatus.PENDING, decoded.getStatus());
+        assertEquals("p2", decoded.getId());
+    }
+}
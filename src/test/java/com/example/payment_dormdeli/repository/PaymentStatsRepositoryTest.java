@@ -0,0 +1,130 @@
+package com.example.payment_dormdeli.repository;
+
+import com.example.payment_dormdeli.dto.PaymentStatsResponse;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentStatsRepositoryTest {
+
+    // 23:30 on 2026-03-01 in Vietnam is still 2026-03-01 16:30 UTC; the counters use the Vietnam day
+    private static final Date LATE_EVENING = Date.from(
+            ZonedDateTime.of(2026, 3, 1, 23, 30, 0, 0, ZoneId.of("Asia/Ho_Chi_Minh")).toInstant());
+
+    private static Payment payment(PaymentMethod method, PaymentStatus status, long amount, Date createdAt) {
+        return Payment.builder()
+                .paymentMethod(method)
+                .status(status)
+                .amount(BigDecimal.valueOf(amount))
+                .createdAt(createdAt)
+                .build();
+    }
+
+    @Test
+    void newPaymentCountsOnceUnderItsStatus() {
+        Map<String, Map<String, Long>> deltas = PaymentStatsRepository.deltasByDay(
+                List.of(payment(PaymentMethod.SEPAY, PaymentStatus.PENDING, 50_000, LATE_EVENING)), null);
+
+        assertEquals(Map.of("2026-03-01", Map.of("count_SEPAY_PENDING", 1L, "amount_SEPAY_PENDING", 50_000L)), deltas);
+    }
+
+    @Test
+    void successMovesCountAndRevenueOffThePreviousStatus() {
+        Map<String, Map<String, Long>> deltas = PaymentStatsRepository.deltasByDay(
+                List.of(payment(PaymentMethod.VNPAY, PaymentStatus.SUCCESS, 120_000, LATE_EVENING)), PaymentStatus.PENDING);
+
+        assertEquals(Map.of(
+                "count_VNPAY_PENDING", -1L, "amount_VNPAY_PENDING", -120_000L,
+                "count_VNPAY_SUCCESS", 1L, "amount_VNPAY_SUCCESS", 120_000L), deltas.get("2026-03-01"));
+    }
+
+    @Test
+    void leavingSuccessReversesTheRevenue() {
+        Map<String, Map<String, Long>> deltas = PaymentStatsRepository.deltasByDay(
+                List.of(payment(PaymentMethod.SEPAY, PaymentStatus.CANCELLED, 80_000, LATE_EVENING)), PaymentStatus.SUCCESS);
+
+        Map<String, Long> day = deltas.get("2026-03-01");
+        assertEquals(-1L, day.get("count_SEPAY_SUCCESS"));
+        assertEquals(-80_000L, day.get("amount_SEPAY_SUCCESS"));
+        assertEquals(1L, day.get("count_SEPAY_CANCELLED"));
+    }
+
+    @Test
+    void deltasOfOneDayAreMergedAndNoOpsDropped() {
+        Date nextDay = new Date(LATE_EVENING.getTime() + 3_600_000);
+        Map<String, Map<String, Long>> deltas = PaymentStatsRepository.deltasByDay(List.of(
+                payment(PaymentMethod.SEPAY, PaymentStatus.SUCCESS, 10_000, LATE_EVENING),
+                payment(PaymentMethod.SEPAY, PaymentStatus.SUCCESS, 20_000, LATE_EVENING),
+                payment(PaymentMethod.SEPAY, PaymentStatus.PENDING, 99_000, LATE_EVENING),
+                payment(PaymentMethod.SEPAY, PaymentStatus.SUCCESS, 5_000, nextDay)), PaymentStatus.PENDING);
+
+        assertEquals(Map.of(
+                "count_SEPAY_PENDING", -2L, "amount_SEPAY_PENDING", -30_000L,
+                "count_SEPAY_SUCCESS", 2L, "amount_SEPAY_SUCCESS", 30_000L), deltas.get("2026-03-01"));
+        assertEquals(1L, deltas.get("2026-03-02").get("count_SEPAY_SUCCESS"));
+    }
+
+    @Test
+    void eachDayGoesToOneShardDocument() {
+        PaymentStatsRepository repository = new PaymentStatsRepository(null);
+        ReflectionTestUtils.setField(repository, "shards", 4);
+
+        for (int i = 0; i < 50; i++) {
+            Map<String, Map<String, Object>> writes = repository.shardWrites(List.of(
+                    payment(PaymentMethod.SEPAY, PaymentStatus.SUCCESS, 10_000, LATE_EVENING),
+                    payment(PaymentMethod.VNPAY, PaymentStatus.SUCCESS, 20_000, LATE_EVENING)), PaymentStatus.PENDING);
+
+            assertEquals(1, writes.size());
+            Map.Entry<String, Map<String, Object>> write = writes.entrySet().iterator().next();
+            int shard = (Integer) write.getValue().get("shard");
+            assertTrue(shard >= 0 && shard < 4);
+            assertEquals("2026-03-01_" + shard, write.getKey());
+            assertEquals("2026-03-01", write.getValue().get("day"));
+            // day, shard and count/amount for both methods and both statuses
+            assertEquals(10, write.getValue().size());
+        }
+    }
+
+    @Test
+    void sumAddsShardsUpPerStatusMethodAndDay() {
+        List<Map<String, Object>> shards = List.of(
+                shard("2026-03-01", 0, "count_SEPAY_SUCCESS", 2L, "amount_SEPAY_SUCCESS", 30_000L,
+                        "count_SEPAY_PENDING", 1L, "amount_SEPAY_PENDING", 50_000L),
+                shard("2026-03-01", 3, "count_SEPAY_SUCCESS", 1L, "amount_SEPAY_SUCCESS", 70_000L,
+                        "count_SEPAY_PENDING", -1L, "amount_SEPAY_PENDING", -70_000L),
+                shard("2026-03-02", 1, "count_VNPAY_SUCCESS", 1L, "amount_VNPAY_SUCCESS", 200_000L,
+                        "count_VNPAY_PENDING", 0L, "amount_VNPAY_PENDING", 0L));
+
+        PaymentStatsResponse stats = PaymentStatsRepository.sum(LocalDate.parse("2026-03-01"), LocalDate.parse("2026-03-02"), shards);
+
+        assertEquals(300_000, stats.getRevenue());
+        assertEquals(4, stats.getTotalCount());
+        assertEquals(280_000, stats.getTotalAmount());
+        assertEquals(4, stats.getByStatus().get("SUCCESS").getCount());
+        assertEquals(0, stats.getByStatus().get("PENDING").getCount());
+        assertEquals(100_000 - 20_000, stats.getByMethod().get("SEPAY").getAmount());
+        assertEquals(200_000, stats.getByMethod().get("VNPAY").getAmount());
+        assertEquals(List.of("2026-03-01", "2026-03-02"), new ArrayList<>(stats.getByDay().keySet()));
+        assertEquals(3, stats.getByDay().get("2026-03-01").getCount());
+    }
+
+    private static Map<String, Object> shard(String day, int shard, Object... fields) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("day", day);
+        document.put("shard", (long) shard);
+        for (int i = 0; i < fields.length; i += 2) {
+            document.put((String) fields[i], fields[i + 1]);
+        }
+        return document;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.benchmark.Benchmark;
+import com.example.payment_dormdeli.benchmark.Timing;
+import com.example.payment_dormdeli.model.Payment;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Index build and query latency over 100k payments
+ */
+class PaymentSearchIndexBenchmarkTest {
+
+    @Benchmark
+    void searchOverHundredThousandPayments() {
+        PaymentSearchIndex index = new PaymentSearchIndex();
+        List<Payment> payments = PaymentSearchIndexTest.randomPayments(new Random(7), 100_000);
+
+        Timing.report("reset: 100k payments", Timing.nanosPerOp(1, 3, i -> {
+            index.reset(payments);
+            Timing.consume(index.size());
+        }));
+
+        PaymentSearchQuery byUser = PaymentSearchQuery.builder().text("don hang").userId("u42").page(0).size(5).build();
+        PaymentSearchQuery byText = PaymentSearchQuery.builder().text("phong 42").page(0).size(20).build();
+        PaymentSearchQuery byAmount = PaymentSearchQuery.builder()
+                .minAmount(BigDecimal.valueOf(100_000)).maxAmount(BigDecimal.valueOf(101_000)).size(20).build();
+
+        Timing.report("search: text + userId, page of 5",
+                Timing.nanosPerOp(200, 1_000, i -> Timing.consume(index.search(byUser).getTotal())));
+        Timing.report("search: text only, page of 20",
+                Timing.nanosPerOp(20, 100, i -> Timing.consume(index.search(byText).getTotal())));
+        Timing.report("search: amount range, page of 20",
+                Timing.nanosPerOp(20, 100, i -> Timing.consume(index.search(byAmount).getTotal())));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.payment_dormdeli.search;
+
+import com.example.payment_dormdeli.dto.PaymentSearchResponse;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentSearchIndexTest {
+
+    private static Payment payment(String id, String userId, String orderInfo, long amount, long createdAt, PaymentStatus status) {
+        return Payment.builder()
+                .id(id)
+                .orderId("ORDER" + id)
+                .userId(userId)
+                .orderInfo(orderInfo)
+                .amount(BigDecimal.valueOf(amount))
+                .createdAt(new Date(createdAt))
+                .status(status)
+                .paymentMethod(PaymentMethod.SEPAY)
+                .build();
+    }
+
+    private static List<String> ids(PaymentSearchResponse response) {
+        List<String> ids = new ArrayList<>();
+        response.getPayments().forEach(payment -> ids.add(payment.getId()));
+        return ids;
+    }
+
+    @Test
+    void combinesTextUserAmountAndDateFilters() {
+        PaymentSearchIndex index = new PaymentSearchIndex();
+        index.put(payment("1", "u1", "Thanh toán phòng 101", 50_000, 1_000, PaymentStatus.SUCCESS));
+        index.put(payment("2", "u1", "Thanh toan phong 102", 150_000, 2_000, PaymentStatus.PENDING));
+        index.put(payment("3", "u2", "Đặt cơm phòng 101", 30_000, 3_000, PaymentStatus.SUCCESS));
+
+        assertEquals(List.of("3", "1"), ids(index.search(PaymentSearchQuery.builder().text("PHONG 101").build())));
+        assertEquals(List.of("1"), ids(index.search(PaymentSearchQuery.builder().text("phong 10").userId("u1")
+                .maxAmount(BigDecimal.valueOf(100_000)).build())));
+        assertEquals(List.of("3"), ids(index.search(PaymentSearchQuery.builder().text("dat com").build())));
+        assertEquals(List.of("2"), ids(index.search(PaymentSearchQuery.builder()
+                .minAmount(BigDecimal.valueOf(40_000)).status(PaymentStatus.PENDING).build())));
+        assertEquals(List.of("2", "1"), ids(index.search(PaymentSearchQuery.builder()
+                .from(new Date(1_000)).to(new Date(3_000)).build())));
+        assertEquals(List.of("1"), ids(index.search(PaymentSearchQuery.builder().text("ORDER1").build())));
+    }
+
+    @Test
+    void updatesAndRemovalsReplaceTheOldVersion() {
+        PaymentSearchIndex index = new PaymentSearchIndex();
+        index.put(payment("1", "u1", "phong 101", 50_000, 1_000, PaymentStatus.PENDING));
+        index.put(payment("1", "u1", "phong 101", 50_000, 1_000, PaymentStatus.SUCCESS));
+
+        PaymentSearchResponse response = index.search(PaymentSearchQuery.builder().text("phong").build());
+        assertEquals(1, response.getTotal());
+        assertEquals(PaymentStatus.SUCCESS, response.getPayments().get(0).getStatus());
+
+        index.remove("1");
+        assertEquals(0, index.search(PaymentSearchQuery.builder().text("phong").build()).getTotal());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void paginatesNewestFirst() {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            payments.add(payment(String.valueOf(i), "u1", "don hang phong " + i, 10_000, 1_000 + i, PaymentStatus.SUCCESS));
+            payments.add(payment(String.valueOf(100 + i), "u2", "don hang phong " + i, 10_000, 1_000 + i, PaymentStatus.SUCCESS));
+        }
+        Collections.shuffle(payments, new Random(7));
+        PaymentSearchIndex index = new PaymentSearchIndex();
+        index.reset(payments);
+
+        PaymentSearchQuery.PaymentSearchQueryBuilder query = PaymentSearchQuery.builder().text("don hang").userId("u1").size(5);
+        PaymentSearchResponse first = index.search(query.page(0).build());
+        PaymentSearchResponse last = index.search(query.page(2).build());
+
+        assertEquals(12, first.getTotal());
+        assertEquals(List.of("11", "10", "9", "8", "7"), ids(first));
+        assertEquals(List.of("6", "5", "4", "3", "2"), ids(index.search(query.page(1).build())));
+        assertEquals(List.of("1", "0"), ids(last));
+        assertEquals(12, last.getTotal());
+        assertEquals(2, last.getPage());
+        assertEquals(5, last.getSize());
+        assertTrue(index.search(query.page(3).build()).getPayments().isEmpty());
+    }
+
+    static List<Payment> randomPayments(Random random, int count) {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            payments.add(payment(String.valueOf(i), "u" + (i % 5_000), "Thanh toan don hang phong " + random.nextInt(1_000),
+                    1_000 + random.nextInt(500_000), i, PaymentStatus.SUCCESS));
+        }
+        return payments;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.OutboxConfig;
+import com.example.payment_dormdeli.model.OutboxRecord;
+import com.example.payment_dormdeli.model.OutboxState;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentOutboxRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OutboxDispatcherTest {
+
+    private HttpServer stub;
+    private final List<String> receivedBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger responseStatus = new AtomicInteger(200);
+
+    private PaymentOutboxRepository repository;
+    private OutboxConfig config;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/payment-events", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                receivedBodies.add(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            exchange.sendResponseHeaders(responseStatus.get(), -1);
+            exchange.close();
+        });
+        stub.start();
+
+        OutboxConfig.Destination destination = new OutboxConfig.Destination();
+        destination.setUrl("http://127.0.0.1:" + stub.getAddress().getPort() + "/payment-events");
+        config = new OutboxConfig();
+        config.setEnabled(true);
+        config.setBatchSize(10);
+        config.setMaxAttempts(3);
+        config.getDestinations().put("order-service", destination);
+
+        repository = mock(PaymentOutboxRepository.class);
+        dispatcher = new OutboxDispatcher(repository, config, WebClient.builder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    void deliversDueRecordsInOneBatchAndMarksThemDelivered() {
+        when(repository.claimDue(any(), anyInt(), anyLong())).thenReturn(List.of(record("a"), record("b")));
+
+        dispatcher.dispatch();
+
+        List<OutboxRecord> updated = captureUpdate();
+        assertEquals(1, receivedBodies.size());
+        assertTrue(receivedBodies.get(0).contains("ORDER_a") && receivedBodies.get(0).contains("ORDER_b"));
+        assertTrue(updated.stream().allMatch(r -> r.getState() == OutboxState.DELIVERED && r.getAttempts() == 1));
+        assertEquals(2L, dispatcher.getMetrics().get("delivered"));
+    }
+
+    @Test
+    void schedulesRetryWithBackoffWhenDestinationFails() {
+        responseStatus.set(500);
+        when(repository.claimDue(any(), anyInt(), anyLong())).thenReturn(List.of(record("c")));
+
+        long before = System.currentTimeMillis();
+        dispatcher.dispatch();
+
+        OutboxRecord updated = captureUpdate().get(0);
+        assertEquals(OutboxState.PENDING, updated.getState());
+        assertEquals(1, updated.getAttempts());
+        assertNotNull(updated.getLastError());
+        assertTrue(updated.getNextAttemptAt().getTime() >= before + config.getInitialBackoffMs() / 2);
+    }
+
+    @Test
+    void marksRecordDeadAfterMaxAttempts() {
+        responseStatus.set(503);
+        OutboxRecord record = record("d");
+        record.setAttempts(config.getMaxAttempts() - 1);
+        when(repository.claimDue(any(), anyInt(), anyLong())).thenReturn(List.of(record));
+
+        dispatcher.dispatch();
+
+        assertEquals(OutboxState.DEAD, captureUpdate().get(0).getState());
+    }
+
+    @Test
+    void claimsOnlyWhatFreeSlotsCanSendAndReleasesTheRest() {
+        config.setBatchSize(1);
+        config.getDestinations().get("order-service").setMaxConcurrency(1);
+        when(repository.claimDue(any(), anyInt(), anyLong())).thenReturn(List.of(record("e"), record("f")));
+
+        dispatcher.dispatch();
+
+        verify(repository).claimDue(any(), eq(1), eq(config.getLeaseMs()));
+        ArgumentCaptor<List<OutboxRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, timeout(5000).times(2)).updateDelivery(captor.capture());
+        Map<String, OutboxState> states = new HashMap<>();
+        captor.getAllValues().forEach(records -> records.forEach(r -> states.put(r.getId(), r.getState())));
+        assertEquals(OutboxState.DELIVERED, states.get("e"));
+        assertEquals(OutboxState.PENDING, states.get("f"));
+    }
+
+    @Test
+    void refusesToStartEnabledWithoutDestinationUrl() {
+        config.getDestinations().get("order-service").setUrl("");
+        assertThrows(IllegalStateException.class, dispatcher::validateConfig);
+    }
+
+    private List<OutboxRecord> captureUpdate() {
+        ArgumentCaptor<List<OutboxRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, timeout(5000)).updateDelivery(captor.capture());
+        return captor.getValue();
+    }
+
+    private OutboxRecord record(String id) {
+        return OutboxRecord.builder()
+                .id(id)
+                .destination("order-service")
+                .paymentId("p_" + id)
+                .orderId("ORDER_" + id)
+                .status(PaymentStatus.SUCCESS)
+                .state(OutboxState.SENDING)
+                .claimId("claim")
+                .createdAt(new Date())
+                .nextAttemptAt(new Date())
+                .build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.dto.PaymentStatsResponse;
+import com.example.payment_dormdeli.repository.PaymentStatsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PaymentStatsServiceTest {
+
+    private final PaymentStatsRepository repository = mock(PaymentStatsRepository.class);
+    private final PaymentStatsService service = new PaymentStatsService(repository);
+
+    @Test
+    void defaultsToTheLastThirtyDaysInVietnam() {
+        PaymentStatsResponse response = PaymentStatsResponse.builder().revenue(1).build();
+        when(repository.getStats(any(), any())).thenReturn(response);
+        LocalDate today = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+
+        assertSame(response, service.getStats(null, null));
+        verify(repository).getStats(today.minusDays(29), today);
+    }
+
+    @Test
+    void rejectsReversedAndOverlongRanges() {
+        LocalDate day = LocalDate.parse("2026-03-01");
+
+        assertThrows(IllegalArgumentException.class, () -> service.getStats(day, day.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> service.getStats(day.minusDays(366), day));
+        service.getStats(day.minusDays(365), day);
+        verify(repository, times(1)).getStats(any(), any());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentStatusCacheTest {
+
+    @Test
+    void everyStatusExpiresAfterItsTtl() throws Exception {
+        PaymentStatusCache cache = new PaymentStatusCache(100, 200, 600, 1_000);
+        cache.put(payment("PENDING1", PaymentStatus.PENDING));
+        cache.put(payment("FAILED1", PaymentStatus.FAILED));
+        cache.put(payment("SUCCESS1", PaymentStatus.SUCCESS));
+
+        assertNotNull(cache.get("PENDING1"));
+        assertNotNull(cache.get("FAILED1"));
+        assertNotNull(cache.get("SUCCESS1"));
+
+        Thread.sleep(400);
+        assertNull(cache.get("PENDING1"));
+        assertNotNull(cache.get("FAILED1"));
+        assertNotNull(cache.get("SUCCESS1"));
+
+        Thread.sleep(400);
+        assertNull(cache.get("FAILED1"));
+        assertNotNull(cache.get("SUCCESS1"));
+
+        Thread.sleep(400);
+        assertNull(cache.get("SUCCESS1"));
+    }
+
+    @Test
+    void staleFallbackOutlivesTheTtlButNotAnInvalidation() throws Exception {
+        PaymentStatusCache cache = new PaymentStatusCache(100, 10, 10, 10);
+        cache.put(payment("ORDER1", PaymentStatus.SUCCESS));
+        cache.put(payment("ORDER2", PaymentStatus.PENDING));
+        Thread.sleep(30);
+
+        assertNull(cache.get("ORDER1"));
+        assertEquals(PaymentStatus.SUCCESS, cache.getStale("ORDER1").getStatus());
+        assertEquals(PaymentStatus.PENDING, cache.getStale("ORDER2").getStatus());
+
+        cache.invalidate("ORDER1");
+        assertNull(cache.getStale("ORDER1"));
+        assertNull(cache.getStale("UNKNOWN"));
+        assertEquals(1L, cache.getMetrics().get("invalidations"));
+    }
+
+    @Test
+    void pollingDoesNotKeepAnEntryAlivePastItsTtl() throws Exception {
+        PaymentStatusCache cache = new PaymentStatusCache(100, 100, 60_000, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        long end = System.currentTimeMillis() + 450;
+        while (System.currentTimeMillis() < end) {
+            Payment payment = cache.getOrLoad("ORDER1", () -> {
+                loads.incrementAndGet();
+                return payment("ORDER1", PaymentStatus.PENDING);
+            });
+            assertEquals("ORDER1", payment.getOrderId());
+            Thread.sleep(10);
+        }
+
+        // One store read per 100 ms TTL, not one for the whole run
+        assertTrue(loads.get() >= 3 && loads.get() <= 6, "loads: " + loads.get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyReadEntryBeyondMaxEntries() {
+        PaymentStatusCache cache = new PaymentStatusCache(2, 60_000, 60_000, 60_000);
+        cache.put(payment("ORDER1", PaymentStatus.PENDING));
+        cache.put(payment("ORDER2", PaymentStatus.PENDING));
+        cache.get("ORDER1");
+        cache.put(payment("ORDER3", PaymentStatus.PENDING));
+
+        assertNotNull(cache.getStale("ORDER1"));
+        assertNull(cache.getStale("ORDER2"));
+        assertNotNull(cache.getStale("ORDER3"));
+    }
+
+    @Test
+    void cacheControlFollowsTheTtlOfTheStatus() {
+        PaymentStatusCache cache = new PaymentStatusCache(100, 2_000, 60_000, 300_000);
+
+        assertEquals("max-age=300, must-revalidate, private",
+                cache.cacheControlFor(payment("A", PaymentStatus.SUCCESS)).getHeaderValue());
+        for (PaymentStatus status : new PaymentStatus[]{PaymentStatus.FAILED, PaymentStatus.CANCELLED, PaymentStatus.EXPIRED}) {
+            assertEquals("max-age=60, must-revalidate, private",
+                    cache.cacheControlFor(payment("A", status)).getHeaderValue(), status.name());
+        }
+        assertEquals("no-cache", cache.cacheControlFor(payment("A", PaymentStatus.PENDING)).getHeaderValue());
+    }
+
+    @Test
+    void etagChangesWithVersionAndStatus() {
+        Payment payment = payment("ORDER1", PaymentStatus.PENDING);
+        String pending = PaymentStatusCache.etagOf(payment);
+
+        payment.setStatus(PaymentStatus.SUCCESS);
+        String success = PaymentStatusCache.etagOf(payment);
+        payment.setVersion(2L);
+
+        assertNotEquals(pending, success);
+        assertNotEquals(success, PaymentStatusCache.etagOf(payment));
+        assertTrue(pending.startsWith("\"") && pending.endsWith("\""));
+    }
+
+    private static Payment payment(String orderId, PaymentStatus status) {
+        return Payment.builder()
+                .orderId(orderId)
+                .status(status)
+                .version(1L)
+                .updatedAt(new Date(1_700_000_000_000L))
+                .build();
+    }
+}
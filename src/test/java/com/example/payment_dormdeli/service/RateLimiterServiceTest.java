@@ -0,0 +1,93 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.RateLimitConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterServiceTest {
+
+    private static RateLimitConfig config(String endpoint, int capacity, double refillPerSecond) {
+        RateLimitConfig config = new RateLimitConfig();
+        limit(config, endpoint, capacity, refillPerSecond);
+        return config;
+    }
+
+    private static void limit(RateLimitConfig config, String endpoint, int capacity, double refillPerSecond) {
+        RateLimitConfig.Limit limit = new RateLimitConfig.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillPerSecond(refillPerSecond);
+        config.getEndpoints().put(endpoint, limit);
+    }
+
+    @Test
+    void allowsTheBurstThenOneRequestPerEmissionInterval() throws Exception {
+        RateLimiterService limiter = new RateLimiterService(config("status", 3, 10));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("status", "ip:1"), "request " + i);
+        }
+        long waitNanos = limiter.tryAcquire("status", "ip:1");
+        // One token refills every 100 ms, and the burst was taken just now
+        assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(100), String.valueOf(waitNanos));
+
+        TimeUnit.NANOSECONDS.sleep(waitNanos + TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(0, limiter.tryAcquire("status", "ip:1"));
+        assertTrue(limiter.tryAcquire("status", "ip:1") > 0);
+        assertEquals(0, limiter.tryAcquire("status", "ip:2"));
+        assertEquals(2L, limiter.getMetrics().get("rejected"));
+    }
+
+    @Test
+    void unlimitedEndpointsAndDisabledLimiterAlwaysAllow() {
+        RateLimitConfig config = config("status", 1, 1);
+        RateLimiterService limiter = new RateLimiterService(config);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("qr", "ip:1"));
+        }
+
+        config.setEnabled(false);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("status", "ip:1"));
+        }
+    }
+
+    @Test
+    void clientsBehindOneIpHaveOwnBucketsUnderTheSharedCap() {
+        RateLimitConfig config = config("create", 2, 0.001);
+        limit(config, "create-ip", 5, 0.001);
+        RateLimiterService limiter = new RateLimiterService(config);
+
+        // A noisy client runs out of its own bucket without touching its neighbours'
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.1", "user:a"));
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.1", "user:a"));
+        assertTrue(limiter.tryAcquire("create", "10.0.0.1", "user:a") > 0);
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.1", "user:b"));
+
+        // Making up a new userId per call only goes as far as the IP's shared bucket
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.1", "user:c"));
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.1", "user:d"));
+        assertTrue(limiter.tryAcquire("create", "10.0.0.1", "user:e") > 0);
+        assertEquals(0, limiter.tryAcquire("create", "10.0.0.2", "user:e"));
+    }
+
+    @Test
+    void idleBucketsAreEvictedOnceFullAgain() throws Exception {
+        RateLimitConfig config = config("status", 2, 1000);
+        config.setIdleEvictionMs(20);
+        RateLimiterService limiter = new RateLimiterService(config);
+
+        limiter.tryAcquire("status", "ip:1");
+        limiter.tryAcquire("status", "ip:2");
+        limiter.evictIdleBuckets();
+        assertEquals(2, limiter.getMetrics().get("buckets"));
+
+        Thread.sleep(50);
+        limiter.tryAcquire("status", "ip:3");
+        limiter.evictIdleBuckets();
+        assertEquals(1, limiter.getMetrics().get("buckets"));
+        assertEquals(2L, limiter.getMetrics().get("evicted"));
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.SePayConfig;
+import com.example.payment_dormdeli.dto.sepay.SePayTransaction;
+import com.example.payment_dormdeli.repository.SePayTransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class SePayTransactionSyncTest {
+
+    private static final long CURSOR = 1000;
+    private static final long BASE_TIME = 1_760_000_000_000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Rows the stub feed holds, and whether it lists them newest first (SePay's order) or oldest first
+    private final List<SePayTransaction> feed = new CopyOnWriteArrayList<>();
+    private volatile boolean newestFirst = true;
+    private volatile long responseDelayMs;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer stub;
+    private SePayTransactionRepository repository;
+    private SePayConfig config;
+    private SePayTransactionSync sync;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Local stand-in for /userapi/transactions/list: since_id, transaction_date_min/max (inclusive), limit
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/transactions/list", exchange -> {
+            requests.incrementAndGet();
+            Map<String, String> query = UriComponentsBuilder.fromUri(exchange.getRequestURI()).build()
+                    .getQueryParams().toSingleValueMap();
+            long sinceId = Long.parseLong(query.getOrDefault("since_id", "0"));
+            String dateMin = decode(query.get("transaction_date_min"));
+            String dateMax = decode(query.get("transaction_date_max"));
+            int limit = Integer.parseInt(query.get("limit"));
+
+            Comparator<SePayTransaction> order = Comparator.comparing(SePayTransaction::getTransaction_date)
+                    .thenComparing(SePayTransaction::getId);
+            List<SePayTransaction> rows = feed.stream()
+                    .filter(row -> row.getId() > sinceId)
+                    .filter(row -> dateMin == null || row.getTransaction_date().compareTo(dateMin) >= 0)
+                    .filter(row -> dateMax == null || row.getTransaction_date().compareTo(dateMax) <= 0)
+                    .sorted(newestFirst ? order.reversed() : order)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+
+            sleep(responseDelayMs);
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("status", 200, "transactions", rows));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newFixedThreadPool(4));
+        stub.start();
+
+        config = new SePayConfig();
+        config.setEndpoint("http://127.0.0.1:" + stub.getAddress().getPort() + "/transactions/list");
+        config.setApiKey("test");
+        config.getSync().setPageSize(10);
+        config.getSync().setMaxPageSize(100);
+        config.getSync().setMinIntervalMs(60_000);
+
+        repository = mock(SePayTransactionRepository.class);
+        when(repository.getCursor()).thenReturn(CURSOR);
+        sync = new SePayTransactionSync(WebClient.builder(), config, repository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop(0);
+    }
+
+    @Test
+    void pagesThroughFullPagesNewestFirst() {
+        addRows(1001, 35, 0);
+
+        List<SePayTransaction> synced = sync.sync();
+
+        assertEquals(ids(1001, 35), idsOf(synced));
+        verify(repository).saveAll(anyList(), eq(1035L));
+    }
+
+    @Test
+    void pagesThroughFullPagesOldestFirst() {
+        newestFirst = false;
+        addRows(1001, 35, 0);
+
+        assertEquals(ids(1001, 35), idsOf(sync.sync()));
+        verify(repository).saveAll(anyList(), eq(1035L));
+    }
+
+    @Test
+    void readsEveryRowOfASecondLongerThanAPage() {
+        // 25 rows in the oldest second, then 12 spread over later seconds
+        addRows(1001, 25, -1);
+        addRows(1026, 12, 0);
+
+        List<SePayTransaction> synced = sync.sync();
+
+        assertEquals(ids(1001, 37), idsOf(synced));
+        verify(repository).saveAll(anyList(), eq(1037L));
+    }
+
+    @Test
+    void keepsCursorWhenASecondHoldsMoreThanMaxPageSize() {
+        addRows(1001, 150, -1);
+        addRows(1151, 5, 0);
+
+        List<SePayTransaction> synced = sync.sync();
+
+        ArgumentCaptor<List<SePayTransaction>> stored = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(stored.capture(), isNull());
+        assertEquals(synced.size(), stored.getValue().size());
+        assertEquals(1L, sync.getMetrics().get("incompleteSyncs"));
+    }
+
+    @Test
+    void concurrentStaleChecksShareOneSync() throws Exception {
+        addRows(1001, 3, 0);
+        responseDelayMs = 200;
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Integer> returned = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    returned.add(sync.syncIfStale().size());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, requests.get());
+        assertEquals(callers, returned.size());
+        assertEquals(3, returned.stream().mapToInt(Integer::intValue).sum());
+        verify(repository, times(1)).saveAll(any(), any());
+    }
+
+    @Test
+    void scheduledMatchGetsRowsAStatusCheckSynced() {
+        addRows(1001, 3, 0);
+        assertEquals(3, sync.syncIfStale().size());
+
+        addRows(1004, 2, 0);
+        assertEquals(ids(1001, 5), idsOf(sync.syncForMatching()));
+        assertTrue(sync.syncForMatching().isEmpty());
+    }
+
+    @Test
+    void failedSyncStillHandsOverStoredRows() {
+        addRows(1001, 3, 0);
+        sync.syncIfStale();
+        stub.stop(0);
+
+        assertEquals(ids(1001, 3), idsOf(sync.syncForMatching()));
+    }
+
+    @Test
+    void requeuedRowsComeBackFirst() {
+        addRows(1001, 3, 0);
+        List<SePayTransaction> first = sync.syncForMatching();
+        addRows(1004, 1, 0);
+        sync.requeue(first);
+
+        assertEquals(ids(1001, 4), idsOf(sync.syncForMatching()));
+    }
+
+    /**
+     * count rows from firstId; secondOffset -1 puts them all in one second before the rest,
+     * 0 gives each its own second, in id order
+     */
+    private void addRows(long firstId, int count, int secondOffset) {
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            long time = secondOffset < 0 ? BASE_TIME - 60_000 : BASE_TIME + id * 1000;
+            feed.add(SePayTransaction.builder()
+                    .id(id)
+                    .transaction_date(SePayTransactionRepository.formatTransactionDate(new Date(time)))
+                    .amount_in(new BigDecimal("50000"))
+                    .transaction_content("DH" + id)
+                    .build());
+        }
+    }
+
+    private static List<Long> ids(long firstId, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(firstId + i);
+        }
+        return ids;
+    }
+
+    private static List<Long> idsOf(List<SePayTransaction> transactions) {
+        return transactions.stream().map(SePayTransaction::getId).collect(Collectors.toList());
+    }
+
+    private static String decode(String value) {
+        return value != null ? java.net.URLDecoder.decode(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.benchmark.Benchmark;
+import com.example.payment_dormdeli.benchmark.Timing;
+import com.example.payment_dormdeli.config.VNPayConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifying a VNPay callback from the raw query against the old copy-sort-encode of the parameter map
+ */
+class VNPayCallbackVerifierBenchmarkTest {
+
+    @Benchmark
+    void rawQueryAgainstMapCopyingVerification() throws Exception {
+        VNPayConfig config = new VNPayConfig();
+        config.setHashSecret(VNPayCallbackVerifierTest.SECRET);
+        VNPayCallbackVerifier verifier = new VNPayCallbackVerifier(config);
+
+        String query = VNPayCallbackVerifierTest.signedQuery(
+                VNPayCallbackVerifierTest.callback("ORDER4", "Thanh toán đơn hàng ORDER4"), true);
+        Map<String, String> params = VNPayCallbackVerifierTest.parse(query);
+
+        Timing.report("verify: map copy",
+                Timing.nanosPerOp(100_000, 50_000, i -> {
+                    try {
+                        Timing.consume(VNPayCallbackVerifierTest.legacyVerify(new HashMap<>(params)));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+        Timing.report("verify: raw query",
+                Timing.nanosPerOp(100_000, 50_000, i -> Timing.consume(verifier.verify(query))));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.VNPayConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VNPayCallbackVerifierTest {
+
+    static final String SECRET = "TESTSECRET";
+
+    private VNPayCallbackVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        VNPayConfig config = new VNPayConfig();
+        config.setHashSecret(SECRET);
+        verifier = new VNPayCallbackVerifier(config);
+    }
+
+    @Test
+    void acceptsSignedQueryAndRejectsTamperedOne() throws Exception {
+        String query = signedQuery(callback("ORDER1", "Thanh toan don hang ORDER1"), true);
+
+        assertTrue(verifier.verify(query));
+        assertFalse(verifier.verify(query.replace("vnp_Amount=5000000", "vnp_Amount=9000000")));
+        assertFalse(verifier.verify(query + "&vnp_ResponseCode=24"));
+        assertFalse(verifier.verify(query.substring(0, query.indexOf("&vnp_SecureHash"))));
+    }
+
+    @Test
+    void agreesWithMapBasedVerificationOnVietnameseAndSpecialCharacters() throws Exception {
+        String[] orderInfos = {"Thanh toán đơn hàng #12 (phòng A/3)", "a+b=c&d e", "~!@$^*()_-.'", "emoji 😀"};
+        for (String orderInfo : orderInfos) {
+            for (boolean utf8 : new boolean[]{true, false}) {
+                String query = signedQuery(callback("ORDER2", orderInfo), utf8);
+                Map<String, String> params = parse(query);
+
+                assertTrue(verifier.verify(query), orderInfo);
+                assertTrue(verifier.verify(params), orderInfo);
+                assertTrue(legacyVerify(new HashMap<>(params)), orderInfo);
+            }
+        }
+    }
+
+    @Test
+    void verifiesTheSignaturesThePaymentServiceProduces() throws Exception {
+        VNPayConfig config = new VNPayConfig();
+        config.setHashSecret(SECRET);
+        config.setVersion("2.1.0");
+        config.setCommand("pay");
+        config.setTmnCode("TMN01");
+        config.setOrderType("other");
+        config.setReturnUrl("https://example.com/return?a=1&b=2");
+        VNPayPaymentService service = new VNPayPaymentService(config, null, null, new VNPayCallbackVerifier(config));
+
+        assertTrue(service.warmUp(3));
+    }
+
+    @Test
+    void doesNotModifyTheCallersMap() throws Exception {
+        Map<String, String> params = parse(signedQuery(callback("ORDER3", "Don hang"), true));
+        Map<String, String> copy = new HashMap<>(params);
+
+        assertTrue(verifier.verify(params));
+        assertEquals(copy, params);
+    }
+
+    static Map<String, String> callback(String orderId, String orderInfo) {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_Amount", "5000000");
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_BankTranNo", "VNP14000001");
+        params.put("vnp_CardType", "ATM");
+        params.put("vnp_OrderInfo", orderInfo);
+        params.put("vnp_PayDate", "20260101101500");
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_TmnCode", "TESTTMN");
+        params.put("vnp_TransactionNo", "14000001");
+        params.put("vnp_TransactionStatus", "00");
+        params.put("vnp_TxnRef", orderId);
+        params.put("vnp_SecureHashType", "HmacSHA512");
+        return params;
+    }
+
+    /**
+     * Query string as VNPay sends it: sorted fields, signature over the US-ASCII encoded values
+     */
+    static String signedQuery(Map<String, String> params, boolean utf8Query) throws Exception {
+        List<String> names = new ArrayList<>(params.keySet());
+        names.remove("vnp_SecureHashType");
+        Collections.sort(names);
+
+        StringBuilder hashData = new StringBuilder();
+        StringBuilder query = new StringBuilder("vnp_SecureHashType=HmacSHA512");
+        for (int i = 0; i < names.size(); i++) {
+            String value = params.get(names.get(i));
+            hashData.append(names.get(i)).append('=').append(URLEncoder.encode(value, StandardCharsets.US_ASCII));
+            if (i < names.size() - 1) {
+                hashData.append('&');
+            }
+            query.append('&').append(names.get(i)).append('=')
+                    .append(URLEncoder.encode(value, utf8Query ? StandardCharsets.UTF_8 : StandardCharsets.US_ASCII));
+        }
+        return query + "&vnp_SecureHash=" + hmacSHA512(hashData.toString());
+    }
+
+    static Map<String, String> parse(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String field : query.split("&")) {
+            int equals = field.indexOf('=');
+            params.putIfAbsent(field.substring(0, equals), URLDecoder.decode(field.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * The previous VNPayPaymentService.verifyCallback, kept as the reference
+     */
+    static boolean legacyVerify(Map<String, String> params) throws Exception {
+        String vnpSecureHash = params.get("vnp_SecureHash");
+        params.remove("vnp_SecureHash");
+        params.remove("vnp_SecureHashType");
+
+        List<String> fieldNames = new ArrayList<>(params.keySet());
+        Collections.sort(fieldNames);
+
+        StringBuilder hashData = new StringBuilder();
+        Iterator<String> itr = fieldNames.iterator();
+        while (itr.hasNext()) {
+            String fieldName = itr.next();
+            String fieldValue = params.get(fieldName);
+            if ((fieldValue != null) && (fieldValue.length() > 0)) {
+                hashData.append(fieldName);
+                hashData.append('=');
+                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                if (itr.hasNext()) {
+                    hashData.append('&');
+                }
+            }
+        }
+        return hmacSHA512(hashData.toString()).equals(vnpSecureHash);
+    }
+
+    private static String hmacSHA512(String data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : mac.doFinal(data.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
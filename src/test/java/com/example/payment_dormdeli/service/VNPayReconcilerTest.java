@@ -0,0 +1,189 @@
+package com.example.payment_dormdeli.service;
+
+import com.example.payment_dormdeli.config.VNPayConfig;
+import com.example.payment_dormdeli.dto.vnpay.VNPayQueryResponse;
+import com.example.payment_dormdeli.model.Payment;
+import com.example.payment_dormdeli.model.PaymentEvent;
+import com.example.payment_dormdeli.model.PaymentMethod;
+import com.example.payment_dormdeli.model.PaymentStatus;
+import com.example.payment_dormdeli.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class VNPayReconcilerTest {
+
+    private static final String SECRET = "TESTSECRET";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> queries = new CopyOnWriteArrayList<>();
+    private final AtomicReference<String> transactionStatus = new AtomicReference<>("00");
+    private final AtomicReference<String> signatureOverride = new AtomicReference<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private HttpServer stub;
+    private PaymentRepository repository;
+    private VNPayConfig config;
+    private VNPayPaymentService vnPayPaymentService;
+    private VNPayReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new VNPayConfig();
+        config.setTmnCode("TESTTMN");
+        config.setHashSecret(SECRET);
+        config.setVersion("2.1.0");
+        repository = mock(PaymentRepository.class);
+        vnPayPaymentService = new VNPayPaymentService(config, repository, mock(PaymentArchiveService.class), new VNPayCallbackVerifier(config));
+
+        // Local stand-in for VNPay's merchant_webapi/api/transaction
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/merchant_webapi/api/transaction", exchange -> {
+            JsonNode query = objectMapper.readTree(exchange.getRequestBody());
+            queries.add(query);
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+
+            VNPayQueryResponse response = VNPayQueryResponse.builder()
+                    .vnp_ResponseId("R1")
+                    .vnp_Command("querydr")
+                    .vnp_ResponseCode("00")
+                    .vnp_Message("QueryDR Success")
+                    .vnp_TmnCode("TESTTMN")
+                    .vnp_TxnRef(query.get("vnp_TxnRef").asText())
+                    .vnp_Amount("5000000")
+                    .vnp_BankCode("NCB")
+                    .vnp_PayDate("20260101101500")
+                    .vnp_TransactionNo("14000001")
+                    .vnp_TransactionType("01")
+                    .vnp_TransactionStatus(transactionStatus.get())
+                    .vnp_OrderInfo("Thanh toan")
+                    .build();
+            response.setVnp_SecureHash(signatureOverride.get() != null ? signatureOverride.get()
+                    : vnPayPaymentService.hmacSHA512(SECRET, String.join("|", "R1", "querydr", "00",
+                    "QueryDR Success", "TESTTMN", response.getVnp_TxnRef(), "5000000", "NCB", "20260101101500",
+                    "14000001", "01", transactionStatus.get(), "Thanh toan", "", "")));
+
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+
+        config.setApiUrl("http://127.0.0.1:" + stub.getAddress().getPort() + "/merchant_webapi/api/transaction");
+        config.getReconcile().setMaxConcurrency(2);
+        config.getReconcile().setRequestsPerSecond(50);
+
+        reconciler = new VNPayReconciler(config, repository, vnPayPaymentService, WebClient.builder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    void confirmsPaidOrderThroughUpdateStatus() {
+        Payment payment = pendingPayment("VN1", 60);
+        givenPending(payment);
+
+        reconciler.reconcile();
+
+        ArgumentCaptor<Payment> saved = ArgumentCaptor.forClass(Payment.class);
+        verify(repository).updateStatus(saved.capture(), eq(PaymentStatus.PENDING), any(PaymentEvent.class));
+        assertEquals(PaymentStatus.SUCCESS, saved.getValue().getStatus());
+        assertEquals("14000001", saved.getValue().getTransactionId());
+
+        JsonNode query = queries.get(0);
+        assertEquals("querydr", query.get("vnp_Command").asText());
+        assertEquals("20260101100000", query.get("vnp_TransactionDate").asText());
+        String signed = String.join("|", query.get("vnp_RequestId").asText(), "2.1.0", "querydr", "TESTTMN", "VN1",
+                "20260101100000", query.get("vnp_CreateDate").asText(), "127.0.0.1", query.get("vnp_OrderInfo").asText());
+        assertEquals(vnPayPaymentService.hmacSHA512(SECRET, signed), query.get("vnp_SecureHash").asText());
+    }
+
+    @Test
+    void ignoresResponsesWithBadSignature() {
+        signatureOverride.set("00ff");
+        givenPending(pendingPayment("VN2", 60));
+
+        reconciler.reconcile();
+
+        verify(repository, never()).updateStatus(any(), any(), any(PaymentEvent.class));
+        assertEquals(1L, reconciler.getMetrics().get("errors"));
+    }
+
+    @Test
+    void leavesRecentUnfinishedOrdersPendingAndSkipsYoungOnes() {
+        transactionStatus.set("01");
+        givenPending(pendingPayment("VN3", 60), pendingPayment("VN4", 5));
+
+        reconciler.reconcile();
+
+        assertEquals(1, queries.size());
+        verify(repository, never()).updateStatus(any(), any(), any(PaymentEvent.class));
+    }
+
+    @Test
+    void limitsConcurrentQueries() {
+        Payment[] payments = new Payment[6];
+        for (int i = 0; i < payments.length; i++) {
+            payments[i] = pendingPayment("VNC" + i, 60);
+        }
+        givenPending(payments);
+
+        reconciler.reconcile();
+
+        assertEquals(payments.length, queries.size());
+        assertTrue(maxActive.get() <= 2, "at most max-concurrency queries in flight");
+        verify(repository, times(payments.length)).updateStatus(any(), eq(PaymentStatus.PENDING), any(PaymentEvent.class));
+    }
+
+    private void givenPending(Payment... payments) {
+        when(repository.findByStatus(PaymentStatus.PENDING)).thenReturn(Arrays.asList(payments));
+        for (Payment payment : payments) {
+            when(repository.findByOrderId(payment.getOrderId())).thenReturn(Optional.of(payment));
+        }
+    }
+
+    private Payment pendingPayment(String orderId, int ageMinutes) {
+        return Payment.builder()
+                .id("id-" + orderId)
+                .orderId(orderId)
+                .paymentMethod(PaymentMethod.VNPAY)
+                .status(PaymentStatus.PENDING)
+                .amount(BigDecimal.valueOf(50000))
+                .paymentUrl("https://vnpay.vn/paymentv2/vpcpay.html?vnp_Amount=5000000&vnp_CreateDate=20260101100000&vnp_TxnRef=" + orderId)
+                .createdAt(new Date(System.currentTimeMillis() - ageMinutes * 60_000L))
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.payment_dormdeli.tracing;
+
+import com.example.payment_dormdeli.config.TracingConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceBufferTest {
+
+    private static Trace trace(long durationNanos) {
+        return new Trace(Trace.newTraceId(), "GET /test") {
+            @Override
+            long getDurationNanos() {
+                return durationNanos;
+            }
+        };
+    }
+
+    @Test
+    void keepsTheSlowestTracesUnderConcurrentAdds() throws Exception {
+        TracingConfig config = new TracingConfig();
+        config.setSlowestSize(10);
+        config.setRecentSize(16);
+        TraceBuffer buffer = new TraceBuffer(config);
+
+        int threads = 8;
+        int perThread = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    buffer.add(trace((long) i * threads + offset));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<Trace> slowest = buffer.getSlowest(10);
+        long top = (long) threads * perThread - 1;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(top - i, slowest.get(i).getDurationNanos());
+        }
+        assertEquals(16, buffer.getRecent(100).size());
+    }
+
+    @Test
+    void spansNestUnderTheOpenSpan() {
+        Trace trace = Tracer.start(null, "GET /payment/status/1");
+        try (Span root = Tracer.span("root")) {
+            try (Span child = Tracer.span("firestore.findByOrderId")) {
+                assertEquals(trace.getTraceId(), Tracer.currentTraceId());
+            }
+        } finally {
+            Tracer.finish(trace);
+        }
+
+        List<SpanRecord> spans = trace.getSpans();
+        assertEquals(2, spans.size());
+        assertEquals(spans.get(0).getSpanId(), spans.get(1).getParentSpanId());
+        assertEquals(1, spans.get(1).getDepth());
+        assertTrue(spans.get(1).getDurationMs() >= 0);
+        assertNull(Tracer.currentTraceId());
+    }
+}
@@ -0,0 +1,22 @@
+package com.google.cloud.firestore;
+
+import java.util.Map;
+
+/**
+ * Test-only access to Firestore's reflective bean mapper (package-private), the path
+ * DocumentSnapshot.toObject and set(bean) take, for comparing it with PaymentCodec
+ */
+public final class ReflectiveMapping {
+
+    private ReflectiveMapping() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> toMap(Object bean) {
+        return (Map<String, Object>) CustomClassMapper.convertToPlainJavaTypes(bean);
+    }
+
+    public static <T> T fromMap(Map<String, Object> fields, Class<T> type) {
+        return CustomClassMapper.convertToCustomClass(fields, type, null);
+    }
+}